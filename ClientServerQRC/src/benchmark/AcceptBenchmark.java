@@ -0,0 +1,135 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import server.SecureServerController;
+import server.ServerMetrics;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * AcceptBenchmark measures how fast the server takes connections off the
+ * listening socket with 1, 2, 4 and 8 acceptor threads. Client threads connect
+ * over loopback as fast as they can and reset each connection right away, the
+ * way a reconnect storm of clients that give up looks to the acceptors. The
+ * accept rate is taken from the server's own count of accepted connections,
+ * after a warm up second.
+ *
+ * Usage: java benchmark.AcceptBenchmark [seconds] [clientThreads] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class AcceptBenchmark {
+	private static final int[] ACCEPTORS = {1, 2, 4, 8};
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long WARM_UP_MILLIS = 1000;
+	/* connect times kept per client thread for the percentiles */
+	private static final int SAMPLES_PER_THREAD = 1 << 16;
+
+	public static void main(String[] args) throws Exception
+	{
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int clientThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 5661;
+		String transport = args.length > 3 ? args[3] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		out.println(transport + " transport, " + clientThreads + " client threads, " + seconds + " s per run, "
+				+ Runtime.getRuntime().availableProcessors() + " CPUs");
+		out.println(String.format("%-10s %12s %12s %12s %10s", "acceptors", "accepts/s", "connect p50", "connect p99", "shed"));
+		for (int i = 0; i < ACCEPTORS.length; i++)
+		{
+			out.println(run(ACCEPTORS[i], seconds, clientThreads, port + i, transport));
+		}
+		System.exit(0);
+	}
+
+	/**
+	* run - storm one server with connections
+	* @return String one line of results
+	*/
+	private static String run(int acceptors, int seconds, int clientThreads, final int port, String transport) throws Exception
+	{
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("ACCEPTOR_THREADS", Integer.toString(acceptors));
+		xmlParser.setServerTagValue("LOG_FILE", "AcceptBenchmark.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		Thread.sleep(500);
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicBoolean measuring = new AtomicBoolean(false);
+		final long[][] samples = new long[clientThreads][SAMPLES_PER_THREAD];
+		final int[] counts = new int[clientThreads];
+		final CountDownLatch done = new CountDownLatch(clientThreads);
+		for (int t = 0; t < clientThreads; t++)
+		{
+			final int thread = t;
+			new Thread(new Runnable() {
+				public void run() {
+					InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+					while (running.get())
+					{
+						Socket socket = new Socket();
+						try {
+							/* reset on close, so neither side keeps the port in TIME_WAIT */
+							socket.setSoLinger(true, 0);
+							long lStart = System.nanoTime();
+							socket.connect(address, CONNECT_TIMEOUT);
+							if (measuring.get() && counts[thread] < SAMPLES_PER_THREAD)
+							{
+								samples[thread][counts[thread]++] = System.nanoTime() - lStart;
+							}
+						} catch (IOException ioe) {
+							// refused or timed out, try again
+						}
+						try {
+							socket.close();
+						} catch (IOException ioe) { }
+					}
+					done.countDown();
+				}
+			}).start();
+		}
+		Thread.sleep(WARM_UP_MILLIS);
+		ServerMetrics metrics = server.getMetrics();
+		long lAccepted = metrics.getConnectionsAccepted();
+		long lShed = metrics.getConnectionsShed();
+		long lStart = System.nanoTime();
+		measuring.set(true);
+		Thread.sleep(seconds * 1000L);
+		measuring.set(false);
+		double dSeconds = (System.nanoTime() - lStart) / 1e9;
+		long lAcceptedRun = metrics.getConnectionsAccepted() - lAccepted;
+		long lShedRun = metrics.getConnectionsShed() - lShed;
+		running.set(false);
+		done.await();
+		server.stopServerController();
+
+		/* merge the samples of all client threads */
+		int iTotal = 0;
+		for (int t = 0; t < clientThreads; t++)
+		{
+			iTotal += counts[t];
+		}
+		long[] all = new long[iTotal];
+		int iCount = 0;
+		for (int t = 0; t < clientThreads; t++)
+		{
+			System.arraycopy(samples[t], 0, all, iCount, counts[t]);
+			iCount += counts[t];
+		}
+		return String.format("%-10d %12.0f %12s %12s %10d", acceptors, lAcceptedRun / dSeconds,
+				BenchmarkStats.micros(BenchmarkStats.percentile(all, iCount, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(all, iCount, 99)), lShedRun);
+	}
+}
@@ -0,0 +1,581 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import common.FrameLength;
+import common.MessageParser;
+import common.MessageView;
+import common.SSLContextCache;
+import common.StreamPreamble;
+import common.XmlParser;
+
+/**
+ * AgmpBotClient is a headless AGMP client used by the benchmarks. It speaks the
+ * same wire format as SecureClientController (a length byte and the PDU, either
+ * on an object stream pair or raw) and walks the DFA with fixed bets: version,
+ * game list, set game, then as many hands as the caller asks for.
+ *
+ * It is request/response, so an idle bot holds a socket but no thread. A hand
+ * can also be played pipelined: all five requests are sent before the first
+ * reply is read. For the slow consumer tests a bot can also keep sending
+ * requests without ever reading the replies. A bot that asks for envelopes
+ * packs what it sends between two flushes into one envelope and unpacks
+ * the envelopes the server sends; one that asks for play deltas rebuilds
+ * the full play messages from them.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class AgmpBotClient {
+	private final SSLContext context;
+	private final String host;
+	private final int port;
+	private final int version;
+	private final MessageParser messageParser = new MessageParser();
+	private final MessageView.ServerPlayGame playView = new MessageView.ServerPlayGame();
+	private SSLSocket socket;
+	private DataOutputStream outputStream;
+	private DataInputStream inputStream;
+	private boolean rawFraming = false;
+	/* raw framing revision 2, lengths as varints */
+	private boolean varintFraming = false;
+	/* SO_RCVBUF asked for on connect, 0 for the system default */
+	private int iReceiveBufferSize = 0;
+	private long lBankAmount = -1;
+	/* whether to ask for envelopes and play deltas in the version handshake */
+	private boolean bEnvelopes = false;
+	private boolean bPlayDeltas = false;
+	/* last play state once the server agreed to play deltas, null before */
+	private MessageParser.PlayDeltaMessage playState;
+	/* envelope being filled once the server agreed, null before */
+	private MessageParser.EnvelopeMessage envelope;
+	private final MessageView.Envelope envelopeView = new MessageView.Envelope();
+	/* the rest of an envelope received from the server */
+	private final ArrayDeque<byte[]> received = new ArrayDeque<byte[]>();
+
+	/**
+	* Constructor
+	* @param context client SSLContext, see createSSLContext
+	* @param host
+	* @param port
+	* @param version protocol version to announce
+	*/
+	public AgmpBotClient(SSLContext context, String host, int port, int version)
+	{
+		this.context = context;
+		this.host = host;
+		this.port = port;
+		this.version = version;
+	}
+
+	/**
+	* createSSLContext - build a new client SSLContext from the client key and
+	* trust stores named in Config.xml. Bots that share one resume each other's
+	* TLS sessions
+	* @param xmlParser
+	* @return SSLContext
+	*/
+	public static SSLContext createSSLContext(XmlParser xmlParser) throws IOException, GeneralSecurityException
+	{
+		return SSLContextCache.createContext(xmlParser.getClientTagValue("DEFAULT_KEYSTORE"), xmlParser.getClientTagValue("DEFAULT_KEYSTORE_PASSWORD"),
+				xmlParser.getClientTagValue("DEFAULT_TRUSTSTORE"), xmlParser.getClientTagValue("DEFAULT_TRUSTSTORE_PASSWORD"));
+	}
+
+	/**
+	* setRawFraming - ask for raw framing on the next connect instead of object streams
+	* @param rawFraming
+	* @return none
+	*/
+	public void setRawFraming(boolean rawFraming)
+	{
+		this.rawFraming = rawFraming;
+	}
+
+	/**
+	* setVarintFraming - ask for raw framing revision 2 on the next connect,
+	* with the lengths as varints
+	* @param varintFraming
+	* @return none
+	*/
+	public void setVarintFraming(boolean varintFraming)
+	{
+		this.varintFraming = varintFraming;
+		if (varintFraming)
+		{
+			this.rawFraming = true;
+		}
+	}
+
+	/**
+	* setEnvelopes - ask for envelopes in the next version handshake
+	* @param envelopes
+	* @return none
+	*/
+	public void setEnvelopes(boolean envelopes)
+	{
+		this.bEnvelopes = envelopes;
+	}
+
+	/**
+	* setPlayDeltas - ask for play deltas in the next version handshake
+	* @param playDeltas
+	* @return none
+	*/
+	public void setPlayDeltas(boolean playDeltas)
+	{
+		this.bPlayDeltas = playDeltas;
+	}
+
+	/**
+	* setReceiveBufferSize - ask for a socket receive buffer of this size on the
+	* next connect, a small one makes a bot that stops reading back up the server sooner
+	* @param iSize bytes, 0 for the system default
+	* @return none
+	*/
+	public void setReceiveBufferSize(int iSize)
+	{
+		this.iReceiveBufferSize = iSize;
+	}
+
+	/**
+	* connect - open the TLS connection and the streams for the chosen framing
+	* @param timeout connect and read timeout in milliseconds
+	* @return none
+	*/
+	public void connect(int timeout) throws IOException
+	{
+		this.envelope = null;
+		this.playState = null;
+		this.received.clear();
+		this.socket = (SSLSocket)this.context.getSocketFactory().createSocket();
+		if (this.iReceiveBufferSize > 0)
+		{
+			this.socket.setReceiveBufferSize(this.iReceiveBufferSize);
+		}
+		this.socket.connect(new InetSocketAddress(this.host, this.port), timeout);
+		this.socket.setSoTimeout(timeout);
+		this.socket.setTcpNoDelay(true);
+		this.socket.startHandshake();
+		if (this.rawFraming)
+		{
+			this.outputStream = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+			this.outputStream.write(this.varintFraming ? StreamPreamble.RAW_VARINT : StreamPreamble.RAW);
+			this.outputStream.flush();
+			this.inputStream = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+			byte[] preamble = new byte[StreamPreamble.LENGTH];
+			this.inputStream.readFully(preamble);
+			if (!(this.varintFraming ? StreamPreamble.isRawVarint(preamble) : StreamPreamble.isRaw(preamble)))
+			{
+				throw new IOException("Server does not support " + (this.varintFraming ? "varint" : "raw") + " framing");
+			}
+		}
+		else
+		{
+			this.outputStream = new DataOutputStream(new ObjectOutputStream(this.socket.getOutputStream()));
+			this.outputStream.flush();
+			this.inputStream = new DataInputStream(new ObjectInputStream(this.socket.getInputStream()));
+		}
+	}
+
+	/**
+	* negotiate - authenticate the version, get the game list and select Texas Hold'em
+	* @param none
+	* @return none
+	*/
+	public void negotiate() throws IOException
+	{
+		authenticate();
+		MessageParser.ClientGetGameMessage getMsg = this.messageParser.new ClientGetGameMessage(this.version, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME);
+		request(this.messageParser.CreateClientGetGameMessage(getMsg));
+
+		MessageParser.ClientSetGameMessage setMsg = this.messageParser.new ClientSetGameMessage(this.version, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_SET_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM);
+		byte[] reply = request(this.messageParser.CreateClientSetGameMessage(setMsg));
+		if (this.messageParser.GetServerSetGameMessage(reply, reply.length).getGameTypeResponse() != MessageParser.GAME_TYPE_RESPONSE_ACK)
+		{
+			throw new IOException("Game type rejected");
+		}
+	}
+
+	/**
+	* authenticate - send the version and check it is accepted
+	* @param none
+	* @return none
+	*/
+	public void authenticate() throws IOException
+	{
+		MessageParser.VersionMessage versionMsg = this.messageParser.new VersionMessage(this.version, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_CLIENT_VERSION, (short)0, (long)0,
+				(this.bEnvelopes ? MessageParser.FEATURE_ENVELOPE : 0) | (this.bPlayDeltas ? MessageParser.FEATURE_PLAY_DELTA : 0));
+		byte[] reply = request(this.messageParser.CreateVersionMessage(versionMsg));
+		versionMsg = this.messageParser.GetVersionMessage(reply, reply.length);
+		if (versionMsg.getVersionType() != MessageParser.VERSION_INDICATOR_VERSION_ACK)
+		{
+			throw new IOException("Version rejected: " + versionMsg.getVersionType());
+		}
+		accepted(versionMsg);
+	}
+
+	/* the server acknowledged the version, use the features it agreed to */
+	private void accepted(MessageParser.VersionMessage versionMsg)
+	{
+		this.lBankAmount = versionMsg.getBankAmount();
+		if ((versionMsg.getFeatures() & MessageParser.FEATURE_ENVELOPE) != 0)
+		{
+			this.envelope = this.messageParser.new EnvelopeMessage(this.version,
+					this.varintFraming ? FrameLength.MAX_MESSAGE_SIZE : this.rawFraming ? 255 : 127);
+		}
+		if ((versionMsg.getFeatures() & MessageParser.FEATURE_PLAY_DELTA) != 0)
+		{
+			this.playState = this.messageParser.new PlayDeltaMessage();
+		}
+	}
+
+	/**
+	* exchange - send any message and read as many replies as the caller
+	* expects, used to replay captured sessions. A VERSION_ACK among the
+	* replies turns on the features it agrees to, like authenticate
+	* @param msg
+	* @param iReplies
+	* @return long nanoseconds from the send to the last reply
+	*/
+	public long exchange(byte[] msg, int iReplies) throws IOException
+	{
+		long lStart = System.nanoTime();
+		send(msg);
+		flush();
+		for (int i = 0; i < iReplies; i++)
+		{
+			byte[] reply = receive();
+			if (this.messageParser.GetTypeIndicator(reply, reply.length) == MessageParser.TYPE_INDICATOR_VERSION)
+			{
+				MessageParser.VersionMessage versionMsg = this.messageParser.GetVersionMessage(reply, reply.length);
+				if (versionMsg.getVersionType() == MessageParser.VERSION_INDICATOR_VERSION_ACK)
+				{
+					accepted(versionMsg);
+				}
+			}
+		}
+		return System.nanoTime() - lStart;
+	}
+
+	/**
+	* playHand - play one hand to the river: init, ante, hole bet, check, check
+	* @param lAnte
+	* @return long time taken for the hand in nanoseconds
+	*/
+	public long playHand(long lAnte) throws IOException
+	{
+		long lStart = System.nanoTime();
+		startHand(lAnte);
+		finishHand(lAnte);
+		return System.nanoTime() - lStart;
+	}
+
+	/**
+	* startHand - init and ante, after this the hand is in progress
+	* @param lAnte
+	* @return none
+	*/
+	public void startHand(long lAnte) throws IOException
+	{
+		play(MessageParser.GAME_PLAY_REQUEST_INIT, 0, MessageParser.GAME_PLAY_RESPONSE_INIT_ACK);
+		play(MessageParser.GAME_PLAY_REQUEST_GET_HOLE, lAnte, MessageParser.GAME_PLAY_RESPONSE_GET_HOLE_ACK);
+	}
+
+	/**
+	* finishHand - hole bet, check, check, play a started hand to the river
+	* @param lAnte
+	* @return none
+	*/
+	public void finishHand(long lAnte) throws IOException
+	{
+		play(MessageParser.GAME_PLAY_REQUEST_GET_FLOP, 2 * lAnte, MessageParser.GAME_PLAY_RESPONSE_GET_FLOP_ACK);
+		play(MessageParser.GAME_PLAY_REQUEST_GET_TURN, 0, MessageParser.GAME_PLAY_RESPONSE_GET_TURN_ACK);
+		play(MessageParser.GAME_PLAY_REQUEST_GET_RIVER, 0, MessageParser.GAME_PLAY_RESPONSE_GET_RIVER_ACK);
+	}
+
+	/**
+	* awaitClose - wait for the server to send CLOSE_CONNECTION
+	* @param none
+	* @return boolean false if something else arrived or the connection was
+	* closed without it
+	*/
+	public boolean awaitClose()
+	{
+		try {
+			byte[] msg = receive();
+			return this.messageParser.GetTypeIndicator(msg, msg.length) == MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION
+					&& this.messageParser.GetConnectionMessage(msg, msg.length).getConnectionCode() == MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION;
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	* floodGetGame - after authenticate, keep asking for the game list without
+	* reading any reply, the way a client that has stopped reading looks to the
+	* server. Returns when the server cuts the connection or all are sent
+	* @param iCount requests to send
+	* @return int requests sent before the connection failed
+	*/
+	public int floodGetGame(int iCount)
+	{
+		MessageParser.ClientGetGameMessage getMsg = this.messageParser.new ClientGetGameMessage(this.version, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME);
+		byte[] request = this.messageParser.CreateClientGetGameMessage(getMsg);
+		int iSent = 0;
+		try {
+			/* every one is answered with the game list, the session stays in the game list state */
+			while (iSent < iCount)
+			{
+				send(request);
+				if (++iSent % 64 == 0)
+				{
+					flush();
+				}
+			}
+			flush();
+		} catch (IOException ioe) {
+			// the server gave up on us
+		}
+		return iSent;
+	}
+
+	/**
+	* getGameLists - ask for the game list iCount times in one flush and read
+	* every reply. With envelopes the requests and the replies travel in
+	* envelopes that grow with iCount
+	* @param iCount
+	* @return none
+	*/
+	public void getGameLists(int iCount) throws IOException
+	{
+		MessageParser.ClientGetGameMessage getMsg = this.messageParser.new ClientGetGameMessage(this.version, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME);
+		byte[] request = this.messageParser.CreateClientGetGameMessage(getMsg);
+		for (int i = 0; i < iCount; i++)
+		{
+			send(request);
+		}
+		flush();
+		for (int i = 0; i < iCount; i++)
+		{
+			byte[] reply = receive();
+			if (this.messageParser.GetTypeIndicator(reply, reply.length) != MessageParser.TYPE_INDICATOR_GAME
+					|| this.messageParser.GetGameIndicator(reply, reply.length) != MessageParser.GAME_INDICATOR_GET_GAME)
+			{
+				throw new IOException("Unexpected reply " + i + " of " + iCount);
+			}
+		}
+	}
+
+	/**
+	* playHandPipelined - play the same hand as playHand, but send all the
+	* requests in one flush and then read the five replies
+	* @param lAnte
+	* @return long time taken for the hand in nanoseconds
+	*/
+	public long playHandPipelined(long lAnte) throws IOException
+	{
+		long lStart = System.nanoTime();
+		send(playRequest(MessageParser.GAME_PLAY_REQUEST_INIT, 0));
+		send(playRequest(MessageParser.GAME_PLAY_REQUEST_GET_HOLE, lAnte));
+		send(playRequest(MessageParser.GAME_PLAY_REQUEST_GET_FLOP, 2 * lAnte));
+		send(playRequest(MessageParser.GAME_PLAY_REQUEST_GET_TURN, 0));
+		send(playRequest(MessageParser.GAME_PLAY_REQUEST_GET_RIVER, 0));
+		flush();
+		checkReply(receive(), MessageParser.GAME_PLAY_RESPONSE_INIT_ACK);
+		checkReply(receive(), MessageParser.GAME_PLAY_RESPONSE_GET_HOLE_ACK);
+		checkReply(receive(), MessageParser.GAME_PLAY_RESPONSE_GET_FLOP_ACK);
+		checkReply(receive(), MessageParser.GAME_PLAY_RESPONSE_GET_TURN_ACK);
+		checkReply(receive(), MessageParser.GAME_PLAY_RESPONSE_GET_RIVER_ACK);
+		return System.nanoTime() - lStart;
+	}
+
+	private byte[] playRequest(int iRequest, long lBet)
+	{
+		MessageParser.ClientPlayGameMessage msg = this.messageParser.new ClientPlayGameMessage(this.version, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM, iRequest, lBet);
+		return this.messageParser.CreateClientPlayGameMessage(msg);
+	}
+
+	private void play(int iRequest, long lBet, int iExpected) throws IOException
+	{
+		checkReply(request(playRequest(iRequest, lBet)), iExpected);
+	}
+
+	private void checkReply(byte[] reply, int iExpected) throws IOException
+	{
+		this.playView.wrap(reply, reply.length);
+		if (this.playView.getGamePlayResponse() != iExpected)
+		{
+			throw new IOException("Unexpected game play response " + this.playView.getGamePlayResponse() + ", expected " + iExpected);
+		}
+		this.lBankAmount = this.playView.getBankAmount();
+	}
+
+	/**
+	* request - send one message and wait for the reply
+	* @param msg
+	* @return byte[] the reply
+	*/
+	public byte[] request(byte[] msg) throws IOException
+	{
+		send(msg);
+		flush();
+		return receive();
+	}
+
+	/**
+	* send - queue one message, it goes out with the next flush
+	* @param msg
+	* @return none
+	*/
+	private void send(byte[] msg) throws IOException
+	{
+		if (this.envelope != null)
+		{
+			if (this.envelope.add(msg, msg.length))
+			{
+				return;
+			}
+			writeEnvelope();
+			if (this.envelope.add(msg, msg.length))
+			{
+				return;
+			}
+		}
+		writeLength(msg.length);
+		this.outputStream.write(msg);
+	}
+
+	/**
+	* flush - send the queued messages
+	* @param none
+	* @return none
+	*/
+	private void flush() throws IOException
+	{
+		writeEnvelope();
+		this.outputStream.flush();
+	}
+
+	/* write the envelope being filled, if it holds anything */
+	private void writeEnvelope() throws IOException
+	{
+		if (this.envelope == null || this.envelope.getCount() == 0)
+		{
+			return;
+		}
+		byte[] buffer = new byte[this.envelope.encodedSize()];
+		this.envelope.encodeInto(ByteBuffer.wrap(buffer));
+		this.envelope.clear();
+		writeLength(buffer.length);
+		this.outputStream.write(buffer);
+	}
+
+	/* write the length that precedes a message in the framing in use */
+	private void writeLength(int iLength) throws IOException
+	{
+		if (this.varintFraming)
+		{
+			FrameLength.write(iLength, this.outputStream);
+		}
+		else
+		{
+			this.outputStream.writeByte((byte)iLength);
+		}
+	}
+
+	/**
+	* receive - wait for the next message from the server
+	* @param none
+	* @return byte[]
+	*/
+	private byte[] receive() throws IOException
+	{
+		byte[] msg = this.received.isEmpty() ? receiveFrame() : this.received.poll();
+		if (this.playState != null && this.messageParser.GetTypeIndicator(msg, msg.length) == MessageParser.TYPE_INDICATOR_GAME
+				&& this.messageParser.GetGameIndicator(msg, msg.length) == MessageParser.GAME_INDICATOR_PLAY_DELTA)
+		{
+			if (!this.playState.apply(msg, msg.length))
+			{
+				throw new IOException("Malformed play delta");
+			}
+			return this.playState.getState();
+		}
+		return msg;
+	}
+
+	/* read one frame, the first message of an envelope and queue the rest */
+	private byte[] receiveFrame() throws IOException
+	{
+		int iByteCount;
+		if (this.varintFraming)
+		{
+			iByteCount = FrameLength.read(this.inputStream);
+		}
+		else
+		{
+			iByteCount = this.rawFraming ? this.inputStream.readUnsignedByte() : this.inputStream.readByte();
+		}
+		if (iByteCount < 0)
+		{
+			throw new IOException("Invalid message length " + iByteCount);
+		}
+		byte[] reply = new byte[iByteCount];
+		this.inputStream.readFully(reply);
+		if (this.envelope != null && this.messageParser.GetTypeIndicator(reply, iByteCount) == MessageParser.TYPE_INDICATOR_ENVELOPE)
+		{
+			this.envelopeView.wrap(reply, iByteCount);
+			byte[] inner = new byte[255];
+			int iInner;
+			while ((iInner = this.envelopeView.nextMessage(inner)) >= 0)
+			{
+				byte[] message = new byte[iInner];
+				System.arraycopy(inner, 0, message, 0, iInner);
+				this.received.add(message);
+			}
+			if (this.received.isEmpty())
+			{
+				throw new IOException("Empty envelope");
+			}
+			return this.received.poll();
+		}
+		return reply;
+	}
+
+	/**
+	* getBankAmount - bank amount from the last server reply
+	* @param none
+	* @return long
+	*/
+	public long getBankAmount()
+	{
+		return this.lBankAmount;
+	}
+
+	/**
+	* close - close the connection without the close handshake
+	* @param none
+	* @return none
+	*/
+	public void close()
+	{
+		try {
+			if (this.socket != null)
+			{
+				this.socket.close();
+			}
+		} catch (IOException ioe) { }
+	}
+}
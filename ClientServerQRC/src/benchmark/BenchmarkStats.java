@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * BenchmarkStats holds the small helpers shared by the benchmark tools:
+ * percentiles over recorded samples and a way to silence the console output
+ * of an in-process server while it is being measured.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class BenchmarkStats {
+
+	private BenchmarkStats()
+	{
+	}
+
+	/**
+	* percentile - nearest rank percentile of the first iCount samples. The
+	* samples are sorted in place
+	* @param samples
+	* @param iCount number of valid samples
+	* @param dPercent 0 to 100
+	* @return long the sample at that rank, or -1 if there are none
+	*/
+	public static long percentile(long[] samples, int iCount, double dPercent)
+	{
+		if (iCount <= 0)
+		{
+			return -1;
+		}
+		Arrays.sort(samples, 0, iCount);
+		int iRank = (int)Math.ceil(dPercent / 100.0 * iCount) - 1;
+		return samples[Math.max(0, Math.min(iCount - 1, iRank))];
+	}
+
+	/**
+	* micros - format nanoseconds as microseconds
+	* @param lNanos
+	* @return String
+	*/
+	public static String micros(long lNanos)
+	{
+		return String.format("%.1f us", lNanos / 1000.0);
+	}
+
+	/**
+	* silenceConsole - replace System.out with a stream that drops everything
+	* @param none
+	* @return PrintStream the original System.out, to report results and restore it
+	*/
+	public static PrintStream silenceConsole()
+	{
+		PrintStream original = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) { }
+			public void write(byte[] b, int off, int len) { }
+		}));
+		return original;
+	}
+}
@@ -0,0 +1,347 @@
+package benchmark;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import server.SessionCapture;
+import common.GameState;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * CaptureReplay records AGMP traffic with the server's session capture and
+ * replays a capture against a local SecureServerController.
+ *
+ * record runs a server with CAPTURE_FILE set and has bots play it the way
+ * people do: a random number of hands with a random pause between them,
+ * sessions starting at random times.
+ *
+ * replay reads a capture (from a test run or from a production server with
+ * CAPTURE_FILE set) and drives every session again, each on its own
+ * connection: every message the client sent is sent again at the time it
+ * was sent, scaled by the speed, and as many replies are read as the server
+ * sent back then. At max speed a session sends its next message as soon as
+ * the replies to the last one are in. It reports the throughput, and the
+ * latency from a message to its last reply per GameState the message
+ * arrived in. Sessions run on a pool of threads, one session per thread.
+ *
+ * Usage: java benchmark.CaptureReplay record [file] [sessions] [hands] [port] [BLOCKING|NIO]
+ *        java benchmark.CaptureReplay replay [file] [1|10|max] [port] [BLOCKING|NIO] [threads]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class CaptureReplay {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+	private static final String[] STATE_NAMES = {"LISTENING", "AUTHENTICATE", "GAMELIST", "GAMESET", "GAMEPLAY", "CLOSED"};
+
+	public static void main(String[] args) throws Exception
+	{
+		String sMode = args.length > 0 ? args[0] : "replay";
+		String sFile = args.length > 1 ? args[1] : "agmp.capture";
+		PrintStream out = BenchmarkStats.silenceConsole();
+		if (sMode.equals("record"))
+		{
+			int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+			int hands = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+			int port = args.length > 4 ? Integer.parseInt(args[4]) : 6011;
+			String transport = args.length > 5 ? args[5] : "BLOCKING";
+			out.println(record(sFile, sessions, hands, port, transport));
+		}
+		else
+		{
+			String sSpeed = args.length > 2 ? args[2] : "max";
+			int port = args.length > 3 ? Integer.parseInt(args[3]) : 6012;
+			String transport = args.length > 4 ? args[4] : "BLOCKING";
+			int threads = args.length > 5 ? Integer.parseInt(args[5]) : 256;
+			replay(out, sFile, sSpeed.equals("max") ? 0 : Double.parseDouble(sSpeed), port, transport, threads);
+		}
+		System.exit(0);
+	}
+
+	/**
+	* record - capture the sessions of bots playing a local server
+	* @return String what was recorded
+	*/
+	private static String record(String sFile, int sessions, final int hands, int port, String transport) throws Exception
+	{
+		XmlParser xmlParser = server(port, transport, "CaptureRecord.log");
+		xmlParser.setServerTagValue("CAPTURE_FILE", sFile);
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		final SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		final int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		final int iPort = port;
+		Thread.sleep(500);
+
+		final AtomicInteger failed = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(64);
+		Random random = new Random(544);
+		for (int i = 0; i < sessions; i++)
+		{
+			final long lSeed = random.nextLong();
+			pool.execute(new Runnable() {
+				public void run()
+				{
+					Random player = new Random(lSeed);
+					AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", iPort, version);
+					bot.setVarintFraming(true);
+					bot.setEnvelopes(player.nextBoolean());
+					bot.setPlayDeltas(player.nextBoolean());
+					try {
+						Thread.sleep(player.nextInt(50));
+						bot.connect(CONNECT_TIMEOUT);
+						bot.negotiate();
+						int iHands = 1 + player.nextInt(hands);
+						for (int h = 0; h < iHands; h++)
+						{
+							if (player.nextInt(4) == 0)
+							{
+								bot.playHandPipelined(ANTE);
+							}
+							else
+							{
+								bot.playHand(ANTE);
+							}
+							Thread.sleep(player.nextInt(20));
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+					}
+					bot.close();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.HOURS);
+		/* let the server see the last sessions end */
+		Thread.sleep(1000);
+		server.stopServerController();
+		return "recorded " + sessions + " sessions (" + failed.get() + " failed) to " + sFile + ", " + new File(sFile).length() + " bytes";
+	}
+
+	/**
+	* replay - drive the sessions of a capture against a local server
+	* @param dSpeed 1 for the recorded pace, 10 for ten times faster, 0 for as fast as the server answers
+	*/
+	private static void replay(PrintStream out, String sFile, final double dSpeed, int port, String transport, int threads) throws Exception
+	{
+		List<Session> sessions = load(sFile);
+		int iMessages = 0;
+		for (Session session : sessions)
+		{
+			iMessages += session.steps.size();
+		}
+
+		XmlParser xmlParser = server(port, transport, "CaptureReplay.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		final SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		final int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		final int iPort = port;
+		Thread.sleep(500);
+
+		final Samples[] latency = new Samples[STATE_NAMES.length];
+		for (int iI = 0; iI < latency.length; iI++)
+		{
+			latency[iI] = new Samples();
+		}
+		final AtomicInteger failed = new AtomicInteger();
+		final AtomicReference<String> firstFailure = new AtomicReference<String>();
+		final long lFirst = sessions.isEmpty() ? 0 : sessions.get(0).lStart;
+		final long lStart = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final Session session : sessions)
+		{
+			waitUntil(lStart, session.lStart - lFirst, dSpeed);
+			pool.execute(new Runnable() {
+				public void run()
+				{
+					AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", iPort, version);
+					bot.setVarintFraming(true);
+					try {
+						bot.connect(CONNECT_TIMEOUT);
+						for (Step step : session.steps)
+						{
+							waitUntil(lStart, step.lTime - lFirst, dSpeed);
+							long lElapsed = bot.exchange(step.message, step.iReplies);
+							if (step.iReplies > 0)
+							{
+								latency[step.iState].add(lElapsed);
+							}
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+						firstFailure.compareAndSet(null, "session " + session.lId + ": " + e);
+					}
+					bot.close();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.DAYS);
+		long lElapsed = System.nanoTime() - lStart;
+		String metrics = server.getMetrics().toString();
+		server.stopServerController();
+
+		out.println(sessions.size() + " sessions, " + iMessages + " client messages from " + sFile + ", replayed at "
+				+ (dSpeed == 0 ? "max speed" : dSpeed + "x") + " on " + threads + " threads, " + transport + " transport");
+		out.println(String.format("%.2f s, %.0f messages/s, %.1f sessions/s, %d sessions failed", lElapsed / 1e9,
+				iMessages / (lElapsed / 1e9), sessions.size() / (lElapsed / 1e9), failed.get()));
+		if (firstFailure.get() != null)
+		{
+			out.println("first failure: " + firstFailure.get());
+			out.println("server: " + metrics);
+		}
+		out.println(String.format("%-14s %10s %12s %12s %12s", "state", "messages", "p50", "p99", "max"));
+		for (int iI = 0; iI < latency.length; iI++)
+		{
+			Samples samples = latency[iI];
+			if (samples.iCount > 0)
+			{
+				out.println(String.format("%-14s %10d %12s %12s %12s", STATE_NAMES[iI], samples.iCount,
+						BenchmarkStats.micros(BenchmarkStats.percentile(samples.values, samples.iCount, 50)),
+						BenchmarkStats.micros(BenchmarkStats.percentile(samples.values, samples.iCount, 99)),
+						BenchmarkStats.micros(BenchmarkStats.percentile(samples.values, samples.iCount, 100))));
+			}
+		}
+	}
+
+	/**
+	* load - read a capture into one list of steps per session. The replies to
+	* a message are the outbound records of its session up to its next
+	* inbound one. A capture cut short ends at its last whole record
+	* @param sFile
+	* @return List the sessions in the order they started
+	*/
+	private static List<Session> load(String sFile) throws IOException
+	{
+		Map<Long, Session> byId = new HashMap<Long, Session>();
+		List<Session> sessions = new ArrayList<Session>();
+		SessionCapture.Reader reader = new SessionCapture.Reader(sFile);
+		try {
+			SessionCapture.Record record;
+			while ((record = reader.next()) != null)
+			{
+				Session session = byId.get(record.lSession);
+				if (record.iKind == SessionCapture.OPEN)
+				{
+					session = new Session(record.lSession, record.lTime);
+					byId.put(record.lSession, session);
+					sessions.add(session);
+				}
+				else if (session == null)
+				{
+					// the capture started while this session was running
+				}
+				else if (record.iKind == SessionCapture.INBOUND)
+				{
+					session.steps.add(new Step(record.lTime, record.iState, record.data));
+				}
+				else if (record.iKind == SessionCapture.OUTBOUND && !session.steps.isEmpty())
+				{
+					session.steps.get(session.steps.size() - 1).iReplies++;
+				}
+			}
+		} catch (EOFException eof) {
+			// the server stopped in the middle of a record
+		} finally {
+			reader.close();
+		}
+		Collections.sort(sessions, new Comparator<Session>() {
+			public int compare(Session a, Session b)
+			{
+				return (a.lStart < b.lStart) ? -1 : (a.lStart > b.lStart) ? 1 : 0;
+			}
+		});
+		return sessions;
+	}
+
+	/* sleep until lMicros of capture time have passed since lStart, scaled by the speed */
+	private static void waitUntil(long lStart, long lMicros, double dSpeed) throws InterruptedException
+	{
+		if (dSpeed <= 0)
+		{
+			return;
+		}
+		long lWait = lStart + (long)(lMicros * 1000 / dSpeed) - System.nanoTime();
+		if (lWait > 0)
+		{
+			TimeUnit.NANOSECONDS.sleep(lWait);
+		}
+	}
+
+	/* configuration of the local server */
+	private static XmlParser server(int port, String transport, String sLog)
+	{
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("LOG_FILE", sLog);
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "100000000");
+		return xmlParser;
+	}
+
+	/* one captured session */
+	private static class Session {
+		final long lId;
+		final long lStart;
+		final List<Step> steps = new ArrayList<Step>();
+
+		Session(long lId, long lStart)
+		{
+			this.lId = lId;
+			this.lStart = lStart;
+		}
+	}
+
+	/* one message from the client and the number of replies it got */
+	private static class Step {
+		final long lTime;
+		final int iState;
+		final byte[] message;
+		int iReplies = 0;
+
+		Step(long lTime, int iState, byte[] message)
+		{
+			this.lTime = lTime;
+			this.iState = Math.min(iState, GameState.CLOSED);
+			this.message = message;
+		}
+	}
+
+	/* latency samples of one state, added to from every session thread */
+	private static class Samples {
+		long[] values = new long[1024];
+		int iCount = 0;
+
+		synchronized void add(long lValue)
+		{
+			if (this.iCount == this.values.length)
+			{
+				long[] larger = new long[this.values.length * 2];
+				System.arraycopy(this.values, 0, larger, 0, this.iCount);
+				this.values = larger;
+			}
+			this.values[this.iCount++] = lValue;
+		}
+	}
+}
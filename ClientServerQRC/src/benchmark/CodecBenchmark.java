@@ -0,0 +1,382 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import common.MessageParser;
+import common.MessageView;
+import common.PduCodec;
+import common.card_game.Card;
+
+/**
+ * CodecBenchmark checks and measures the PDU codec generated from
+ * codegen.PduSchema.
+ *
+ * The first part builds random Server Play Game, Client Play Game and
+ * Version messages with every field anywhere in its range, including the
+ * versions and amounts whose bytes have the high bit set, and checks that
+ * the generated encoder writes the same bytes as the hand written layout,
+ * and that MessageParser.Get*, MessageView and PduCodec all read back what
+ * was written. It also counts the messages the old unmasked version reads
+ * got wrong. Random garbage must be validated by PduCodec exactly when
+ * MessageView finds every ranged field in range.
+ *
+ * The second part times decoding every field of a Server Play Game PDU
+ * with MessageParser.GetServerPlayGameMessage, with a MessageView and with
+ * PduCodec, and encoding one with the hand written layout, with encodeInto
+ * (which now uses PduCodec) and with PduCodec straight into an array.
+ *
+ * Usage: java benchmark.CodecBenchmark [messages]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class CodecBenchmark {
+	private static final int[] SUITES = {Card.HEART, Card.DIAMOND, Card.CLUB, Card.SPADE};
+	private static final int FUZZ = 200000;
+
+	private static final String[] DECODERS = {"parser", "view", "codec"};
+	private static final String[] ENCODERS = {"by hand", "encodeInto", "codec"};
+
+	/* keeps the JIT from dropping the results */
+	private static long sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		MessageParser messageParser = new MessageParser();
+		Random random = new Random(544);
+
+		System.out.println(check(messageParser, random));
+		System.out.println(fuzz(random));
+
+		byte[] pdu = new byte[PduCodec.ServerPlayGame.SIZE];
+		encodeByHand(randomPlay(messageParser, random), ByteBuffer.wrap(pdu));
+		MessageParser.ServerPlayGameMessage msg = messageParser.GetServerPlayGameMessage(pdu, pdu.length);
+
+		System.out.println("ServerPlayGame, " + messages + " messages per mode");
+		System.out.println(String.format("%-8s %-12s %10s %12s", "", "mode", "ns/msg", "bytes/msg"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (int mode = 0; mode < DECODERS.length; mode++)
+			{
+				String line = decode(messageParser, pdu, mode, messages);
+				if (pass == 1)
+				{
+					System.out.println(line);
+				}
+			}
+			for (int mode = 0; mode < ENCODERS.length; mode++)
+			{
+				String line = encode(msg, pdu, mode, messages);
+				if (pass == 1)
+				{
+					System.out.println(line);
+				}
+			}
+		}
+	}
+
+	/**
+	* check - encode random valid messages every way and read them back every way
+	* @param messageParser
+	* @param random
+	* @return String the result
+	*/
+	private static String check(MessageParser messageParser, Random random)
+	{
+		ByteBuffer byHand = ByteBuffer.allocate(PduCodec.ServerPlayGame.SIZE);
+		ByteBuffer encoded = ByteBuffer.allocate(PduCodec.ServerPlayGame.SIZE);
+		ByteBuffer direct = ByteBuffer.allocateDirect(PduCodec.ServerPlayGame.SIZE);
+		byte[] codec = new byte[PduCodec.ServerPlayGame.SIZE];
+		MessageView.ServerPlayGame playView = new MessageView.ServerPlayGame();
+		MessageView.ClientPlayGame requestView = new MessageView.ClientPlayGame();
+		MessageView.Version versionView = new MessageView.Version();
+		int iMisread = 0;
+		for (int i = 0; i < FUZZ; i++)
+		{
+			/* Server Play Game */
+			MessageParser.ServerPlayGameMessage play = randomPlay(messageParser, random);
+			byHand.clear();
+			encodeByHand(play, byHand);
+			encoded.clear();
+			play.encodeInto(encoded);
+			direct.clear();
+			play.encodeInto(direct);
+			byte[] pdu = byHand.array();
+			PduCodec.ServerPlayGame.encode(codec, 0, play.getVersion(), play.getTypeCode(), play.getGameIndicator(), play.getGameTypeCode(),
+					play.getGamePlayResponse(), play.getAnte(), packed(play.getPlayerCard1()), packed(play.getPlayerCard2()),
+					packed(play.getDealerCard1()), packed(play.getDealerCard2()), packed(play.getFlopCard1()), packed(play.getFlopCard2()),
+					packed(play.getFlopCard3()), packed(play.getTurnCard()), packed(play.getRiverCard()), play.getWinner(),
+					play.getPotSize(), play.getBetAmount(), play.getBankAmount());
+			direct.flip();
+			byte[] fromDirect = new byte[direct.remaining()];
+			direct.get(fromDirect);
+			if (!Arrays.equals(pdu, encoded.array()) || !Arrays.equals(pdu, fromDirect) || !Arrays.equals(pdu, codec))
+			{
+				throw new IllegalStateException("Server Play Game encoded differently: " + Arrays.toString(pdu) + " " + Arrays.toString(codec));
+			}
+			MessageParser.ServerPlayGameMessage parsed = messageParser.GetServerPlayGameMessage(pdu, pdu.length);
+			playView.wrap(pdu, pdu.length);
+			if (!PduCodec.ServerPlayGame.validate(pdu, 0, pdu.length)
+					|| !samePlay(play, parsed.getVersion(), parsed.getAnte(), parsed.getWinner(), parsed.getPotSize(), parsed.getBetAmount(), parsed.getBankAmount())
+					|| !samePlay(play, playView.getVersion(), playView.getAnte(), playView.getWinner(), playView.getPotSize(), playView.getBetAmount(), playView.getBankAmount())
+					|| !samePlay(play, PduCodec.ServerPlayGame.version(pdu, 0), PduCodec.ServerPlayGame.ante(pdu, 0), PduCodec.ServerPlayGame.winner(pdu, 0),
+							PduCodec.ServerPlayGame.potSize(pdu, 0), PduCodec.ServerPlayGame.betAmount(pdu, 0), PduCodec.ServerPlayGame.bankAmount(pdu, 0))
+					|| packed(parsed.getRiverCard()) != packed(play.getRiverCard()) || playView.getCard(MessageView.ServerPlayGame.RIVER_CARD) != packed(play.getRiverCard()))
+			{
+				throw new IllegalStateException("Server Play Game read back differently: " + Arrays.toString(pdu));
+			}
+			iMisread += oldMasks(pdu, play.getVersion(), 0) ? 0 : 1;
+
+			/* Client Play Game */
+			MessageParser.ClientPlayGameMessage request = messageParser.new ClientPlayGameMessage(random.nextInt(0x10000), MessageParser.TYPE_INDICATOR_GAME,
+					MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM, 1 + random.nextInt(6), amount(random));
+			byte[] requestPdu = messageParser.CreateClientPlayGameMessage(request);
+			MessageParser.ClientPlayGameMessage requestParsed = messageParser.GetClientPlayGameMessage(requestPdu, requestPdu.length);
+			requestView.wrap(requestPdu, requestPdu.length);
+			if (requestParsed.getVersion() != request.getVersion() || requestView.getVersion() != request.getVersion()
+					|| requestParsed.getBetAmount() != request.getBetAmount() || requestView.getBetAmount() != request.getBetAmount()
+					|| requestView.getGamePlayRequest() != request.getGamePlayRequest() || !PduCodec.ClientPlayGame.validate(requestPdu, 0, requestPdu.length))
+			{
+				throw new IllegalStateException("Client Play Game read back differently: " + Arrays.toString(requestPdu));
+			}
+			iMisread += oldMasks(requestPdu, request.getVersion(), 0) ? 0 : 1;
+
+			/* Version */
+			MessageParser.VersionMessage version = messageParser.new VersionMessage(random.nextInt(0x10000), MessageParser.TYPE_INDICATOR_VERSION,
+					1 + random.nextInt(4), (short)random.nextInt(0x100), amount(random), random.nextInt(0x10000));
+			byte[] versionPdu = messageParser.CreateVersionMessage(version);
+			MessageParser.VersionMessage versionParsed = messageParser.GetVersionMessage(versionPdu, versionPdu.length);
+			versionView.wrap(versionPdu, versionPdu.length);
+			if (versionParsed.getVersion() != version.getVersion() || versionView.getVersion() != version.getVersion()
+					|| versionParsed.getBankAmount() != version.getBankAmount() || versionView.getBankAmount() != version.getBankAmount()
+					|| versionParsed.getFeatures() != version.getFeatures() || versionView.getMinorVersion() != version.getMinorVersion()
+					|| !PduCodec.Version.validate(versionPdu, 0, versionPdu.length))
+			{
+				throw new IllegalStateException("Version read back differently: " + Arrays.toString(versionPdu));
+			}
+			iMisread += oldMasks(versionPdu, version.getVersion(), version.getBankAmount()) ? 0 : 1;
+		}
+		return "round trip: " + (3 * FUZZ) + " messages encoded and read back the same every way, the old masks misread " + iMisread;
+	}
+
+	/**
+	* fuzz - random bytes must be valid for PduCodec exactly when every ranged
+	* field of the MessageView is set
+	* @param random
+	* @return String the result
+	*/
+	private static String fuzz(Random random)
+	{
+		byte[] garbage = new byte[PduCodec.ServerPlayGame.SIZE];
+		MessageView.ServerPlayGame view = new MessageView.ServerPlayGame();
+		int iValid = 0;
+		for (int i = 0; i < FUZZ; i++)
+		{
+			random.nextBytes(garbage);
+			/* mostly small values in the ranged fields, so that a good share is valid */
+			if (random.nextInt(4) != 0)
+			{
+				garbage[2] = 0;
+				garbage[3] = (byte)random.nextInt(5);
+				garbage[4] = (byte)random.nextInt(5);
+				garbage[5] = (byte)random.nextInt(3);
+				garbage[6] = (byte)random.nextInt(12);
+				garbage[19] = (byte)((random.nextInt(5) << 4) | random.nextInt(16));
+			}
+			view.wrap(garbage, garbage.length);
+			boolean bView = view.getTypeCode() != MessageParser.NOT_SET && view.getGameIndicator() != MessageParser.NOT_SET
+					&& view.getGameTypeCode() != MessageParser.NOT_SET && view.getGamePlayResponse() != MessageParser.NOT_SET
+					&& view.getWinner() != MessageParser.NOT_SET;
+			if (bView != PduCodec.ServerPlayGame.validate(garbage, 0, garbage.length) || PduCodec.ServerPlayGame.validate(garbage, 0, garbage.length - 1))
+			{
+				throw new IllegalStateException("validate disagrees with the view on " + Arrays.toString(garbage));
+			}
+			iValid += bView ? 1 : 0;
+		}
+		return "validate: " + FUZZ + " random Server Play Game PDUs, " + iValid + " valid, PduCodec and MessageView agree on all";
+	}
+
+	/**
+	* decode - read every field of the PDU repeatedly in one mode
+	* @return String one line of results
+	*/
+	private static String decode(MessageParser messageParser, byte[] pdu, int mode, int messages)
+	{
+		MessageView.ServerPlayGame view = new MessageView.ServerPlayGame();
+		long lAllocStart = allocatedBytes();
+		long lStart = System.nanoTime();
+		for (int i = 0; i < messages; i++)
+		{
+			pdu[1] = (byte)i;
+			if (mode == 0)
+			{
+				MessageParser.ServerPlayGameMessage msg = messageParser.GetServerPlayGameMessage(pdu, pdu.length);
+				sink += msg.getVersion() + msg.getTypeCode() + msg.getGameIndicator() + msg.getGameTypeCode() + msg.getGamePlayResponse() + msg.getAnte()
+						+ msg.getPlayerCard1().getCardValue() + msg.getPlayerCard2().getCardValue() + msg.getDealerCard1().getCardValue()
+						+ msg.getDealerCard2().getCardValue() + msg.getFlopCard1().getCardValue() + msg.getFlopCard2().getCardValue()
+						+ msg.getFlopCard3().getCardValue() + msg.getTurnCard().getCardValue() + msg.getRiverCard().getCardValue()
+						+ msg.getWinner() + msg.getPotSize() + msg.getBetAmount() + msg.getBankAmount();
+			}
+			else if (mode == 1)
+			{
+				view.wrap(pdu, pdu.length);
+				long sum = view.getVersion() + view.getTypeCode() + view.getGameIndicator() + view.getGameTypeCode() + view.getGamePlayResponse() + view.getAnte();
+				for (int iSlot = MessageView.ServerPlayGame.PLAYER_CARD_1; iSlot <= MessageView.ServerPlayGame.RIVER_CARD; iSlot++)
+				{
+					sum += view.getCard(iSlot) & 0x0F;
+				}
+				sink += sum + view.getWinner() + view.getPotSize() + view.getBetAmount() + view.getBankAmount();
+			}
+			else if (PduCodec.ServerPlayGame.validate(pdu, 0, pdu.length))
+			{
+				long sum = PduCodec.ServerPlayGame.version(pdu, 0) + PduCodec.ServerPlayGame.typeCode(pdu, 0) + PduCodec.ServerPlayGame.gameIndicator(pdu, 0)
+						+ PduCodec.ServerPlayGame.gameTypeCode(pdu, 0) + PduCodec.ServerPlayGame.gamePlayResponse(pdu, 0) + PduCodec.ServerPlayGame.ante(pdu, 0);
+				for (int iI = PduCodec.ServerPlayGame.PLAYER_CARD_1; iI <= PduCodec.ServerPlayGame.RIVER_CARD; iI++)
+				{
+					sum += pdu[iI] & 0x0F;
+				}
+				sink += sum + PduCodec.ServerPlayGame.winner(pdu, 0) + PduCodec.ServerPlayGame.potSize(pdu, 0)
+						+ PduCodec.ServerPlayGame.betAmount(pdu, 0) + PduCodec.ServerPlayGame.bankAmount(pdu, 0);
+			}
+		}
+		return result("decode", DECODERS[mode], messages, lStart, lAllocStart);
+	}
+
+	/**
+	* encode - encode the message repeatedly in one mode
+	* @return String one line of results
+	*/
+	private static String encode(MessageParser.ServerPlayGameMessage msg, byte[] pdu, int mode, int messages)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		byte[] array = buffer.array();
+		long lAllocStart = allocatedBytes();
+		long lStart = System.nanoTime();
+		for (int i = 0; i < messages; i++)
+		{
+			msg.setBetAmount(i & 0xFFFF);
+			if (mode == 0)
+			{
+				buffer.clear();
+				encodeByHand(msg, buffer);
+			}
+			else if (mode == 1)
+			{
+				buffer.clear();
+				msg.encodeInto(buffer);
+			}
+			else
+			{
+				PduCodec.ServerPlayGame.encode(array, 0, msg.getVersion(), msg.getTypeCode(), msg.getGameIndicator(), msg.getGameTypeCode(),
+						msg.getGamePlayResponse(), msg.getAnte(), packed(msg.getPlayerCard1()), packed(msg.getPlayerCard2()),
+						packed(msg.getDealerCard1()), packed(msg.getDealerCard2()), packed(msg.getFlopCard1()), packed(msg.getFlopCard2()),
+						packed(msg.getFlopCard3()), packed(msg.getTurnCard()), packed(msg.getRiverCard()), msg.getWinner(),
+						msg.getPotSize(), msg.getBetAmount(), msg.getBankAmount());
+			}
+			sink += array[i & 31];
+		}
+		return result("encode", ENCODERS[mode], messages, lStart, lAllocStart);
+	}
+
+	private static String result(String sWhat, String sMode, int messages, long lStart, long lAllocStart)
+	{
+		long lElapsed = System.nanoTime() - lStart;
+		long lAllocated = allocatedBytes() - lAllocStart;
+		return String.format("%-8s %-12s %10.1f %12s", sWhat, sMode, (double)lElapsed / messages,
+				lAllocStart < 0 ? "n/a" : String.format("%.2f", (double)lAllocated / messages));
+	}
+
+	/* the Server Play Game layout as it was written by hand before the codec was generated */
+	private static void encodeByHand(MessageParser.ServerPlayGameMessage msg, ByteBuffer dst)
+	{
+		dst.putShort((short)msg.getVersion());
+		dst.putShort((short)msg.getTypeCode());
+		dst.put((byte)msg.getGameIndicator());
+		dst.put((byte)msg.getGameTypeCode());
+		dst.put((byte)msg.getGamePlayResponse());
+		dst.put((byte)0);
+		dst.putShort((short)msg.getAnte());
+		dst.put((byte)packed(msg.getPlayerCard1()));
+		dst.put((byte)packed(msg.getPlayerCard2()));
+		dst.put((byte)packed(msg.getDealerCard1()));
+		dst.put((byte)packed(msg.getDealerCard2()));
+		dst.put((byte)packed(msg.getFlopCard1()));
+		dst.put((byte)packed(msg.getFlopCard2()));
+		dst.put((byte)packed(msg.getFlopCard3()));
+		dst.put((byte)packed(msg.getTurnCard()));
+		dst.put((byte)packed(msg.getRiverCard()));
+		dst.put((byte)((msg.getWinner() & 0x0F) << 4));
+		dst.putInt((int)msg.getPotSize());
+		dst.putInt((int)msg.getBetAmount());
+		dst.putInt((int)msg.getBankAmount());
+	}
+
+	/* whether the old unmasked reads of the version (and a bank amount at byte 8) get the value right */
+	private static boolean oldMasks(byte[] pdu, int version, long bankamount)
+	{
+		int oldVersion = ((pdu[0] << 8) | pdu[1]) & 0xFFFF;
+		long oldBank = bankamount;
+		if (bankamount != 0)
+		{
+			short byte1 = (short)(pdu[8] & 0xFF);
+			short byte2 = (short)(pdu[9] & 0xFF);
+			short byte3 = (short)(pdu[10] & 0xFF);
+			short byte4 = (short)(pdu[11] & 0xFF);
+			oldBank = ((long)(byte1 << 24) | (long)(byte2 << 16) | (long)(byte3 << 8) | (long)byte4) & 0xFFFFFFFF;
+		}
+		return oldVersion == version && oldBank == bankamount;
+	}
+
+	private static boolean samePlay(MessageParser.ServerPlayGameMessage play, int version, int ante, int winner, long potsize, long betamount, long bankamount)
+	{
+		return version == play.getVersion() && ante == play.getAnte() && winner == play.getWinner()
+				&& potsize == play.getPotSize() && betamount == play.getBetAmount() && bankamount == play.getBankAmount();
+	}
+
+	private static MessageParser.ServerPlayGameMessage randomPlay(MessageParser messageParser, Random random)
+	{
+		return messageParser.new ServerPlayGameMessage(random.nextInt(0x10000), MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_PLAY_GAME,
+				MessageParser.GAME_TYPE_TEXAS_HOLDEM, 1 + random.nextInt(10), random.nextInt(0x10000), card(random), card(random), card(random), card(random),
+				card(random), card(random), card(random), card(random), card(random), 1 + random.nextInt(3), amount(random), amount(random), amount(random));
+	}
+
+	private static Card card(Random random)
+	{
+		return new Card(SUITES[random.nextInt(SUITES.length)], random.nextInt(Card.NUM_RANKS + 1));
+	}
+
+	/* any amount a four byte field holds, half of them with the top bit set */
+	private static long amount(Random random)
+	{
+		return random.nextInt() & 0xFFFFFFFFL;
+	}
+
+	private static int packed(Card card)
+	{
+		return ((card.getCardSuite() & 0x0F) << 4) | (card.getCardValue() & 0x0F);
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
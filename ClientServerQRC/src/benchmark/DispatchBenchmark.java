@@ -0,0 +1,135 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import server.ClientConnection;
+import server.ClientModel;
+import common.LogAndPublish;
+import common.MessageParser;
+import common.XmlParser;
+
+/**
+ * DispatchBenchmark measures what ClientModel spends on a message from the
+ * moment it arrives to the response being handed to the connection. A
+ * session plays hands on a connection that drops what is written to it, so
+ * the time is the header decode, the dispatch to the state's handler, the
+ * game model and the response encode. Every hand also goes back to the game
+ * list and sets the game again, so every lobby state is dispatched. The
+ * bytes allocated per hand are read from the HotSpot thread MXBean when it
+ * is available; the log writes are part of them.
+ *
+ * Usage: java benchmark.DispatchBenchmark [hands]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class DispatchBenchmark {
+	private static final long ANTE = 10;
+
+	/* keeps the JIT from dropping the writes */
+	private static int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("LOG_FILE", "DispatchBenchmark.log");
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "2000000000");
+		LogAndPublish logAndPublish = new LogAndPublish(xmlParser, "server");
+		int version = Integer.parseInt(xmlParser.getServerTagValue("VERSION"));
+		MessageParser messageParser = new MessageParser();
+
+		byte[] versionMsg = messageParser.CreateVersionMessage(messageParser.new VersionMessage(version, MessageParser.TYPE_INDICATOR_VERSION,
+				MessageParser.VERSION_INDICATOR_CLIENT_VERSION, (short)0, (long)0));
+		byte[] getGame = messageParser.CreateClientGetGameMessage(messageParser.new ClientGetGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_GET_GAME));
+		byte[] setGame = messageParser.CreateClientSetGameMessage(messageParser.new ClientSetGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_SET_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM));
+		int[] requests = {MessageParser.GAME_PLAY_REQUEST_INIT, MessageParser.GAME_PLAY_REQUEST_GET_HOLE, MessageParser.GAME_PLAY_REQUEST_GET_FLOP,
+				MessageParser.GAME_PLAY_REQUEST_GET_TURN, MessageParser.GAME_PLAY_REQUEST_GET_RIVER};
+		long[] bets = {0, ANTE, 2 * ANTE, 0, 0};
+		byte[][] hand = new byte[requests.length + 2][];
+		for (int i = 0; i < requests.length; i++)
+		{
+			hand[i] = messageParser.CreateClientPlayGameMessage(messageParser.new ClientPlayGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+					MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM, requests[i], bets[i]));
+		}
+		/* back to the game list and into the game again */
+		hand[requests.length] = getGame;
+		hand[requests.length + 1] = setGame;
+
+		ClientModel model = new ClientModel(new NullConnection(), xmlParser, logAndPublish);
+		model.handleMessage(versionMsg, versionMsg.length);
+		model.handleMessage(getGame, getGame.length);
+		model.handleMessage(setGame, setGame.length);
+
+		out.println(hands + " hands, " + hand.length + " messages each");
+		out.println(String.format("%-8s %12s %12s %12s", "pass", "ns/msg", "ns/hand", "bytes/hand"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 3; pass++)
+		{
+			long lAllocStart = allocatedBytes();
+			long lStart = System.nanoTime();
+			for (int h = 0; h < hands; h++)
+			{
+				for (int i = 0; i < hand.length; i++)
+				{
+					model.handleMessage(hand[i], hand[i].length);
+				}
+			}
+			long lElapsed = System.nanoTime() - lStart;
+			long lAllocated = allocatedBytes() - lAllocStart;
+			out.println(String.format("%-8s %12.1f %12.1f %12s", pass == 0 ? "warm up" : Integer.toString(pass),
+					(double)lElapsed / ((long)hands * hand.length), (double)lElapsed / hands,
+					lAllocStart < 0 ? "n/a" : String.format("%.1f", (double)lAllocated / hands)));
+		}
+		model.stopClient();
+		System.exit(0);
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/* a connection that encodes what is written to it and drops it */
+	private static class NullConnection implements ClientConnection {
+		private final ByteBuffer encoded = ByteBuffer.allocate(256);
+
+		public String getUniqueID() { return "dispatch"; }
+		public void flush() { }
+		public void startEnvelopes(int version) { }
+		public void setReadTimeout(int timeout) { }
+		public boolean isClosed() { return false; }
+		public void close() { }
+		public void abort() { }
+		public void execute(Runnable task, ThreadFactory threads) { task.run(); }
+
+		public void writeMessage(MessageParser.EncodableMessage msg) throws IOException
+		{
+			this.encoded.clear();
+			msg.encodeInto(this.encoded);
+			sink += this.encoded.position();
+		}
+	}
+}
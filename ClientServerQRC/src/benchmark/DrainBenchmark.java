@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * DrainBenchmark checks that a draining server lets hands in progress finish.
+ * It opens sessions that wait in the lobby (negotiated, no hand started),
+ * sessions in the middle of a hand and sessions in a hand whose client has
+ * gone quiet, then drains the server. The lobby sessions should get
+ * CLOSE_CONNECTION at once, the hands in progress should be played to the
+ * river and then closed, and the quiet ones should be cut at the deadline.
+ * The session counts the server reports are sampled while it drains.
+ *
+ * Usage: java benchmark.DrainBenchmark [lobby] [inHand] [stuck] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class DrainBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long DRAIN_TIMEOUT = 3000;
+	/* how long the clients in a hand think before playing it out */
+	private static final long THINK_MILLIS = 500;
+	private static final long ANTE = 10;
+
+	public static void main(String[] args) throws Exception
+	{
+		int lobby = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int inHand = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int stuck = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 5651;
+		String transport = args.length > 4 ? args[4] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("LOG_FILE", "DrainBenchmark.log");
+		final SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		List<AgmpBotClient> lobbyBots = open(context, port, version, lobby, false);
+		List<AgmpBotClient> handBots = open(context, port, version, inHand, true);
+		List<AgmpBotClient> stuckBots = open(context, port, version, stuck, true);
+		out.println(transport + " transport, sessions before the drain: " + server.getSessions());
+
+		final long lDrainStart = System.nanoTime();
+		final long[] drainMillis = new long[1];
+		final boolean[] drained = new boolean[1];
+		Thread drainer = new Thread(new Runnable() {
+			public void run() {
+				drained[0] = server.drain(DRAIN_TIMEOUT);
+				drainMillis[0] = (System.nanoTime() - lDrainStart) / 1000000;
+			}
+		});
+		drainer.start();
+
+		int lobbyClosed = 0;
+		for (AgmpBotClient bot : lobbyBots)
+		{
+			/* a client that is told to close hangs up */
+			lobbyClosed += bot.awaitClose() ? 1 : 0;
+			bot.close();
+		}
+		out.println("after the lobby was closed: " + server.getSessions());
+
+		/* the clients in a hand play it out after thinking it over */
+		Thread.sleep(THINK_MILLIS);
+		ExecutorService players = Executors.newFixedThreadPool(16);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (final AgmpBotClient bot : handBots)
+		{
+			results.add(players.submit(new Callable<Integer>() {
+				public Integer call() {
+					try {
+						bot.finishHand(ANTE);
+					} catch (Exception e) {
+						return 0;
+					}
+					/* 1 for a finished hand, 2 if CLOSE_CONNECTION followed it */
+					int r = bot.awaitClose() ? 2 : 1;
+					bot.close();
+					return r;
+				}
+			}));
+		}
+		int handsFinished = 0;
+		int handsClosed = 0;
+		for (Future<Integer> result : results)
+		{
+			int r = result.get();
+			handsFinished += (r > 0) ? 1 : 0;
+			handsClosed += (r == 2) ? 1 : 0;
+		}
+		out.println("after the hands were played out: " + server.getSessions());
+		drainer.join();
+
+		int stuckCut = 0;
+		for (AgmpBotClient bot : stuckBots)
+		{
+			stuckCut += bot.awaitClose() ? 0 : 1;
+		}
+		out.println(String.format("%-24s %8s %8s", "", "sessions", "ok"));
+		out.println(String.format("%-24s %8d %8d", "lobby got close", lobby, lobbyClosed));
+		out.println(String.format("%-24s %8d %8d", "hands played out", inHand, handsFinished));
+		out.println(String.format("%-24s %8d %8d", "closed after the hand", inHand, handsClosed));
+		out.println(String.format("%-24s %8d %8d", "quiet cut at deadline", stuck, stuckCut));
+		out.println("drain " + (drained[0] ? "completed" : "hit the deadline") + " after " + drainMillis[0] + " ms (deadline " + DRAIN_TIMEOUT + " ms)");
+		for (AgmpBotClient bot : stuckBots)
+		{
+			bot.close();
+		}
+		players.shutdown();
+		System.exit(0);
+	}
+
+	private static List<AgmpBotClient> open(SSLContext context, int port, int version, int count, boolean startHand) throws Exception
+	{
+		List<AgmpBotClient> bots = new ArrayList<AgmpBotClient>();
+		for (int i = 0; i < count; i++)
+		{
+			AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+			bot.setRawFraming(true);
+			bot.connect(CONNECT_TIMEOUT);
+			bot.negotiate();
+			if (startHand)
+			{
+				bot.startHand(ANTE);
+			}
+			bots.add(bot);
+		}
+		return bots;
+	}
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import common.MessageParser;
+import common.card_game.Card;
+
+/**
+ * EncodeBenchmark compares encoding a ServerPlayGameMessage with
+ * CreateServerPlayGameMessage (a new byte[] per message) against encodeInto
+ * on a reused heap and direct buffer, the path the server connections use.
+ * It reports the time and the bytes allocated per message.
+ *
+ * Allocation is read from the HotSpot thread MXBean when it is available.
+ *
+ * Usage: java benchmark.EncodeBenchmark [messages]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class EncodeBenchmark {
+	private static final int CREATE = 0;
+	private static final int HEAP = 1;
+	private static final int DIRECT = 2;
+	private static final String[] NAMES = {"create", "heap", "direct"};
+
+	/* keeps the JIT from dropping the encoded bytes */
+	private static int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		MessageParser messageParser = new MessageParser();
+		MessageParser.ServerPlayGameMessage msg = messageParser.new ServerPlayGameMessage(1, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM,
+				MessageParser.GAME_PLAY_RESPONSE_GET_RIVER_ACK, 10, new Card(Card.HEART, Card.CARD_ACE), new Card(Card.SPADE, Card.CARD_KING), new Card(Card.CLUB, Card.CARD_2), new Card(Card.DIAMOND, Card.CARD_7),
+				new Card(Card.HEART, Card.CARD_10), new Card(Card.HEART, Card.CARD_JACK), new Card(Card.HEART, Card.CARD_QUEEN), new Card(Card.CLUB, Card.CARD_9), new Card(Card.SPADE, Card.CARD_3),
+				MessageParser.WINNER_PLAYER, 30, 0, 1000);
+
+		System.out.println("ServerPlayGameMessage, " + messages + " messages per mode");
+		System.out.println(String.format("%-8s %10s %12s", "encode", "ns/msg", "bytes/msg"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (int mode = CREATE; mode <= DIRECT; mode++)
+			{
+				String line = run(messageParser, msg, mode, messages);
+				if (pass == 1)
+				{
+					System.out.println(line);
+				}
+			}
+		}
+	}
+
+	/**
+	* run - encode the message repeatedly in one mode
+	* @param messageParser
+	* @param msg
+	* @param mode CREATE, HEAP or DIRECT
+	* @param messages
+	* @return String one line of results
+	*/
+	private static String run(MessageParser messageParser, MessageParser.ServerPlayGameMessage msg, int mode, int messages)
+	{
+		ByteBuffer buffer = (mode == DIRECT) ? ByteBuffer.allocateDirect(256) : ByteBuffer.allocate(256);
+		long lAllocStart = allocatedBytes();
+		long lStart = System.nanoTime();
+		for (int i = 0; i < messages; i++)
+		{
+			if (mode == CREATE)
+			{
+				byte[] pdu = messageParser.CreateServerPlayGameMessage(msg);
+				sink += pdu[i & 31];
+			}
+			else
+			{
+				buffer.clear();
+				buffer.put((byte)msg.encodedSize());
+				msg.encodeInto(buffer);
+				sink += buffer.get(i & 31);
+			}
+		}
+		long lElapsed = System.nanoTime() - lStart;
+		long lAllocated = allocatedBytes() - lAllocStart;
+		return String.format("%-8s %10.1f %12s", NAMES[mode], (double)lElapsed / messages,
+				lAllocStart < 0 ? "n/a" : String.format("%.2f", (double)lAllocated / messages));
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * EnvelopeBenchmark measures what envelopes save on the wire. One bot plays
+ * hands through a relay that counts the bytes and the TLS records going each
+ * way, first one request at a time and then with the five requests of a hand
+ * pipelined, with and without envelopes. The counts start after the
+ * handshake and the game negotiation, so they are for the hands alone.
+ *
+ * Usage: java benchmark.EnvelopeBenchmark [hands] [port] [BLOCKING|NIO] [RAW|OBJECT]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class EnvelopeBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+	/* TLS record header: content type, version, length */
+	private static final int RECORD_HEADER = 5;
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5681;
+		String transport = args.length > 2 ? args[2] : "BLOCKING";
+		boolean raw = !(args.length > 3 && "OBJECT".equalsIgnoreCase(args[3]));
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("LOG_FILE", "EnvelopeBenchmark.log");
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "100000000");
+		xmlParser.setServerTagValue("ENVELOPES", "true");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		out.println(transport + " transport, " + (raw ? "raw" : "object stream") + " framing, " + hands + " hands per run");
+		out.println(String.format("%-10s %-10s %10s %14s %14s %14s %14s", "hands", "envelopes", "hand p50",
+				"bytes up", "bytes down", "records up", "records down"));
+		int relayPort = port + 1;
+		for (int pipelined = 0; pipelined < 2; pipelined++)
+		{
+			for (int envelopes = 0; envelopes < 2; envelopes++)
+			{
+				out.println(run(context, version, port, relayPort++, hands, raw, pipelined == 1, envelopes == 1));
+			}
+		}
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* run - play the hands on one connection through a fresh relay
+	* @return String one line of results
+	*/
+	private static String run(SSLContext context, int version, int port, int relayPort, int hands, boolean raw,
+			boolean pipelined, boolean envelopes) throws Exception
+	{
+		Relay relay = new Relay(relayPort, port);
+		AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", relayPort, version);
+		bot.setRawFraming(raw);
+		bot.setEnvelopes(envelopes);
+		bot.connect(CONNECT_TIMEOUT);
+		bot.negotiate();
+		/* warm up, then count the hands alone */
+		for (int i = 0; i < hands / 10; i++)
+		{
+			play(bot, pipelined);
+		}
+		long lUpBytes = relay.up.bytes.get();
+		long lDownBytes = relay.down.bytes.get();
+		long lUpRecords = relay.up.records.get();
+		long lDownRecords = relay.down.records.get();
+		long[] samples = new long[hands];
+		for (int i = 0; i < hands; i++)
+		{
+			samples[i] = play(bot, pipelined);
+		}
+		/* the last reply may still be on its way through the relay's counter */
+		Thread.sleep(100);
+		String line = String.format("%-10s %-10s %10s %14.1f %14.1f %14.2f %14.2f", pipelined ? "pipelined" : "sequential", envelopes ? "on" : "off",
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 50)),
+				(relay.up.bytes.get() - lUpBytes) / (double)hands, (relay.down.bytes.get() - lDownBytes) / (double)hands,
+				(relay.up.records.get() - lUpRecords) / (double)hands, (relay.down.records.get() - lDownRecords) / (double)hands);
+		bot.close();
+		relay.close();
+		return line;
+	}
+
+	private static long play(AgmpBotClient bot, boolean pipelined) throws IOException
+	{
+		return pipelined ? bot.playHandPipelined(ANTE) : bot.playHand(ANTE);
+	}
+
+	/* a TCP relay for one connection that counts what passes through it */
+	private static class Relay {
+		private final ServerSocket listener;
+		private Socket client;
+		private Socket server;
+		final Pump up = new Pump();
+		final Pump down = new Pump();
+
+		Relay(int iListenPort, final int iServerPort) throws IOException
+		{
+			this.listener = new ServerSocket();
+			this.listener.bind(new InetSocketAddress("127.0.0.1", iListenPort));
+			Thread acceptor = new Thread(new Runnable() {
+				public void run() {
+					try {
+						client = listener.accept();
+						server = new Socket();
+						server.connect(new InetSocketAddress("127.0.0.1", iServerPort), CONNECT_TIMEOUT);
+						client.setTcpNoDelay(true);
+						server.setTcpNoDelay(true);
+						up.start(client.getInputStream(), server.getOutputStream());
+						down.start(server.getInputStream(), client.getOutputStream());
+					} catch (IOException ioe) {
+						close();
+					}
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		void close()
+		{
+			try {
+				this.listener.close();
+				if (this.client != null)
+				{
+					this.client.close();
+				}
+				if (this.server != null)
+				{
+					this.server.close();
+				}
+			} catch (IOException ioe) { }
+		}
+	}
+
+	/* copies one direction and counts bytes and TLS records on the way */
+	private static class Pump implements Runnable {
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicLong records = new AtomicLong();
+		private InputStream in;
+		private OutputStream out;
+		/* bytes of the current record header seen, and what is left of its body */
+		private int iHeaderSeen = 0;
+		private int iBodyLeft = 0;
+		private final byte[] header = new byte[RECORD_HEADER];
+
+		void start(InputStream in, OutputStream out)
+		{
+			this.in = in;
+			this.out = out;
+			Thread thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public void run()
+		{
+			byte[] buffer = new byte[1 << 16];
+			try {
+				int n;
+				while ((n = this.in.read(buffer)) > 0)
+				{
+					count(buffer, n);
+					this.out.write(buffer, 0, n);
+					this.out.flush();
+				}
+			} catch (IOException ioe) {
+				// closed
+			}
+		}
+
+		private void count(byte[] buffer, int n)
+		{
+			this.bytes.addAndGet(n);
+			int i = 0;
+			while (i < n)
+			{
+				if (this.iBodyLeft > 0)
+				{
+					int skip = Math.min(this.iBodyLeft, n - i);
+					this.iBodyLeft -= skip;
+					i += skip;
+					continue;
+				}
+				this.header[this.iHeaderSeen++] = buffer[i++];
+				if (this.iHeaderSeen == RECORD_HEADER)
+				{
+					this.iHeaderSeen = 0;
+					this.iBodyLeft = ((this.header[3] & 0xFF) << 8) | (this.header[4] & 0xFF);
+					this.records.incrementAndGet();
+				}
+			}
+		}
+	}
+}
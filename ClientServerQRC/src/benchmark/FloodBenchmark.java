@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import server.ServerMetrics;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * FloodBenchmark opens a flood of plain TCP connections that never handshake
+ * from one source address (127.0.0.2), then connects and negotiates bots from
+ * another (127.0.0.1) and reports the bots' connect latency and how the server
+ * shed the flood. Run it with a per address limit to see the flood refused at
+ * accept, and with 0 to see it fill the handshake queue instead.
+ *
+ * Usage: java benchmark.FloodBenchmark [flood] [clients] [perAddressLimit] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class FloodBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final String FLOOD_ADDRESS = "127.0.0.2";
+
+	public static void main(String[] args) throws Exception
+	{
+		int flood = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		String perAddress = args.length > 2 ? args[2] : "3";
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 5641;
+		String transport = args.length > 4 ? args[4] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("MAX_SESSIONS_PER_ADDRESS", perAddress);
+		xmlParser.setServerTagValue("LOG_FILE", "FloodBenchmark.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		/* the flood: connect and send nothing */
+		List<Socket> idle = new ArrayList<Socket>();
+		InetAddress floodAddress = InetAddress.getByName(FLOOD_ADDRESS);
+		long lFloodStart = System.nanoTime();
+		for (int i = 0; i < flood; i++)
+		{
+			Socket socket = new Socket();
+			try {
+				socket.bind(new InetSocketAddress(floodAddress, 0));
+				socket.connect(new InetSocketAddress("127.0.0.1", port), CONNECT_TIMEOUT);
+				idle.add(socket);
+			} catch (IOException ioe) {
+				socket.close();
+			}
+		}
+		double dFloodSeconds = (System.nanoTime() - lFloodStart) / 1e9;
+		/* give the acceptor time to get through its backlog */
+		Thread.sleep(500);
+
+		long[] samples = new long[clients];
+		int connected = 0;
+		for (int i = 0; i < clients; i++)
+		{
+			long lConnect = System.nanoTime();
+			AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+			bot.setRawFraming(true);
+			try {
+				bot.connect(CONNECT_TIMEOUT);
+				bot.negotiate();
+				samples[connected++] = System.nanoTime() - lConnect;
+			} catch (IOException ioe) {
+				// counted as a failed bot
+			}
+			bot.close();
+		}
+
+		ServerMetrics metrics = server.getMetrics();
+		out.println(transport + " transport, " + flood + " idle connections from " + FLOOD_ADDRESS + " in " + String.format("%.2f", dFloodSeconds)
+				+ " s, per address limit " + perAddress);
+		out.println(String.format("%8s %12s %12s %10s %10s %8s", "bots ok", "connect p50", "connect p99", "open", "shed", "threads"));
+		out.println(String.format("%8d %12s %12s %10d %10d %8d", connected,
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, connected, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, connected, 99)),
+				metrics.getOpenConnections(), metrics.getConnectionsShed(), Thread.activeCount()));
+		out.println(metrics);
+		for (Socket socket : idle)
+		{
+			socket.close();
+		}
+		server.stopServerController();
+		System.exit(0);
+	}
+}
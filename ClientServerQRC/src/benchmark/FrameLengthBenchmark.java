@@ -0,0 +1,297 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.FrameLength;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * FrameLengthBenchmark checks and measures the varint lengths of raw framing
+ * revision 2.
+ *
+ * The first part fuzzes the length codec around the points where the varint
+ * changes size (127/128, 16383/16384) and the limits of the old framings
+ * (255/256) and of the new one (65535): every length is written with a
+ * payload, read back through a stream that hands out random small chunks,
+ * and compared. Every boundary length is also read by a FrameLength.Decoder,
+ * the decoder of the non blocking server, from two buffers cut at every
+ * byte of the length. Lengths past the limit and lengths of too many bytes,
+ * up to the 5 bytes of an int, must be refused by both, the decoder again at
+ * every cut.
+ *
+ * The second part runs a real server and has bots with envelopes ask for the
+ * game list 1 to 200 times in one flush, which sends envelopes of every size
+ * from a few bytes to several kilobytes each way, with revision 1 (capped at
+ * 255 bytes) and revision 2, and then times hands with both.
+ *
+ * Usage: java benchmark.FrameLengthBenchmark [rounds] [hands] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class FrameLengthBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+	private static final int[] BOUNDARIES = {0, 1, 126, 127, 128, 129, 254, 255, 256, 257, 16383, 16384, 16385, 65534, 65535};
+	private static final int MAX_BATCH = 200;
+
+	public static void main(String[] args) throws Exception
+	{
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int hands = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 5701;
+		String transport = args.length > 3 ? args[3] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		out.println("length codec: " + fuzz(rounds, new Random(544)));
+
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("LOG_FILE", "FrameLengthBenchmark.log");
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "100000000");
+		xmlParser.setServerTagValue("ENVELOPES", "true");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		out.println(transport + " transport, envelopes on, " + hands + " hands per framing");
+		out.println(String.format("%-10s %12s %12s %12s %12s", "framing", "batches", "hand p50", "hand p99", "pipelined"));
+		out.println(run(context, version, port, false, hands));
+		out.println(run(context, version, port, true, hands));
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* fuzz - round trip the boundary lengths and random ones through the codec
+	* @param rounds
+	* @param random
+	* @return String the result
+	*/
+	private static String fuzz(int rounds, Random random) throws IOException
+	{
+		int iChecked = 0;
+		for (int r = 0; r < rounds; r++)
+		{
+			/* a run of frames, each boundary once and as many random lengths, in random order */
+			int[] lengths = new int[2 * BOUNDARIES.length];
+			for (int i = 0; i < BOUNDARIES.length; i++)
+			{
+				lengths[2 * i] = BOUNDARIES[i];
+				lengths[2 * i + 1] = random.nextInt(FrameLength.MAX_MESSAGE_SIZE + 1);
+			}
+			for (int i = lengths.length - 1; i > 0; i--)
+			{
+				int j = random.nextInt(i + 1);
+				int t = lengths[i];
+				lengths[i] = lengths[j];
+				lengths[j] = t;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			for (int i = 0; i < lengths.length; i++)
+			{
+				int iBefore = bytes.size();
+				FrameLength.write(lengths[i], output);
+				ByteBuffer put = ByteBuffer.allocate(FrameLength.MAX_LENGTH_BYTES);
+				FrameLength.put(lengths[i], put);
+				if (bytes.size() - iBefore != FrameLength.size(lengths[i]) || put.position() != FrameLength.size(lengths[i])
+						|| !Arrays.equals(Arrays.copyOfRange(bytes.toByteArray(), iBefore, bytes.size()), Arrays.copyOf(put.array(), put.position())))
+				{
+					throw new IllegalStateException("length " + lengths[i] + " encoded inconsistently");
+				}
+				output.write(payload(lengths[i]));
+			}
+			DataInputStream input = new DataInputStream(new ChunkedInputStream(bytes.toByteArray(), random));
+			for (int i = 0; i < lengths.length; i++)
+			{
+				int iLength = FrameLength.read(input);
+				byte[] frame = new byte[iLength];
+				input.readFully(frame);
+				if (iLength != lengths[i] || !Arrays.equals(frame, payload(lengths[i])))
+				{
+					throw new IllegalStateException("frame " + i + " of length " + lengths[i] + " read back as " + iLength);
+				}
+				iChecked++;
+			}
+			if (input.read() != -1)
+			{
+				throw new IllegalStateException("bytes left after the last frame");
+			}
+		}
+
+		/* every length split across two buffers at every byte, with a byte after it */
+		int iSplit = 0;
+		for (int i = 0; i < BOUNDARIES.length; i++)
+		{
+			ByteBuffer put = ByteBuffer.allocate(FrameLength.MAX_LENGTH_BYTES + 1);
+			FrameLength.put(BOUNDARIES[i], put);
+			put.put((byte)0x55);
+			byte[] bytes = Arrays.copyOf(put.array(), put.position());
+			for (int iCut = 0; iCut < bytes.length; iCut++)
+			{
+				ByteBuffer first = ByteBuffer.wrap(bytes, 0, iCut);
+				ByteBuffer second = ByteBuffer.wrap(bytes, iCut, bytes.length - iCut);
+				int iLength = decode(first, second);
+				if (iLength != BOUNDARIES[i] || first.remaining() + second.remaining() != 1)
+				{
+					throw new IllegalStateException("length " + BOUNDARIES[i] + " cut at " + iCut + " decoded as " + iLength);
+				}
+				iSplit++;
+			}
+		}
+
+		/* what must be refused */
+		int iRefused = 0;
+		try {
+			FrameLength.write(FrameLength.MAX_MESSAGE_SIZE + 1, new DataOutputStream(new ByteArrayOutputStream()));
+		} catch (IllegalArgumentException iae) {
+			iRefused++;
+		}
+		byte[][] corrupt = {
+				{(byte)0x80, (byte)0x80, 0x04},               /* 65536 */
+				{(byte)0xFF, (byte)0xFF, 0x7F},               /* 2^21 - 1 */
+				{(byte)0x80, (byte)0x80, (byte)0x80, 0x01},   /* four length bytes */
+				{(byte)0x81, (byte)0x80, (byte)0x80, (byte)0x80, 0x00},   /* 1 in five bytes */
+				{(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F},   /* 2^32 - 1 */
+		};
+		int iExpected = 1;
+		for (int i = 0; i < corrupt.length; i++)
+		{
+			try {
+				FrameLength.read(new DataInputStream(new ByteArrayInputStream(corrupt[i])));
+			} catch (StreamCorruptedException sce) {
+				iRefused++;
+			}
+			iExpected++;
+			for (int iCut = 0; iCut <= corrupt[i].length; iCut++)
+			{
+				try {
+					decode(ByteBuffer.wrap(corrupt[i], 0, iCut), ByteBuffer.wrap(corrupt[i], iCut, corrupt[i].length - iCut));
+				} catch (StreamCorruptedException sce) {
+					iRefused++;
+				}
+				iExpected++;
+			}
+		}
+		if (iRefused != iExpected)
+		{
+			throw new IllegalStateException("only " + iRefused + " of " + iExpected + " bad lengths refused");
+		}
+		return iChecked + " frames round tripped, " + iSplit + " split lengths decoded, " + iRefused + " bad lengths refused";
+	}
+
+	/**
+	* decode - read one length with a new Decoder, from the first buffer and
+	* then, if it is not complete, the second
+	* @param first
+	* @param second
+	* @return int the length, -1 if the buffers end inside it
+	*/
+	private static int decode(ByteBuffer first, ByteBuffer second) throws StreamCorruptedException
+	{
+		FrameLength.Decoder decoder = new FrameLength.Decoder();
+		int iLength = decoder.next(first);
+		return (iLength < 0) ? decoder.next(second) : iLength;
+	}
+
+	/* recognisable bytes for a frame of iLength */
+	private static byte[] payload(int iLength)
+	{
+		byte[] payload = new byte[iLength];
+		for (int i = 0; i < iLength; i++)
+		{
+			payload[i] = (byte)(iLength + i);
+		}
+		return payload;
+	}
+
+	/**
+	* run - ask for growing batches of game lists, then play hands
+	* @return String one line of results
+	*/
+	private static String run(SSLContext context, int version, int port, boolean varint, int hands) throws IOException
+	{
+		AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+		bot.setRawFraming(true);
+		bot.setVarintFraming(varint);
+		bot.setEnvelopes(true);
+		bot.connect(CONNECT_TIMEOUT);
+		bot.authenticate();
+		for (int i = 1; i <= MAX_BATCH; i++)
+		{
+			bot.getGameLists(i);
+		}
+		bot.close();
+
+		bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+		bot.setRawFraming(true);
+		bot.setVarintFraming(varint);
+		bot.setEnvelopes(true);
+		bot.connect(CONNECT_TIMEOUT);
+		bot.negotiate();
+		for (int i = 0; i < Math.min(hands, 100); i++)
+		{
+			bot.playHand(ANTE);
+		}
+		long[] samples = new long[hands];
+		long[] pipelined = new long[hands];
+		for (int i = 0; i < hands; i++)
+		{
+			samples[i] = bot.playHand(ANTE);
+			pipelined[i] = bot.playHandPipelined(ANTE);
+		}
+		bot.close();
+		return String.format("%-10s %12s %12s %12s %12s", varint ? "varint" : "byte", "1.." + MAX_BATCH + " ok",
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 99)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(pipelined, hands, 50)));
+	}
+
+	/* hands out the bytes in random chunks of 1 to 7, the way a socket may */
+	private static class ChunkedInputStream extends InputStream {
+		private final byte[] bytes;
+		private final Random random;
+		private int iPosition = 0;
+
+		ChunkedInputStream(byte[] bytes, Random random)
+		{
+			this.bytes = bytes;
+			this.random = random;
+		}
+
+		public int read()
+		{
+			return (this.iPosition < this.bytes.length) ? (this.bytes[this.iPosition++] & 0xFF) : -1;
+		}
+
+		public int read(byte[] b, int off, int len)
+		{
+			if (this.iPosition >= this.bytes.length)
+			{
+				return -1;
+			}
+			int n = Math.min(Math.min(len, 1 + this.random.nextInt(7)), this.bytes.length - this.iPosition);
+			System.arraycopy(this.bytes, this.iPosition, b, off, n);
+			this.iPosition += n;
+			return n;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.MessageParser;
+import common.StreamPreamble;
+import common.XmlParser;
+import common.card_game.Card;
+
+/**
+ * FramingBenchmark compares the object stream framing with raw framing.
+ *
+ * The first part sends ServerPlayGameMessage responses through each framing's
+ * stream stack into a counting stream and reports the bytes on the wire per
+ * message, the writes per message (each write to an SSLSocket becomes its own
+ * TLS record) and the encode-to-flush latency.
+ *
+ * The second part starts a loopback server and plays hands with bots in each
+ * mode, which shows what the extra records cost over a real TLS connection.
+ *
+ * Usage: java benchmark.FramingBenchmark [messages] [hands] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class FramingBenchmark {
+	private static final long ANTE = 10;
+
+	public static void main(String[] args) throws Exception
+	{
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int hands = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 5611;
+		String transport = args.length > 3 ? args[3] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		out.println("ServerPlayGameMessage, " + messages + " messages per mode");
+		out.println(String.format("%-8s %10s %10s %12s %12s", "framing", "bytes/msg", "writes/msg", "flush p50", "flush p99"));
+		/* run both twice and keep the second pass, the first one warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			String legacy = encodeToFlush(false, messages);
+			String raw = encodeToFlush(true, messages);
+			if (pass == 1)
+			{
+				out.println(legacy);
+				out.println(raw);
+			}
+		}
+
+		out.println();
+		out.println("Loopback hands over TLS, " + transport + " transport, " + hands + " hands per mode");
+		out.println(String.format("%-8s %12s %12s", "framing", "hand p50", "hand p99"));
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "1000000000");
+		xmlParser.setServerTagValue("LOG_FILE", "FramingBenchmark.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+		out.println(playHands(context, port, version, false, hands));
+		out.println(playHands(context, port, version, true, hands));
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* encodeToFlush - encode and send messages through one framing's stream stack
+	* @param raw
+	* @param messages
+	* @return String one line of results
+	*/
+	private static String encodeToFlush(boolean raw, int messages) throws IOException
+	{
+		MessageParser messageParser = new MessageParser();
+		MessageParser.ServerPlayGameMessage msg = messageParser.new ServerPlayGameMessage(1, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM,
+				MessageParser.GAME_PLAY_RESPONSE_GET_RIVER_ACK, 10, new Card(Card.HEART, Card.CARD_ACE), new Card(Card.SPADE, Card.CARD_KING), new Card(Card.CLUB, Card.CARD_2), new Card(Card.DIAMOND, Card.CARD_7),
+				new Card(Card.HEART, Card.CARD_10), new Card(Card.HEART, Card.CARD_JACK), new Card(Card.HEART, Card.CARD_QUEEN), new Card(Card.CLUB, Card.CARD_9), new Card(Card.SPADE, Card.CARD_3),
+				MessageParser.WINNER_PLAYER, 30, 0, 1000);
+
+		CountingOutputStream wire = new CountingOutputStream();
+		DataOutputStream output;
+		if (raw)
+		{
+			wire.write(StreamPreamble.RAW);
+			output = new DataOutputStream(new BufferedOutputStream(wire));
+		}
+		else
+		{
+			output = new DataOutputStream(new ObjectOutputStream(wire));
+		}
+		output.flush();
+		long lPreambleBytes = wire.bytes;
+		long lPreambleWrites = wire.writes;
+
+		long[] samples = new long[messages];
+		for (int i = 0; i < messages; i++)
+		{
+			long lStart = System.nanoTime();
+			byte[] pdu = messageParser.CreateServerPlayGameMessage(msg);
+			output.writeByte(pdu.length);
+			output.write(pdu);
+			output.flush();
+			samples[i] = System.nanoTime() - lStart;
+		}
+		double dBytes = (double)(wire.bytes - lPreambleBytes) / messages;
+		double dWrites = (double)(wire.writes - lPreambleWrites) / messages;
+		return String.format("%-8s %10.1f %10.1f %12s %12s", raw ? "raw" : "object", dBytes, dWrites,
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, messages, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, messages, 99)));
+	}
+
+	/**
+	* playHands - play hands on one loopback session
+	* @return String one line of results
+	*/
+	private static String playHands(SSLContext context, int port, int version, boolean raw, int hands) throws IOException
+	{
+		AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+		bot.setRawFraming(raw);
+		bot.connect(10000);
+		bot.negotiate();
+		for (int i = 0; i < Math.min(hands, 100); i++)
+		{
+			bot.playHand(ANTE);
+		}
+		long[] samples = new long[hands];
+		for (int i = 0; i < hands; i++)
+		{
+			samples[i] = bot.playHand(ANTE);
+		}
+		bot.close();
+		return String.format("%-8s %12s %12s", raw ? "raw" : "object",
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 99)));
+	}
+
+	/* stands in for the socket: counts what reaches it and how many writes it took */
+	private static class CountingOutputStream extends OutputStream {
+		long bytes;
+		long writes;
+
+		public void write(int b)
+		{
+			this.bytes++;
+			this.writes++;
+		}
+
+		public void write(byte[] b, int off, int len)
+		{
+			this.bytes += len;
+			this.writes++;
+		}
+	}
+}
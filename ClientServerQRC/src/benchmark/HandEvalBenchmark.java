@@ -0,0 +1,221 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Random;
+import common.card_game.Card;
+import server.card_game.texas_holdem.TexasHoldemHandEval;
+
+/**
+ * HandEvalBenchmark checks the table hand ranking of TexasHoldemHandEval
+ * against the Loki identifier it replaced (ReferenceHandEval) and times both.
+ *
+ * The check ranks every 5 card hand and random 6 and 7 card hands with both
+ * and counts the hands whose ranks differ; with "all" it ranks every 7 card
+ * hand, which takes minutes. The timing ranks the same 7 card hands with the
+ * reference, the tables from Card objects and the tables from packed cards,
+ * and reports the time and the bytes allocated per hand.
+ *
+ * Usage: java benchmark.HandEvalBenchmark [hands] [all]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class HandEvalBenchmark {
+	private static final int REFERENCE = 0;
+	private static final int CARDS = 1;
+	private static final int PACKED = 2;
+	private static final String[] NAMES = {"reference", "cards", "packed"};
+	private static final int[] SUITES = {Card.CLUB, Card.SPADE, Card.DIAMOND, Card.HEART};
+	/* distinct hands the timing cycles through */
+	private static final int HANDS = 4096;
+
+	/* keeps the JIT from dropping the ranks */
+	private static int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		boolean all = args.length > 1 && args[1].equals("all");
+		Card[] deck = new Card[52];
+		int[] packed = new int[52];
+		for (int iI = 0; iI < deck.length; iI++)
+		{
+			deck[iI] = new Card(SUITES[iI / Card.NUM_RANKS], iI % Card.NUM_RANKS + 1);
+			packed[iI] = (SUITES[iI / Card.NUM_RANKS] << 4) | (iI % Card.NUM_RANKS + 1);
+		}
+
+		long lStart = System.nanoTime();
+		long[] result = checkAll(deck, packed, 5);
+		System.out.println(String.format("every 5 card hand: %d hands, %d mismatches (%.1f s)", result[0], result[1], (System.nanoTime() - lStart) / 1e9));
+		Random random = new Random(544);
+		for (int iSize = 6; iSize <= 7; iSize++)
+		{
+			long lMismatches = 0;
+			Card[] hand = new Card[iSize];
+			int[] cards = new int[iSize];
+			for (int i = 0; i < hands; i++)
+			{
+				deal(random, deck, packed, hand, cards);
+				lMismatches += check(hand, cards);
+			}
+			System.out.println(String.format("random %d card hands: %d hands, %d mismatches", iSize, hands, lMismatches));
+		}
+		if (all)
+		{
+			lStart = System.nanoTime();
+			result = checkAll(deck, packed, 7);
+			System.out.println(String.format("every 7 card hand: %d hands, %d mismatches (%.1f s)", result[0], result[1], (System.nanoTime() - lStart) / 1e9));
+		}
+
+		Card[][] timedHands = new Card[HANDS][7];
+		int[] timedCards = new int[HANDS * 7];
+		int[] cards = new int[7];
+		for (int i = 0; i < HANDS; i++)
+		{
+			deal(random, deck, packed, timedHands[i], cards);
+			System.arraycopy(cards, 0, timedCards, i * 7, 7);
+		}
+		System.out.println(String.format("%d random 7 card hands per mode", hands));
+		System.out.println(String.format("%-10s %10s %12s", "rank", "ns/hand", "bytes/hand"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (int mode = REFERENCE; mode <= PACKED; mode++)
+			{
+				String line = run(timedHands, timedCards, mode, hands);
+				if (pass == 1)
+				{
+					System.out.println(line);
+				}
+			}
+		}
+	}
+
+	/**
+	* checkAll - rank every hand of iSize cards with both evaluators
+	* @return long[] the hands and the mismatches
+	*/
+	private static long[] checkAll(Card[] deck, int[] packed, int iSize)
+	{
+		int[] index = new int[iSize];
+		Card[] hand = new Card[iSize];
+		int[] cards = new int[iSize];
+		for (int iI = 0; iI < iSize; iI++)
+		{
+			index[iI] = iI;
+		}
+		long lHands = 0;
+		long lMismatches = 0;
+		while (true)
+		{
+			for (int iI = 0; iI < iSize; iI++)
+			{
+				hand[iI] = deck[index[iI]];
+				cards[iI] = packed[index[iI]];
+			}
+			lHands++;
+			lMismatches += check(hand, cards);
+			/* next combination in lexicographic order */
+			int iI = iSize - 1;
+			while (iI >= 0 && index[iI] == deck.length - iSize + iI)
+			{
+				iI--;
+			}
+			if (iI < 0)
+			{
+				return new long[] {lHands, lMismatches};
+			}
+			index[iI]++;
+			for (int jJ = iI + 1; jJ < iSize; jJ++)
+			{
+				index[jJ] = index[jJ - 1] + 1;
+			}
+		}
+	}
+
+	/**
+	* check - rank one hand with both evaluators
+	* @return int 1 if they differ, else 0
+	*/
+	private static int check(Card[] hand, int[] cards)
+	{
+		int iExpected = ReferenceHandEval.rankHand(hand);
+		int iCards = TexasHoldemHandEval.rankHand(hand);
+		int iPacked = TexasHoldemHandEval.rankHand(cards, 0, cards.length);
+		if (iExpected == iCards && iExpected == iPacked)
+		{
+			return 0;
+		}
+		System.out.println("mismatch " + java.util.Arrays.toString(hand) + ": reference " + iExpected + ", cards " + iCards + ", packed " + iPacked);
+		return 1;
+	}
+
+	/**
+	* deal - draw distinct random cards into a hand
+	* @return none
+	*/
+	private static void deal(Random random, Card[] deck, int[] packed, Card[] hand, int[] cards)
+	{
+		long lDealt = 0;
+		for (int iI = 0; iI < hand.length; iI++)
+		{
+			int iCard;
+			do {
+				iCard = random.nextInt(deck.length);
+			} while ((lDealt & (1L << iCard)) != 0);
+			lDealt |= 1L << iCard;
+			hand[iI] = deck[iCard];
+			cards[iI] = packed[iCard];
+		}
+	}
+
+	/**
+	* run - rank the hands repeatedly in one mode
+	* @return String one line of results
+	*/
+	private static String run(Card[][] hands, int[] cards, int mode, int iCount)
+	{
+		long lAllocStart = allocatedBytes();
+		long lStart = System.nanoTime();
+		for (int i = 0; i < iCount; i++)
+		{
+			int iHand = i & (HANDS - 1);
+			if (mode == REFERENCE)
+			{
+				sink += ReferenceHandEval.rankHand(hands[iHand]);
+			}
+			else if (mode == CARDS)
+			{
+				sink += TexasHoldemHandEval.rankHand(hands[iHand]);
+			}
+			else
+			{
+				sink += TexasHoldemHandEval.rankHand(cards, iHand * 7, 7);
+			}
+		}
+		long lElapsed = System.nanoTime() - lStart;
+		long lAllocated = allocatedBytes() - lAllocStart;
+		return String.format("%-10s %10.1f %12s", NAMES[mode], (double)lElapsed / iCount,
+				lAllocStart < 0 ? "n/a" : String.format("%.2f", (double)lAllocated / iCount));
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
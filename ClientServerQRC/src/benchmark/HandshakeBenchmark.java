@@ -0,0 +1,115 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import server.ServerMetrics;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * HandshakeBenchmark checks that clients which never handshake do not hold up
+ * the ones that do. It opens a number of plain TCP connections that send
+ * nothing, then connects and negotiates bots one after the other and reports
+ * the connect latency, followed by the server's handshake metrics.
+ *
+ * The bots run twice: first each with its own SSLContext, so every connection
+ * is a full handshake, then all sharing one, so they resume the session of the
+ * first. The metrics split the server's handshake CPU time between the two.
+ *
+ * With the handshake run on the accept thread the first stalled connection
+ * blocked every bot behind it; now the stalled ones only hold handshake
+ * threads until the handshake timeout closes them.
+ *
+ * Usage: java benchmark.HandshakeBenchmark [clients] [stalled] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class HandshakeBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	/* short enough that the stalled connections are dropped during the run */
+	private static final String HANDSHAKE_TIMEOUT = "2000";
+
+	public static void main(String[] args) throws Exception
+	{
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int stalled = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 5631;
+		String transport = args.length > 3 ? args[3] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("HANDSHAKE_TIMEOUT", HANDSHAKE_TIMEOUT);
+		xmlParser.setServerTagValue("LOG_FILE", "HandshakeBenchmark.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		List<Socket> idle = new ArrayList<Socket>();
+		for (int i = 0; i < stalled; i++)
+		{
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress("127.0.0.1", port), CONNECT_TIMEOUT);
+			idle.add(socket);
+		}
+
+		out.println(transport + " transport, " + stalled + " stalled connections, " + clients + " clients per mode");
+		out.println(String.format("%-8s %12s %12s %12s %10s", "mode", "connect p50", "connect p99", "connect max", "conn/s"));
+		out.println(connect(xmlParser, null, port, version, clients));
+		out.println(connect(xmlParser, context, port, version, clients));
+		ServerMetrics metrics = server.getMetrics();
+		/* let the stalled connections reach the handshake timeout */
+		Thread.sleep(Long.parseLong(HANDSHAKE_TIMEOUT) + 500);
+		out.println(metrics);
+		for (Socket socket : idle)
+		{
+			socket.close();
+		}
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* connect - connect and negotiate bots one after the other
+	* @param xmlParser
+	* @param context shared client context, or null for a new one per bot
+	* @param port
+	* @param version
+	* @param clients
+	* @return String one line of results
+	*/
+	private static String connect(XmlParser xmlParser, SSLContext context, int port, int version, int clients) throws Exception
+	{
+		long[] samples = new long[clients];
+		long lTotal = 0;
+		for (int i = 0; i < clients; i++)
+		{
+			/* loading the key stores is client work, it is left out of the time */
+			SSLContext botContext = (context != null) ? context : AgmpBotClient.createSSLContext(xmlParser);
+			long lConnect = System.nanoTime();
+			AgmpBotClient bot = new AgmpBotClient(botContext, "127.0.0.1", port, version);
+			bot.setRawFraming(true);
+			bot.connect(CONNECT_TIMEOUT);
+			bot.negotiate();
+			samples[i] = System.nanoTime() - lConnect;
+			lTotal += samples[i];
+			bot.close();
+		}
+		return String.format("%-8s %12s %12s %12s %10.0f", (context != null) ? "resumed" : "full",
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, clients, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, clients, 99)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, clients, 100)),
+				clients / (lTotal / 1e9));
+	}
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * PipelineBenchmark plays hands on one loopback session, first one request at
+ * a time and then pipelined (the five requests of a hand in one flush), and
+ * reports the hand latency and the hands per second of each.
+ *
+ * Usage: java benchmark.PipelineBenchmark [hands] [port] [BLOCKING|NIO] [raw|object]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class PipelineBenchmark {
+	private static final long ANTE = 10;
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5621;
+		String transport = args.length > 2 ? args[2] : "BLOCKING";
+		boolean raw = args.length > 3 ? args[3].equalsIgnoreCase("raw") : true;
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "1000000000");
+		xmlParser.setServerTagValue("LOG_FILE", "PipelineBenchmark.log");
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		out.println(transport + " transport, " + (raw ? "raw" : "object") + " framing, " + hands + " hands per mode");
+		out.println(String.format("%-10s %12s %12s %10s", "mode", "hand p50", "hand p99", "hands/s"));
+		out.println(playHands(context, port, version, raw, false, hands));
+		out.println(playHands(context, port, version, raw, true, hands));
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* playHands - play hands on one session, one request at a time or pipelined
+	* @return String one line of results
+	*/
+	private static String playHands(SSLContext context, int port, int version, boolean raw, boolean pipelined, int hands) throws IOException
+	{
+		AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+		bot.setRawFraming(raw);
+		bot.connect(10000);
+		bot.negotiate();
+		for (int i = 0; i < Math.min(hands, 200); i++)
+		{
+			playHand(bot, pipelined);
+		}
+		long[] samples = new long[hands];
+		long lStart = System.nanoTime();
+		for (int i = 0; i < hands; i++)
+		{
+			samples[i] = playHand(bot, pipelined);
+		}
+		double dSeconds = (System.nanoTime() - lStart) / 1e9;
+		bot.close();
+		return String.format("%-10s %12s %12s %10.0f", pipelined ? "pipelined" : "sequential",
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, hands, 99)),
+				hands / dSeconds);
+	}
+
+	private static long playHand(AgmpBotClient bot, boolean pipelined) throws IOException
+	{
+		return pipelined ? bot.playHandPipelined(ANTE) : bot.playHand(ANTE);
+	}
+}
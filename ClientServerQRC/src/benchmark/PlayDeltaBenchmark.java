@@ -0,0 +1,172 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import javax.net.ssl.SSLContext;
+import server.ClientConnection;
+import server.ClientModel;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.MessageParser;
+import common.XmlParser;
+
+/**
+ * PlayDeltaBenchmark compares the size of the play messages with and without
+ * play deltas. A ClientModel plays hands on a connection that keeps what is
+ * written to it, so no sockets are involved: the bytes of every play
+ * response are counted per street, and every delta is rebuilt the way the
+ * client does and checked against the full state the server holds. Then a
+ * bot that asks for deltas plays hands against a real server over TLS.
+ *
+ * Usage: java benchmark.PlayDeltaBenchmark [hands] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class PlayDeltaBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+	private static final int[] REQUESTS = {MessageParser.GAME_PLAY_REQUEST_INIT, MessageParser.GAME_PLAY_REQUEST_GET_HOLE,
+			MessageParser.GAME_PLAY_REQUEST_GET_FLOP, MessageParser.GAME_PLAY_REQUEST_GET_TURN, MessageParser.GAME_PLAY_REQUEST_GET_RIVER};
+	private static final long[] BETS = {0, ANTE, 2 * ANTE, 0, 0};
+	private static final String[] STREETS = {"init", "hole", "flop", "turn", "river"};
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5691;
+		String transport = args.length > 2 ? args[2] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("LOG_FILE", "PlayDeltaBenchmark.log");
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "100000000");
+		xmlParser.setServerTagValue("PLAY_DELTAS", "true");
+		LogAndPublish logAndPublish = new LogAndPublish(xmlParser, "server");
+		int version = Integer.parseInt(xmlParser.getServerTagValue("VERSION"));
+
+		out.println(hands + " hands per run, play response bytes per street");
+		out.println(String.format("%-8s %8s %8s %8s %8s %8s %10s %10s %10s", "deltas", STREETS[0], STREETS[1], STREETS[2], STREETS[3], STREETS[4],
+				"per hand", "ns/hand", "mismatch"));
+		out.println(run(false, hands, version, xmlParser, logAndPublish));
+		out.println(run(true, hands, version, xmlParser, logAndPublish));
+
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		Thread.sleep(500);
+		AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+		bot.setRawFraming(true);
+		bot.setPlayDeltas(true);
+		bot.connect(CONNECT_TIMEOUT);
+		bot.negotiate();
+		int iPlayed = 0;
+		long lBank = bot.getBankAmount();
+		try {
+			for (int i = 0; i < 1000; i++)
+			{
+				bot.playHand(ANTE);
+				iPlayed++;
+			}
+		} catch (IOException ioe) {
+			out.println("over TLS: " + ioe);
+		}
+		out.println(transport + " over TLS with deltas: " + iPlayed + "/1000 hands played, bank " + lBank + " -> " + bot.getBankAmount());
+		bot.close();
+		server.stopServerController();
+		System.exit(0);
+	}
+
+	/**
+	* run - play the hands on one session
+	* @return String one line of results
+	*/
+	private static String run(boolean deltas, int hands, int version, XmlParser xmlParser, LogAndPublish logAndPublish) throws IOException
+	{
+		MessageParser messageParser = new MessageParser();
+		CaptureConnection connection = new CaptureConnection(deltas ? "deltas" : "full");
+		ClientModel model = new ClientModel(connection, xmlParser, logAndPublish);
+		MessageParser.VersionMessage versionMsg = messageParser.new VersionMessage(version, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_CLIENT_VERSION,
+				(short)0, (long)0, deltas ? MessageParser.FEATURE_PLAY_DELTA : 0);
+		handle(model, messageParser.CreateVersionMessage(versionMsg));
+		handle(model, messageParser.CreateClientGetGameMessage(messageParser.new ClientGetGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_GET_GAME)));
+		handle(model, messageParser.CreateClientSetGameMessage(messageParser.new ClientSetGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_SET_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM)));
+		byte[][] requests = new byte[REQUESTS.length][];
+		for (int i = 0; i < REQUESTS.length; i++)
+		{
+			requests[i] = messageParser.CreateClientPlayGameMessage(messageParser.new ClientPlayGameMessage(version, MessageParser.TYPE_INDICATOR_GAME,
+					MessageParser.GAME_INDICATOR_PLAY_GAME, MessageParser.GAME_TYPE_TEXAS_HOLDEM, REQUESTS[i], BETS[i]));
+		}
+
+		long[] streetBytes = new long[REQUESTS.length];
+		long lStart = System.nanoTime();
+		for (int h = 0; h < hands; h++)
+		{
+			for (int i = 0; i < REQUESTS.length; i++)
+			{
+				connection.iLastSize = 0;
+				handle(model, requests[i]);
+				streetBytes[i] += connection.iLastSize;
+			}
+		}
+		long lNanos = System.nanoTime() - lStart;
+		long lTotal = 0;
+		StringBuilder line = new StringBuilder(String.format("%-8s", deltas ? "on" : "off"));
+		for (int i = 0; i < REQUESTS.length; i++)
+		{
+			line.append(String.format(" %8.1f", streetBytes[i] / (double)hands));
+			lTotal += streetBytes[i];
+		}
+		line.append(String.format(" %10.1f %10d %10d", lTotal / (double)hands, lNanos / hands, connection.iMismatches));
+		model.stopClient();
+		return line.toString();
+	}
+
+	private static void handle(ClientModel model, byte[] msg) throws IOException
+	{
+		model.handleMessage(msg, msg.length);
+	}
+
+	/* a connection that encodes what is written to it, rebuilds deltas as the client does and checks them */
+	private static class CaptureConnection implements ClientConnection {
+		private final String uniqueID;
+		private final ByteBuffer encoded = ByteBuffer.allocate(256);
+		private final MessageParser.PlayDeltaMessage clientState = new MessageParser().new PlayDeltaMessage();
+		int iLastSize;
+		int iMismatches;
+
+		CaptureConnection(String uniqueID) { this.uniqueID = uniqueID; }
+		public String getUniqueID() { return this.uniqueID; }
+		public void flush() { }
+		public void startEnvelopes(int version) { }
+		public void setReadTimeout(int timeout) { }
+		public boolean isClosed() { return false; }
+		public void close() { }
+		public void abort() { }
+		public void execute(Runnable task, ThreadFactory threads) { task.run(); }
+
+		public void writeMessage(MessageParser.EncodableMessage msg)
+		{
+			this.encoded.clear();
+			msg.encodeInto(this.encoded);
+			this.iLastSize = this.encoded.position();
+			if (msg instanceof MessageParser.PlayDeltaMessage)
+			{
+				if (!this.clientState.apply(this.encoded.array(), this.iLastSize)
+						|| !Arrays.equals(this.clientState.getState(), ((MessageParser.PlayDeltaMessage)msg).getState()))
+				{
+					this.iMismatches++;
+				}
+			}
+		}
+	}
+}
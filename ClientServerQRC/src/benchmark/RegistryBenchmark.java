@@ -0,0 +1,199 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import server.ClientConnection;
+import server.ClientModel;
+import server.SessionRegistry;
+import common.GameState;
+import common.LogAndPublish;
+import common.MessageParser;
+import common.XmlParser;
+
+/**
+ * RegistryBenchmark measures session churn on the server's session registry
+ * against the synchronized Vector it replaced. A number of sessions stay
+ * registered the whole time while churn threads register a session, move it
+ * through the states of a game and remove it again, and one more thread keeps
+ * walking all sessions the way a broadcast or shutdown does (the Vector is
+ * copied first, as the old shutdown code did). No sockets are involved, the
+ * sessions run on connections that discard what is written to them.
+ *
+ * Usage: java benchmark.RegistryBenchmark [resident] [threads] [seconds]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class RegistryBenchmark {
+	/* sessions each churn thread cycles through */
+	private static final int CHURN_POOL = 64;
+
+	public static void main(String[] args) throws Exception
+	{
+		int resident = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("LOG_FILE", "RegistryBenchmark.log");
+		LogAndPublish logAndPublish = new LogAndPublish(xmlParser, "server");
+		List<ClientModel> residents = createModels("resident", resident, xmlParser, logAndPublish, null);
+
+		out.println(resident + " resident sessions, " + threads + " churn threads, " + seconds + " s per registry");
+		out.println(String.format("%-16s %14s %14s %14s", "registry", "churn ops/s", "walks/s", "seen per walk"));
+		out.println(run(new VectorSessions(), residents, threads, seconds, xmlParser, logAndPublish));
+		SessionRegistry registry = new SessionRegistry(resident);
+		List<ClientModel> counted = createModels("resident", resident, xmlParser, logAndPublish, registry);
+		out.println(run(new RegistrySessions(registry), counted, threads, seconds, xmlParser, logAndPublish));
+		int[] counts = registry.counts();
+		out.println("state counts after the run: listening=" + counts[GameState.LISTENING] + " gameplay=" + counts[GameState.GAMEPLAY]
+				+ " closed=" + counts[GameState.CLOSED] + " (size " + registry.size() + ")");
+		System.exit(0);
+	}
+
+	/**
+	* run - churn and walk one registry for the given time
+	* @return String one line of results
+	*/
+	private static String run(final Sessions sessions, List<ClientModel> residents, int threads, int seconds,
+			XmlParser xmlParser, LogAndPublish logAndPublish) throws Exception
+	{
+		for (ClientModel model : residents)
+		{
+			sessions.add(model);
+		}
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong churned = new AtomicLong();
+		final AtomicLong walks = new AtomicLong();
+		final AtomicLong seen = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(threads + 1);
+		for (int t = 0; t < threads; t++)
+		{
+			final List<ClientModel> pool = createModels("churn" + t, CHURN_POOL, xmlParser, logAndPublish, sessions.registry());
+			new Thread(new Runnable() {
+				public void run() {
+					long lOps = 0;
+					int iI = 0;
+					while (running.get())
+					{
+						ClientModel model = pool.get(iI++ % CHURN_POOL);
+						sessions.add(model);
+						GameState state = model.getGameState();
+						state.setState(GameState.AUTHENTICATE);
+						state.setState(GameState.GAMEPLAY);
+						state.setState(GameState.LISTENING);
+						sessions.remove(model);
+						lOps++;
+					}
+					churned.addAndGet(lOps);
+					done.countDown();
+				}
+			}).start();
+		}
+		new Thread(new Runnable() {
+			public void run() {
+				long lWalks = 0;
+				long lSeen = 0;
+				while (running.get())
+				{
+					lSeen += sessions.walk();
+					lWalks++;
+				}
+				walks.addAndGet(lWalks);
+				seen.addAndGet(lSeen);
+				done.countDown();
+			}
+		}).start();
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		done.await();
+		for (ClientModel model : residents)
+		{
+			sessions.remove(model);
+		}
+		return String.format("%-16s %14.0f %14.1f %14.0f", sessions.name(), churned.get() / (double)seconds, walks.get() / (double)seconds,
+				walks.get() == 0 ? 0.0 : seen.get() / (double)walks.get());
+	}
+
+	private static List<ClientModel> createModels(String prefix, int count, XmlParser xmlParser, LogAndPublish logAndPublish, SessionRegistry registry)
+	{
+		List<ClientModel> models = new ArrayList<ClientModel>(count);
+		for (int i = 0; i < count; i++)
+		{
+			ClientConnection connection = new NullConnection(prefix + ":" + i);
+			models.add((registry != null) ? new ClientModel(connection, xmlParser, logAndPublish, registry.newGameState())
+					: new ClientModel(connection, xmlParser, logAndPublish));
+		}
+		return models;
+	}
+
+	/* the operations the server performs on its set of sessions */
+	private interface Sessions {
+		String name();
+		SessionRegistry registry();
+		void add(ClientModel model);
+		void remove(ClientModel model);
+		int walk();
+	}
+
+	/* the old code: a Vector, sessions removed by linear scan, walked over a copy */
+	private static class VectorSessions implements Sessions {
+		private final Vector<ClientModel> clients = new Vector<ClientModel>();
+
+		public String name() { return "Vector"; }
+		public SessionRegistry registry() { return null; }
+		public void add(ClientModel model) { this.clients.addElement(model); }
+		public void remove(ClientModel model) { this.clients.removeElement(model); }
+		public int walk() { return countOpen(new Vector<ClientModel>(this.clients)); }
+	}
+
+	private static class RegistrySessions implements Sessions {
+		private final SessionRegistry registry;
+
+		RegistrySessions(SessionRegistry registry) { this.registry = registry; }
+		public String name() { return "SessionRegistry"; }
+		public SessionRegistry registry() { return this.registry; }
+		public void add(ClientModel model) { this.registry.add(model); }
+		public void remove(ClientModel model) { this.registry.remove(model); }
+		public int walk() { return countOpen(this.registry.sessions()); }
+	}
+
+	private static int countOpen(Iterable<ClientModel> models)
+	{
+		int iOpen = 0;
+		for (ClientModel model : models)
+		{
+			if (!model.isClosed())
+			{
+				iOpen++;
+			}
+		}
+		return iOpen;
+	}
+
+	/* a connection that is never closed and discards everything written to it */
+	private static class NullConnection implements ClientConnection {
+		private final String uniqueID;
+
+		NullConnection(String uniqueID) { this.uniqueID = uniqueID; }
+		public String getUniqueID() { return this.uniqueID; }
+		public void writeMessage(MessageParser.EncodableMessage msg) throws IOException { }
+		public void flush() throws IOException { }
+		public void startEnvelopes(int version) { }
+		public void setReadTimeout(int timeout) throws IOException { }
+		public boolean isClosed() { return false; }
+		public void close() throws IOException { }
+		public void abort() { }
+		public void execute(Runnable task, ThreadFactory threads) { task.run(); }
+	}
+}
@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import server.ResponseCache;
+import common.MessageParser;
+
+/**
+ * ResponseCacheBenchmark compares writing the lobby responses the way the
+ * sessions used to, a new message built and encoded for every send, against
+ * copying the bytes kept by the ResponseCache. Each response is written into
+ * a reused buffer the way the connections write it, and the time and the
+ * bytes allocated per message are reported.
+ *
+ * Allocation is read from the HotSpot thread MXBean when it is available.
+ *
+ * Usage: java benchmark.ResponseCacheBenchmark [messages]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class ResponseCacheBenchmark {
+	private static final int VERSION_REQUIREMENT = 0;
+	private static final int GAME_LIST = 1;
+	private static final int SET_GAME_ACK = 2;
+	private static final int CLOSE_ACK = 3;
+	private static final String[] NAMES = {"version requirement", "game list", "set game ack", "close ack"};
+	private static final int VERSION = 1;
+	private static final short MINOR_VERSION = 0;
+
+	/* keeps the JIT from dropping the encoded bytes */
+	private static int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		ArrayList<Integer> gameTypes = new ArrayList<Integer>();
+		gameTypes.add(MessageParser.GAME_TYPE_TEXAS_HOLDEM);
+		ResponseCache cache = ResponseCache.get(VERSION, MINOR_VERSION, gameTypes);
+
+		System.out.println(messages + " messages per mode");
+		System.out.println(String.format("%-20s %-8s %10s %12s", "response", "mode", "ns/msg", "bytes/msg"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (int response = VERSION_REQUIREMENT; response <= CLOSE_ACK; response++)
+			{
+				String built = run(null, gameTypes, response, messages);
+				String cached = run(cache, gameTypes, response, messages);
+				if (pass == 1)
+				{
+					System.out.println(built);
+					System.out.println(cached);
+				}
+			}
+		}
+	}
+
+	/**
+	* run - write one response repeatedly, built each time or from the cache
+	* @param cache null to build the message for every write
+	* @param gameTypes
+	* @param response
+	* @param messages
+	* @return String one line of results
+	*/
+	private static String run(ResponseCache cache, ArrayList<Integer> gameTypes, int response, int messages)
+	{
+		MessageParser messageParser = new MessageParser();
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		long lAllocStart = allocatedBytes();
+		long lStart = System.nanoTime();
+		for (int i = 0; i < messages; i++)
+		{
+			MessageParser.EncodableMessage msg = (cache == null) ? build(messageParser, gameTypes, response) : cached(cache, response);
+			buffer.clear();
+			buffer.put((byte)msg.encodedSize());
+			msg.encodeInto(buffer);
+			sink += buffer.get(i & 7);
+		}
+		long lElapsed = System.nanoTime() - lStart;
+		long lAllocated = allocatedBytes() - lAllocStart;
+		return String.format("%-20s %-8s %10.1f %12s", NAMES[response], (cache == null) ? "built" : "cached", (double)lElapsed / messages,
+				lAllocStart < 0 ? "n/a" : String.format("%.2f", (double)lAllocated / messages));
+	}
+
+	/* the response as ClientModel built it before the cache */
+	private static MessageParser.EncodableMessage build(MessageParser messageParser, ArrayList<Integer> gameTypes, int response)
+	{
+		switch (response)
+		{
+		case VERSION_REQUIREMENT:
+			return messageParser.new VersionMessage(VERSION, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_VERSION_REQUIREMENT,
+					MINOR_VERSION, (long)0);
+		case GAME_LIST:
+			int length = 12 + (int)(Math.ceil((double)gameTypes.size() / 4) * 4);
+			return messageParser.new ServerGetGameMessage(VERSION, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME, length, gameTypes);
+		case SET_GAME_ACK:
+			return messageParser.new ServerSetGameMessage(VERSION, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_SET_GAME,
+					MessageParser.GAME_TYPE_TEXAS_HOLDEM, MessageParser.GAME_TYPE_RESPONSE_ACK);
+		default:
+			return messageParser.new ConnectionMessage(VERSION, MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION, MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION_ACK);
+		}
+	}
+
+	private static MessageParser.EncodableMessage cached(ResponseCache cache, int response)
+	{
+		switch (response)
+		{
+		case VERSION_REQUIREMENT:
+			return cache.versionRequirement();
+		case GAME_LIST:
+			return cache.gameList();
+		case SET_GAME_ACK:
+			return cache.setGame(MessageParser.GAME_TYPE_TEXAS_HOLDEM, MessageParser.GAME_TYPE_RESPONSE_ACK);
+		default:
+			return cache.closeConnectionAck();
+		}
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * SessionBenchmark compares the platform thread and virtual thread session modes
+ * of the blocking transport over loopback. For each mode it starts a server in
+ * this JVM, opens sessions (each one negotiated up to the game set state) until
+ * the target is reached or the server stops accepting, then plays hands on the
+ * open sessions and reports the hand latency percentiles.
+ *
+ * Usage: java benchmark.SessionBenchmark [platform|virtual|both] [maxSessions] [hands] [port]
+ *
+ * Run with a raised open file limit (ulimit -n) when going past a few thousand
+ * sessions. Virtual mode needs a JVM with virtual threads; on older JVMs the
+ * server falls back to platform threads and says so in its log.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class SessionBenchmark {
+	/* sessions opened between checks for a failed connect */
+	private static final int RAMP_BATCH = 256;
+	/* client threads used to open sessions and to drive hands */
+	private static final int CLIENT_THREADS = 16;
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+
+	public static void main(String[] args) throws Exception
+	{
+		String mode = args.length > 0 ? args[0] : "both";
+		int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int hands = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 5601;
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		List<String> results = new ArrayList<String>();
+		if (mode.equalsIgnoreCase("platform") || mode.equalsIgnoreCase("both"))
+		{
+			results.add(run("PLATFORM", maxSessions, hands, port, out));
+		}
+		if (mode.equalsIgnoreCase("virtual") || mode.equalsIgnoreCase("both"))
+		{
+			results.add(run("VIRTUAL", maxSessions, hands, port + 1, out));
+		}
+		out.println();
+		out.println(String.format("%-9s %9s %9s %9s %12s %12s %12s", "mode", "sessions", "+threads", "heap MB", "hand p50", "hand p99", "hand max"));
+		for (String result : results)
+		{
+			out.println(result);
+		}
+		System.exit(0);
+	}
+
+	/**
+	* run - measure one session thread mode
+	* @return String one line of results
+	*/
+	private static String run(String sessionThreads, int maxSessions, int hands, int port, PrintStream out) throws Exception
+	{
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", "BLOCKING");
+		xmlParser.setServerTagValue("SESSION_THREADS", sessionThreads);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		/* enough money that no bot runs out during the run */
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "1000000000");
+		xmlParser.setServerTagValue("LOG_FILE", "SessionBenchmark.log");
+
+		/* threads left over from an earlier run are not counted */
+		int baseThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		final SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		final int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		final String host = "127.0.0.1";
+		final int serverPort = port;
+		waitForServer(context, host, port, version);
+
+		/* open sessions until the target is reached or one fails */
+		out.println(sessionThreads + ": opening up to " + maxSessions + " sessions");
+		final List<AgmpBotClient> bots = new ArrayList<AgmpBotClient>();
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+		long lRampStart = System.nanoTime();
+		while (bots.size() < maxSessions && failure.get() == null)
+		{
+			int batch = Math.min(RAMP_BATCH, maxSessions - bots.size());
+			List<Future<AgmpBotClient>> opened = new ArrayList<Future<AgmpBotClient>>();
+			for (int i = 0; i < batch; i++)
+			{
+				opened.add(clients.submit(new Callable<AgmpBotClient>() {
+					public AgmpBotClient call() {
+						AgmpBotClient bot = new AgmpBotClient(context, host, serverPort, version);
+						try {
+							bot.connect(CONNECT_TIMEOUT);
+							bot.negotiate();
+							return bot;
+						} catch (Exception e) {
+							failure.compareAndSet(null, e);
+							bot.close();
+							return null;
+						}
+					}
+				}));
+			}
+			for (Future<AgmpBotClient> f : opened)
+			{
+				AgmpBotClient bot = f.get();
+				if (bot != null)
+				{
+					bots.add(bot);
+				}
+			}
+		}
+		long lRampMillis = (System.nanoTime() - lRampStart) / 1000000;
+		if (failure.get() != null)
+		{
+			out.println(sessionThreads + ": stopped at " + bots.size() + " sessions: " + failure.get());
+		}
+		out.println(sessionThreads + ": " + bots.size() + " sessions open after " + lRampMillis + " ms");
+		int threads = ManagementFactory.getThreadMXBean().getThreadCount() - baseThreads;
+		System.gc();
+		long lHeapMB = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20;
+
+		/* play hands spread over all open sessions */
+		final long[] samples = new long[hands];
+		final int[] recorded = new int[CLIENT_THREADS];
+		List<Future<?>> drivers = new ArrayList<Future<?>>();
+		final int handsPerDriver = hands / CLIENT_THREADS;
+		for (int d = 0; d < CLIENT_THREADS && !bots.isEmpty(); d++)
+		{
+			final int driver = d;
+			drivers.add(clients.submit(new Runnable() {
+				public void run() {
+					int iNext = driver;
+					for (int h = 0; h < handsPerDriver; h++)
+					{
+						AgmpBotClient bot = bots.get(iNext % bots.size());
+						iNext += CLIENT_THREADS;
+						try {
+							samples[driver * handsPerDriver + h] = bot.playHand(ANTE);
+							recorded[driver]++;
+						} catch (Exception e) {
+							failure.compareAndSet(null, e);
+							return;
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> f : drivers)
+		{
+			f.get();
+		}
+		/* compact the samples of drivers that stopped early */
+		int iCount = 0;
+		for (int d = 0; d < CLIENT_THREADS; d++)
+		{
+			System.arraycopy(samples, d * handsPerDriver, samples, iCount, recorded[d]);
+			iCount += recorded[d];
+		}
+
+		for (AgmpBotClient bot : bots)
+		{
+			bot.close();
+		}
+		clients.shutdown();
+		clients.awaitTermination(10, TimeUnit.SECONDS);
+		server.stopServerController();
+
+		return String.format("%-9s %9d %9d %9d %12s %12s %12s", sessionThreads, bots.size(), threads, lHeapMB,
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, iCount, 50)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, iCount, 99)),
+				BenchmarkStats.micros(BenchmarkStats.percentile(samples, iCount, 100)));
+	}
+
+	/**
+	* waitForServer - retry until the server thread is accepting
+	* @return none
+	*/
+	private static void waitForServer(SSLContext context, String host, int port, int version) throws InterruptedException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			AgmpBotClient probe = new AgmpBotClient(context, host, port, version);
+			try {
+				probe.connect(CONNECT_TIMEOUT);
+				probe.close();
+				return;
+			} catch (Exception e) {
+				probe.close();
+				Thread.sleep(100);
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import server.card_game.Deck;
+
+/**
+ * ShuffleBenchmark measures how many hands of Texas Holdem (9 cards) a number
+ * of threads can shuffle and deal at once, each thread with its own deck the
+ * way each session has one.
+ *
+ * "shared" is the deck as it was: one Random for every deck, all 52 cards
+ * shuffled per hand and a new array per deal. "deck" is server.card_game.Deck,
+ * which draws the 9 cards from the dealing thread's generator into arrays it
+ * is given. The bytes allocated per hand are read from the HotSpot thread
+ * MXBean when it is available.
+ *
+ * It also checks that Deck deals evenly: over many hands, the chi-square of
+ * the cards dealt to each of the 9 places against an even spread, with 51
+ * degrees of freedom (mean 51, and over 90 about one time in a thousand).
+ *
+ * Usage: java benchmark.ShuffleBenchmark [hands per thread] [threads,...]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class ShuffleBenchmark {
+	private static final int SHARED = 0;
+	private static final int DECK = 1;
+	private static final String[] NAMES = {"shared", "deck"};
+	private static final int HAND = 9;
+
+	/* keeps the JIT from dropping the cards */
+	private static volatile int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		int hands = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		String[] threadCounts = (args.length > 1 ? args[1] : "1,2,4,8").split(",");
+
+		System.out.println(String.format("even deal: max chi-square over %d places %.1f (%d hands)", HAND, evenness(1000000), 1000000));
+		System.out.println(String.format("%d hands per thread, %d available processors", hands, Runtime.getRuntime().availableProcessors()));
+		System.out.println(String.format("%-8s %8s %14s %10s %12s", "deck", "threads", "hands/s", "ns/hand", "bytes/hand"));
+		/* the first pass warms up the JIT */
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (String sThreads : threadCounts)
+			{
+				int threads = Integer.parseInt(sThreads.trim());
+				for (int mode = SHARED; mode <= DECK; mode++)
+				{
+					String line = run(mode, threads, pass == 0 ? hands / 10 : hands);
+					if (pass == 1)
+					{
+						System.out.println(line);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	* run - shuffle and deal hands on a number of threads at once
+	* @param mode SHARED or DECK
+	* @param threads
+	* @param hands per thread
+	* @return String one line of results
+	*/
+	private static String run(final int mode, int threads, final int hands) throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicLong allocated = new AtomicLong();
+		for (int t = 0; t < threads; t++)
+		{
+			new Thread(new Runnable() {
+				public void run()
+				{
+					int iSum = 0;
+					try {
+						start.await();
+					} catch (InterruptedException ie) {
+						return;
+					}
+					long lAllocStart = allocatedBytes();
+					if (mode == SHARED)
+					{
+						SharedDeck deck = new SharedDeck();
+						for (int h = 0; h < hands; h++)
+						{
+							deck.shuffle();
+							iSum += deck.getCards(2)[0] + deck.getCards(2)[1] + deck.getCards(5)[4];
+						}
+					}
+					else
+					{
+						Deck deck = new Deck();
+						int[] player = new int[2];
+						int[] dealer = new int[2];
+						int[] community = new int[5];
+						for (int h = 0; h < hands; h++)
+						{
+							deck.shuffle();
+							deck.deal(player, 0, player.length);
+							deck.deal(dealer, 0, dealer.length);
+							deck.deal(community, 0, community.length);
+							iSum += player[0] + dealer[1] + community[4];
+						}
+					}
+					allocated.addAndGet(allocatedBytes() - lAllocStart);
+					sink += iSum;
+					done.countDown();
+				}
+			}).start();
+		}
+		long lStart = System.nanoTime();
+		start.countDown();
+		done.await();
+		long lElapsed = System.nanoTime() - lStart;
+		long lHands = (long)hands * threads;
+		return String.format("%-8s %8d %14.0f %10.1f %12.2f", NAMES[mode], threads, lHands * 1e9 / lElapsed,
+				(double)lElapsed / lHands, (double)allocated.get() / lHands);
+	}
+
+	/**
+	* evenness - deal hands from one deck and measure how evenly the cards
+	* fall in each place of the hand
+	* @param hands
+	* @return double the largest chi-square of the 9 places
+	*/
+	private static double evenness(int hands)
+	{
+		Deck deck = new Deck(new Random(544));
+		int[] cards = new int[HAND];
+		long[][] counts = new long[HAND][256];
+		for (int h = 0; h < hands; h++)
+		{
+			deck.shuffle();
+			deck.deal(cards, 0, HAND);
+			for (int iI = 0; iI < HAND; iI++)
+			{
+				counts[iI][cards[iI]]++;
+			}
+		}
+		double dExpected = hands / 52.0;
+		double dMax = 0;
+		for (int iI = 0; iI < HAND; iI++)
+		{
+			double dChiSquare = 0;
+			int iCards = 0;
+			for (int c = 0; c < 256; c++)
+			{
+				if (counts[iI][c] > 0)
+				{
+					iCards++;
+					dChiSquare += (counts[iI][c] - dExpected) * (counts[iI][c] - dExpected) / dExpected;
+				}
+			}
+			/* a card never dealt to a place counts too */
+			dChiSquare += (52 - iCards) * dExpected;
+			dMax = Math.max(dMax, dChiSquare);
+		}
+		return dMax;
+	}
+
+	/* the deck as it was before it moved to int[] and partial shuffles */
+	private static class SharedDeck {
+		private static Random gen = new Random();
+		private int[] deck = new int[52];
+		private int curIndex;
+
+		SharedDeck()
+		{
+			for (int iI = 0; iI < deck.length; iI++)
+			{
+				deck[iI] = iI;
+			}
+		}
+
+		void shuffle()
+		{
+			for (int iI = 0; iI < deck.length; iI++)
+			{
+				int randIndex = gen.nextInt(deck.length - iI) + iI;
+				int cardTemp = deck[randIndex];
+				deck[randIndex] = deck[iI];
+				deck[iI] = cardTemp;
+			}
+			curIndex = 0;
+		}
+
+		int[] getCards(int nNumCards)
+		{
+			int[] cards = new int[nNumCards];
+			for (int iI = 0; iI < nNumCards; iI++)
+			{
+				cards[iI] = deck[curIndex++];
+			}
+			return cards;
+		}
+	}
+
+	/**
+	* allocatedBytes - bytes allocated by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not report it
+	*/
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			return ((Long)method.invoke(bean, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import server.SecureServerController;
+import server.ServerMetrics;
+import common.LogAndPublish;
+import common.XmlParser;
+
+/**
+ * SlowConsumerBenchmark shows what the outbound limits do about clients that
+ * stop reading. Players keep playing hands the whole time; halfway through,
+ * slow bots start asking for the game list as fast as they can without ever
+ * reading a reply. The run is made with the limits from Config.xml and again
+ * with both limits turned off, and reports the players' hand latency before
+ * and during the flood, how many slow bots were disconnected and how long
+ * that took, the slow consumer counts and the outbound depth the server saw,
+ * and how long stopping the server took with the slow bots still connected.
+ *
+ * Usage: java benchmark.SlowConsumerBenchmark [players] [slow] [seconds] [port] [BLOCKING|NIO]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class SlowConsumerBenchmark {
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long ANTE = 10;
+	/* write timeout for the run with limits, shorter than Config.xml so the run stays short */
+	private static final String WRITE_TIMEOUT = "2000";
+	/* receive buffer of the slow bots, so they back up the server quickly */
+	private static final int SLOW_RECEIVE_BUFFER = 4096;
+	/* requests each slow bot sends at most */
+	private static final int FLOOD_REQUESTS = 2000000;
+	/* hand times kept per player for each half of the run */
+	private static final int SAMPLES_PER_PLAYER = 1 << 16;
+	/* how long to wait for the server to stop before calling it stuck */
+	private static final long STOP_WAIT_MILLIS = 5000;
+
+	public static void main(String[] args) throws Exception
+	{
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int slow = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 5671;
+		String transport = args.length > 4 ? args[4] : "BLOCKING";
+
+		PrintStream out = BenchmarkStats.silenceConsole();
+		out.println(transport + " transport, " + players + " players, " + slow + " slow bots, " + seconds + " s per run");
+		out.println(String.format("%-10s %12s %12s %12s %12s %10s %12s %16s %10s", "limits", "hand p50", "hand p99", "flood p50", "flood p99",
+				"cut off", "cut after", "depth p99/max", "stop"));
+		out.println(run(true, players, slow, seconds, port, transport));
+		out.println(run(false, players, slow, seconds, port + 1, transport));
+		System.exit(0);
+	}
+
+	/**
+	* run - play hands against one server and flood it halfway through
+	* @return String one line of results
+	*/
+	private static String run(boolean limits, int players, int slow, int seconds, int port, String transport) throws Exception
+	{
+		XmlParser xmlParser = new XmlParser();
+		xmlParser.setServerTagValue("TRANSPORT_MODE", transport);
+		xmlParser.setServerTagValue("PORT_NUMBER", Integer.toString(port));
+		xmlParser.setServerTagValue("LOG_FILE", "SlowConsumerBenchmark.log");
+		/* enough for the players to keep playing for the whole run */
+		xmlParser.setServerTagValue("CLIENT_BANK_AMOUNT", "100000000");
+		if (limits)
+		{
+			xmlParser.setServerTagValue("WRITE_TIMEOUT", WRITE_TIMEOUT);
+		}
+		else
+		{
+			xmlParser.setServerTagValue("OUTBOUND_HIGH_WATER", "0");
+			xmlParser.setServerTagValue("WRITE_TIMEOUT", "0");
+		}
+		SecureServerController server = new SecureServerController(xmlParser, new LogAndPublish(xmlParser, "server"));
+		server.start();
+		final SSLContext context = AgmpBotClient.createSSLContext(xmlParser);
+		final int version = Integer.parseInt(xmlParser.getClientTagValue("VERSION"));
+		Thread.sleep(500);
+
+		/* the players: one hand after another, timed separately before and during the flood */
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicBoolean flooding = new AtomicBoolean(false);
+		final long[][] before = new long[players][SAMPLES_PER_PLAYER];
+		final long[][] during = new long[players][SAMPLES_PER_PLAYER];
+		final int[] beforeCounts = new int[players];
+		final int[] duringCounts = new int[players];
+		final CountDownLatch playersDone = new CountDownLatch(players);
+		for (int p = 0; p < players; p++)
+		{
+			final int player = p;
+			final AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+			bot.setRawFraming(true);
+			bot.connect(CONNECT_TIMEOUT);
+			bot.negotiate();
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (running.get() && bot.getBankAmount() > 4 * ANTE)
+						{
+							long lHand = bot.playHand(ANTE);
+							boolean bFlood = flooding.get();
+							int[] counts = bFlood ? duringCounts : beforeCounts;
+							if (counts[player] < SAMPLES_PER_PLAYER)
+							{
+								(bFlood ? during : before)[player][counts[player]++] = lHand;
+							}
+						}
+					} catch (Exception e) {
+						// counted by the missing samples
+					}
+					bot.close();
+					playersDone.countDown();
+				}
+			}).start();
+		}
+		Thread.sleep(seconds * 500L);
+
+		/* the slow bots: never read, each on its own thread since its writes block once the server stops reading */
+		final AtomicInteger cutOff = new AtomicInteger();
+		final long[] cutAfter = new long[slow];
+		final boolean[] cut = new boolean[slow];
+		List<AgmpBotClient> slowBots = new ArrayList<AgmpBotClient>();
+		flooding.set(true);
+		for (int s = 0; s < slow; s++)
+		{
+			final int index = s;
+			final AgmpBotClient bot = new AgmpBotClient(context, "127.0.0.1", port, version);
+			bot.setRawFraming(true);
+			bot.setReceiveBufferSize(SLOW_RECEIVE_BUFFER);
+			bot.connect(CONNECT_TIMEOUT);
+			bot.authenticate();
+			slowBots.add(bot);
+			Thread flood = new Thread(new Runnable() {
+				public void run() {
+					long lStart = System.nanoTime();
+					/* cut off while the run lasts, not by the server stopping */
+					if (bot.floodGetGame(FLOOD_REQUESTS) < FLOOD_REQUESTS && flooding.get())
+					{
+						cutAfter[index] = System.nanoTime() - lStart;
+						cut[index] = true;
+						cutOff.incrementAndGet();
+					}
+				}
+			});
+			flood.setDaemon(true);
+			flood.start();
+		}
+		Thread.sleep(seconds * 500L);
+		running.set(false);
+		playersDone.await();
+		flooding.set(false);
+
+		/* stop the server with the slow bots that were not cut off still connected */
+		final SecureServerController stopping = server;
+		Thread stopper = new Thread(new Runnable() {
+			public void run() {
+				stopping.stopServerController();
+			}
+		});
+		stopper.setDaemon(true);
+		long lStopStart = System.nanoTime();
+		stopper.start();
+		stopper.join(STOP_WAIT_MILLIS);
+		long lStopMillis = (System.nanoTime() - lStopStart) / 1000000;
+
+		ServerMetrics metrics = server.getMetrics();
+		String line = String.format("%-10s %12s %12s %12s %12s %10s %12s %16s %10s", limits ? "on" : "off",
+				BenchmarkStats.micros(percentile(before, beforeCounts, 50)), BenchmarkStats.micros(percentile(before, beforeCounts, 99)),
+				BenchmarkStats.micros(percentile(during, duringCounts, 50)), BenchmarkStats.micros(percentile(during, duringCounts, 99)),
+				cutOff.get() + "/" + slow, (cutOff.get() == 0) ? "-" : (BenchmarkStats.percentile(cutAfter, slow, 100) / 1000000) + " ms",
+				metrics.getOutboundDepthPercentile(99) + "/" + metrics.getOutboundDepthMax() + "B",
+				stopper.isAlive() ? "stuck" : lStopMillis + " ms")
+				+ "\n           slow consumers highWater=" + metrics.getSlowConsumers(ServerMetrics.SLOW_HIGH_WATER)
+				+ " writeTimeout=" + metrics.getSlowConsumers(ServerMetrics.SLOW_WRITE_TIMEOUT);
+		for (int s = 0; s < slow; s++)
+		{
+			/* a bot still blocked in its write would block close() too */
+			if (cut[s])
+			{
+				slowBots.get(s).close();
+			}
+		}
+		return line;
+	}
+
+	/* merge the samples of all players and take the percentile */
+	private static long percentile(long[][] samples, int[] counts, double dPercent)
+	{
+		int iTotal = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			iTotal += counts[i];
+		}
+		long[] all = new long[iTotal];
+		int iCount = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			System.arraycopy(samples[i], 0, all, iCount, counts[i]);
+			iCount += counts[i];
+		}
+		return BenchmarkStats.percentile(all, iCount, dPercent);
+	}
+}
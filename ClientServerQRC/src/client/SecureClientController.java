@@ -27,16 +27,13 @@ import java.io.*;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.security.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
 
 import client.card_game.ClientPokerModel;
 import client.findServer.EchoFinder;
@@ -67,6 +64,9 @@ public class SecureClientController implements Runnable {
 	/* management mechanisms */
     private GameState gameState;
     private MessageParser messageParser;
+    /* reusable views over the server's game play messages */
+    private final MessageView header = new MessageView();
+    private final MessageView.ServerPlayGame serverPlayView = new MessageView.ServerPlayGame();
 	private boolean connected;
 	private LogAndPublish logAndPublish;
 	private long bankAmount;
@@ -75,14 +75,28 @@ public class SecureClientController implements Runnable {
 	/* connectivity mechanisms */    
 	private SecureClientController c = null;
 	private SSLSocketFactory ssf = null;	
+	/* process wide client SSLContext, its session cache lets a reconnect resume the TLS session */
+	private final SSLContextCache sslContextCache;
     private SSLSocket socket;
 	private final XmlParser xmlParser;
 	private BufferedReader br;
 	private InputStreamReader isr;
     private InputStream oInputStream;
     private OutputStream oOutputStream;	
-	private ObjectOutputStream outputStream; 
-	private ObjectInputStream inputstream;     
+	private DataOutputStream outputStream; 
+	private DataInputStream inputstream;     
+	/* ask the server for raw framing instead of object streams */
+	private boolean rawFraming;
+	/* ask for raw framing revision 2, lengths as varints; cleared if the server answers with revision 1 */
+	private boolean varintFraming;
+	/* whether to ask the server for envelopes and play deltas */
+	private boolean envelopes;
+	private boolean playDeltas;
+	/* messages queued since the last flush once the server agreed to envelopes, null before */
+	private MessageParser.EnvelopeMessage envelope = null;
+	/* the rest of an envelope received from the server */
+	private final ArrayDeque<ServerResponse> received = new ArrayDeque<ServerResponse>();
+	private final MessageView.Envelope envelopeView = new MessageView.Envelope();
     private int port = 0; 
     private String hostName= null;
     /* Game parameters */
@@ -119,9 +133,16 @@ public class SecureClientController implements Runnable {
 		this.trustStorePassword=this.xmlParser.getClientTagValue("DEFAULT_TRUSTSTORE_PASSWORD");
 		this.keyStore=this.xmlParser.getClientTagValue("DEFAULT_KEYSTORE");
 		this.keyStorePassword=this.xmlParser.getClientTagValue("DEFAULT_KEYSTORE_PASSWORD");    
+		this.sslContextCache = SSLContextCache.shared(SSLContextCache.ROLE_CLIENT, this.keyStore, this.keyStorePassword, this.trustStore, this.trustStorePassword,
+				Long.parseLong(this.xmlParser.getClientTagValue("KEYSTORE_WATCH_INTERVAL")));
 		this.hostName = this.xmlParser.getClientTagValue("HOSTNAME");
 		this.m_iVersion = Integer.parseInt(this.xmlParser.getClientTagValue("VERSION"));
 		this.m_iMinorVersion = Integer.parseInt(this.xmlParser.getClientTagValue("MINOR_VERSION"));
+		String sFraming = this.xmlParser.getClientTagValue("FRAMING");
+		this.varintFraming = "VARINT".equalsIgnoreCase(sFraming);
+		this.rawFraming = this.varintFraming || "RAW".equalsIgnoreCase(sFraming);
+		this.envelopes = Boolean.parseBoolean(this.xmlParser.getClientTagValue("ENVELOPES"));
+		this.playDeltas = Boolean.parseBoolean(this.xmlParser.getClientTagValue("PLAY_DELTAS"));
 		this.bankAmount = 0;
 		this.gamePlayState = new GamePlayState();
 		this.welcomeFrame = welcomeFrame;
@@ -324,19 +345,21 @@ public class SecureClientController implements Runnable {
 			{
 				/* Get the server response message */
 				ServerResponse sr = this.receiveMessage();
+				this.header.wrap(sr.getMessage(), sr.getSize());
 				/* Check to make sure it has the correct version number */
-				if (this.messageParser.GetVersion(sr.getMessage(), sr.getSize()) != this.m_iVersion)
+				if (this.header.getVersion() != this.m_iVersion)
 				{
 					logAndPublish.write("Ignoring message with incorrect version number", true, false);
 					break;
 				}
 				/* Verify the message received was a Play Game Message */
-				if (this.messageParser.GetTypeIndicator(sr.getMessage(), sr.getSize()) == MessageParser.TYPE_INDICATOR_GAME)
+				if (this.header.getTypeCode() == MessageParser.TYPE_INDICATOR_GAME)
 				{
-					if (this.messageParser.GetGameIndicator(sr.getMessage(), sr.getSize()) == MessageParser.GAME_INDICATOR_PLAY_GAME)
+					if (this.header.getGameIndicator() == MessageParser.GAME_INDICATOR_PLAY_GAME)
 					{
 						/* Get the server message */
-						MessageParser.ServerPlayGameMessage svrPlayMsg = this.messageParser.GetServerPlayGameMessage(sr.getMessage(), sr.getSize());	
+						MessageView.ServerPlayGame svrPlayMsg = this.serverPlayView;
+						svrPlayMsg.wrap(sr.getMessage(), sr.getSize());
 						if (svrPlayMsg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
 						{
 							/* May have received a client play game message but this is not the correct server msg, ignore it */
@@ -427,8 +450,7 @@ public class SecureClientController implements Runnable {
 								this.bankAmount = svrPlayMsg.getBankAmount();
 								this.texasFrame.setPokerModel(this.holdemModel);
 								this.texasFrame.setInfo("Continue To Play, you must bet twice your ante amount.");
-								this.texasFrame.getPokerModel().getoDealerCards()[0].setVisible(false);
-								this.texasFrame.getPokerModel().getoDealerCards()[1].setVisible(false);
+								this.texasFrame.getPokerModel().setDealerCardsVisible(false);
 								this.texasFrame.setHoleCards();
 								
 								int orig_ante = svrPlayMsg.getAnte();
@@ -830,8 +852,7 @@ public class SecureClientController implements Runnable {
 							    else if(this.holdemModel.getWinner()==3)
 							    	swinner="it's a draw";
 							    this.texasFrame.setInfo(swinner);
-							    this.texasFrame.getPokerModel().getoDealerCards()[0].setVisible(true);
-							    this.texasFrame.getPokerModel().getoDealerCards()[1].setVisible(true);
+							    this.texasFrame.getPokerModel().setDealerCardsVisible(true);
 							    this.texasFrame.setRiverCard();
 							    this.texasFrame.setFollow(InputState.NOT_SET);
 							    /* wait for user input */
@@ -1024,17 +1045,19 @@ public class SecureClientController implements Runnable {
 	    try
 	    {
 	        /* verify version number is correct and ignore msg if not */
-	    	if (this.messageParser.GetVersion(sr.getMessage(), sr.getSize()) != this.m_iVersion)
+	    	this.header.wrap(sr.getMessage(), sr.getSize());
+	    	if (this.header.getVersion() != this.m_iVersion)
 	    	{
 	    		logAndPublish.write("Ignoring message with incorrect version", true, false);
 	    		return;
 	    	}
 	    	/* verify the message is a Play game message and then print to the screen */
-	        if (this.messageParser.GetTypeIndicator(sr.getMessage(), sr.getSize()) == MessageParser.TYPE_INDICATOR_GAME)
+	        if (this.header.getTypeCode() == MessageParser.TYPE_INDICATOR_GAME)
 	        {
-	        	if (this.messageParser.GetGameIndicator(sr.getMessage(), sr.getSize()) == MessageParser.GAME_INDICATOR_PLAY_GAME)
+	        	if (this.header.getGameIndicator() == MessageParser.GAME_INDICATOR_PLAY_GAME)
 	        	{
-	        		MessageParser.ServerPlayGameMessage msg = this.messageParser.GetServerPlayGameMessage(sr.getMessage(), sr.getSize());
+	        		MessageView.ServerPlayGame msg = this.serverPlayView;
+	        		msg.wrap(sr.getMessage(), sr.getSize());
 	        		// make sure this is a server play game message
 	        		if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
 	        		{
@@ -1049,16 +1072,17 @@ public class SecureClientController implements Runnable {
 	        	    this.holdemModel.setlBankAmount(bankAmount);
 	        	    this.holdemModel.setlBetAmount(betAmount);
 	        	    
-	        	    Card[] playerCards={msg.getPlayerCard1(),msg.getPlayerCard2()};
+	        	    /* the cards are shared, the model keeps whether the dealer's are shown */
+	        	    Card[] playerCards={MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.PLAYER_CARD_1)),MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.PLAYER_CARD_2))};
 	        	   	this.holdemModel.setoPlayerCards(playerCards);
-	        	   	Card[] dealerCards={msg.getDealerCard1(),msg.getDealerCard2()};
+	        	   	Card[] dealerCards={MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.DEALER_CARD_1)),MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.DEALER_CARD_2))};
 	        	    this.holdemModel.setoDealerCards(dealerCards);  
 	        	    
-	        	    Card[] flopCards={msg.getFlopCard1(),msg.getFlopCard2(),msg.getFlopCard3()};
+	        	    Card[] flopCards={MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.FLOP_CARD_1)),MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.FLOP_CARD_2)),MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.FLOP_CARD_3))};
 	        	   	this.holdemModel.setoFlopCards(flopCards);
 	        	   		          
-	        	   	this.holdemModel.setoTurnCard(msg.getTurnCard());
-	        	   	this.holdemModel.setoRiverCard(msg.getRiverCard());
+	        	   	this.holdemModel.setoTurnCard(MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.TURN_CARD)));
+	        	   	this.holdemModel.setoRiverCard(MessageView.toCard(msg.getCard(MessageView.ServerPlayGame.RIVER_CARD)));
 		            this.holdemModel.setWinner(msg.getWinner());
 	        	}
 	        	else
@@ -1264,6 +1288,15 @@ public class SecureClientController implements Runnable {
         		{
         			logAndPublish.write("Successfully Authenticated with the server\n", true, true);
         			this.bankAmount = iMsg.getBankAmount();
+        			if ((iMsg.getFeatures() & MessageParser.FEATURE_ENVELOPE) != 0)
+        			{
+        				/* the server agreed, the largest envelope is what the framing's length allows */
+        				this.envelope = this.messageParser.new EnvelopeMessage(this.m_iVersion,
+        						this.varintFraming ? FrameLength.MAX_MESSAGE_SIZE : this.rawFraming ? 255 : 127);
+        				logAndPublish.write("Using envelopes", true, false);
+        			}
+        			/* play messages arrive as deltas from now on if the server agreed */
+        			this.playDeltas = (iMsg.getFeatures() & MessageParser.FEATURE_PLAY_DELTA) != 0;
         			/* Log and Publish */
         			logAndPublish.write(iMsg.toString(), false, false); 
         			// get the list of games and transition to the game listed state
@@ -1321,7 +1354,8 @@ public class SecureClientController implements Runnable {
 		/*
 		 * Send the client version message and then transition to the authentication state
 		 */
-        MessageParser.VersionMessage oMsg1 = this.messageParser.new VersionMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_CLIENT_VERSION, (short)this.m_iMinorVersion, (long)0);
+        MessageParser.VersionMessage oMsg1 = this.messageParser.new VersionMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_CLIENT_VERSION, (short)this.m_iMinorVersion, (long)0,
+        		(this.envelopes ? MessageParser.FEATURE_ENVELOPE : 0) | (this.playDeltas ? MessageParser.FEATURE_PLAY_DELTA : 0));
         
         /* MESSAGE MANAGEMENT */ 
         this.sendMessage(this.messageParser.CreateVersionMessage(oMsg1));
@@ -1332,7 +1366,10 @@ public class SecureClientController implements Runnable {
     
 	/**
 	 * getSSLSocketFactory - method uses the KeyManagers and TrustManagers packaged with
-	 * this JAR to instantiate a new SSL Context using the TLS protocol.
+	 * this JAR to instantiate a new SSL Context using the TLS protocol. The context
+	 * is built on the first call and shared by the process, so later connections
+	 * offer the server the session (or session ticket) of the earlier ones instead
+	 * of repeating the full handshake. It is rebuilt when the key stores change.
 	 * @param none
 	 * @return SSLSocketFactory
 	 * @throws IOException
@@ -1340,81 +1377,7 @@ public class SecureClientController implements Runnable {
 	 */
     protected SSLSocketFactory getSSLSocketFactory() throws IOException, GeneralSecurityException
     {
-      /* load TrustManagers packaged with this JAR */
-      TrustManager[] tms=getTrustManagers();
-      
-      /* load KeyManagers packaged with this JAR */
-      KeyManager[] kms=getKeyManagers();
-
-      /* Create TLS Protocol SSL Context using the  KeyManagers and TrustManagers packaged with this JAR */
-      SSLContext context=SSLContext.getInstance("TLS");
-      context.init(kms, tms, null);
-
-      /* Create an SSL Socket Factory and return */
-      SSLSocketFactory ssf=context.getSocketFactory();
-      return ssf;
-    }  
-    
-
-    /**
-     * getTrustManagers - method loads the key manager packaged with this JAR, 
-     * initializes and returns the TrustManager array
-     * @param none
-     * @return TrustManager[]
-     * @throws IOException
-     * @throws GeneralSecurityException
-     */
-    protected TrustManager[] getTrustManagers() throws IOException, GeneralSecurityException
-    {
-    	/* get default trust manager factory */
-    	String alg=TrustManagerFactory.getDefaultAlgorithm();
-    	TrustManagerFactory tmFact=TrustManagerFactory.getInstance(alg);
-      
-    	/* get KeyStore instance and type */
-    	KeyStore ks=KeyStore.getInstance("jks");
-      
-  	  	/* initiate class loader to retrieve jks file from this JAR */      
-      	ClassLoader classLoader = getClass().getClassLoader();
-      	InputStream keystoreStream = classLoader.getResourceAsStream(trustStore); // note, not getSYSTEMResourceAsStream  
-      	ks.load(keystoreStream, trustStorePassword.toCharArray());
-
-      	/* initialize the KeyManagerFactory with this KeyStore */
-      	tmFact.init(ks);
-
-      	/* retrieve the key manager(s) and return */
-      	TrustManager[] tms=tmFact.getTrustManagers();
-      	return tms;
-    }  
-
-    /**
-     * getKeyManagers - method loads the key manager packaged with this JAR, 
-     * initializes and returns the KeyManager array
-     * @param none
-     * @return returns an array of key managers
-     * @throws IOException
-     * @throws GeneralSecurityException
-     */
-    protected KeyManager[] getKeyManagers() throws IOException, GeneralSecurityException
-    {
-
-    	/* get default key manager factory */
-    	String alg=KeyManagerFactory.getDefaultAlgorithm();
-    	KeyManagerFactory kmFact=KeyManagerFactory.getInstance(alg);
-      
-    	/* construct KeyStore instance and type */
-    	KeyStore ks=KeyStore.getInstance("jks");
-
-    	/* initiate class loader to retrieve jks file from this JAR */
-    	ClassLoader classLoader = getClass().getClassLoader();
-    	InputStream keystoreStream = classLoader.getResourceAsStream(keyStore); // note, not getSYSTEMResourceAsStream  
-    	ks.load(keystoreStream, keyStorePassword.toCharArray()); 
-
-    	/* initialize the KeyManagerFactory with this KeyStore */
-    	kmFact.init(ks, keyStorePassword.toCharArray());
-
-    	/* retrieve the key manager(s) and return */
-    	KeyManager[] kms=kmFact.getKeyManagers();
-    	return kms;
+      return this.sslContextCache.get().getSocketFactory();
     }  
     
 	/**
@@ -1457,10 +1420,7 @@ public class SecureClientController implements Runnable {
   
             
             /* get input and output screens */            
-            oInputStream = socket.getInputStream();
-            oOutputStream = socket.getOutputStream();
-   		 	outputStream = new ObjectOutputStream(oOutputStream); 
-   		 	inputstream = new ObjectInputStream(oInputStream); 
+            openStreams(ssf);
    		 	this.connected = true;
     		 	
    		 	
@@ -1498,10 +1458,7 @@ public class SecureClientController implements Runnable {
 	        
 	        /* get input and output streams if the connection was found*/ 
 	        if (socket != null) {
-		        oInputStream = socket.getInputStream();
-		        oOutputStream = socket.getOutputStream();
-				outputStream = new ObjectOutputStream(oOutputStream); 
-				inputstream = new ObjectInputStream(oInputStream); 
+		        openStreams(ssf);
 				connected = true;
 
 	  			/* Log and Publish */
@@ -1515,7 +1472,51 @@ public class SecureClientController implements Runnable {
     }  
     
     /**
-     * receiveMessage - method reads server response from ObjectInputStream 
+     * openStreams - set up the input and output streams on the connected socket.
+     * With raw framing the client sends the raw preamble and expects it back; a
+     * server that answers with the object stream header does not know raw framing,
+     * so the client connects again and uses object streams
+     * @param ssf SSL Socket Factory instance, used to reconnect
+     * @return none
+     * @throws IOException
+     */
+    private void openStreams(SSLSocketFactory ssf) throws IOException
+    {
+        oInputStream = socket.getInputStream();
+        oOutputStream = socket.getOutputStream();
+        if (this.rawFraming)
+        {
+            oOutputStream.write(this.varintFraming ? StreamPreamble.RAW_VARINT : StreamPreamble.RAW);
+            oOutputStream.flush();
+            byte[] preamble = new byte[StreamPreamble.LENGTH];
+            new DataInputStream(oInputStream).readFully(preamble);
+            if (StreamPreamble.isRaw(preamble) || (this.varintFraming && StreamPreamble.isRawVarint(preamble)))
+            {
+                /* a server without revision 2 answers with revision 1 */
+                this.varintFraming = StreamPreamble.isRawVarint(preamble);
+                outputStream = new DataOutputStream(new BufferedOutputStream(oOutputStream));
+                inputstream = new DataInputStream(new BufferedInputStream(oInputStream));
+                logAndPublish.write(this.varintFraming ? "Using raw framing with varint lengths" : "Using raw framing", true, false);
+                return;
+            }
+            /* Log and Publish */
+            logAndPublish.write("Server does not support raw framing, reconnecting with object streams", true, false);
+            this.rawFraming = false;
+            this.varintFraming = false;
+            SocketAddress sAddress = socket.getRemoteSocketAddress();
+            socket.close();
+            socket = (SSLSocket)ssf.createSocket();
+            socket.connect(sAddress, 100);
+            oInputStream = socket.getInputStream();
+            oOutputStream = socket.getOutputStream();
+        }
+        outputStream = new DataOutputStream(new ObjectOutputStream(oOutputStream)); 
+        inputstream = new DataInputStream(new ObjectInputStream(oInputStream)); 
+    }
+
+    /**
+     * receiveMessage - method reads server response from ObjectInputStream. The
+     * messages of an envelope are returned one per call
      * @param none
      * @return ServerResponse
      * @throws IOException
@@ -1524,12 +1525,61 @@ public class SecureClientController implements Runnable {
     {
     	/* MESSAGE MANAGEMENT */
     	/* get the message from the server */
-		byte iByteCount = inputstream.readByte();
-		byte [] inputBuffer = new byte[iByteCount];
-		inputstream.readFully(inputBuffer);   
+		while (this.received.isEmpty())
+		{
+			int iByteCount;
+			if (this.varintFraming)
+			{
+				iByteCount = FrameLength.read(inputstream);
+			}
+			else
+			{
+				iByteCount = this.rawFraming ? inputstream.readUnsignedByte() : inputstream.readByte();
+			}
+			byte [] inputBuffer = new byte[iByteCount];
+			inputstream.readFully(inputBuffer);
+			if (this.envelope != null && this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_ENVELOPE)
+			{
+				/* unpack the envelope, its messages are handled as if they came one by one */
+				this.envelopeView.wrap(inputBuffer, iByteCount);
+				byte[] inner = new byte[255];
+				int iInner;
+				while ((iInner = this.envelopeView.nextMessage(inner)) >= 0)
+				{
+					byte[] message = new byte[iInner];
+					System.arraycopy(inner, 0, message, 0, iInner);
+					this.received.add(new ServerResponse(message, iInner));
+				}
+			}
+			else
+			{
+				this.received.add(new ServerResponse(inputBuffer, iByteCount));
+			}
+		}
+		ServerResponse sr = this.received.poll();
+		if (this.playDeltas && this.messageParser.GetTypeIndicator(sr.getMessage(), sr.getSize()) == MessageParser.TYPE_INDICATOR_GAME
+				&& this.messageParser.GetGameIndicator(sr.getMessage(), sr.getSize()) == MessageParser.GAME_INDICATOR_PLAY_DELTA)
+		{
+			/* the poker model rebuilds the full play message, the rest of the client only sees those */
+			byte[] full = this.holdemModel.applyPlayDelta(sr.getMessage(), sr.getSize());
+			if (full == null)
+			{
+				throw new IOException("Malformed play delta from the server");
+			}
+			sr = new ServerResponse(full, full.length);
+		}
+		byte [] inputBuffer = sr.getMessage();
+		int iByteCount = sr.getSize();
 		
-		/* store it into the Server Response object */
-		ServerResponse sr = new ServerResponse(inputBuffer, (int)iByteCount);
+		/* the server closes the connection when it shuts down */
+		if (iByteCount > 0 && this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION
+				&& this.messageParser.GetConnectionMessage(inputBuffer, iByteCount).getConnectionCode() == MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION)
+		{
+			logAndPublish.write("Server is shutting down", true, true);
+			this.gameState.setState(GameState.CLOSED);
+			throw new IOException("Connection closed by the server");
+		}
+
 		return sr;
     }    
     
@@ -1541,13 +1591,87 @@ public class SecureClientController implements Runnable {
      */
     public void sendMessage (byte[] msg) throws IOException
     {
+    	queueMessage(msg);
+    	flushMessages();
+    }
+
+    /**
+     * queueMessage - queue a message for the server, it is sent by the next
+     * flushMessages. Once the server agreed to envelopes the queued messages
+     * go out packed into envelopes
+     * @param msg MessageParser assembled byte message
+     * @return none
+     * @throws IOException
+     */
+    public void queueMessage (byte[] msg) throws IOException
+    {
+    	if (this.envelope != null)
+    	{
+    		if (this.envelope.add(msg, msg.length))
+    		{
+    			return;
+    		}
+    		writeEnvelope();
+    		if (this.envelope.add(msg, msg.length))
+    		{
+    			return;
+    		}
+    	}
     	/* MESSAGE MANAGEMENT */
     	/* write the response to the server */
-		outputStream.writeByte((byte)msg.length);
+		writeLength(msg.length);
         outputStream.write(msg); 
+    }
+
+    /**
+     * flushMessages - send the queued messages to the server
+     * @param none
+     * @return none
+     * @throws IOException
+     */
+    public void flushMessages () throws IOException
+    {
+    	writeEnvelope();
         outputStream.flush();
     }
 
+    /**
+     * writeEnvelope - write the envelope being filled, if it holds anything
+     * @param none
+     * @return none
+     * @throws IOException
+     */
+    private void writeEnvelope () throws IOException
+    {
+    	if (this.envelope == null || this.envelope.getCount() == 0)
+    	{
+    		return;
+    	}
+    	byte[] buffer = new byte[this.envelope.encodedSize()];
+    	this.envelope.encodeInto(ByteBuffer.wrap(buffer));
+    	this.envelope.clear();
+		writeLength(buffer.length);
+        outputStream.write(buffer); 
+    }
+
+    /**
+     * writeLength - write the length that precedes a message in the framing in use
+     * @param iLength
+     * @return none
+     * @throws IOException
+     */
+    private void writeLength (int iLength) throws IOException
+    {
+    	if (this.varintFraming)
+    	{
+    		FrameLength.write(iLength, outputStream);
+    	}
+    	else
+    	{
+    		outputStream.writeByte((byte)iLength);
+    	}
+    }
+
     /**
      * disconnect - disconnect this client from the server
      * @param none
@@ -1,5 +1,6 @@
 package client.card_game;
 
+import common.MessageParser;
 import common.card_game.Card;
 
 /**
@@ -21,7 +22,10 @@ public class ClientPokerModel  {
 	private Card[] oFlopCards; // flop cards' array
 	private Card   oTurnCard; // turn card
 	private Card   oRiverCard; //river card
+	private boolean bDealerCardsVisible; //whether the dealer's cards are shown
 	int winner; //winner
+	/* last play state from the server, kept across hands since deltas are taken against it */
+	private final MessageParser.PlayDeltaMessage playState = new MessageParser().new PlayDeltaMessage();
 
 	/**
 	 * Constructor
@@ -50,6 +54,7 @@ public class ClientPokerModel  {
 		this.lBetAmount=0;
 		this.oRiverCard=null;
 		this.oTurnCard=null;
+		this.bDealerCardsVisible=true;
     }
 
     /**
@@ -61,6 +66,24 @@ public class ClientPokerModel  {
 		return winner;
 	}
 
+	/**
+	 * isDealerCardsVisible - determine whether the dealer's cards are shown
+	 * @param none
+	 * @return boolean
+	 */
+	public boolean isDealerCardsVisible() {
+		return bDealerCardsVisible;
+	}
+
+	/**
+	 * setDealerCardsVisible - show or hide the dealer's cards
+	 * @param bDealerCardsVisible
+	 * @return none
+	 */
+	public void setDealerCardsVisible(boolean bDealerCardsVisible) {
+		this.bDealerCardsVisible = bDealerCardsVisible;
+	}
+
 	/**
 	 * setWinner - set the winner value
 	 * @param winner
@@ -237,6 +260,22 @@ public class ClientPokerModel  {
 		this.oRiverCard = oRiverCard;
 	}
 	
+	/**
+	 * applyPlayDelta - rebuild the full Server Play Game PDU from a play delta
+	 * and the play state before it
+	 * @param delta
+	 * @param size
+	 * @return byte[] the full PDU, null if the delta is malformed
+	 */
+	public byte[] applyPlayDelta(byte[] delta, int size)
+	{
+		if (!this.playState.apply(delta, size))
+		{
+			return null;
+		}
+		return this.playState.getState();
+	}
+
 	/**
 	 * init - initialize the client poker model
 	 * @param none
@@ -253,6 +292,7 @@ public class ClientPokerModel  {
 		this.lBetAmount=0;
 		this.oRiverCard=null;
 		this.oTurnCard=null;
+		this.bDealerCardsVisible=true;
 		
 	}
 }
\ No newline at end of file
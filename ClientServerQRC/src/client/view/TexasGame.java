@@ -473,7 +473,15 @@ public class TexasGame extends javax.swing.JFrame {
      * @param args the command line arguments
      */
     public String getCardSource(Card c){
-    	if(!c.isVisible())
+    	return getCardSource(c, true);
+    }
+    /**
+     * getCardSource - show initialized icon of a card, or its back
+     * @param c
+     * @param bVisible false to show the back of the card
+     */
+    public String getCardSource(Card c, boolean bVisible){
+    	if(!bVisible)
     		return "images/card_back.png"; //show card back
     	int value=c.getCardValue();
     	String svalue="";
@@ -490,8 +498,8 @@ public class TexasGame extends javax.swing.JFrame {
         String sPlayCard1=this.getCardSource(this.pokerModel.getoPlayerCards()[0]);
         String sPlayCard2=this.getCardSource(this.pokerModel.getoPlayerCards()[1]);
         
-        String sDealerCard1=this.getCardSource(this.pokerModel.getoDealerCards()[0]);
-        String sDealerCard2=this.getCardSource(this.pokerModel.getoDealerCards()[1]);
+        String sDealerCard1=this.getCardSource(this.pokerModel.getoDealerCards()[0], this.pokerModel.isDealerCardsVisible());
+        String sDealerCard2=this.getCardSource(this.pokerModel.getoDealerCards()[1], this.pokerModel.isDealerCardsVisible());
         
         /**set player's cards */
 		jLabel7.setIcon(new javax.swing.ImageIcon(getClass().getClassLoader().getResource(sPlayCard1)));
@@ -567,8 +575,8 @@ public class TexasGame extends javax.swing.JFrame {
     /** setRiverCard - set river card */
     public void setRiverCard(){
     	String sRiverCard1=this.getCardSource(this.pokerModel.getoRiverCard());
-    	 String sDealerCard1=this.getCardSource(this.pokerModel.getoDealerCards()[0]);
-         String sDealerCard2=this.getCardSource(this.pokerModel.getoDealerCards()[1]);
+    	 String sDealerCard1=this.getCardSource(this.pokerModel.getoDealerCards()[0], this.pokerModel.isDealerCardsVisible());
+         String sDealerCard2=this.getCardSource(this.pokerModel.getoDealerCards()[1], this.pokerModel.isDealerCardsVisible());
          
          /** set river card and show servers' cards */
     	jLabel5.setIcon(new ImageIcon(getClass().getClassLoader().getResource(sRiverCard1)));
@@ -0,0 +1,386 @@
+package codegen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * CodecGenerator writes common/PduCodec.java from the layouts in PduSchema.
+ * The generated file is checked in, so the build needs nothing but javac;
+ * run the generator again after changing the schema and commit both.
+ *
+ * For every PDU the generated class has its SIZE and the offset of every
+ * field, a getter per field that masks every byte it reads, a checked getter
+ * per field with a range, validate, and encoders to a byte array and to a
+ * ByteBuffer. None of them allocate.
+ *
+ * Usage: java codegen.CodecGenerator [source directory]
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class CodecGenerator {
+	private static final String NL = "\n";
+
+	private final StringBuilder out = new StringBuilder();
+
+	public static void main(String[] args) throws IOException
+	{
+		String sSource = args.length > 0 ? args[0] : "src";
+		File file = new File(sSource, "common" + File.separator + "PduCodec.java");
+		String sCode = new CodecGenerator().generate(PduSchema.PDUS);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(sCode);
+		} finally {
+			writer.close();
+		}
+		System.out.println("wrote " + file + " (" + PduSchema.PDUS.length + " PDUs)");
+	}
+
+	/**
+	* generate - the source of PduCodec for the PDUs
+	* @param pdus
+	* @return String
+	*/
+	public String generate(PduSchema.Pdu[] pdus)
+	{
+		for (int iI = 0; iI < pdus.length; iI++)
+		{
+			check(pdus[iI]);
+		}
+		line("package common;");
+		line("");
+		line("import java.nio.BufferOverflowException;");
+		line("import java.nio.ByteBuffer;");
+		line("");
+		line("/*");
+		line(" * GENERATED by codegen.CodecGenerator from codegen.PduSchema, do not edit.");
+		line(" */");
+		line("");
+		line("/**");
+		line(" *  The PduCodec Class");
+		line(" *");
+		line(" *  Decoders, validators and encoders for the fixed size PDUs. Every");
+		line(" *  method is static and works on a byte array and the offset the PDU");
+		line(" *  starts at; nothing is allocated. The getters do not look at the size,");
+		line(" *  check it (or validate the message) once before reading the fields.");
+		line(" *  Multi byte fields are unsigned big endian.");
+		line(" *");
+		line(" *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY");
+		line(" *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan");
+		line(" *  Project: Advanced Game Message Protocol Implementation");
+		line(" *");
+		line(" */");
+		line("public final class PduCodec {");
+		line("");
+		line("\tprivate PduCodec()");
+		line("\t{");
+		line("\t}");
+		for (int iI = 0; iI < pdus.length; iI++)
+		{
+			line("");
+			pdu(pdus[iI]);
+		}
+		line("}");
+		return this.out.toString();
+	}
+
+	/* refuse a schema with fields out of order, that overlap, run past the PDU or share a name */
+	private static void check(PduSchema.Pdu pdu)
+	{
+		int iEnd = 0;
+		Set<String> names = new HashSet<String>();
+		for (int iI = 0; iI < pdu.fields.length; iI++)
+		{
+			PduSchema.Field field = pdu.fields[iI];
+			if (!names.add(field.name))
+			{
+				throw new IllegalArgumentException(pdu.name + "." + field.name + " declared twice");
+			}
+			if (field.offset < iEnd)
+			{
+				throw new IllegalArgumentException(pdu.name + "." + field.name + " overlaps or comes before the field ending at byte " + iEnd);
+			}
+			iEnd = field.offset + field.size();
+			if (iEnd > pdu.size)
+			{
+				throw new IllegalArgumentException(pdu.name + "." + field.name + " is outside the " + pdu.size + " byte PDU");
+			}
+			if (field.isRanged() && field.min > field.max)
+			{
+				throw new IllegalArgumentException(pdu.name + "." + field.name + " has an empty range");
+			}
+		}
+	}
+
+	/* the nested class of one PDU */
+	private void pdu(PduSchema.Pdu pdu)
+	{
+		PduSchema.Field[] fields = pdu.fields;
+		line("\t/**");
+		line("\t* " + pdu.name + " - the " + pdu.doc);
+		line("\t*");
+		line("\t*/");
+		line("\tpublic static final class " + pdu.name + " {");
+		line("\t\tpublic static final int SIZE = " + pdu.size + ";");
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			line("\t\tpublic static final int " + constant(fields[iI].name) + " = " + fields[iI].offset + ";");
+		}
+		line("");
+		line("\t\tprivate " + pdu.name + "()");
+		line("\t\t{");
+		line("\t\t}");
+
+		/* getters */
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			PduSchema.Field field = fields[iI];
+			line("");
+			line("\t\t/**");
+			line("\t\t* " + field.name + " - " + field.doc);
+			line("\t\t* @param b");
+			line("\t\t* @param off start of the PDU");
+			line("\t\t* @return " + javaType(field));
+			line("\t\t*/");
+			line("\t\tpublic static " + javaType(field) + " " + field.name + "(byte[] b, int off)");
+			line("\t\t{");
+			line("\t\t\treturn " + read(field) + ";");
+			line("\t\t}");
+			if (field.isRanged())
+			{
+				line("");
+				line("\t\t/**");
+				line("\t\t* " + checked(field) + " - " + field.doc + ", NOT_SET unless " + field.min + " to " + field.max);
+				line("\t\t* @param b");
+				line("\t\t* @param off start of the PDU");
+				line("\t\t* @return int");
+				line("\t\t*/");
+				line("\t\tpublic static int " + checked(field) + "(byte[] b, int off)");
+				line("\t\t{");
+				line("\t\t\tint value = " + field.name + "(b, off);");
+				line("\t\t\treturn (value >= " + field.min + " && value <= " + field.max + ") ? value : MessageParser.NOT_SET;");
+				line("\t\t}");
+			}
+		}
+
+		/* validate */
+		line("");
+		line("\t\t/**");
+		line("\t\t* validate - determine whether a message is this PDU: the size is");
+		line("\t\t* SIZE and every field with a range is in it");
+		line("\t\t* @param b");
+		line("\t\t* @param off start of the PDU");
+		line("\t\t* @param iSize number of bytes of the message");
+		line("\t\t* @return boolean");
+		line("\t\t*/");
+		line("\t\tpublic static boolean validate(byte[] b, int off, int iSize)");
+		line("\t\t{");
+		line("\t\t\tif (iSize != SIZE)");
+		line("\t\t\t{");
+		line("\t\t\t\treturn false;");
+		line("\t\t\t}");
+		StringBuilder condition = new StringBuilder();
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			if (fields[iI].isRanged())
+			{
+				condition.append(condition.length() == 0 ? "" : NL + "\t\t\t\t\t&& ");
+				condition.append(checked(fields[iI]) + "(b, off) != MessageParser.NOT_SET");
+			}
+		}
+		line("\t\t\treturn " + (condition.length() == 0 ? "true" : condition.toString()) + ";");
+		line("\t\t}");
+
+		/* encoders */
+		StringBuilder params = new StringBuilder();
+		StringBuilder args = new StringBuilder();
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			params.append(", ").append(fields[iI].type == PduSchema.U32 ? "long " : "int ").append(fields[iI].name);
+			args.append(", ").append(fields[iI].name);
+		}
+		line("");
+		line("\t\t/**");
+		line("\t\t* encode - write the PDU at off, reserved bytes are 0. Every value");
+		line("\t\t* is cut to the width of its field");
+		line("\t\t* @param b at least off + SIZE bytes");
+		line("\t\t* @param off");
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			line("\t\t* @param " + fields[iI].name);
+		}
+		line("\t\t* @return none");
+		line("\t\t*/");
+		line("\t\tpublic static void encode(byte[] b, int off" + params + ")");
+		line("\t\t{");
+		int iNext = 0;
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			iNext = reserved(iNext, fields[iI].offset);
+			write(fields[iI]);
+			iNext = fields[iI].offset + fields[iI].size();
+		}
+		reserved(iNext, pdu.size);
+		line("\t\t}");
+		line("");
+		line("\t\t/**");
+		line("\t\t* encode - write the PDU at the buffer's position and move the");
+		line("\t\t* position past it");
+		line("\t\t* @param dst");
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			line("\t\t* @param " + fields[iI].name);
+		}
+		line("\t\t* @return none");
+		line("\t\t*/");
+		line("\t\tpublic static void encode(ByteBuffer dst" + params + ")");
+		line("\t\t{");
+		line("\t\t\tif (dst.remaining() < SIZE)");
+		line("\t\t\t{");
+		line("\t\t\t\tthrow new BufferOverflowException();");
+		line("\t\t\t}");
+		line("\t\t\tif (dst.hasArray())");
+		line("\t\t\t{");
+		line("\t\t\t\tencode(dst.array(), dst.arrayOffset() + dst.position()" + args + ");");
+		line("\t\t\t\tdst.position(dst.position() + SIZE);");
+		line("\t\t\t}");
+		line("\t\t\telse");
+		line("\t\t\t{");
+		iNext = 0;
+		for (int iI = 0; iI < fields.length; iI++)
+		{
+			iNext = reservedPut(iNext, fields[iI].offset);
+			put(fields[iI]);
+			iNext = fields[iI].offset + fields[iI].size();
+		}
+		reservedPut(iNext, pdu.size);
+		line("\t\t\t}");
+		line("\t\t}");
+		line("\t}");
+	}
+
+	/* the expression that reads a field */
+	private static String read(PduSchema.Field field)
+	{
+		int o = field.offset;
+		switch (field.type)
+		{
+		case PduSchema.U8:
+			return u8(o);
+		case PduSchema.U16:
+			return "(" + u8(o) + " << 8) | " + u8(o + 1);
+		case PduSchema.U32:
+			return "((long)" + u8(o) + " << 24) | (" + u8(o + 1) + " << 16) | (" + u8(o + 2) + " << 8) | " + u8(o + 3);
+		default:
+			return u8(o) + " >> 4";
+		}
+	}
+
+	private static String u8(int iOffset)
+	{
+		return "(b[" + at(iOffset) + "] & 0xFF)";
+	}
+
+	/* the statements that write a field to the array */
+	private void write(PduSchema.Field field)
+	{
+		int o = field.offset;
+		String v = field.name;
+		switch (field.type)
+		{
+		case PduSchema.U8:
+			line("\t\t\tb[" + at(o) + "] = (byte)" + v + ";");
+			break;
+		case PduSchema.U16:
+			line("\t\t\tb[" + at(o) + "] = (byte)(" + v + " >> 8);");
+			line("\t\t\tb[" + at((o + 1)) + "] = (byte)" + v + ";");
+			break;
+		case PduSchema.U32:
+			line("\t\t\tb[" + at(o) + "] = (byte)(" + v + " >> 24);");
+			line("\t\t\tb[" + at((o + 1)) + "] = (byte)(" + v + " >> 16);");
+			line("\t\t\tb[" + at((o + 2)) + "] = (byte)(" + v + " >> 8);");
+			line("\t\t\tb[" + at((o + 3)) + "] = (byte)" + v + ";");
+			break;
+		default:
+			line("\t\t\tb[" + at(o) + "] = (byte)((" + v + " & 0x0F) << 4);");
+			break;
+		}
+	}
+
+	/* the statements that write a field to a buffer without an array, relative
+	   puts are the cheapest on a direct buffer */
+	private void put(PduSchema.Field field)
+	{
+		String v = field.name;
+		switch (field.type)
+		{
+		case PduSchema.U8:
+			line("\t\t\t\tdst.put((byte)" + v + ");");
+			break;
+		case PduSchema.U16:
+			line("\t\t\t\tdst.putShort((short)" + v + ");");
+			break;
+		case PduSchema.U32:
+			line("\t\t\t\tdst.putInt((int)" + v + ");");
+			break;
+		default:
+			line("\t\t\t\tdst.put((byte)((" + v + " & 0x0F) << 4));");
+			break;
+		}
+	}
+
+	/* zero the reserved bytes between two fields */
+	private int reserved(int iFrom, int iTo)
+	{
+		for (int iI = iFrom; iI < iTo; iI++)
+		{
+			line("\t\t\tb[" + at(iI) + "] = 0;");
+		}
+		return iTo;
+	}
+
+	private int reservedPut(int iFrom, int iTo)
+	{
+		for (int iI = iFrom; iI < iTo; iI++)
+		{
+			line("\t\t\t\tdst.put((byte)0);");
+		}
+		return iTo;
+	}
+
+	/* index of byte iOffset of the PDU */
+	private static String at(int iOffset)
+	{
+		return (iOffset == 0) ? "off" : "off + " + iOffset;
+	}
+
+	private static String javaType(PduSchema.Field field)
+	{
+		return (field.type == PduSchema.U32) ? "long" : "int";
+	}
+
+	/* gamePlayRequest -> checkedGamePlayRequest */
+	private static String checked(PduSchema.Field field)
+	{
+		return "checked" + Character.toUpperCase(field.name.charAt(0)) + field.name.substring(1);
+	}
+
+	/* gamePlayRequest -> GAME_PLAY_REQUEST */
+	private static String constant(String sName)
+	{
+		return sName.replaceAll("([a-z])([A-Z0-9])", "$1_$2").toUpperCase();
+	}
+
+	private void line(String sLine)
+	{
+		this.out.append(sLine).append(NL);
+	}
+}
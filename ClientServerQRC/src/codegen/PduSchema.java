@@ -0,0 +1,199 @@
+package codegen;
+
+/**
+ * PduSchema declares the byte layout of every fixed size AGMP PDU once.
+ * CodecGenerator turns it into common.PduCodec, the decoders, validators and
+ * encoders that MessageParser and MessageView use, so a layout is only ever
+ * written down here.
+ *
+ * A field is an unsigned big endian integer of one, two or four bytes, or the
+ * high nibble of a byte. A field may have a range: validate refuses a message
+ * with the field outside it and the checked getter returns NOT_SET for it.
+ * Bytes no field covers are reserved, encoded as 0 and not read.
+ *
+ * To add a PDU, add a pdu(...) entry to PDUS and run
+ *    java codegen.CodecGenerator src
+ * from the project directory.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class PduSchema {
+	/* field types, the value is the number of bytes */
+	public static final int U8 = 1;
+	public static final int U16 = 2;
+	public static final int U32 = 4;
+	/* the high four bits of one byte, the low four are reserved */
+	public static final int NIBBLE = 0;
+
+	/* a field without a range */
+	public static final int ANY = -1;
+
+	/**
+	* Field - one field of a PDU
+	*
+	*/
+	public static final class Field {
+		public final String name;
+		public final int offset;
+		public final int type;
+		public final int min;
+		public final int max;
+		public final String doc;
+
+		Field(String name, int offset, int type, int min, int max, String doc)
+		{
+			this.name = name;
+			this.offset = offset;
+			this.type = type;
+			this.min = min;
+			this.max = max;
+			this.doc = doc;
+		}
+
+		/**
+		* size - number of bytes the field covers
+		* @param none
+		* @return int
+		*/
+		public int size()
+		{
+			return (this.type == NIBBLE) ? 1 : this.type;
+		}
+
+		/**
+		* isRanged - determine whether the field has a range
+		* @param none
+		* @return boolean
+		*/
+		public boolean isRanged()
+		{
+			return this.min != ANY;
+		}
+	}
+
+	/**
+	* Pdu - one fixed size PDU
+	*
+	*/
+	public static final class Pdu {
+		public final String name;
+		public final int size;
+		public final String doc;
+		public final Field[] fields;
+
+		Pdu(String name, int size, String doc, Field[] fields)
+		{
+			this.name = name;
+			this.size = size;
+			this.doc = doc;
+			this.fields = fields;
+		}
+	}
+
+	/* the common header every PDU starts with */
+	private static Field version()
+	{
+		return field("version", 0, U16, "protocol version");
+	}
+
+	private static Field typeCode()
+	{
+		return field("typeCode", 2, U16, 1, 3, "type indicator");
+	}
+
+	private static Field gameIndicator()
+	{
+		return field("gameIndicator", 4, U8, 1, 3, "game indicator");
+	}
+
+	private static Field gameTypeCode()
+	{
+		return field("gameTypeCode", 5, U8, 1, 1, "game type");
+	}
+
+	private static Field card(String name, int offset)
+	{
+		return field(name, offset, U8, name.replaceAll("([A-Z0-9])", " $1").toLowerCase() + ", suite in the high nibble and value in the low nibble");
+	}
+
+	/**
+	* PDUS - every fixed size PDU, in the order of the protocol specification
+	*/
+	public static final Pdu[] PDUS = {
+		pdu("Version", 12, "Version Message PDU",
+				version(),
+				typeCode(),
+				field("versionType", 4, U8, 1, 4, "version indicator"),
+				field("minorVersion", 5, U8, "minor version"),
+				field("features", 6, U16, "feature bits, reserved before features were added"),
+				field("bankAmount", 8, U32, "bank amount")),
+		pdu("ClientGetGame", 8, "Client Get Game PDU",
+				version(),
+				typeCode(),
+				gameIndicator()),
+		pdu("ClientSetGame", 8, "Client Set Game PDU",
+				version(),
+				typeCode(),
+				gameIndicator(),
+				gameTypeCode()),
+		pdu("ServerSetGame", 8, "Server Set Game PDU",
+				version(),
+				typeCode(),
+				gameIndicator(),
+				gameTypeCode(),
+				field("gameTypeResponse", 6, U8, 1, 2, "game type response")),
+		pdu("ClientPlayGame", 12, "Client Play Game PDU",
+				version(),
+				typeCode(),
+				gameIndicator(),
+				gameTypeCode(),
+				field("gamePlayRequest", 6, U8, 1, 6, "game play request"),
+				field("betAmount", 8, U32, "bet amount")),
+		pdu("ServerPlayGame", 32, "Server Play Game PDU",
+				version(),
+				typeCode(),
+				gameIndicator(),
+				gameTypeCode(),
+				field("gamePlayResponse", 6, U8, 1, 10, "game play response"),
+				field("ante", 8, U16, "ante"),
+				card("playerCard1", 10),
+				card("playerCard2", 11),
+				card("dealerCard1", 12),
+				card("dealerCard2", 13),
+				card("flopCard1", 14),
+				card("flopCard2", 15),
+				card("flopCard3", 16),
+				card("turnCard", 17),
+				card("riverCard", 18),
+				field("winner", 19, NIBBLE, 1, 3, "winner"),
+				field("potSize", 20, U32, "pot size"),
+				field("betAmount", 24, U32, "bet amount"),
+				field("bankAmount", 28, U32, "bank amount")),
+		pdu("Connection", 8, "Connection Message PDU",
+				version(),
+				typeCode(),
+				field("connectionCode", 4, U8, 1, 2, "connection indicator")),
+	};
+
+	private PduSchema()
+	{
+	}
+
+	private static Pdu pdu(String name, int size, String doc, Field... fields)
+	{
+		return new Pdu(name, size, doc, fields);
+	}
+
+	private static Field field(String name, int offset, int type, String doc)
+	{
+		return new Field(name, offset, type, ANY, ANY, doc);
+	}
+
+	private static Field field(String name, int offset, int type, int min, int max, String doc)
+	{
+		return new Field(name, offset, type, min, max, doc);
+	}
+}
@@ -0,0 +1,166 @@
+package common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ *  The FrameLength Class
+ *
+ *  Raw framing revision 2 (StreamPreamble.RAW_VARINT) puts the length of each
+ *  PDU in front of it as a varint: seven bits per byte, lowest bits first,
+ *  with the top bit set on every byte but the last. Lengths below 128 take one
+ *  byte as before, lengths up to MAX_MESSAGE_SIZE take two or three. Longer
+ *  lengths, and more than three length bytes, are rejected so a corrupt
+ *  length cannot make the reader allocate or wait for megabytes. Streams read
+ *  a length with read(); non blocking connections, whose lengths may arrive
+ *  split across reads, feed a Decoder. Both check each byte with step().
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class FrameLength {
+
+	/** largest PDU raw framing revision 2 carries */
+	public static final int MAX_MESSAGE_SIZE = 0xFFFF;
+	/** most bytes a length takes */
+	public static final int MAX_LENGTH_BYTES = 3;
+
+	private FrameLength()
+	{
+	}
+
+	/**
+	* size - number of bytes the varint for iLength takes
+	* @param iLength
+	* @return int
+	*/
+	public static int size(int iLength)
+	{
+		return (iLength < 0x80) ? 1 : (iLength < 0x4000) ? 2 : 3;
+	}
+
+	/**
+	* put - write the varint for iLength into the buffer
+	* @param iLength
+	* @param dst
+	* @return none
+	*/
+	public static void put(int iLength, ByteBuffer dst)
+	{
+		checkLength(iLength);
+		while (iLength >= 0x80)
+		{
+			dst.put((byte)(iLength | 0x80));
+			iLength >>>= 7;
+		}
+		dst.put((byte)iLength);
+	}
+
+	/**
+	* write - write the varint for iLength to a stream
+	* @param iLength
+	* @param out
+	* @return none
+	*/
+	public static void write(int iLength, DataOutput out) throws IOException
+	{
+		checkLength(iLength);
+		while (iLength >= 0x80)
+		{
+			out.writeByte(iLength | 0x80);
+			iLength >>>= 7;
+		}
+		out.writeByte(iLength);
+	}
+
+	/**
+	* read - read a varint length from a stream
+	* @param in
+	* @return int
+	*/
+	public static int read(DataInput in) throws IOException
+	{
+		int iLength = 0;
+		for (int iI = 0; ; iI++)
+		{
+			int b = in.readUnsignedByte();
+			iLength = step(iLength, iI, b);
+			if ((b & 0x80) == 0)
+			{
+				return iLength;
+			}
+		}
+	}
+
+	/**
+	* step - add one byte to the length read so far, refusing a length of too
+	* many bytes or past MAX_MESSAGE_SIZE. The length is complete when the byte
+	* has no top bit
+	* @param iLength the length read so far
+	* @param iIndex the position of the byte in the length, from 0
+	* @param b the byte
+	* @return int the length read so far
+	*/
+	private static int step(int iLength, int iIndex, int b) throws StreamCorruptedException
+	{
+		iLength |= (b & 0x7F) << (7 * iIndex);
+		if ((b & 0x80) != 0)
+		{
+			if (iIndex + 1 == MAX_LENGTH_BYTES)
+			{
+				throw new StreamCorruptedException("message length longer than " + MAX_LENGTH_BYTES + " bytes");
+			}
+		}
+		else if (iLength > MAX_MESSAGE_SIZE)
+		{
+			throw new StreamCorruptedException("invalid message length " + iLength);
+		}
+		return iLength;
+	}
+
+	/**
+	* Decoder - reads lengths whose bytes may arrive in separate buffers, one
+	* length at a time
+	*
+	*/
+	public static final class Decoder {
+		/* the length read so far and how many of its bytes */
+		private int iLength = 0;
+		private int iLengthBytes = 0;
+
+		/**
+		* next - consume bytes of the length from the buffer, and nothing after it
+		* @param src
+		* @return int the length once its last byte is read, else -1 with the buffer empty
+		*/
+		public int next(ByteBuffer src) throws StreamCorruptedException
+		{
+			while (src.hasRemaining())
+			{
+				int b = src.get() & 0xFF;
+				this.iLength = step(this.iLength, this.iLengthBytes++, b);
+				if ((b & 0x80) == 0)
+				{
+					int length = this.iLength;
+					this.iLength = 0;
+					this.iLengthBytes = 0;
+					return length;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private static void checkLength(int iLength)
+	{
+		if (iLength < 0 || iLength > MAX_MESSAGE_SIZE)
+		{
+			throw new IllegalArgumentException("message length " + iLength + " out of range");
+		}
+	}
+}
@@ -3,6 +3,11 @@
  */
 package common;
 
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
@@ -12,6 +17,15 @@ import java.util.logging.SimpleFormatter;
  *  The LogAndPublish Errorhandler Class
  *
  *  Used by both the client and the server for logging and console output
+ *
+ *  Messages are handed to a single writer thread, so callers never block on
+ *  the console or on the (synchronized) log file handler. This keeps session
+ *  threads, including virtual threads, off those locks. Every LogAndPublish
+ *  shares the one writer, its queue and its shutdown hook. The queue is
+ *  bounded: when the disk or console cannot keep up, new messages are dropped
+ *  rather than held in memory or left to block the sessions, and the writer
+ *  logs how many were dropped once it catches up. Only the writer publishes,
+ *  so messages are written in the order they were queued; flush waits for it.
  *  
  *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
  *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
@@ -23,6 +37,38 @@ public class LogAndPublish {
 	/* utilities */
 	private Logger fLogger = null;; 
 	private XmlParser xmlParser = null;
+	/* most messages waiting for the writer before new ones are dropped */
+	private static final int QUEUE_CAPACITY = 65536;
+	/* messages waiting for the writer thread, in the order they were written */
+	private static final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>(QUEUE_CAPACITY);
+	/* messages dropped since the writer last reported it */
+	private static final AtomicLong dropped = new AtomicLong();
+	/* longest flush waits for the writer, so a stuck disk cannot hold up exit */
+	private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
+	/* start the writer and make sure queued messages are written on exit */
+	static
+	{
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				while (true)
+				{
+					try {
+						publish(queue.take());
+					} catch (InterruptedException ie) {
+						return;
+					}
+				}
+			}
+		}, "LogAndPublish");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				flush();
+			}
+		}));
+	}
 	
 	/**
 	 * Constructor
@@ -37,7 +83,9 @@ public class LogAndPublish {
 
     	if (type.contains("server"))
     	{
-			this.fLogger = Logger.getLogger(this.xmlParser.getServerTagValue("LOG_FILE"));
+			/* not registered with the LogManager, whose shutdown hook would close the
+			 * file while the other hooks (the drain) are still logging */
+			this.fLogger = Logger.getAnonymousLogger();
 			this.fLogger.setUseParentHandlers(false);
 			this.fLogger.removeHandler(new ConsoleHandler());
 			try {
@@ -51,7 +99,7 @@ public class LogAndPublish {
     	}
     	else if (type.contains("client"))
     	{
-			this.fLogger = Logger.getLogger(this.xmlParser.getClientTagValue("LOG_FILE"));
+			this.fLogger = Logger.getAnonymousLogger();
 			this.fLogger.setUseParentHandlers(false);
 			this.fLogger.removeHandler(new ConsoleHandler());
 			try {
@@ -63,7 +111,6 @@ public class LogAndPublish {
 				System.exit(1);
 			}	
     	}
-		
 	}
 
     /**
@@ -73,11 +120,8 @@ public class LogAndPublish {
      * @param console Write to console boolean
      */
     public void write (String msg, boolean log, boolean console) {
-    	if (console)
-    		System.out.println(msg);
-    	
-    	if (log)
-    		this.fLogger.info(msg);
+    	if (log || console)
+    		enqueue(new Entry(this, msg, null, log, console));
     }       	
 	
     /**
@@ -87,11 +131,95 @@ public class LogAndPublish {
      * @param console Write to console boolean
      */
     public void write (Exception msg, boolean log, boolean console) {
-    	if (console)
-    		msg.printStackTrace();
-    	
-    	if (log)
-    		this.fLogger.info(msg.getMessage());
+    	if (log || console)
+    		enqueue(new Entry(this, null, msg, log, console));
     }       
+
+    /**
+     * enqueue - hand a message to the writer, or count it as dropped when
+     * the queue is full
+     * @param entry
+     * @return none
+     */
+    private static void enqueue (Entry entry) {
+    	if (!queue.offer(entry))
+    		dropped.incrementAndGet();
+    }
+
+    /**
+     * flush - wait until the writer has written out everything queued so far,
+     * by every LogAndPublish, or for FLUSH_TIMEOUT_MILLIS. Safe to call from
+     * shutdown hooks, the writer runs until the JVM halts
+     * @param none
+     * @return none
+     */
+    public static void flush () {
+    	CountDownLatch flushed = new CountDownLatch(1);
+    	try {
+    		if (queue.offer(new Entry(flushed), FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+    			flushed.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    	} catch (InterruptedException ie) {
+    		Thread.currentThread().interrupt();
+    	}
+    }
+
+    /**
+     * publish - write one message to the console and/or logger
+     * @param entry
+     * @return none
+     */
+    private static void publish (Entry entry) {
+    	if (entry.flushed != null)
+    	{
+    		entry.flushed.countDown();
+    		return;
+    	}
+    	long lDropped = dropped.getAndSet(0);
+    	if (lDropped > 0)
+    		entry.owner.fLogger.warning(lDropped + " log messages dropped, the log could not keep up");
+    	if (entry.exception != null)
+    	{
+    		if (entry.console)
+    			entry.exception.printStackTrace();
+    		if (entry.log)
+    			entry.owner.fLogger.info(entry.exception.getMessage());
+    	}
+    	else
+    	{
+    		if (entry.console)
+    			System.out.println(entry.msg);
+    		if (entry.log)
+    			entry.owner.fLogger.info(entry.msg);
+    	}
+    }
+
+    /* one queued message */
+    private static class Entry {
+    	final LogAndPublish owner;
+    	final String msg;
+    	final Exception exception;
+    	final boolean log;
+    	final boolean console;
+    	/* set on the marker flush waits for instead of a message */
+    	final CountDownLatch flushed;
+
+    	Entry(LogAndPublish owner, String msg, Exception exception, boolean log, boolean console) {
+    		this.owner = owner;
+    		this.msg = msg;
+    		this.exception = exception;
+    		this.log = log;
+    		this.console = console;
+    		this.flushed = null;
+    	}
+
+    	Entry(CountDownLatch flushed) {
+    		this.owner = null;
+    		this.msg = null;
+    		this.exception = null;
+    		this.log = false;
+    		this.console = false;
+    		this.flushed = flushed;
+    	}
+    }
 	
 }
@@ -1,5 +1,6 @@
 package common;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import common.card_game.Card;
 
@@ -9,6 +10,8 @@ import common.card_game.Card;
  *  This class is used to handle the following:
  *  1) Parsing incoming byte arrays to the proper message
  *  2) Converting the message to a byte array for output
+ *  3) Encoding the message straight into a caller owned ByteBuffer, so a
+ *     connection can reuse one buffer for every response it sends
  *
  *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
  *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
@@ -27,6 +30,7 @@ public class MessageParser {
 	public static int TYPE_INDICATOR_VERSION = 1;
 	public static int TYPE_INDICATOR_GAME = 2;
 	public static int TYPE_INDICATOR_CLOSE_CONNECTION = 3;
+	public static int TYPE_INDICATOR_ENVELOPE = 4;
 	/*
 	 * These are the valid version indicators
 	 */
@@ -40,6 +44,7 @@ public class MessageParser {
 	public static int GAME_INDICATOR_GET_GAME = 1;
 	public static int GAME_INDICATOR_SET_GAME = 2;
 	public static int GAME_INDICATOR_PLAY_GAME = 3;
+	public static int GAME_INDICATOR_PLAY_DELTA = 4;
 	/*
 	 * These are the valid game types
 	 */
@@ -82,12 +87,58 @@ public class MessageParser {
 	 */
 	public static int CONNECTION_INDICATOR_CLOSE_CONNECTION = 1;
 	public static int CONNECTION_INDICATOR_CLOSE_CONNECTION_ACK = 2;
+	/*
+	 * These are the feature bits of the Version Message. The client sets the
+	 * ones it supports in CLIENT_VERSION, the server answers with the ones it
+	 * agrees to in VERSION_ACK
+	 */
+	public static int FEATURE_ENVELOPE = 0x0001;
+	public static int FEATURE_PLAY_DELTA = 0x0002;
+	/*
+	 * Size of the Envelope Message header, the inner messages follow it
+	 */
+	public static final int ENVELOPE_HEADER_SIZE = 8;
+	/*
+	 * Size of the Play Delta Message header, the changed fields follow it
+	 */
+	public static final int PLAY_DELTA_HEADER_SIZE = 10;
+	/*
+	 * Offset and length in the Server Play Game PDU of every field a Play
+	 * Delta Message can carry: ante, the nine cards, winner, pot, bet and
+	 * bank. Field i is bit (1 << i) of the delta's field mask
+	 */
+	private static final int[] PLAY_DELTA_OFFSETS = {8, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 24, 28};
+	private static final int[] PLAY_DELTA_LENGTHS = {2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 4, 4, 4};
+	private static final int PLAY_GAME_SIZE = 32;
+
+   /**
+   * EncodableMessage - implemented by every PDU. The size is known before
+   * anything is written, so a transport can reserve the space (and write its
+   * length prefix) and then encode the message in place
+   *
+   */
+   public interface EncodableMessage
+   {
+      /**
+      * encodedSize - number of bytes encodeInto will write
+      * @param none
+      * @return int
+      */
+      public int encodedSize();
+
+      /**
+      * encodeInto - write the PDU at the buffer's position
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst);
+   }
    
    /**
    * VersionMessage class used to store the Version Message PDU
    *
    */
-   public class VersionMessage
+   public class VersionMessage implements EncodableMessage
    {
       /* class members */
       private int iVersion;
@@ -95,11 +146,20 @@ public class MessageParser {
       private int iVersionType;
       private short nMinorVersion;
       private long  lBankAmount;
+      private int iFeatures;
       /**
       * Constructor
       *
       */
       public VersionMessage(int version, int typecode, int versiontype, short minorversion, long bankamount)
+      {
+         this(version, typecode, versiontype, minorversion, bankamount, 0);
+      }
+      /**
+      * Constructor with the feature bits, see the FEATURE_ constants
+      *
+      */
+      public VersionMessage(int version, int typecode, int versiontype, short minorversion, long bankamount, int features)
       {
          /* make sure all parameters are valid */
          this.iVersion = 0;
@@ -127,6 +187,7 @@ public class MessageParser {
          {
         	 this.lBankAmount = bankamount;
          }
+         this.iFeatures = features & 0xFFFF;
       }
       /**
       * setVersion - set version member
@@ -243,6 +304,24 @@ public class MessageParser {
       {
          return lBankAmount;
       }   
+      /**
+      * setFeatures - set the feature bits
+      * @param features
+      * @return none
+      */
+      public void setFeatures(int features)
+      {
+          this.iFeatures = features & 0xFFFF;
+      }
+      /**
+      * getFeatures - get the feature bits
+      * @param none
+      * @return int
+      */
+      public int getFeatures()
+      {
+         return iFeatures;
+      }
       
       /**
       * toString - convert message to a string format
@@ -298,13 +377,34 @@ public class MessageParser {
     	  return message;
     	  
       }      
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 12;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.Version.encode(dst, this.iVersion, this.iTypeCode, this.iVersionType, this.nMinorVersion, this.iFeatures, this.lBankAmount);
+      }
    }
    
    /**
    * ClientGetGameMessage class used to store the Client Get Game PDU Message
    *
    */
-   public class ClientGetGameMessage
+   public class ClientGetGameMessage implements EncodableMessage
    {
       /* private members */
       private int iVersion;
@@ -402,13 +502,34 @@ public class MessageParser {
       {
          return iGameIndicator;
       }      
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 8;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.ClientGetGame.encode(dst, this.iVersion, this.iTypeCode, this.iGameIndicator);
+      }
    }
    
    /**
    * ServerGetGameMessage class used to store the Server Get Game PDU Message
    *
    */
-   public class ServerGetGameMessage
+   public class ServerGetGameMessage implements EncodableMessage
    {
       /* private members */
       private int iVersion;
@@ -583,13 +704,46 @@ public class MessageParser {
     	  
       }
       
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 12 + ((this.oGameTypeCodeList.size() + 3) / 4) * 4;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         int length = encodedSize();
+         dst.putShort((short)this.iVersion);
+         dst.putShort((short)this.iTypeCode);
+         dst.put((byte)this.iGameIndicator);
+         dst.put((byte)0);
+         dst.putShort((short)0);
+         dst.putInt(length);
+         /* game codes, zero padded to a multiple of four */
+         int count = this.oGameTypeCodeList.size();
+         for (int iI = 12; iI < length; iI++)
+         {
+            dst.put((iI - 12) < count ? (byte)(this.oGameTypeCodeList.get(iI - 12).intValue() & 0xFF) : 0);
+         }
+      }
    }
    
    /**
    * ClientSetGameMessage class used to store the Client Set Game PDU Message
    *
    */
-   public class ClientSetGameMessage
+   public class ClientSetGameMessage implements EncodableMessage
    {
       private int iVersion;
       private int iTypeCode;
@@ -715,13 +869,34 @@ public class MessageParser {
       {
          return iGameTypeCode;
       }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 8;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.ClientSetGame.encode(dst, this.iVersion, this.iTypeCode, this.iGameIndicator, this.iGameTypeCode);
+      }
    }
    
    /**
    * ServerSetGameMessage class used to store the Server Set Game PDU Message
    *
    */
-   public class ServerSetGameMessage
+   public class ServerSetGameMessage implements EncodableMessage
    {
       /* private members */
       private int iVersion;
@@ -905,13 +1080,34 @@ public class MessageParser {
     	  
       }      
       
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 8;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.ServerSetGame.encode(dst, this.iVersion, this.iTypeCode, this.iGameIndicator, this.iGameTypeCode, this.iGameTypeResponse);
+      }
    }
    
     /**
    * ClientPlayGameMessage class used to store the Client Play Game PDU Message
    *
    */
-   public class ClientPlayGameMessage
+   public class ClientPlayGameMessage implements EncodableMessage
    {
       /* ember variables */
       private int iVersion;
@@ -1095,13 +1291,34 @@ public class MessageParser {
       {
          return lBetAmount;
       }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 12;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.ClientPlayGame.encode(dst, this.iVersion, this.iTypeCode, this.iGameIndicator, this.iGameTypeCode, this.iGamePlayRequest, this.lBetAmount);
+      }
    }
    
    /**
    * ServerPlayGameMessage class used to store the Server Play Game PDU Message
    *
    */
-   public class ServerPlayGameMessage
+   public class ServerPlayGameMessage implements EncodableMessage
    {
       /* member variables */
       private int iVersion;
@@ -1110,15 +1327,16 @@ public class MessageParser {
       private int  iGameTypeCode;
       private int iGamePlayResponse;
       private int iAnte;
-      private Card ePlayerCard1;
-      private Card ePlayerCard2;
-      private Card eDealerCard1;
-      private Card eDealerCard2;
-      private Card eFlopCard1;
-      private Card eFlopCard2;
-      private Card eFlopCard3;
-      private Card eTurnCard;
-      private Card eRiverCard;
+      /* the cards are packed, see Card.packed */
+      private int iPlayerCard1;
+      private int iPlayerCard2;
+      private int iDealerCard1;
+      private int iDealerCard2;
+      private int iFlopCard1;
+      private int iFlopCard2;
+      private int iFlopCard3;
+      private int iTurnCard;
+      private int iRiverCard;
       private int iWinner;
       private long lPotSize;
       private long lBetAmount;
@@ -1129,6 +1347,17 @@ public class MessageParser {
       */
       public ServerPlayGameMessage(int version, int typecode, int gameindicator, int gametypecode, int gameplayresponse, 
             int ante, Card p1, Card p2, Card d1, Card d2, Card f1, Card f2, Card f3, Card turn, Card river, int winner, long potsize, long betamount, long bankamount)
+      {
+         this(version, typecode, gameindicator, gametypecode, gameplayresponse, ante, p1.packed(), p2.packed(), d1.packed(), d2.packed(),
+               f1.packed(), f2.packed(), f3.packed(), turn.packed(), river.packed(), winner, potsize, betamount, bankamount);
+      }
+      /**
+      * Constructor - the cards are packed cards, Card.NOT_SET for a card that
+      * is not dealt
+      *
+      */
+      public ServerPlayGameMessage(int version, int typecode, int gameindicator, int gametypecode, int gameplayresponse, 
+            int ante, int p1, int p2, int d1, int d2, int f1, int f2, int f3, int turn, int river, int winner, long potsize, long betamount, long bankamount)
       {
          /* make sure the parameters are correct */
     	  this.iVersion = 0;
@@ -1161,15 +1390,15 @@ public class MessageParser {
     	  {
     		  this.iAnte = ante;
     	  }
-    	  this.ePlayerCard1 = p1;
-    	  this.ePlayerCard2 = p2;
-    	  this.eDealerCard1 = d1;
-    	  this.eDealerCard2 = d2;
-    	  this.eFlopCard1 = f1;
-    	  this.eFlopCard2 = f2;
-    	  this.eFlopCard3 = f3;
-    	  this.eTurnCard = turn;
-    	  this.eRiverCard = river;
+    	  this.iPlayerCard1 = p1;
+    	  this.iPlayerCard2 = p2;
+    	  this.iDealerCard1 = d1;
+    	  this.iDealerCard2 = d2;
+    	  this.iFlopCard1 = f1;
+    	  this.iFlopCard2 = f2;
+    	  this.iFlopCard3 = f3;
+    	  this.iTurnCard = turn;
+    	  this.iRiverCard = river;
     	  this.iWinner = 0;
     	  if (winner > 0 && winner < 4)
     	  {
@@ -1336,7 +1565,7 @@ public class MessageParser {
       */
       public void setPlayerCard1(Card card)
       {
-         this.ePlayerCard1 = card;
+         this.iPlayerCard1 = card.packed();
       }
       /**
       * getPlayerCard1 - get player card 1 member
@@ -1345,7 +1574,7 @@ public class MessageParser {
       */
       public Card getPlayerCard1()
       {
-         return ePlayerCard1;
+         return Card.of(iPlayerCard1);
       }
       /**
       * setPlayerCard2 - set player card 2 member
@@ -1354,7 +1583,7 @@ public class MessageParser {
       */
       public void setPlayerCard2(Card card)
       {
-         this.ePlayerCard2 = card;
+         this.iPlayerCard2 = card.packed();
       }
       /**
       * getPlayerCard2 - get player card 2 member
@@ -1363,7 +1592,7 @@ public class MessageParser {
       */
       public Card getPlayerCard2()
       {
-         return ePlayerCard2;
+         return Card.of(iPlayerCard2);
       }
       /**
       * setDealerCard1 - set dealer card 1 member
@@ -1372,7 +1601,7 @@ public class MessageParser {
       */
       public void setDealerCard1(Card card)
       {
-         this.eDealerCard1 = card;
+         this.iDealerCard1 = card.packed();
       }
       /**
       * getDealerCard1 - get dealer card 1 member
@@ -1381,7 +1610,7 @@ public class MessageParser {
       */
       public Card getDealerCard1()
       {
-         return eDealerCard1;
+         return Card.of(iDealerCard1);
       }
       /**
       * setDealerCard2 - set dealer card 2 member
@@ -1390,7 +1619,7 @@ public class MessageParser {
       */
       public void setDealerCard2(Card card)
       {
-         this.eDealerCard2 = card;
+         this.iDealerCard2 = card.packed();
       }
       /**
       * getDealerCard2 - get dealer card 2 member
@@ -1399,7 +1628,7 @@ public class MessageParser {
       */
       public Card getDealerCard2()
       {
-         return eDealerCard2;
+         return Card.of(iDealerCard2);
       }
       /**
       * setFlopCard1 - set flop card 1 member
@@ -1408,7 +1637,7 @@ public class MessageParser {
       */
       public void setFlopCard1(Card card)
       {
-         this.eFlopCard1 = card;
+         this.iFlopCard1 = card.packed();
       }
       /**
       * getFlopCard1 - get flop card 1 member
@@ -1417,7 +1646,7 @@ public class MessageParser {
       */
       public Card getFlopCard1()
       {
-         return eFlopCard1;
+         return Card.of(iFlopCard1);
       }
       /**
       * setFlopCard2 - set flop card 2 member
@@ -1426,7 +1655,7 @@ public class MessageParser {
       */
       public void setFlopCard2(Card card)
       {
-         this.eFlopCard2 = card;
+         this.iFlopCard2 = card.packed();
       }
       /**
       * getFlopCard2 - get flop card 2 member
@@ -1435,7 +1664,7 @@ public class MessageParser {
       */
       public Card getFlopCard2()
       {
-         return eFlopCard2;
+         return Card.of(iFlopCard2);
       }
       /**
       * setFlopCard3 - set flop card 3 member
@@ -1444,7 +1673,7 @@ public class MessageParser {
       */
       public void setFlopCard3(Card card)
       {
-         this.eFlopCard3 = card;
+         this.iFlopCard3 = card.packed();
       }
       /**
       * getFlopCard3 - get flop card 3 member
@@ -1453,7 +1682,7 @@ public class MessageParser {
       */
       public Card getFlopCard3()
       {
-         return eFlopCard3;
+         return Card.of(iFlopCard3);
       }
       /**
       * setTurnCard - set turn card member
@@ -1462,7 +1691,7 @@ public class MessageParser {
       */
       public void setTurnCard(Card card)
       {
-         this.eTurnCard = card;
+         this.iTurnCard = card.packed();
       }
       /**
       * getTurnCard - get turn card member
@@ -1471,7 +1700,7 @@ public class MessageParser {
       */
       public Card getTurnCard()
       {
-         return eTurnCard;
+         return Card.of(iTurnCard);
       }
       /**
       * setRiverCard - set river card member
@@ -1480,7 +1709,7 @@ public class MessageParser {
       */
       public void setRiverCard(Card card)
       {
-         this.eRiverCard = card;
+         this.iRiverCard = card.packed();
       }
       /**
       * getRiverCard - get river card member
@@ -1489,7 +1718,7 @@ public class MessageParser {
       */
       public Card getRiverCard()
       {
-         return eRiverCard;
+         return Card.of(iRiverCard);
       }
       /**
       * setWinner - set winner member
@@ -1582,13 +1811,170 @@ public class MessageParser {
       {
          return lBankAmount;
       }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 32;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.ServerPlayGame.encode(dst, this.iVersion, this.iTypeCode, this.iGameIndicator, this.iGameTypeCode, this.iGamePlayResponse, this.iAnte,
+               this.iPlayerCard1, this.iPlayerCard2, this.iDealerCard1, this.iDealerCard2,
+               this.iFlopCard1, this.iFlopCard2, this.iFlopCard3, this.iTurnCard, this.iRiverCard,
+               this.iWinner, this.lPotSize, this.lBetAmount, this.lBankAmount);
+      }
    }
    
+   /**
+   * PlayDeltaMessage class used to carry a Server Play Game PDU as the
+   * difference to the one sent before it
+   *
+   *  The delta is the version, type and game indicator PLAY_DELTA, the game
+   *  type code, the game play response, a reserved byte and a 16 bit mask of
+   *  the fields that changed, followed by those fields in PDU order. Each
+   *  side keeps one of these per session: the server's is updated with every
+   *  play message it sends, the client's with every delta it applies, so
+   *  both hold the same last state. TLS delivers every delta in order, so the
+   *  last state sent is the last state the client has. Deltas are only sent
+   *  once both sides agreed to FEATURE_PLAY_DELTA in the version handshake
+   *
+   */
+   public class PlayDeltaMessage implements EncodableMessage
+   {
+      /* the last full Server Play Game PDU sent or rebuilt */
+      private final byte[] state = new byte[PLAY_GAME_SIZE];
+      /* the encoded delta from the last update */
+      private final byte[] delta = new byte[PLAY_DELTA_HEADER_SIZE + PLAY_GAME_SIZE];
+      private int iSize = 0;
+      /* scratch for the PDU being compared or rebuilt */
+      private final byte[] next = new byte[PLAY_GAME_SIZE];
+      private final ByteBuffer nextBuffer = ByteBuffer.wrap(this.next);
+      /**
+      * update - encode a play message as the delta to the last state, which
+      * it then becomes. The delta is what encodeInto writes until the next
+      * update, so it has to be written before then
+      * @param msg
+      * @return none
+      */
+      public void update(ServerPlayGameMessage msg)
+      {
+         this.nextBuffer.clear();
+         msg.encodeInto(this.nextBuffer);
+         System.arraycopy(this.next, 0, this.delta, 0, 7);
+         this.delta[4] = (byte)GAME_INDICATOR_PLAY_DELTA;
+         this.delta[7] = 0;
+         int iMask = 0;
+         int iPos = PLAY_DELTA_HEADER_SIZE;
+         for (int iField = 0; iField < PLAY_DELTA_OFFSETS.length; iField++)
+         {
+            int iOffset = PLAY_DELTA_OFFSETS[iField];
+            int iLength = PLAY_DELTA_LENGTHS[iField];
+            for (int iI = iOffset; iI < iOffset + iLength; iI++)
+            {
+               if (this.next[iI] != this.state[iI])
+               {
+                  iMask |= 1 << iField;
+                  System.arraycopy(this.next, iOffset, this.delta, iPos, iLength);
+                  iPos += iLength;
+                  break;
+               }
+            }
+         }
+         this.delta[8] = (byte)(iMask >> 8);
+         this.delta[9] = (byte)iMask;
+         this.iSize = iPos;
+         System.arraycopy(this.next, 0, this.state, 0, PLAY_GAME_SIZE);
+      }
+      /**
+      * apply - rebuild the full play message from a received delta and the
+      * last state, which it then becomes. A malformed delta changes nothing
+      * @param buffer
+      * @param iSize
+      * @return boolean false if the delta is malformed
+      */
+      public boolean apply(byte[] buffer, int iSize)
+      {
+         if (iSize < PLAY_DELTA_HEADER_SIZE || (buffer[4] & 0xFF) != GAME_INDICATOR_PLAY_DELTA)
+         {
+            return false;
+         }
+         System.arraycopy(this.state, 0, this.next, 0, PLAY_GAME_SIZE);
+         System.arraycopy(buffer, 0, this.next, 0, 7);
+         this.next[4] = (byte)GAME_INDICATOR_PLAY_GAME;
+         this.next[7] = 0;
+         int iMask = ((buffer[8] & 0xFF) << 8) | (buffer[9] & 0xFF);
+         int iPos = PLAY_DELTA_HEADER_SIZE;
+         for (int iField = 0; iField < PLAY_DELTA_OFFSETS.length; iField++)
+         {
+            if ((iMask & (1 << iField)) != 0)
+            {
+               int iLength = PLAY_DELTA_LENGTHS[iField];
+               if (iPos + iLength > iSize)
+               {
+                  return false;
+               }
+               System.arraycopy(buffer, iPos, this.next, PLAY_DELTA_OFFSETS[iField], iLength);
+               iPos += iLength;
+            }
+         }
+         if (iPos != iSize || (iMask >> PLAY_DELTA_OFFSETS.length) != 0)
+         {
+            return false;
+         }
+         System.arraycopy(this.next, 0, this.state, 0, PLAY_GAME_SIZE);
+         return true;
+      }
+      /**
+      * getState - copy of the last full Server Play Game PDU
+      * @param none
+      * @return byte[]
+      */
+      public byte[] getState()
+      {
+         byte[] copy = new byte[PLAY_GAME_SIZE];
+         System.arraycopy(this.state, 0, copy, 0, PLAY_GAME_SIZE);
+         return copy;
+      }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return this.iSize;
+      }
+
+      /**
+      * encodeInto - write the delta from the last update at the buffer's
+      * position, which must have encodedSize() bytes remaining
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         dst.put(this.delta, 0, this.iSize);
+      }
+   }
+
    /**
    * ConnectionMessage class used to store the Connection Message PDU
    *
    */
-   public class ConnectionMessage
+   public class ConnectionMessage implements EncodableMessage
    {
       /* member variables */
       private int iVersion;
@@ -1684,6 +2070,166 @@ public class MessageParser {
       {
          return iConnectionCode;
       }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         return 8;
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         PduCodec.Connection.encode(dst, this.iVersion, this.iTypeCode, this.iConnectionCode);
+      }
+   }
+
+   /**
+   * EnvelopeMessage class used to pack several PDUs into one Envelope Message PDU
+   *
+   *  The envelope is the version, the ENVELOPE type indicator, the number of
+   *  inner messages and two reserved bytes, followed by each inner PDU with
+   *  its length byte in front of it. A message is encoded into the envelope
+   *  when it is added, so the caller may reuse it right away. An envelope
+   *  holding a single message encodes as just that message, a lone response
+   *  costs nothing extra. Envelopes are only sent once both sides agreed to
+   *  FEATURE_ENVELOPE in the version handshake
+   *
+   */
+   public class EnvelopeMessage implements EncodableMessage
+   {
+      /* member variables */
+      private int iVersion;
+      private int iMaxSize;
+      private int iCount;
+      /* length byte and PDU of every message added since clear */
+      private final ByteBuffer inner;
+      /**
+      * Constructor
+      * @param version
+      * @param maxsize largest frame the transport can carry, the envelope
+      * never encodes to more than this
+      */
+      public EnvelopeMessage(int version, int maxsize)
+      {
+         this.iVersion = 0;
+         if (version >= 0)
+         {
+            this.iVersion = version;
+         }
+         this.iMaxSize = Math.max(maxsize, ENVELOPE_HEADER_SIZE);
+         this.iCount = 0;
+         this.inner = ByteBuffer.allocate(this.iMaxSize + 1);
+      }
+      /**
+      * add - encode a message into the envelope
+      * @param msg
+      * @return boolean false if the envelope has no room left for it
+      */
+      public boolean add(EncodableMessage msg)
+      {
+         int size = msg.encodedSize();
+         if (!fits(size))
+         {
+            return false;
+         }
+         this.inner.put((byte)size);
+         msg.encodeInto(this.inner);
+         this.iCount++;
+         return true;
+      }
+      /**
+      * add - copy an encoded message into the envelope
+      * @param pdu
+      * @param iSize
+      * @return boolean false if the envelope has no room left for it
+      */
+      public boolean add(byte[] pdu, int iSize)
+      {
+         if (!fits(iSize))
+         {
+            return false;
+         }
+         this.inner.put((byte)iSize);
+         this.inner.put(pdu, 0, iSize);
+         this.iCount++;
+         return true;
+      }
+      /* the first message only has to fit on its own, every other one makes this an envelope */
+      private boolean fits(int size)
+      {
+         if (size > 255 || this.iCount == 0xFFFF)
+         {
+            return false;
+         }
+         if (this.iCount == 0)
+         {
+            return size <= this.iMaxSize;
+         }
+         return ENVELOPE_HEADER_SIZE + this.inner.position() + 1 + size <= this.iMaxSize;
+      }
+      /**
+      * getCount - number of messages in the envelope
+      * @param none
+      * @return int
+      */
+      public int getCount()
+      {
+         return iCount;
+      }
+      /**
+      * clear - empty the envelope so it can be filled again
+      * @param none
+      * @return none
+      */
+      public void clear()
+      {
+         this.inner.clear();
+         this.iCount = 0;
+      }
+
+      /**
+      * encodedSize - number of bytes encodeInto will write for this message
+      * @param none
+      * @return int
+      */
+      public int encodedSize()
+      {
+         if (this.iCount <= 1)
+         {
+            return Math.max(this.inner.position() - 1, 0);
+         }
+         return ENVELOPE_HEADER_SIZE + this.inner.position();
+      }
+
+      /**
+      * encodeInto - write the PDU at the buffer's position, which must have
+      * encodedSize() bytes remaining. Nothing is allocated
+      * @param dst
+      * @return none
+      */
+      public void encodeInto(ByteBuffer dst)
+      {
+         if (this.iCount <= 1)
+         {
+            dst.put(this.inner.array(), 1, encodedSize());
+            return;
+         }
+         dst.putShort((short)this.iVersion);
+         dst.putShort((short)TYPE_INDICATOR_ENVELOPE);
+         dst.putShort((short)this.iCount);
+         dst.putShort((short)0);
+         dst.put(this.inner.array(), 0, this.inner.position());
+      }
    }
        
    /**
@@ -1699,8 +2245,8 @@ public class MessageParser {
       /* make sure the mesage is the proper size */
 		if (iSize >= 2)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
+         /* every PDU starts with the version, see PduCodec */
+			version = PduCodec.Version.version(buffer, 0);
 		}
 		return version;
 	}
@@ -1718,8 +2264,8 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize >= 4)
 		{
-         /* get the data from the byte array */
-			Indicator = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
+         /* every PDU has the type indicator after the version */
+			Indicator = PduCodec.Version.typeCode(buffer, 0);
 			return Indicator;
 		}
       return Indicator;  
@@ -1739,24 +2285,19 @@ public class MessageParser {
 		int verType = NOT_SET;
 		short minorversion = -1;
 		long bankamount = -1;
+		int features = 0;
       /* make sure the message is the proper size */
 		if (iSize == 12)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF ); //FFFF
-			indicator = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF)); //FFFF
-			verType = ((int)(buffer[4] & 0xFF));
-			minorversion = (short)(buffer[5] & 0xFF);
-			short byte1 = (short)(buffer[8] & 0xFF);
-			short byte2 = (short)(buffer[9] & 0xFF);
-			short byte3 = (short)(buffer[10] & 0xFF);
-			short byte4 = (short)(buffer[11] & 0xFF);
-			bankamount = (long)(((long)(byte1 << 24) |
-							(long)(byte2 << 16) |
-							(long)(byte3 << 8) |
-							(long)byte4) & 0xFFFFFFFF);
+         /* get the data from the byte array, the layout is in PduCodec.Version */
+			version = PduCodec.Version.version(buffer, 0);
+			indicator = PduCodec.Version.typeCode(buffer, 0);
+			verType = PduCodec.Version.versionType(buffer, 0);
+			minorversion = (short)PduCodec.Version.minorVersion(buffer, 0);
+			features = PduCodec.Version.features(buffer, 0);
+			bankamount = PduCodec.Version.bankAmount(buffer, 0);
 		}
-		VersionMessage message = new VersionMessage(version, indicator, verType, minorversion, bankamount);
+		VersionMessage message = new VersionMessage(version, indicator, verType, minorversion, bankamount, features);
 		return message;
 	}
 	
@@ -1768,20 +2309,9 @@ public class MessageParser {
    */
 	public byte[] CreateVersionMessage(VersionMessage message)
 	{
-		byte[] buffer = new byte[12];
-      /* store the Version message into the byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getVersionType() & 0xFF);
-		buffer[5] = (byte)(message.getMinorVersion() & 0xFF);
-		buffer[6] = 0;
-		buffer[7] = 0;
-		buffer[8] = (byte)((message.getBankAmount() & 0xFF000000) >> 24);
-		buffer[9] = (byte)((message.getBankAmount() & 0xFF0000) >> 16);
-		buffer[10] = (byte)((message.getBankAmount() & 0xFF00) >> 8);
-		buffer[11] = (byte)(message.getBankAmount() & 0xFF);
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in VersionMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 	
@@ -1798,8 +2328,8 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize >= 5)
 		{
-         /* get the data from the byte array */
-			indicator = ((short)(buffer[4] & 0xFF));
+         /* every game PDU has the game indicator after the type */
+			indicator = PduCodec.ClientGetGame.gameIndicator(buffer, 0);
 		}
 		return indicator;
 	}
@@ -1819,10 +2349,10 @@ public class MessageParser {
       /* make sure the message is the proper size */
       if (iSize == 8)
       {
-         /* get the data from the byte array */
-         version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-         typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-         gameindicator = ((int)(buffer[4] & 0xFF));
+         /* get the data from the byte array, the layout is in PduCodec.ClientGetGame */
+         version = PduCodec.ClientGetGame.version(buffer, 0);
+         typecode = PduCodec.ClientGetGame.typeCode(buffer, 0);
+         gameindicator = PduCodec.ClientGetGame.gameIndicator(buffer, 0);
       }
       
       ClientGetGameMessage message = new ClientGetGameMessage(version, typecode, gameindicator);
@@ -1837,17 +2367,10 @@ public class MessageParser {
    */
    public byte[] CreateClientGetGameMessage(ClientGetGameMessage message)
    {
-      byte[] buffer = new byte[8];
-      /* convert the message to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = 0;
-		buffer[6] = 0;
-		buffer[7] = 0;
-		return buffer;
+      byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ClientGetGameMessage.encodeInto */
+      message.encodeInto(ByteBuffer.wrap(buffer));
+      return buffer;
    }
 	
 	/**
@@ -1868,18 +2391,14 @@ public class MessageParser {
       /* make sure the message is the proper size */
     	if ((iSize >= 16) && ((iSize % 4) == 0))
     	{
-         /* get the data from the byte array */
-    		version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		gameindicator = ((int)(buffer[4] & 0xFF));
-            byte byte1 = (byte)(buffer[8] & 0xFF);
-            byte byte2 = (byte)(buffer[9] & 0xFF);
-            byte byte3 = (byte)(buffer[10] & 0xFF);
-            byte byte4 = (byte)(buffer[11] & 0xFF);
-            length = (long)(((long)(byte1 << 24) |
-						    (long)(byte2 << 16) |
-						    (long)(byte3 << 8)  |
-						   (long)(byte4)) & 0xFFFFFFFF);
+         /* get the data from the byte array, the header is the one of PduCodec.ClientGetGame */
+    		version = PduCodec.ClientGetGame.version(buffer, 0);
+    		typecode = PduCodec.ClientGetGame.typeCode(buffer, 0);
+    		gameindicator = PduCodec.ClientGetGame.gameIndicator(buffer, 0);
+            length = ((long)(buffer[8] & 0xFF) << 24) |
+                     ((buffer[9] & 0xFF) << 16) |
+                     ((buffer[10] & 0xFF) << 8) |
+                     (buffer[11] & 0xFF);
             if (length != iSize)
             {
                length = (long)iSize;
@@ -1906,36 +2425,9 @@ public class MessageParser {
    */
 	public byte[] CreateServerGetGameMessage(ServerGetGameMessage message)
 	{
-      /* get the length field of the message */
-		int gameCodeLen = ((int)Math.ceil(message.getGameTypeCodeList().size() / 4.0) * 4);
-		int length = gameCodeLen + 12;
-		long uilength = (long)length;
-		byte[] buffer = new byte[length];
-      /* convert to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = 0;
-		buffer[6] = 0;
-		buffer[7] = 0;
-		buffer[8] = (byte)((uilength & 0xFF000000) >> 24);
-		buffer[9] = (byte)((uilength & 0xFF0000) >> 16);
-		buffer[10] = (byte)((uilength & 0xFF00) >> 8);
-		buffer[11] = (byte)((uilength & 0xFF));
-		for (int iI = 12; iI < uilength; iI++)
-		{
-			if (iI < (12 + message.getGameTypeCodeList().size()))
-			{
-				int gameCode = message.getGameTypeCodeList().get((iI-12)).intValue();
-				buffer[iI] = (byte)((short)gameCode & 0xFF);
-			}
-			else
-			{
-				buffer[iI] = 0;
-			}
-		}
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ServerGetGameMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 	
@@ -1955,11 +2447,11 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize == 8)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		gameindicator = ((short)(buffer[4] & 0xFF));
-    		gamecode = (int)((buffer[5] & 0xFF));
+         /* get the data from the byte array, the layout is in PduCodec.ClientSetGame */
+			version = PduCodec.ClientSetGame.version(buffer, 0);
+    		typecode = PduCodec.ClientSetGame.typeCode(buffer, 0);
+    		gameindicator = PduCodec.ClientSetGame.gameIndicator(buffer, 0);
+    		gamecode = PduCodec.ClientSetGame.gameTypeCode(buffer, 0);
 		}
 		
 		ClientSetGameMessage message = new ClientSetGameMessage(version, typecode, gameindicator, gamecode);
@@ -1974,17 +2466,9 @@ public class MessageParser {
    */
 	public byte[] CreateClientSetGameMessage(ClientSetGameMessage message)
 	{
-		byte[] buffer = new byte[8];
-      /* convert to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = (byte)(message.getGameTypeCode() & 0xFF);
-		buffer[6] = 0;
-		buffer[7] = 0;
-		
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ClientSetGameMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
     
@@ -2005,12 +2489,12 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize == 8)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		gameindicator = ((int)(buffer[4] & 0xFF));
-    		gamecode = ((int)(buffer[5] & 0xFF));
-    		gameresponse = ((int)(buffer[6] & 0xFF));
+         /* get the data from the byte array, the layout is in PduCodec.ServerSetGame */
+			version = PduCodec.ServerSetGame.version(buffer, 0);
+    		typecode = PduCodec.ServerSetGame.typeCode(buffer, 0);
+    		gameindicator = PduCodec.ServerSetGame.gameIndicator(buffer, 0);
+    		gamecode = PduCodec.ServerSetGame.gameTypeCode(buffer, 0);
+    		gameresponse = PduCodec.ServerSetGame.gameTypeResponse(buffer, 0);
 		}
 		
 		ServerSetGameMessage message = new ServerSetGameMessage(version, typecode, gameindicator, gamecode, gameresponse);
@@ -2025,17 +2509,9 @@ public class MessageParser {
    */
 	public byte[] CreateServerSetGameMessage(ServerSetGameMessage message)
 	{
-		byte[] buffer = new byte[8];
-      /* convert message to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = (byte)(message.getGameTypeCode() & 0xFF);
-		buffer[6] = (byte)(message.getGameTypeResponse() & 0xFF);
-		buffer[7] = 0;
-		
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ServerSetGameMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 	
@@ -2057,16 +2533,13 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize == 12)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		gameindicator = ((int)(buffer[4] & 0xFF));
-    		gamecode = ((int)(buffer[5] & 0xFF));
-    		gamerequest = ((int)(buffer[6] & 0xFF));
-    		betamount = (long)((long)(0xff & buffer[8]) << 24 |
-    					(long)(0xff & buffer[9]) << 16 |
-    					(long)(0xff & buffer[10]) << 8 |
-    					(long)(0xff & buffer[11]) << 0);
+         /* get the data from the byte array, the layout is in PduCodec.ClientPlayGame */
+			version = PduCodec.ClientPlayGame.version(buffer, 0);
+    		typecode = PduCodec.ClientPlayGame.typeCode(buffer, 0);
+    		gameindicator = PduCodec.ClientPlayGame.gameIndicator(buffer, 0);
+    		gamecode = PduCodec.ClientPlayGame.gameTypeCode(buffer, 0);
+    		gamerequest = PduCodec.ClientPlayGame.gamePlayRequest(buffer, 0);
+    		betamount = PduCodec.ClientPlayGame.betAmount(buffer, 0);
 		}
 		
 		ClientPlayGameMessage message = new ClientPlayGameMessage(version, typecode, gameindicator, gamecode, gamerequest, betamount);
@@ -2081,21 +2554,9 @@ public class MessageParser {
    */
 	public byte[] CreateClientPlayGameMessage(ClientPlayGameMessage message)
 	{
-		byte[] buffer = new byte[12];
-      /* convert message to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = (byte)(message.getGameTypeCode() & 0xFF);
-		buffer[6] = (byte)(message.getGamePlayRequest() & 0xFF);
-		buffer[7] = 0;
-		buffer[8] = (byte)((message.getBetAmount() & 0xFF000000) >> 24);
-		buffer[9] = (byte)((message.getBetAmount() & 0xFF0000) >> 16);
-		buffer[10] = (byte)((message.getBetAmount() & 0xFF00) >> 8);
-		buffer[11] = (byte)(message.getBetAmount() & 0xFF);
-		
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ClientPlayGameMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 	
@@ -2118,76 +2579,38 @@ public class MessageParser {
 		long potsize = -1;
 		long betamount = -1;
 		long bankamount = -1;
-		int suite = 0;
-		int value = 0;
-		Card p1 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card p2 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card d1 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card d2 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card f1 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card f2 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card f3 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card t1 = new Card(Card.NOT_SET, Card.NOT_SET);
-		Card r1 = new Card(Card.NOT_SET, Card.NOT_SET);
+		Card p1 = Card.NOT_SET_CARD;
+		Card p2 = Card.NOT_SET_CARD;
+		Card d1 = Card.NOT_SET_CARD;
+		Card d2 = Card.NOT_SET_CARD;
+		Card f1 = Card.NOT_SET_CARD;
+		Card f2 = Card.NOT_SET_CARD;
+		Card f3 = Card.NOT_SET_CARD;
+		Card t1 = Card.NOT_SET_CARD;
+		Card r1 = Card.NOT_SET_CARD;
       /* make sure the message is the proper size */
 		if (iSize == 32)
 		{
-         /* convert the byte array to the data */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		gameindicator = ((int)(buffer[4] & 0xFF));
-    		gamecode = ((int)(buffer[5] & 0xFF));
-    		gameresponse = ((int)(buffer[6] & 0xFF));
-    		ante = (int)(((buffer[8] << 8) | buffer[9]) & 0xFFFF);
-    		suite = ((int)((buffer[10] & 0xF0) >> 4));
-    		p1.setCardSuite(suite);
-    		value = ((int)(buffer[10] & 0x0F));
-    		p1.setCardValue(value);
-    		suite = ((int)((buffer[11] & 0xF0) >> 4));
-    		p2.setCardSuite(suite);
-    		value = ((int)(buffer[11] & 0x0F));
-    		p2.setCardValue(value);
-    		suite = ((int)((buffer[12] & 0xF0) >> 4));
-    		d1.setCardSuite(suite);
-    		value = ((int)(buffer[12] & 0x0F));
-    		d1.setCardValue(value);
-    		suite = ((int)((buffer[13] & 0xF0) >> 4));
-    		d2.setCardSuite(suite);
-    		value = ((int)(buffer[13] & 0x0F));
-    		d2.setCardValue(value);
-    		suite = ((int)((buffer[14] & 0xF0) >> 4));
-    		f1.setCardSuite(suite);
-    		value = ((int)(buffer[14] & 0x0F));
-    		f1.setCardValue(value);
-    		suite = ((int)((buffer[15] & 0xF0) >> 4));
-    		f2.setCardSuite(suite);
-    		value = ((int)(buffer[15] & 0x0F));
-    		f2.setCardValue(value);
-    		suite = ((int)((buffer[16] & 0xF0) >> 4));
-    		f3.setCardSuite(suite);
-    		value = ((int)(buffer[16] & 0x0F));
-    		f3.setCardValue(value);
-    		suite = ((int)((buffer[17] & 0xF0) >> 4));
-    		t1.setCardSuite(suite);
-    		value = ((int)(buffer[17] & 0x0F));
-    		t1.setCardValue(value);
-    		suite = ((int)((buffer[18] & 0xF0) >> 4));
-    		r1.setCardSuite(suite);
-    		value = ((int)(buffer[18] & 0x0F));
-    		r1.setCardValue(value);
-    		winner = (int)((buffer[19] & 0xF0) >> 4);
-    		potsize = ((long)(0xff & buffer[20]) << 24 |
-    				(long)(0xff & buffer[21]) << 16 |
-    				(long)(0xff & buffer[22]) << 8 |
-    				(long)(0xff & buffer[23]) << 0);
-    		betamount = ((long)(0xff & buffer[24]) << 24 |
-    				(long)(0xff & buffer[25]) << 16 |
-    				(long)(0xff & buffer[26]) << 8 |
-    				(long)(0xff & buffer[27]) << 0);
-    		bankamount = ((long)(0xff & buffer[28]) << 24 |
-    				(long)(0xff & buffer[29]) << 16 |
-    				(long)(0xff & buffer[30]) << 8 |
-    				(long)(0xff & buffer[31]) << 0);
+         /* convert the byte array to the data, the layout is in PduCodec.ServerPlayGame */
+			version = PduCodec.ServerPlayGame.version(buffer, 0);
+    		typecode = PduCodec.ServerPlayGame.typeCode(buffer, 0);
+    		gameindicator = PduCodec.ServerPlayGame.gameIndicator(buffer, 0);
+    		gamecode = PduCodec.ServerPlayGame.gameTypeCode(buffer, 0);
+    		gameresponse = PduCodec.ServerPlayGame.gamePlayResponse(buffer, 0);
+    		ante = PduCodec.ServerPlayGame.ante(buffer, 0);
+    		p1 = Card.of(PduCodec.ServerPlayGame.playerCard1(buffer, 0));
+    		p2 = Card.of(PduCodec.ServerPlayGame.playerCard2(buffer, 0));
+    		d1 = Card.of(PduCodec.ServerPlayGame.dealerCard1(buffer, 0));
+    		d2 = Card.of(PduCodec.ServerPlayGame.dealerCard2(buffer, 0));
+    		f1 = Card.of(PduCodec.ServerPlayGame.flopCard1(buffer, 0));
+    		f2 = Card.of(PduCodec.ServerPlayGame.flopCard2(buffer, 0));
+    		f3 = Card.of(PduCodec.ServerPlayGame.flopCard3(buffer, 0));
+    		t1 = Card.of(PduCodec.ServerPlayGame.turnCard(buffer, 0));
+    		r1 = Card.of(PduCodec.ServerPlayGame.riverCard(buffer, 0));
+    		winner = PduCodec.ServerPlayGame.winner(buffer, 0);
+    		potsize = PduCodec.ServerPlayGame.potSize(buffer, 0);
+    		betamount = PduCodec.ServerPlayGame.betAmount(buffer, 0);
+    		bankamount = PduCodec.ServerPlayGame.bankAmount(buffer, 0);
 
 		}
 		
@@ -2204,41 +2627,9 @@ public class MessageParser {
    */
 	public byte[] CreateServerPlayGameMessage(ServerPlayGameMessage message)
 	{
-		byte[] buffer = new byte[32];
-      /* convert message to the byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getGameIndicator() & 0xFF);
-		buffer[5] = (byte)(message.getGameTypeCode() & 0xFF);
-		buffer[6] = (byte)(message.getGamePlayResponse() & 0xFF);
-		buffer[7] = 0;
-		buffer[8] = (byte)((message.getAnte() & 0xFF00) >> 8);
-		buffer[9] = (byte)(message.getAnte() & 0xFF);
-		buffer[10] = (byte)(((message.getPlayerCard1().getCardSuite() & 0x0F) << 4) | (message.getPlayerCard1().getCardValue() & 0x0F)); 		
-		buffer[11] = (byte)(((message.getPlayerCard2().getCardSuite() & 0x0F) << 4) | (message.getPlayerCard2().getCardValue() & 0x0F));
-		buffer[12] = (byte)(((message.getDealerCard1().getCardSuite() & 0x0F) << 4) | (message.getDealerCard1().getCardValue() & 0x0F)); 
-		buffer[13] = (byte)(((message.getDealerCard2().getCardSuite() & 0x0F) << 4) | (message.getDealerCard2().getCardValue() & 0x0F));
-		buffer[14] = (byte)(((message.getFlopCard1().getCardSuite() & 0x0F) << 4) | (message.getFlopCard1().getCardValue() & 0x0F));
-		buffer[15] = (byte)(((message.getFlopCard2().getCardSuite() & 0x0F) << 4) | (message.getFlopCard2().getCardValue() & 0x0F));
-		buffer[16] = (byte)(((message.getFlopCard3().getCardSuite() & 0x0F) << 4) | (message.getFlopCard3().getCardValue() & 0x0F));
-		buffer[17] = (byte)(((message.getTurnCard().getCardSuite() & 0x0F) << 4) | (message.getTurnCard().getCardValue() & 0x0F));
-		buffer[18] = (byte)(((message.getRiverCard().getCardSuite() & 0x0F) << 4) | (message.getRiverCard().getCardValue() & 0x0F));
-		buffer[19] = (byte)(((message.getWinner() & 0x0F) << 4) & 0xF0);
-		buffer[20] = (byte)((message.getPotSize() & 0xFF000000) >> 24);
-		buffer[21] = (byte)((message.getPotSize() & 0xFF0000) >> 16);
-		buffer[22] = (byte)((message.getPotSize() & 0xFF00) >> 8);
-		buffer[23] = (byte)(message.getPotSize() & 0xFF);
-		buffer[24] = (byte)((message.getBetAmount() & 0xFF000000) >> 24);
-		buffer[25] = (byte)((message.getBetAmount() & 0xFF0000) >> 16);
-		buffer[26] = (byte)((message.getBetAmount() & 0xFF00) >> 8);
-		buffer[27] = (byte)(message.getBetAmount() & 0xFF);
-		buffer[28] = (byte)((message.getBankAmount() & 0xFF000000) >> 24);
-		buffer[29] = (byte)((message.getBankAmount() & 0xFF0000) >> 16);
-		buffer[30] = (byte)((message.getBankAmount() & 0xFF00) >> 8);
-		buffer[31] = (byte)(message.getBankAmount() & 0xFF);
-				
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ServerPlayGameMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 	
@@ -2257,10 +2648,10 @@ public class MessageParser {
       /* make sure the message is the proper size */
 		if (iSize == 8)
 		{
-         /* get the data from the byte array */
-			version = (int)(((buffer[0] << 8) | buffer[1]) & 0xFFFF );
-    		typecode = ((int)(((buffer[2] << 8) | buffer[3]) & 0xFFFF));
-    		concode = (int)((buffer[4] & 0xFF));
+         /* get the data from the byte array, the layout is in PduCodec.Connection */
+			version = PduCodec.Connection.version(buffer, 0);
+    		typecode = PduCodec.Connection.typeCode(buffer, 0);
+    		concode = PduCodec.Connection.connectionCode(buffer, 0);
 		}
 		
 		ConnectionMessage message = new ConnectionMessage(version, typecode, concode);
@@ -2275,17 +2666,9 @@ public class MessageParser {
    */
 	public byte[] CreateConnectionMessage(ConnectionMessage message)
 	{
-		byte[] buffer = new byte[8];
-      /* convert the message to a byte array */
-		buffer[0] = (byte)((message.getVersion() & 0xFF00) >> 8);
-		buffer[1] = (byte)(message.getVersion() & 0xFF);
-		buffer[2] = (byte)((message.getTypeCode() & 0xFF00) >> 8);
-		buffer[3] = (byte)(message.getTypeCode() & 0xFF);
-		buffer[4] = (byte)(message.getConnectionCode() & 0xFF);
-		buffer[5] = 0;
-		buffer[6] = 0;
-		buffer[7] = 0;
-		
+		byte[] buffer = new byte[message.encodedSize()];
+      /* the byte layout is in ConnectionMessage.encodeInto */
+		message.encodeInto(ByteBuffer.wrap(buffer));
 		return buffer;
 	}
 
@@ -0,0 +1,610 @@
+package common;
+
+import java.nio.ByteBuffer;
+import common.card_game.Card;
+
+/**
+ *  The MessageView Class
+ *
+ *  A MessageView is a reusable, read only window over a received PDU. wrap()
+ *  only records where the bytes are, every getter reads its field straight from
+ *  them, so decoding a message allocates nothing. A view is only valid until
+ *  the buffer it wraps is reused for the next message.
+ *
+ *  The base class reads the common header with the same rules as
+ *  MessageParser.GetVersion, GetTypeIndicator and GetGameIndicator. The nested
+ *  classes read one PDU each and return what the matching MessageParser.Get*
+ *  method would put in its message object: every field is NOT_SET (0) when the
+ *  size is wrong and out of range values are NOT_SET as well. The fixed size
+ *  PDUs are read with the generated PduCodec.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class MessageView {
+	/* largest PDU a length byte can announce */
+	private static final int MAX_PDU_SIZE = 255;
+
+	protected byte[] data;
+	protected int iOffset;
+	protected int iSize;
+	/* copy of a message that came in a direct ByteBuffer */
+	private byte[] copy;
+
+	/**
+	* Constructor - the view is empty until wrap is called
+	*
+	*/
+	public MessageView()
+	{
+		this.data = null;
+		this.iOffset = 0;
+		this.iSize = 0;
+	}
+
+	/**
+	* wrap - point the view at a message
+	* @param buffer
+	* @param iSize number of valid bytes at the start of the buffer
+	* @return none
+	*/
+	public void wrap(byte[] buffer, int iSize)
+	{
+		this.data = buffer;
+		this.iOffset = 0;
+		this.iSize = iSize;
+	}
+
+	/**
+	* wrap - point the view at the bytes between the buffer's position and
+	* limit. The buffer's position is not changed. A direct buffer is copied
+	* into a buffer owned by the view
+	* @param buffer
+	* @return none
+	*/
+	public void wrap(ByteBuffer buffer)
+	{
+		if (buffer.hasArray())
+		{
+			this.data = buffer.array();
+			this.iOffset = buffer.arrayOffset() + buffer.position();
+			this.iSize = buffer.remaining();
+			return;
+		}
+		if (this.copy == null)
+		{
+			this.copy = new byte[MAX_PDU_SIZE];
+		}
+		int size = Math.min(buffer.remaining(), MAX_PDU_SIZE);
+		for (int iI = 0; iI < size; iI++)
+		{
+			this.copy[iI] = buffer.get(buffer.position() + iI);
+		}
+		this.data = this.copy;
+		this.iOffset = 0;
+		this.iSize = size;
+	}
+
+	/**
+	* getSize - get the size of the wrapped message
+	* @param none
+	* @return int
+	*/
+	public int getSize()
+	{
+		return this.iSize;
+	}
+
+	/**
+	* getVersion - get the version, -1 if the message is too short
+	* @param none
+	* @return int
+	*/
+	public int getVersion()
+	{
+		return (this.iSize >= 2) ? u16(0) : -1;
+	}
+
+	/**
+	* getTypeCode - get the type indicator, NOT_SET if the message is too short
+	* @param none
+	* @return int
+	*/
+	public int getTypeCode()
+	{
+		return (this.iSize >= 4) ? u16(2) : MessageParser.NOT_SET;
+	}
+
+	/**
+	* getGameIndicator - get the game indicator, NOT_SET if the message is too short
+	* @param none
+	* @return int
+	*/
+	public int getGameIndicator()
+	{
+		return (this.iSize >= 5) ? u8(4) : MessageParser.NOT_SET;
+	}
+
+	/* unsigned big endian reads relative to the start of the message */
+	protected final int u8(int iIndex)
+	{
+		return this.data[this.iOffset + iIndex] & 0xFF;
+	}
+
+	protected final int u16(int iIndex)
+	{
+		return (u8(iIndex) << 8) | u8(iIndex + 1);
+	}
+
+	protected final long u32(int iIndex)
+	{
+		return ((long)u16(iIndex) << 16) | u16(iIndex + 2);
+	}
+
+	/* NOT_SET unless min <= value <= max */
+	protected static int range(int value, int min, int max)
+	{
+		return (value >= min && value <= max) ? value : MessageParser.NOT_SET;
+	}
+
+	/**
+	* Header - the common header of a message decoded once when the view is
+	* wrapped: version, type, game indicator, the play request of a Client
+	* Play Game message, and the kind of message they make, which a receiver
+	* can use as an index to dispatch on. The getters return the decoded
+	* values with the same rules as the base class
+	*
+	*/
+	public static class Header extends MessageView
+	{
+		/** kinds of message, see getKind */
+		public static final int KIND_VERSION = 0;
+		public static final int KIND_GET_GAME = 1;
+		public static final int KIND_SET_GAME = 2;
+		public static final int KIND_PLAY_GAME = 3;
+		/** a game message with any other game indicator */
+		public static final int KIND_GAME = 4;
+		public static final int KIND_CLOSE_CONNECTION = 5;
+		/** any other type, or a message too short to have one */
+		public static final int KIND_OTHER = 6;
+		/** number of kinds */
+		public static final int KINDS = 7;
+
+		private int iVersion;
+		private int iTypeCode;
+		private int iGameIndicator;
+		private int iPlayRequest;
+		private int iKind;
+
+		public void wrap(byte[] buffer, int iSize)
+		{
+			super.wrap(buffer, iSize);
+			decode();
+		}
+
+		public void wrap(ByteBuffer buffer)
+		{
+			super.wrap(buffer);
+			decode();
+		}
+
+		/* read the header fields and work out the kind, the only pass over the header */
+		private void decode()
+		{
+			this.iVersion = super.getVersion();
+			this.iTypeCode = super.getTypeCode();
+			this.iGameIndicator = super.getGameIndicator();
+			this.iPlayRequest = MessageParser.NOT_SET;
+			if (this.iTypeCode == MessageParser.TYPE_INDICATOR_VERSION)
+			{
+				this.iKind = KIND_VERSION;
+			}
+			else if (this.iTypeCode == MessageParser.TYPE_INDICATOR_GAME)
+			{
+				if (this.iGameIndicator == MessageParser.GAME_INDICATOR_GET_GAME)
+				{
+					this.iKind = KIND_GET_GAME;
+				}
+				else if (this.iGameIndicator == MessageParser.GAME_INDICATOR_SET_GAME)
+				{
+					this.iKind = KIND_SET_GAME;
+				}
+				else if (this.iGameIndicator == MessageParser.GAME_INDICATOR_PLAY_GAME)
+				{
+					this.iKind = KIND_PLAY_GAME;
+					/* where a Client Play Game message has its request */
+					if (this.iSize == 12)
+					{
+						this.iPlayRequest = range(u8(6), 1, 6);
+					}
+				}
+				else
+				{
+					this.iKind = KIND_GAME;
+				}
+			}
+			else if (this.iTypeCode == MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION)
+			{
+				this.iKind = KIND_CLOSE_CONNECTION;
+			}
+			else
+			{
+				this.iKind = KIND_OTHER;
+			}
+		}
+
+		public int getVersion()
+		{
+			return this.iVersion;
+		}
+
+		public int getTypeCode()
+		{
+			return this.iTypeCode;
+		}
+
+		public int getGameIndicator()
+		{
+			return this.iGameIndicator;
+		}
+
+		/**
+		* getPlayRequest - the play request of a Client Play Game message,
+		* NOT_SET for any other message
+		* @param none
+		* @return int
+		*/
+		public int getPlayRequest()
+		{
+			return this.iPlayRequest;
+		}
+
+		/**
+		* getKind - one of the KIND_ constants
+		* @param none
+		* @return int
+		*/
+		public int getKind()
+		{
+			return this.iKind;
+		}
+	}
+
+	/**
+	* Fixed - base for the PDUs that have a fixed size. Nothing is read
+	* unless the message has exactly that size
+	*
+	*/
+	public static abstract class Fixed extends MessageView
+	{
+		/**
+		* pduSize - the size a message of this type must have
+		* @param none
+		* @return int
+		*/
+		protected abstract int pduSize();
+
+		/**
+		* isValid - determine whether the message has the size of this PDU
+		* @param none
+		* @return boolean
+		*/
+		public boolean isValid()
+		{
+			return this.iSize == pduSize();
+		}
+
+		/* every fixed PDU starts with the header of PduCodec.Version */
+		public int getVersion()
+		{
+			return isValid() ? PduCodec.Version.version(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public int getTypeCode()
+		{
+			return isValid() ? PduCodec.Version.checkedTypeCode(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public int getGameIndicator()
+		{
+			return isValid() ? PduCodec.ClientGetGame.checkedGameIndicator(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+	}
+
+	/**
+	* Version - view of the Version Message PDU
+	*
+	*/
+	public static class Version extends Fixed
+	{
+		protected int pduSize()
+		{
+			return PduCodec.Version.SIZE;
+		}
+
+		public int getVersionType()
+		{
+			return isValid() ? PduCodec.Version.checkedVersionType(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public short getMinorVersion()
+		{
+			return isValid() ? (short)PduCodec.Version.minorVersion(this.data, this.iOffset) : (short)MessageParser.NOT_SET;
+		}
+
+		public long getBankAmount()
+		{
+			return isValid() ? PduCodec.Version.bankAmount(this.data, this.iOffset) : 0;
+		}
+
+		/* the reserved bytes of older versions, 0 from a peer that has no features */
+		public int getFeatures()
+		{
+			return isValid() ? PduCodec.Version.features(this.data, this.iOffset) : 0;
+		}
+	}
+
+	/**
+	* ClientGetGame - view of the Client Get Game PDU
+	*
+	*/
+	public static class ClientGetGame extends Fixed
+	{
+		protected int pduSize()
+		{
+			return PduCodec.ClientGetGame.SIZE;
+		}
+	}
+
+	/**
+	* ClientSetGame - view of the Client Set Game PDU
+	*
+	*/
+	public static class ClientSetGame extends Fixed
+	{
+		protected int pduSize()
+		{
+			return PduCodec.ClientSetGame.SIZE;
+		}
+
+		public int getGameTypeCode()
+		{
+			return isValid() ? PduCodec.ClientSetGame.checkedGameTypeCode(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+	}
+
+	/**
+	* ServerSetGame - view of the Server Set Game PDU
+	*
+	*/
+	public static class ServerSetGame extends ClientSetGame
+	{
+		public int getGameTypeResponse()
+		{
+			return isValid() ? PduCodec.ServerSetGame.checkedGameTypeResponse(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+	}
+
+	/**
+	* ClientPlayGame - view of the Client Play Game PDU
+	*
+	*/
+	public static class ClientPlayGame extends Fixed
+	{
+		protected int pduSize()
+		{
+			return PduCodec.ClientPlayGame.SIZE;
+		}
+
+		public int getGameTypeCode()
+		{
+			return isValid() ? PduCodec.ClientPlayGame.checkedGameTypeCode(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public int getGamePlayRequest()
+		{
+			return isValid() ? PduCodec.ClientPlayGame.checkedGamePlayRequest(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public long getBetAmount()
+		{
+			return isValid() ? PduCodec.ClientPlayGame.betAmount(this.data, this.iOffset) : 0;
+		}
+	}
+
+	/**
+	* ServerPlayGame - view of the Server Play Game PDU. Cards are returned
+	* packed as in the PDU, suite in the high nibble and value in the low
+	* nibble; see cardSuite, cardValue and toCard
+	*
+	*/
+	public static class ServerPlayGame extends Fixed
+	{
+		/* card slots for getCard, in PDU order */
+		public static final int PLAYER_CARD_1 = 0;
+		public static final int PLAYER_CARD_2 = 1;
+		public static final int DEALER_CARD_1 = 2;
+		public static final int DEALER_CARD_2 = 3;
+		public static final int FLOP_CARD_1 = 4;
+		public static final int FLOP_CARD_2 = 5;
+		public static final int FLOP_CARD_3 = 6;
+		public static final int TURN_CARD = 7;
+		public static final int RIVER_CARD = 8;
+
+		protected int pduSize()
+		{
+			return PduCodec.ServerPlayGame.SIZE;
+		}
+
+		public int getGameTypeCode()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.checkedGameTypeCode(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public int getGamePlayResponse()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.checkedGamePlayResponse(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public int getAnte()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.ante(this.data, this.iOffset) : 0;
+		}
+
+		/**
+		* getCard - get one card packed into an int
+		* @param iSlot PLAYER_CARD_1 to RIVER_CARD
+		* @return int
+		*/
+		public int getCard(int iSlot)
+		{
+			return isValid() ? u8(PduCodec.ServerPlayGame.PLAYER_CARD_1 + iSlot) : MessageParser.NOT_SET;
+		}
+
+		public int getWinner()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.checkedWinner(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+
+		public long getPotSize()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.potSize(this.data, this.iOffset) : 0;
+		}
+
+		public long getBetAmount()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.betAmount(this.data, this.iOffset) : 0;
+		}
+
+		public long getBankAmount()
+		{
+			return isValid() ? PduCodec.ServerPlayGame.bankAmount(this.data, this.iOffset) : 0;
+		}
+	}
+
+	/**
+	* Connection - view of the Connection Message PDU
+	*
+	*/
+	public static class Connection extends Fixed
+	{
+		protected int pduSize()
+		{
+			return PduCodec.Connection.SIZE;
+		}
+
+		public int getConnectionCode()
+		{
+			return isValid() ? PduCodec.Connection.checkedConnectionCode(this.data, this.iOffset) : MessageParser.NOT_SET;
+		}
+	}
+
+	/**
+	* Envelope - view of the Envelope Message PDU. nextMessage copies the
+	* inner messages out one after the other, so each can be handled like a
+	* message that arrived on its own
+	*
+	*/
+	public static class Envelope extends MessageView
+	{
+		/* offset of the next inner message's length byte */
+		private int iNext;
+		/* inner messages not read yet */
+		private int iLeft;
+
+		public void wrap(byte[] buffer, int iSize)
+		{
+			super.wrap(buffer, iSize);
+			rewind();
+		}
+
+		public void wrap(ByteBuffer buffer)
+		{
+			super.wrap(buffer);
+			rewind();
+		}
+
+		private void rewind()
+		{
+			this.iNext = MessageParser.ENVELOPE_HEADER_SIZE;
+			this.iLeft = getCount();
+		}
+
+		/**
+		* isValid - determine whether the message is an envelope
+		* @param none
+		* @return boolean
+		*/
+		public boolean isValid()
+		{
+			return this.iSize >= MessageParser.ENVELOPE_HEADER_SIZE && u16(2) == MessageParser.TYPE_INDICATOR_ENVELOPE;
+		}
+
+		/**
+		* getCount - number of inner messages the envelope announces
+		* @param none
+		* @return int
+		*/
+		public int getCount()
+		{
+			return isValid() ? u16(4) : 0;
+		}
+
+		/**
+		* nextMessage - copy the next inner message to the start of dst
+		* @param dst at least 255 bytes
+		* @return int its length, -1 when there are no more or the rest of
+		* the envelope is cut short
+		*/
+		public int nextMessage(byte[] dst)
+		{
+			if (this.iLeft == 0 || this.iNext >= this.iSize)
+			{
+				return -1;
+			}
+			int length = u8(this.iNext);
+			if (this.iNext + 1 + length > this.iSize)
+			{
+				this.iLeft = 0;
+				return -1;
+			}
+			System.arraycopy(this.data, this.iOffset + this.iNext + 1, dst, 0, length);
+			this.iNext += 1 + length;
+			this.iLeft--;
+			return length;
+		}
+	}
+
+	/**
+	* cardSuite - suite of a packed card, NOT_SET if it is not a valid suite
+	* @param iPacked
+	* @return int
+	*/
+	public static int cardSuite(int iPacked)
+	{
+		int suite = (iPacked >> 4) & 0x0F;
+		return (suite == 1 || suite == 2 || suite == 4 || suite == 8) ? suite : Card.NOT_SET;
+	}
+
+	/**
+	* cardValue - value of a packed card, NOT_SET if it is not a valid value
+	* @param iPacked
+	* @return int
+	*/
+	public static int cardValue(int iPacked)
+	{
+		return range(iPacked & 0x0F, 0, Card.NUM_RANKS);
+	}
+
+	/**
+	* toCard - the shared Card of a packed card
+	* @param iPacked
+	* @return Card
+	*/
+	public static Card toCard(int iPacked)
+	{
+		return Card.of(iPacked);
+	}
+}
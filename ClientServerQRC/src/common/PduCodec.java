@@ -0,0 +1,1531 @@
+package common;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/*
+ * GENERATED by codegen.CodecGenerator from codegen.PduSchema, do not edit.
+ */
+
+/**
+ *  The PduCodec Class
+ *
+ *  Decoders, validators and encoders for the fixed size PDUs. Every
+ *  method is static and works on a byte array and the offset the PDU
+ *  starts at; nothing is allocated. The getters do not look at the size,
+ *  check it (or validate the message) once before reading the fields.
+ *  Multi byte fields are unsigned big endian.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class PduCodec {
+
+	private PduCodec()
+	{
+	}
+
+	/**
+	* Version - the Version Message PDU
+	*
+	*/
+	public static final class Version {
+		public static final int SIZE = 12;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int VERSION_TYPE = 4;
+		public static final int MINOR_VERSION = 5;
+		public static final int FEATURES = 6;
+		public static final int BANK_AMOUNT = 8;
+
+		private Version()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* versionType - version indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int versionType(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedVersionType - version indicator, NOT_SET unless 1 to 4
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedVersionType(byte[] b, int off)
+		{
+			int value = versionType(b, off);
+			return (value >= 1 && value <= 4) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* minorVersion - minor version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int minorVersion(byte[] b, int off)
+		{
+			return (b[off + 5] & 0xFF);
+		}
+
+		/**
+		* features - feature bits, reserved before features were added
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int features(byte[] b, int off)
+		{
+			return ((b[off + 6] & 0xFF) << 8) | (b[off + 7] & 0xFF);
+		}
+
+		/**
+		* bankAmount - bank amount
+		* @param b
+		* @param off start of the PDU
+		* @return long
+		*/
+		public static long bankAmount(byte[] b, int off)
+		{
+			return ((long)(b[off + 8] & 0xFF) << 24) | ((b[off + 9] & 0xFF) << 16) | ((b[off + 10] & 0xFF) << 8) | (b[off + 11] & 0xFF);
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedVersionType(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param versionType
+		* @param minorVersion
+		* @param features
+		* @param bankAmount
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int versionType, int minorVersion, int features, long bankAmount)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)versionType;
+			b[off + 5] = (byte)minorVersion;
+			b[off + 6] = (byte)(features >> 8);
+			b[off + 7] = (byte)features;
+			b[off + 8] = (byte)(bankAmount >> 24);
+			b[off + 9] = (byte)(bankAmount >> 16);
+			b[off + 10] = (byte)(bankAmount >> 8);
+			b[off + 11] = (byte)bankAmount;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param versionType
+		* @param minorVersion
+		* @param features
+		* @param bankAmount
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int versionType, int minorVersion, int features, long bankAmount)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, versionType, minorVersion, features, bankAmount);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)versionType);
+				dst.put((byte)minorVersion);
+				dst.putShort((short)features);
+				dst.putInt((int)bankAmount);
+			}
+		}
+	}
+
+	/**
+	* ClientGetGame - the Client Get Game PDU
+	*
+	*/
+	public static final class ClientGetGame {
+		public static final int SIZE = 8;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int GAME_INDICATOR = 4;
+
+		private ClientGetGame()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameIndicator - game indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameIndicator(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedGameIndicator - game indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameIndicator(byte[] b, int off)
+		{
+			int value = gameIndicator(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameIndicator(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int gameIndicator)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)gameIndicator;
+			b[off + 5] = 0;
+			b[off + 6] = 0;
+			b[off + 7] = 0;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int gameIndicator)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, gameIndicator);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)gameIndicator);
+				dst.put((byte)0);
+				dst.put((byte)0);
+				dst.put((byte)0);
+			}
+		}
+	}
+
+	/**
+	* ClientSetGame - the Client Set Game PDU
+	*
+	*/
+	public static final class ClientSetGame {
+		public static final int SIZE = 8;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int GAME_INDICATOR = 4;
+		public static final int GAME_TYPE_CODE = 5;
+
+		private ClientSetGame()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameIndicator - game indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameIndicator(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedGameIndicator - game indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameIndicator(byte[] b, int off)
+		{
+			int value = gameIndicator(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameTypeCode - game type
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameTypeCode(byte[] b, int off)
+		{
+			return (b[off + 5] & 0xFF);
+		}
+
+		/**
+		* checkedGameTypeCode - game type, NOT_SET unless 1 to 1
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameTypeCode(byte[] b, int off)
+		{
+			int value = gameTypeCode(b, off);
+			return (value >= 1 && value <= 1) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameIndicator(b, off) != MessageParser.NOT_SET
+					&& checkedGameTypeCode(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int gameIndicator, int gameTypeCode)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)gameIndicator;
+			b[off + 5] = (byte)gameTypeCode;
+			b[off + 6] = 0;
+			b[off + 7] = 0;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int gameIndicator, int gameTypeCode)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, gameIndicator, gameTypeCode);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)gameIndicator);
+				dst.put((byte)gameTypeCode);
+				dst.put((byte)0);
+				dst.put((byte)0);
+			}
+		}
+	}
+
+	/**
+	* ServerSetGame - the Server Set Game PDU
+	*
+	*/
+	public static final class ServerSetGame {
+		public static final int SIZE = 8;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int GAME_INDICATOR = 4;
+		public static final int GAME_TYPE_CODE = 5;
+		public static final int GAME_TYPE_RESPONSE = 6;
+
+		private ServerSetGame()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameIndicator - game indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameIndicator(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedGameIndicator - game indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameIndicator(byte[] b, int off)
+		{
+			int value = gameIndicator(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameTypeCode - game type
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameTypeCode(byte[] b, int off)
+		{
+			return (b[off + 5] & 0xFF);
+		}
+
+		/**
+		* checkedGameTypeCode - game type, NOT_SET unless 1 to 1
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameTypeCode(byte[] b, int off)
+		{
+			int value = gameTypeCode(b, off);
+			return (value >= 1 && value <= 1) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameTypeResponse - game type response
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameTypeResponse(byte[] b, int off)
+		{
+			return (b[off + 6] & 0xFF);
+		}
+
+		/**
+		* checkedGameTypeResponse - game type response, NOT_SET unless 1 to 2
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameTypeResponse(byte[] b, int off)
+		{
+			int value = gameTypeResponse(b, off);
+			return (value >= 1 && value <= 2) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameIndicator(b, off) != MessageParser.NOT_SET
+					&& checkedGameTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameTypeResponse(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gameTypeResponse
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int gameIndicator, int gameTypeCode, int gameTypeResponse)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)gameIndicator;
+			b[off + 5] = (byte)gameTypeCode;
+			b[off + 6] = (byte)gameTypeResponse;
+			b[off + 7] = 0;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gameTypeResponse
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int gameIndicator, int gameTypeCode, int gameTypeResponse)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, gameIndicator, gameTypeCode, gameTypeResponse);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)gameIndicator);
+				dst.put((byte)gameTypeCode);
+				dst.put((byte)gameTypeResponse);
+				dst.put((byte)0);
+			}
+		}
+	}
+
+	/**
+	* ClientPlayGame - the Client Play Game PDU
+	*
+	*/
+	public static final class ClientPlayGame {
+		public static final int SIZE = 12;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int GAME_INDICATOR = 4;
+		public static final int GAME_TYPE_CODE = 5;
+		public static final int GAME_PLAY_REQUEST = 6;
+		public static final int BET_AMOUNT = 8;
+
+		private ClientPlayGame()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameIndicator - game indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameIndicator(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedGameIndicator - game indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameIndicator(byte[] b, int off)
+		{
+			int value = gameIndicator(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameTypeCode - game type
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameTypeCode(byte[] b, int off)
+		{
+			return (b[off + 5] & 0xFF);
+		}
+
+		/**
+		* checkedGameTypeCode - game type, NOT_SET unless 1 to 1
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameTypeCode(byte[] b, int off)
+		{
+			int value = gameTypeCode(b, off);
+			return (value >= 1 && value <= 1) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gamePlayRequest - game play request
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gamePlayRequest(byte[] b, int off)
+		{
+			return (b[off + 6] & 0xFF);
+		}
+
+		/**
+		* checkedGamePlayRequest - game play request, NOT_SET unless 1 to 6
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGamePlayRequest(byte[] b, int off)
+		{
+			int value = gamePlayRequest(b, off);
+			return (value >= 1 && value <= 6) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* betAmount - bet amount
+		* @param b
+		* @param off start of the PDU
+		* @return long
+		*/
+		public static long betAmount(byte[] b, int off)
+		{
+			return ((long)(b[off + 8] & 0xFF) << 24) | ((b[off + 9] & 0xFF) << 16) | ((b[off + 10] & 0xFF) << 8) | (b[off + 11] & 0xFF);
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameIndicator(b, off) != MessageParser.NOT_SET
+					&& checkedGameTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGamePlayRequest(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gamePlayRequest
+		* @param betAmount
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int gameIndicator, int gameTypeCode, int gamePlayRequest, long betAmount)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)gameIndicator;
+			b[off + 5] = (byte)gameTypeCode;
+			b[off + 6] = (byte)gamePlayRequest;
+			b[off + 7] = 0;
+			b[off + 8] = (byte)(betAmount >> 24);
+			b[off + 9] = (byte)(betAmount >> 16);
+			b[off + 10] = (byte)(betAmount >> 8);
+			b[off + 11] = (byte)betAmount;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gamePlayRequest
+		* @param betAmount
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int gameIndicator, int gameTypeCode, int gamePlayRequest, long betAmount)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, gameIndicator, gameTypeCode, gamePlayRequest, betAmount);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)gameIndicator);
+				dst.put((byte)gameTypeCode);
+				dst.put((byte)gamePlayRequest);
+				dst.put((byte)0);
+				dst.putInt((int)betAmount);
+			}
+		}
+	}
+
+	/**
+	* ServerPlayGame - the Server Play Game PDU
+	*
+	*/
+	public static final class ServerPlayGame {
+		public static final int SIZE = 32;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int GAME_INDICATOR = 4;
+		public static final int GAME_TYPE_CODE = 5;
+		public static final int GAME_PLAY_RESPONSE = 6;
+		public static final int ANTE = 8;
+		public static final int PLAYER_CARD_1 = 10;
+		public static final int PLAYER_CARD_2 = 11;
+		public static final int DEALER_CARD_1 = 12;
+		public static final int DEALER_CARD_2 = 13;
+		public static final int FLOP_CARD_1 = 14;
+		public static final int FLOP_CARD_2 = 15;
+		public static final int FLOP_CARD_3 = 16;
+		public static final int TURN_CARD = 17;
+		public static final int RIVER_CARD = 18;
+		public static final int WINNER = 19;
+		public static final int POT_SIZE = 20;
+		public static final int BET_AMOUNT = 24;
+		public static final int BANK_AMOUNT = 28;
+
+		private ServerPlayGame()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameIndicator - game indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameIndicator(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedGameIndicator - game indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameIndicator(byte[] b, int off)
+		{
+			int value = gameIndicator(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gameTypeCode - game type
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gameTypeCode(byte[] b, int off)
+		{
+			return (b[off + 5] & 0xFF);
+		}
+
+		/**
+		* checkedGameTypeCode - game type, NOT_SET unless 1 to 1
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGameTypeCode(byte[] b, int off)
+		{
+			int value = gameTypeCode(b, off);
+			return (value >= 1 && value <= 1) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* gamePlayResponse - game play response
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int gamePlayResponse(byte[] b, int off)
+		{
+			return (b[off + 6] & 0xFF);
+		}
+
+		/**
+		* checkedGamePlayResponse - game play response, NOT_SET unless 1 to 10
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedGamePlayResponse(byte[] b, int off)
+		{
+			int value = gamePlayResponse(b, off);
+			return (value >= 1 && value <= 10) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* ante - ante
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int ante(byte[] b, int off)
+		{
+			return ((b[off + 8] & 0xFF) << 8) | (b[off + 9] & 0xFF);
+		}
+
+		/**
+		* playerCard1 - player card 1, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int playerCard1(byte[] b, int off)
+		{
+			return (b[off + 10] & 0xFF);
+		}
+
+		/**
+		* playerCard2 - player card 2, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int playerCard2(byte[] b, int off)
+		{
+			return (b[off + 11] & 0xFF);
+		}
+
+		/**
+		* dealerCard1 - dealer card 1, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int dealerCard1(byte[] b, int off)
+		{
+			return (b[off + 12] & 0xFF);
+		}
+
+		/**
+		* dealerCard2 - dealer card 2, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int dealerCard2(byte[] b, int off)
+		{
+			return (b[off + 13] & 0xFF);
+		}
+
+		/**
+		* flopCard1 - flop card 1, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int flopCard1(byte[] b, int off)
+		{
+			return (b[off + 14] & 0xFF);
+		}
+
+		/**
+		* flopCard2 - flop card 2, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int flopCard2(byte[] b, int off)
+		{
+			return (b[off + 15] & 0xFF);
+		}
+
+		/**
+		* flopCard3 - flop card 3, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int flopCard3(byte[] b, int off)
+		{
+			return (b[off + 16] & 0xFF);
+		}
+
+		/**
+		* turnCard - turn card, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int turnCard(byte[] b, int off)
+		{
+			return (b[off + 17] & 0xFF);
+		}
+
+		/**
+		* riverCard - river card, suite in the high nibble and value in the low nibble
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int riverCard(byte[] b, int off)
+		{
+			return (b[off + 18] & 0xFF);
+		}
+
+		/**
+		* winner - winner
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int winner(byte[] b, int off)
+		{
+			return (b[off + 19] & 0xFF) >> 4;
+		}
+
+		/**
+		* checkedWinner - winner, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedWinner(byte[] b, int off)
+		{
+			int value = winner(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* potSize - pot size
+		* @param b
+		* @param off start of the PDU
+		* @return long
+		*/
+		public static long potSize(byte[] b, int off)
+		{
+			return ((long)(b[off + 20] & 0xFF) << 24) | ((b[off + 21] & 0xFF) << 16) | ((b[off + 22] & 0xFF) << 8) | (b[off + 23] & 0xFF);
+		}
+
+		/**
+		* betAmount - bet amount
+		* @param b
+		* @param off start of the PDU
+		* @return long
+		*/
+		public static long betAmount(byte[] b, int off)
+		{
+			return ((long)(b[off + 24] & 0xFF) << 24) | ((b[off + 25] & 0xFF) << 16) | ((b[off + 26] & 0xFF) << 8) | (b[off + 27] & 0xFF);
+		}
+
+		/**
+		* bankAmount - bank amount
+		* @param b
+		* @param off start of the PDU
+		* @return long
+		*/
+		public static long bankAmount(byte[] b, int off)
+		{
+			return ((long)(b[off + 28] & 0xFF) << 24) | ((b[off + 29] & 0xFF) << 16) | ((b[off + 30] & 0xFF) << 8) | (b[off + 31] & 0xFF);
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGameIndicator(b, off) != MessageParser.NOT_SET
+					&& checkedGameTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedGamePlayResponse(b, off) != MessageParser.NOT_SET
+					&& checkedWinner(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gamePlayResponse
+		* @param ante
+		* @param playerCard1
+		* @param playerCard2
+		* @param dealerCard1
+		* @param dealerCard2
+		* @param flopCard1
+		* @param flopCard2
+		* @param flopCard3
+		* @param turnCard
+		* @param riverCard
+		* @param winner
+		* @param potSize
+		* @param betAmount
+		* @param bankAmount
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int gameIndicator, int gameTypeCode, int gamePlayResponse, int ante, int playerCard1, int playerCard2, int dealerCard1, int dealerCard2, int flopCard1, int flopCard2, int flopCard3, int turnCard, int riverCard, int winner, long potSize, long betAmount, long bankAmount)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)gameIndicator;
+			b[off + 5] = (byte)gameTypeCode;
+			b[off + 6] = (byte)gamePlayResponse;
+			b[off + 7] = 0;
+			b[off + 8] = (byte)(ante >> 8);
+			b[off + 9] = (byte)ante;
+			b[off + 10] = (byte)playerCard1;
+			b[off + 11] = (byte)playerCard2;
+			b[off + 12] = (byte)dealerCard1;
+			b[off + 13] = (byte)dealerCard2;
+			b[off + 14] = (byte)flopCard1;
+			b[off + 15] = (byte)flopCard2;
+			b[off + 16] = (byte)flopCard3;
+			b[off + 17] = (byte)turnCard;
+			b[off + 18] = (byte)riverCard;
+			b[off + 19] = (byte)((winner & 0x0F) << 4);
+			b[off + 20] = (byte)(potSize >> 24);
+			b[off + 21] = (byte)(potSize >> 16);
+			b[off + 22] = (byte)(potSize >> 8);
+			b[off + 23] = (byte)potSize;
+			b[off + 24] = (byte)(betAmount >> 24);
+			b[off + 25] = (byte)(betAmount >> 16);
+			b[off + 26] = (byte)(betAmount >> 8);
+			b[off + 27] = (byte)betAmount;
+			b[off + 28] = (byte)(bankAmount >> 24);
+			b[off + 29] = (byte)(bankAmount >> 16);
+			b[off + 30] = (byte)(bankAmount >> 8);
+			b[off + 31] = (byte)bankAmount;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param gameIndicator
+		* @param gameTypeCode
+		* @param gamePlayResponse
+		* @param ante
+		* @param playerCard1
+		* @param playerCard2
+		* @param dealerCard1
+		* @param dealerCard2
+		* @param flopCard1
+		* @param flopCard2
+		* @param flopCard3
+		* @param turnCard
+		* @param riverCard
+		* @param winner
+		* @param potSize
+		* @param betAmount
+		* @param bankAmount
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int gameIndicator, int gameTypeCode, int gamePlayResponse, int ante, int playerCard1, int playerCard2, int dealerCard1, int dealerCard2, int flopCard1, int flopCard2, int flopCard3, int turnCard, int riverCard, int winner, long potSize, long betAmount, long bankAmount)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, gameIndicator, gameTypeCode, gamePlayResponse, ante, playerCard1, playerCard2, dealerCard1, dealerCard2, flopCard1, flopCard2, flopCard3, turnCard, riverCard, winner, potSize, betAmount, bankAmount);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)gameIndicator);
+				dst.put((byte)gameTypeCode);
+				dst.put((byte)gamePlayResponse);
+				dst.put((byte)0);
+				dst.putShort((short)ante);
+				dst.put((byte)playerCard1);
+				dst.put((byte)playerCard2);
+				dst.put((byte)dealerCard1);
+				dst.put((byte)dealerCard2);
+				dst.put((byte)flopCard1);
+				dst.put((byte)flopCard2);
+				dst.put((byte)flopCard3);
+				dst.put((byte)turnCard);
+				dst.put((byte)riverCard);
+				dst.put((byte)((winner & 0x0F) << 4));
+				dst.putInt((int)potSize);
+				dst.putInt((int)betAmount);
+				dst.putInt((int)bankAmount);
+			}
+		}
+	}
+
+	/**
+	* Connection - the Connection Message PDU
+	*
+	*/
+	public static final class Connection {
+		public static final int SIZE = 8;
+		public static final int VERSION = 0;
+		public static final int TYPE_CODE = 2;
+		public static final int CONNECTION_CODE = 4;
+
+		private Connection()
+		{
+		}
+
+		/**
+		* version - protocol version
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int version(byte[] b, int off)
+		{
+			return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+		}
+
+		/**
+		* typeCode - type indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int typeCode(byte[] b, int off)
+		{
+			return ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		}
+
+		/**
+		* checkedTypeCode - type indicator, NOT_SET unless 1 to 3
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedTypeCode(byte[] b, int off)
+		{
+			int value = typeCode(b, off);
+			return (value >= 1 && value <= 3) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* connectionCode - connection indicator
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int connectionCode(byte[] b, int off)
+		{
+			return (b[off + 4] & 0xFF);
+		}
+
+		/**
+		* checkedConnectionCode - connection indicator, NOT_SET unless 1 to 2
+		* @param b
+		* @param off start of the PDU
+		* @return int
+		*/
+		public static int checkedConnectionCode(byte[] b, int off)
+		{
+			int value = connectionCode(b, off);
+			return (value >= 1 && value <= 2) ? value : MessageParser.NOT_SET;
+		}
+
+		/**
+		* validate - determine whether a message is this PDU: the size is
+		* SIZE and every field with a range is in it
+		* @param b
+		* @param off start of the PDU
+		* @param iSize number of bytes of the message
+		* @return boolean
+		*/
+		public static boolean validate(byte[] b, int off, int iSize)
+		{
+			if (iSize != SIZE)
+			{
+				return false;
+			}
+			return checkedTypeCode(b, off) != MessageParser.NOT_SET
+					&& checkedConnectionCode(b, off) != MessageParser.NOT_SET;
+		}
+
+		/**
+		* encode - write the PDU at off, reserved bytes are 0. Every value
+		* is cut to the width of its field
+		* @param b at least off + SIZE bytes
+		* @param off
+		* @param version
+		* @param typeCode
+		* @param connectionCode
+		* @return none
+		*/
+		public static void encode(byte[] b, int off, int version, int typeCode, int connectionCode)
+		{
+			b[off] = (byte)(version >> 8);
+			b[off + 1] = (byte)version;
+			b[off + 2] = (byte)(typeCode >> 8);
+			b[off + 3] = (byte)typeCode;
+			b[off + 4] = (byte)connectionCode;
+			b[off + 5] = 0;
+			b[off + 6] = 0;
+			b[off + 7] = 0;
+		}
+
+		/**
+		* encode - write the PDU at the buffer's position and move the
+		* position past it
+		* @param dst
+		* @param version
+		* @param typeCode
+		* @param connectionCode
+		* @return none
+		*/
+		public static void encode(ByteBuffer dst, int version, int typeCode, int connectionCode)
+		{
+			if (dst.remaining() < SIZE)
+			{
+				throw new BufferOverflowException();
+			}
+			if (dst.hasArray())
+			{
+				encode(dst.array(), dst.arrayOffset() + dst.position(), version, typeCode, connectionCode);
+				dst.position(dst.position() + SIZE);
+			}
+			else
+			{
+				dst.putShort((short)version);
+				dst.putShort((short)typeCode);
+				dst.put((byte)connectionCode);
+				dst.put((byte)0);
+				dst.put((byte)0);
+				dst.put((byte)0);
+			}
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ *  The SSLContextCache Class
+ *
+ *  One SSLContext per role (server or client) and key store pair, shared by
+ *  the whole process. The context is built the first time it is asked for and
+ *  then handed out as is, so restarting a listener or starting another
+ *  controller in the same JVM neither reloads the key stores nor loses the TLS
+ *  session cache.
+ *
+ *  The key and trust stores are read from the file system when the configured
+ *  name is a file, otherwise from the classpath. When they are files (directly
+ *  or as classpath entries) a background thread checks them for changes and
+ *  builds a new context from them; get() switches to it with a single volatile
+ *  write, so connections already open keep the context they were made with and
+ *  new ones never wait for the reload. A store that cannot be loaded, e.g. one
+ *  that is still being written, leaves the current context in place and is
+ *  tried again on the next check.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class SSLContextCache {
+	public static final String ROLE_SERVER = "server";
+	public static final String ROLE_CLIENT = "client";
+
+	private static final Map<String, SSLContextCache> caches = new HashMap<String, SSLContextCache>();
+	private static ScheduledExecutorService watcher;
+
+	private final String keyStore;
+	private final char[] keyStorePassword;
+	private final String trustStore;
+	private final char[] trustStorePassword;
+	private final File[] watchedFiles;
+	/* modification time and length of each watched file when the context was built */
+	private final long[] stamps;
+	/* stamps of the files that last failed to load, so a bad store is reported once */
+	private long[] failedStamps;
+	private final List<ReloadListener> listeners = new CopyOnWriteArrayList<ReloadListener>();
+	private volatile SSLContext context;
+	private volatile int iSessionCacheSize = -1;
+	private volatile int iSessionTimeout = -1;
+	private volatile long lReloads;
+
+	/**
+	* The ReloadListener Interface
+	*
+	*	Told when the watcher swaps in a new context or fails to build one.
+	*	Called on the watcher thread
+	*
+	*/
+	public interface ReloadListener {
+		void reloaded(SSLContext context);
+
+		void reloadFailed(Exception e);
+	}
+
+	private SSLContextCache(String keyStore, String keyStorePassword, String trustStore, String trustStorePassword)
+	{
+		this.keyStore = keyStore;
+		this.keyStorePassword = keyStorePassword.toCharArray();
+		this.trustStore = trustStore;
+		this.trustStorePassword = trustStorePassword.toCharArray();
+		File key = toFile(keyStore);
+		File trust = toFile(trustStore);
+		if (key != null && trust != null)
+		{
+			this.watchedFiles = new File[] {key, trust};
+		}
+		else if (key != null || trust != null)
+		{
+			this.watchedFiles = new File[] {(key != null) ? key : trust};
+		}
+		else
+		{
+			this.watchedFiles = new File[0];
+		}
+		this.stamps = new long[this.watchedFiles.length * 2];
+	}
+
+	/**
+	* shared - get the process wide cache for a role and key store pair. The
+	* first call for a pair starts watching its files every lWatchMillis
+	* milliseconds; 0 turns the watching off
+	* @param role ROLE_SERVER or ROLE_CLIENT
+	* @param keyStore file name or classpath resource
+	* @param keyStorePassword
+	* @param trustStore file name or classpath resource
+	* @param trustStorePassword
+	* @param lWatchMillis
+	* @return SSLContextCache
+	*/
+	public static synchronized SSLContextCache shared(String role, String keyStore, String keyStorePassword, String trustStore, String trustStorePassword, long lWatchMillis)
+	{
+		String key = role + "|" + keyStore + "|" + trustStore;
+		SSLContextCache cache = caches.get(key);
+		if (cache == null)
+		{
+			cache = new SSLContextCache(keyStore, keyStorePassword, trustStore, trustStorePassword);
+			caches.put(key, cache);
+			if (lWatchMillis > 0 && cache.watchedFiles.length > 0)
+			{
+				cache.watch(lWatchMillis);
+			}
+		}
+		return cache;
+	}
+
+	/**
+	* setSessionCache - size and lifetime of the TLS session cache of every
+	* context this cache builds, applied to the current one as well
+	* @param iSize sessions kept, 0 for no limit
+	* @param iTimeoutSeconds
+	* @return none
+	*/
+	public void setSessionCache(int iSize, int iTimeoutSeconds)
+	{
+		this.iSessionCacheSize = iSize;
+		this.iSessionTimeout = iTimeoutSeconds;
+		SSLContext current = this.context;
+		if (current != null)
+		{
+			applySessionCache(current);
+		}
+	}
+
+	/**
+	* get - get the current context, building it on the first call
+	* @param none
+	* @return SSLContext
+	*/
+	public SSLContext get() throws IOException, GeneralSecurityException
+	{
+		SSLContext current = this.context;
+		if (current != null)
+		{
+			return current;
+		}
+		synchronized (this)
+		{
+			if (this.context == null)
+			{
+				long[] stamps = stampFiles();
+				this.context = build();
+				System.arraycopy(stamps, 0, this.stamps, 0, stamps.length);
+			}
+			return this.context;
+		}
+	}
+
+	/**
+	* getReloads - number of times a changed store was swapped in
+	* @param none
+	* @return long
+	*/
+	public long getReloads()
+	{
+		return this.lReloads;
+	}
+
+	public void addReloadListener(ReloadListener listener)
+	{
+		this.listeners.add(listener);
+	}
+
+	public void removeReloadListener(ReloadListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+	/**
+	* createContext - build a new TLS context from a key store and a trust store,
+	* without caching it
+	* @param keyStore file name or classpath resource
+	* @param keyStorePassword
+	* @param trustStore file name or classpath resource
+	* @param trustStorePassword
+	* @return SSLContext
+	*/
+	public static SSLContext createContext(String keyStore, String keyStorePassword, String trustStore, String trustStorePassword) throws IOException, GeneralSecurityException
+	{
+		return createContext(keyStore, keyStorePassword.toCharArray(), trustStore, trustStorePassword.toCharArray());
+	}
+
+	private static SSLContext createContext(String keyStore, char[] keyStorePassword, String trustStore, char[] trustStorePassword) throws IOException, GeneralSecurityException
+	{
+		/* the trust store decides which peers are accepted */
+		TrustManagerFactory tmFact = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		tmFact.init(loadKeyStore(trustStore, trustStorePassword));
+
+		/* the key store holds our own certificate and key */
+		KeyManagerFactory kmFact = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		kmFact.init(loadKeyStore(keyStore, keyStorePassword), keyStorePassword);
+
+		/* we use the default SecureRandom */
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(kmFact.getKeyManagers(), tmFact.getTrustManagers(), null);
+		return context;
+	}
+
+	private SSLContext build() throws IOException, GeneralSecurityException
+	{
+		SSLContext built = createContext(this.keyStore, this.keyStorePassword, this.trustStore, this.trustStorePassword);
+		applySessionCache(built);
+		return built;
+	}
+
+	private void applySessionCache(SSLContext target)
+	{
+		if (this.iSessionCacheSize >= 0)
+		{
+			target.getServerSessionContext().setSessionCacheSize(this.iSessionCacheSize);
+			target.getClientSessionContext().setSessionCacheSize(this.iSessionCacheSize);
+		}
+		if (this.iSessionTimeout >= 0)
+		{
+			target.getServerSessionContext().setSessionTimeout(this.iSessionTimeout);
+			target.getClientSessionContext().setSessionTimeout(this.iSessionTimeout);
+		}
+	}
+
+	/**
+	* loadKeyStore - load a JKS store from a file, or from the classpath if there
+	* is no such file
+	* @param name
+	* @param password
+	* @return KeyStore
+	*/
+	private static KeyStore loadKeyStore(String name, char[] password) throws IOException, GeneralSecurityException
+	{
+		KeyStore ks = KeyStore.getInstance("jks");
+		File file = new File(name);
+		InputStream stream = file.isFile() ? new FileInputStream(file) : SSLContextCache.class.getClassLoader().getResourceAsStream(name);
+		if (stream == null)
+		{
+			throw new IOException("Key store not found: " + name);
+		}
+		try {
+			ks.load(stream, password);
+		} finally {
+			stream.close();
+		}
+		return ks;
+	}
+
+	/**
+	* toFile - the file behind a store name, null if it is not a plain file
+	* (for example a resource inside a jar), which cannot be watched
+	* @param name
+	* @return File
+	*/
+	private static File toFile(String name)
+	{
+		File file = new File(name);
+		if (file.isFile())
+		{
+			return file;
+		}
+		URL url = SSLContextCache.class.getClassLoader().getResource(name);
+		if (url != null && "file".equals(url.getProtocol()))
+		{
+			try {
+				return new File(url.toURI());
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private long[] stampFiles()
+	{
+		long[] stamps = new long[this.watchedFiles.length * 2];
+		for (int iI = 0; iI < this.watchedFiles.length; iI++)
+		{
+			stamps[2 * iI] = this.watchedFiles[iI].lastModified();
+			stamps[2 * iI + 1] = this.watchedFiles[iI].length();
+		}
+		return stamps;
+	}
+
+	/**
+	* watch - check the store files every lWatchMillis on the shared watcher thread
+	* @param lWatchMillis
+	* @return none
+	*/
+	private void watch(long lWatchMillis)
+	{
+		if (watcher == null)
+		{
+			watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "AGMP-KeyStoreWatcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		watcher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				checkForChanges();
+			}
+		}, lWatchMillis, lWatchMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	* checkForChanges - build and swap in a new context if a store file changed
+	* since the current context was built
+	* @param none
+	* @return none
+	*/
+	private void checkForChanges()
+	{
+		long[] stamps = stampFiles();
+		synchronized (this)
+		{
+			if (this.context == null || Arrays.equals(stamps, this.stamps) || Arrays.equals(stamps, this.failedStamps))
+			{
+				return;
+			}
+		}
+		SSLContext built;
+		try {
+			built = build();
+		} catch (Exception e) {
+			synchronized (this)
+			{
+				this.failedStamps = stamps;
+			}
+			for (ReloadListener listener : this.listeners)
+			{
+				listener.reloadFailed(e);
+			}
+			return;
+		}
+		synchronized (this)
+		{
+			this.context = built;
+			System.arraycopy(stamps, 0, this.stamps, 0, stamps.length);
+			this.lReloads++;
+		}
+		for (ReloadListener listener : this.listeners)
+		{
+			listener.reloaded(built);
+		}
+	}
+}
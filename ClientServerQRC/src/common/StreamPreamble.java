@@ -0,0 +1,92 @@
+package common;
+
+/**
+ *  The StreamPreamble Class
+ *
+ *  The first four bytes a client sends after the TLS handshake select the
+ *  framing used for the rest of the connection. Legacy clients wrap the socket
+ *  in object streams, so their first bytes are the serialization stream header.
+ *  Clients that support raw framing send "AGM" followed by the framing revision
+ *  instead, and the server answers with the preamble it accepted. A server
+ *  offered a revision it does not know answers with the highest one it has, so
+ *  the client reads the revision to use from the answer.
+ *
+ *  A raw framing client that gets the object stream header back is talking to a
+ *  server without raw framing and has to reconnect with object streams.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class StreamPreamble {
+
+	/** number of bytes in a preamble */
+	public static final int LENGTH = 4;
+	/** serialization stream header written by ObjectOutputStream (STREAM_MAGIC, STREAM_VERSION) */
+	public static final byte[] OBJECT_STREAM = {(byte)0xAC, (byte)0xED, 0x00, 0x05};
+	/** raw framing revision 1: one unsigned length byte followed by the PDU */
+	public static final byte[] RAW = {'A', 'G', 'M', 1};
+	/** raw framing revision 2: the length as a varint (see FrameLength) followed by the PDU */
+	public static final byte[] RAW_VARINT = {'A', 'G', 'M', 2};
+
+	private StreamPreamble()
+	{
+	}
+
+	/**
+	* isObjectStream - determine whether the preamble is the object stream header
+	* @param preamble
+	* @return boolean
+	*/
+	public static boolean isObjectStream(byte[] preamble)
+	{
+		return matches(preamble, OBJECT_STREAM);
+	}
+
+	/**
+	* isRaw - determine whether the preamble asks for raw framing revision 1
+	* @param preamble
+	* @return boolean
+	*/
+	public static boolean isRaw(byte[] preamble)
+	{
+		return matches(preamble, RAW);
+	}
+
+	/**
+	* isRawVarint - determine whether the preamble asks for raw framing revision 2
+	* @param preamble
+	* @return boolean
+	*/
+	public static boolean isRawVarint(byte[] preamble)
+	{
+		return matches(preamble, RAW_VARINT);
+	}
+
+	/**
+	* rawRevision - the raw framing revision a preamble asks for
+	* @param preamble
+	* @return int 0 if it is not a raw framing preamble
+	*/
+	public static int rawRevision(byte[] preamble)
+	{
+		if (preamble[0] != RAW[0] || preamble[1] != RAW[1] || preamble[2] != RAW[2] || preamble[3] < 1)
+		{
+			return 0;
+		}
+		return preamble[3];
+	}
+
+	private static boolean matches(byte[] preamble, byte[] expected)
+	{
+		for (int iI = 0; iI < LENGTH; iI++)
+		{
+			if (preamble[iI] != expected[iI])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
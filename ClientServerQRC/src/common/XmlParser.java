@@ -8,8 +8,10 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
@@ -25,17 +27,10 @@ import java.io.InputStream;
  *  
  */
 public class XmlParser {
-	private static Node nNodeServer;
-	private static Node nNodeClient;
-
-   /* used to create a mutex to avoid multiple access */
-	static class theLock extends Object {
-		
-	}
-	
-   /* used to create the mutex to avoid multiple access */
-	static private theLock lockObject = new theLock();
-
+   /* tag values are read once; lookups never block, so session threads
+    * (platform or virtual) can read the configuration concurrently */
+	private final Map<String, String> serverTags = new ConcurrentHashMap<String, String>();
+	private final Map<String, String> clientTags = new ConcurrentHashMap<String, String>();
 
 	/**
    * Constructor - Opens the config file and prepares the parser for both
@@ -53,27 +48,40 @@ public class XmlParser {
 			Document doc = dBuilder.parse(XmlStream);
 			doc.getDocumentElement().normalize();
          /* find the server root of the xml structure */
-			nNodeServer = doc.getElementsByTagName("ServerConfig").item(0);
+			readTags(doc.getElementsByTagName("ServerConfig").item(0), this.serverTags);
          /* find the client root of the xml structure */
-			nNodeClient = doc.getElementsByTagName("ClientConfig").item(0);
+			readTags(doc.getElementsByTagName("ClientConfig").item(0), this.clientTags);
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(1);
 		}
 	}
 	
+   /**
+   * readTags - store the text of every element under the root node
+   * @param nRoot
+   * @param tags
+   * @return none
+   */
+	private static void readTags(Node nRoot, Map<String, String> tags) {
+		NodeList nList = nRoot.getChildNodes();
+		for (int iI = 0; iI < nList.getLength(); iI++)
+		{
+			Node nNode = nList.item(iI);
+			if (nNode.getNodeType() == Node.ELEMENT_NODE && nNode.getFirstChild() != null)
+			{
+				tags.put(nNode.getNodeName(), nNode.getFirstChild().getNodeValue());
+			}
+		}
+	}
+
    /**
    * getClientTagValue - get the value of the client tag that is passed in
    * @param String sTag
    * @return String
    */
 	public String getClientTagValue(String sTag) {
-      /* obtain the mutex and grab the value of the tag */
-		synchronized (lockObject) {
-			Element eElement = (Element) nNodeClient;
-			Node nNode = eElement.getElementsByTagName(sTag).item(0).getChildNodes().item(0);
-			return nNode.getNodeValue();					
-		}
+		return this.clientTags.get(sTag);
 	}
 	/**
    * getServerTagValue - get the value of the server tag that is passed in
@@ -81,12 +89,27 @@ public class XmlParser {
    * @return String
    */
 	public String getServerTagValue(String sTag) {
-      /* obtain the mutex and grab the value of the tag */
-		synchronized (lockObject) {
-			Element eElement = (Element) nNodeServer;
-			Node nNode = eElement.getElementsByTagName(sTag).item(0).getChildNodes().item(0);
-			return nNode.getNodeValue();					
-		}
+		return this.serverTags.get(sTag);
+	}
+	/**
+   * setClientTagValue - override a client tag for this parser, used by tools
+   * that run with a different configuration than Config.xml
+   * @param String sTag
+   * @param String sValue
+   * @return none
+   */
+	public void setClientTagValue(String sTag, String sValue) {
+		this.clientTags.put(sTag, sValue);
+	}
+	/**
+   * setServerTagValue - override a server tag for this parser, used by tools
+   * that run with a different configuration than Config.xml
+   * @param String sTag
+   * @param String sValue
+   * @return none
+   */
+	public void setServerTagValue(String sTag, String sValue) {
+		this.serverTags.put(sTag, sValue);
 	}
 
 }
@@ -1,9 +1,17 @@
 package common.card_game;
 
+import java.util.Arrays;
+
 /**
  *  The Card Class
  *  
- *  This class is used to represent a card in card games
+ *  This class is used to represent a card in card games. A Card cannot be
+ *  changed once it is made, so the 52 cards of a deck and the card that is
+ *  not set are made once (see of) and shared by every hand and message.
+ *
+ *  Code that handles many cards uses packed cards instead: an int with the
+ *  suite in the high nibble and the value in the low nibble, the byte the
+ *  Server Play Game PDU carries; 0 is the card that is not set.
  *
  *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
  *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
@@ -17,9 +25,11 @@ public class Card {
 	public static int NUM_SUITS = 4;	
    
 	/* set the private variables */
-	private int value;
-   private int suite;	
-   private boolean visible;
+	private final int value;
+   private final int suite;	
+   private final int packed;
+   private final int suitValue;
+   private final int rankValue;
    public static int NOT_SET = 0;
    /*
 	 * These are the different possible card suits
@@ -45,80 +55,91 @@ public class Card {
    public static int CARD_QUEEN = 12;
    public static int CARD_KING = 13;
    
+   /* the shared cards by packed card, NOT_SET_CARD where there is no card */
+   private static final Card[] CARDS = new Card[256];
+   /* the card that is not set */
+   public static final Card NOT_SET_CARD = new Card(0, 0);
+   static
+   {
+	   Arrays.fill(CARDS, NOT_SET_CARD);
+	   for (int suite = CLUB; suite <= HEART; suite <<= 1)
+	   {
+		   for (int value = CARD_ACE; value <= CARD_KING; value++)
+		   {
+			   CARDS[pack(suite, value)] = new Card(suite, value);
+		   }
+	   }
+   }
+   
    /**
-   * Constructor - stores the card suit and value
+   * Constructor - stores the card suite and value, use of to get a shared card
    *
    */
    public Card(int suite, int value)
    {
-	   this.suite = 0;
-	   this.value = 0;
       /* make sure the suite is valid */
-	   if (suite == 1 || suite == 2 || suite == 4 || suite == 8)
-	   {
-		   this.suite = suite;
-	   }
+	   this.suite = (suite == 1 || suite == 2 || suite == 4 || suite == 8) ? suite : 0;
       /* make sure the value is valid */
-	   if (value >= 0 && value <= NUM_RANKS)
-	   {
-		   this.value = value;
-	   }	
-		this.visible = true;
+	   this.value = (value >= 0 && value <= NUM_RANKS) ? value : 0;
+	   this.packed = pack(this.suite, this.value);
+	   this.suitValue = (this.suite == 0) ? -1 : Integer.numberOfTrailingZeros(this.suite);
+      /* make sure the ace has the highest value */
+	   this.rankValue = (this.value == 1) ? 12 : (this.value > 0 ? this.value - 2 : -1);
    }
    /**
-   * isVisible - determine whether the card can be seen
-   * @param none
-   * @return boolean
+   * of - the shared card for a packed card
+   * @param iPacked
+   * @return Card NOT_SET_CARD for 0, a new card for a suite or value that is
+   * not set or not valid
    */
-   public boolean isVisible() {
-		return visible;
-	}
-	/**
-   * setVisible - set the visible variable for this class
-   * @param boolean visible
-   * @return note
+   public static Card of(int iPacked)
+   {
+	   Card card = CARDS[iPacked & 0xFF];
+	   if (card == NOT_SET_CARD && iPacked != 0)
+	   {
+		   return new Card((iPacked >> 4) & 0x0F, iPacked & 0x0F);
+	   }
+	   return card;
+   }
+   /**
+   * of - the shared card for a suite and value
+   * @param suite
+   * @param value
+   * @return Card
    */
-	public void setVisible(boolean visible) {
-		this.visible = visible;
-	}
+   public static Card of(int suite, int value)
+   {
+	   return of(pack(suite, value));
+   }
    /**
-   * setCardValue - set the card value
+   * pack - pack a suite and value into a packed card
+   * @param suite
    * @param value
-   * @return none
+   * @return int
    */
-   public void setCardValue(int value)
+   public static int pack(int suite, int value)
    {
-	   this.value = 0;
-      /* make sure it is valid */
-	   if (value >= 0 && value <= NUM_RANKS)
-	   {
-		   this.value = value;
-	   }
+	   return ((suite & 0x0F) << 4) | (value & 0x0F);
    }
    /**
-   * getCardValue - get the value of the card
+   * packed - get the packed card
    * @param none
    * @return int
    */
-   public int getCardValue()
+   public int packed()
    {
-	   return value;      
+	   return packed;
    }
-   
    /**
-   * setCardSuite - set the card suite
-   * @param suite
-   * @return none
+   * getCardValue - get the value of the card
+   * @param none
+   * @return int
    */
-   public void setCardSuite(int suite)
+   public int getCardValue()
    {
-	   this.suite = 0;
-      /* make sure it is valid */
-	   if (suite == 1 || suite == 2 || suite == 4 || suite == 8)
-	   {
-		   this.suite = suite;
-	   }
+	   return value;      
    }
+   
    /**
    * getCardSuite - get the suite of the card
    * @param none
@@ -130,33 +151,23 @@ public class Card {
    }
    
    /**
-   * getSuiteValue - used to compare card suites
+   * getSuiteValue - used to compare card suites, 0 to 3 or -1 if it is not set
    * @param none
    * @return int
    */
    public int getSuitValue()
 	{
-		return (int)(Math.log10(suite) / Math.log10(2.0));
+		return suitValue;
 	}
    
    /**
-   * getRankValue - used to compare card values
+   * getRankValue - used to compare card values, the deuce is 0 and the ace 12
    * @param none
-   * @return int
+   * @return int -1 if it is not set
    */
    public int getRankValue()
 	{
-		int cVal = -1;
-      /* make sure the ace has the highest value */
-		if (value == 1)
-		{
-			cVal = 12;
-		}
-		else if (value > 0)
-		{
-			cVal = value - 2;
-		}
-		return cVal;
+		return rankValue;
 	}
    
    /**
@@ -61,8 +61,17 @@ public class Main {
 			else if (args[0].equalsIgnoreCase("secureServer"))
 			{
 				final LogAndPublish logAndPublish = new LogAndPublish(xmlParser, "server");
-				SecureServerController ssc = new SecureServerController(xmlParser, logAndPublish);
+				final SecureServerController ssc = new SecureServerController(xmlParser, logAndPublish);
 				ssc.start();
+				/* on SIGTERM let the hands in progress finish before the JVM exits */
+				final long drainTimeout = Long.parseLong(xmlParser.getServerTagValue("DRAIN_TIMEOUT"));
+				Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+					public void run() {
+						ssc.drain(drainTimeout);
+						/* the hooks run at once: the drain's own reports must be written before the JVM halts */
+						LogAndPublish.flush();
+					}
+				}, "AGMP-Drain"));
 			}
 			
 		}
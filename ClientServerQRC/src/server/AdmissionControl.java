@@ -0,0 +1,192 @@
+package server;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AdmissionControl decides, right after accept() and before any TLS work, whether
+ * a connection may go on. It caps the number of open connections, the number
+ * still in their handshake and the number from one source address. Every check
+ * is a compare-and-set on a counter, so a flood of connections costs the server
+ * a counter update and a close each instead of a thread and a handshake.
+ *
+ * An admitted connection holds a Ticket. The handshake slot is given back when
+ * the handshake completes or fails, the connection and address slots when the
+ * connection closes. A limit of 0 means no limit.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class AdmissionControl {
+	private final int iMaxSessions;
+	private final int iMaxHandshakes;
+	private final int iMaxPerAddress;
+	private final ServerMetrics metrics;
+	private final AtomicInteger sessions = new AtomicInteger();
+	private final AtomicInteger handshakes = new AtomicInteger();
+	/* open connections per source address; a count of -1 marks an entry being removed */
+	private final ConcurrentHashMap<InetAddress, AtomicInteger> perAddress = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+
+	/**
+	* Constructor
+	* @param iMaxSessions open connections, handshaking or not
+	* @param iMaxHandshakes connections accepted that have not finished the handshake
+	* @param iMaxPerAddress open connections from one source address
+	* @param metrics where shed connections are counted
+	*/
+	AdmissionControl(int iMaxSessions, int iMaxHandshakes, int iMaxPerAddress, ServerMetrics metrics)
+	{
+		this.iMaxSessions = iMaxSessions;
+		this.iMaxHandshakes = iMaxHandshakes;
+		this.iMaxPerAddress = iMaxPerAddress;
+		this.metrics = metrics;
+	}
+
+	/**
+	* admit - take a slot for a newly accepted connection
+	* @param address source address of the connection
+	* @return Ticket null if the connection has to be refused, the reason is counted
+	*/
+	Ticket admit(InetAddress address)
+	{
+		if (!acquire(this.handshakes, this.iMaxHandshakes))
+		{
+			this.metrics.connectionShed(ServerMetrics.SHED_HANDSHAKE_LIMIT);
+			return null;
+		}
+		if (!acquire(this.sessions, this.iMaxSessions))
+		{
+			this.handshakes.decrementAndGet();
+			this.metrics.connectionShed(ServerMetrics.SHED_SESSION_LIMIT);
+			return null;
+		}
+		if (this.iMaxPerAddress > 0 && !acquireAddress(address))
+		{
+			this.handshakes.decrementAndGet();
+			this.sessions.decrementAndGet();
+			this.metrics.connectionShed(ServerMetrics.SHED_ADDRESS_LIMIT);
+			return null;
+		}
+		return new Ticket(address);
+	}
+
+	int getSessions()
+	{
+		return this.sessions.get();
+	}
+
+	int getHandshakes()
+	{
+		return this.handshakes.get();
+	}
+
+	/* increment the counter unless it is at the limit */
+	private static boolean acquire(AtomicInteger counter, int iLimit)
+	{
+		while (true)
+		{
+			int iCurrent = counter.get();
+			if (iLimit > 0 && iCurrent >= iLimit)
+			{
+				return false;
+			}
+			if (counter.compareAndSet(iCurrent, iCurrent + 1))
+			{
+				return true;
+			}
+		}
+	}
+
+	private boolean acquireAddress(InetAddress address)
+	{
+		while (true)
+		{
+			AtomicInteger count = this.perAddress.get(address);
+			if (count == null)
+			{
+				if (this.perAddress.putIfAbsent(address, new AtomicInteger(1)) == null)
+				{
+					return true;
+				}
+				continue;
+			}
+			int iCurrent = count.get();
+			if (iCurrent < 0)
+			{
+				/* the last connection from this address just closed, help remove the entry */
+				this.perAddress.remove(address, count);
+				continue;
+			}
+			if (iCurrent >= this.iMaxPerAddress)
+			{
+				return false;
+			}
+			if (count.compareAndSet(iCurrent, iCurrent + 1))
+			{
+				return true;
+			}
+		}
+	}
+
+	private void releaseAddress(InetAddress address)
+	{
+		AtomicInteger count = this.perAddress.get(address);
+		if (count != null && count.decrementAndGet() == 0 && count.compareAndSet(0, -1))
+		{
+			this.perAddress.remove(address, count);
+		}
+	}
+
+	/**
+	* The Ticket Class
+	*
+	*	The slots held by one admitted connection. Both methods may be called
+	*	any number of times from any thread, the slots are given back once
+	*
+	*/
+	class Ticket {
+		private final InetAddress address;
+		private final AtomicBoolean handshaking = new AtomicBoolean(true);
+		private final AtomicBoolean open = new AtomicBoolean(true);
+
+		private Ticket(InetAddress address)
+		{
+			this.address = address;
+		}
+
+		/**
+		* handshakeDone - give back the handshake slot
+		* @param none
+		* @return none
+		*/
+		void handshakeDone()
+		{
+			if (this.handshaking.compareAndSet(true, false))
+			{
+				AdmissionControl.this.handshakes.decrementAndGet();
+			}
+		}
+
+		/**
+		* release - the connection is closed, give back all its slots
+		* @param none
+		* @return none
+		*/
+		void release()
+		{
+			handshakeDone();
+			if (this.open.compareAndSet(true, false))
+			{
+				AdmissionControl.this.sessions.decrementAndGet();
+				if (AdmissionControl.this.iMaxPerAddress > 0)
+				{
+					releaseAddress(this.address);
+				}
+			}
+		}
+	}
+}
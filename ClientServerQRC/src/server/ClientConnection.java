@@ -0,0 +1,91 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+import common.MessageParser;
+
+/**
+ * ClientConnection is the transport used by a ClientModel to talk to its client.
+ * The DFA in ClientModel only ever sees complete AGMP messages; how they are framed
+ * and carried (a blocking SSLSocket or a selector driven SSLEngine) is up to the
+ * implementation.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public interface ClientConnection {
+
+   /**
+   * getUniqueID - get the identifier of the remote end (address:port)
+   * @param none
+   * @return String
+   */
+   public String getUniqueID();
+
+   /**
+   * writeMessage - frame a message and queue it for the client. The message is
+   * encoded straight into a buffer owned by the connection and sent by the
+   * next flush, so the responses to a batch of requests share one TLS record
+   * @param msg
+   * @return none
+   */
+   public void writeMessage(MessageParser.EncodableMessage msg) throws IOException;
+
+   /**
+   * flush - send the queued messages
+   * @param none
+   * @return none
+   */
+   public void flush() throws IOException;
+
+   /**
+   * startEnvelopes - from now on pack the messages written between two
+   * flushes into Envelope Message PDUs. Called once the client has agreed to
+   * FEATURE_ENVELOPE in the version handshake
+   * @param version protocol version the envelopes carry
+   * @return none
+   */
+   public void startEnvelopes(int version);
+
+   /**
+   * setReadTimeout - set how long a blocking read may wait for the next message
+   * @param timeout in milliseconds
+   * @return none
+   */
+   public void setReadTimeout(int timeout) throws IOException;
+
+   /**
+   * isClosed - determine whether the connection has been closed
+   * @param none
+   * @return boolean
+   */
+   public boolean isClosed();
+
+   /**
+   * close - close the connection
+   * @param none
+   * @return none
+   */
+   public void close() throws IOException;
+
+   /**
+   * abort - cut the connection without waiting on the client, for threads
+   * other than the session's (the timing wheel, the server shutting down).
+   * The session notices on its own thread and ends itself
+   * @param none
+   * @return none
+   */
+   public void abort();
+
+   /**
+   * execute - run a task of the session off the caller's thread: on the
+   * connection's event loop, or, for a blocking connection whose session
+   * thread may be waiting on a read, on a new thread from the factory
+   * @param task
+   * @param threads
+   * @return none
+   */
+   public void execute(Runnable task, ThreadFactory threads);
+}
@@ -1,15 +1,10 @@
 package server;
 
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.IOException;
-import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.Observable;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.net.ssl.SSLSocket;
 import server.card_game.texas_holdem.TexasHoldemModel;
 import common.*;
@@ -25,15 +20,8 @@ import common.*;
  */
 public class ClientModel extends Observable implements Runnable {
 
-	/** For reading input from socket */
-   private InputStream oInputStream;
-   /** For writing output to socket. */
-   private OutputStream oOutputStream;
-   ObjectOutputStream outputStream;
-   ObjectInputStream inputstream;
-   /** Socket object representing client connection */
-
-   private SSLSocket socket;
+   /** Connection to the client, either a blocking socket or a NIO channel */
+   private ClientConnection connection;
    private boolean running;
    private GameState gameState;
     
@@ -51,16 +39,72 @@ public class ClientModel extends Observable implements Runnable {
    private TimeoutTimer timeoutTimer;
    private int m_iGameTypeCode = MessageParser.NOT_SET;
    private ArrayList<Integer> oGameTypeList = null;
+   /* the lobby responses for this version and game list, encoded once and shared by all sessions */
+   private ResponseCache responses = null;
+   /** most messages handled before the responses are flushed */
+   private static final int MAX_PIPELINED_MESSAGES = 64;
+   /* reusable views over the message being handled, see handleMessage */
+   private final MessageView.Header header = new MessageView.Header();
+   private final MessageView.Version versionView = new MessageView.Version();
+   private final MessageView.ClientGetGame getGameView = new MessageView.ClientGetGame();
+   private final MessageView.ClientSetGame setGameView = new MessageView.ClientSetGame();
+   private final MessageView.ClientPlayGame playGameView = new MessageView.ClientPlayGame();
+   private final MessageView.Connection connectionView = new MessageView.Connection();
+   private final MessageView.Envelope envelopeView = new MessageView.Envelope();
+   /* an inner message of an envelope, copied out to be handled on its own */
+   private final byte[] innerBuffer = new byte[255];
+   /* feature bits the server offers in VERSION_ACK */
+   private int m_iFeatures = 0;
+   /* whether the client agreed to envelopes */
+   private boolean m_bEnvelopes = false;
+   /* last play state sent, once the client agreed to play deltas */
+   private MessageParser.PlayDeltaMessage playDelta = null;
+   /* what dispatchMessage does with a message */
+   private static final byte ACTION_NONE = 0;
+   private static final byte ACTION_IGNORE = 1;
+   private static final byte ACTION_CLIENT_VERSION = 2;
+   private static final byte ACTION_NEED_VERSION = 3;
+   private static final byte ACTION_GET_GAME = 4;
+   private static final byte ACTION_SET_GAME = 5;
+   private static final byte ACTION_PLAY_INIT = 6;
+   private static final byte ACTION_PLAY_GAME = 7;
+   private static final byte ACTION_CLOSE_CONNECTION = 8;
+   /** the action for each state and column, the column is the kind of message plus KINDS when its version is not the server's */
+   private static final byte[][] DISPATCH = new byte[GameState.CLOSED + 1][2 * MessageView.Header.KINDS];
+   /** what is logged for the ACTION_IGNORE entries */
+   private static final String[][] IGNORED = new String[GameState.CLOSED + 1][2 * MessageView.Header.KINDS];
+   /** held while a message is handled or the responses flushed, so drain() can write from another thread.
+    *  A lock rather than a monitor, so a virtual thread blocked on the socket while holding it is not pinned */
+   private final ReentrantLock sessionLock = new ReentrantLock();
+   /** set by drain(), the session is closed as soon as no hand is in progress */
+   private volatile boolean draining = false;
+   /* records this session's messages when the server's CAPTURE_FILE is set, null otherwise */
+   private SessionCapture.Session capture = null;
    /**
-   * Constructor class to create the ClientModel Object
+   * Constructor class to create the ClientModel Object for a blocking socket
    *
    */
    public ClientModel(SSLSocket socket, XmlParser xmlParser, LogAndPublish logAndPublish) throws IOException {
-      this.socket = socket;
-      this.uniqueID = "" + socket.getInetAddress() + ":" + socket.getPort();
+      this(new SocketClientConnection(socket), xmlParser, logAndPublish);
+   }
+   /**
+   * Constructor class to create the ClientModel Object on an existing connection
+   *
+   */
+   public ClientModel(ClientConnection connection, XmlParser xmlParser, LogAndPublish logAndPublish) {
+      this(connection, xmlParser, logAndPublish, new GameState());
+   }
+   /**
+   * Constructor class to create the ClientModel Object on an existing connection
+   * with a given GameState, e.g. one counted by a SessionRegistry
+   *
+   */
+   public ClientModel(ClientConnection connection, XmlParser xmlParser, LogAndPublish logAndPublish, GameState gameState) {
+      this.connection = connection;
+      this.uniqueID = connection.getUniqueID();
       this.logAndPublish = logAndPublish;
       this.xmlParser = xmlParser;
-      this.gameState = new GameState();
+      this.gameState = gameState;
       this.gameState.setState(GameState.LISTENING);
       this.messageParser = new MessageParser();
       this.m_iVersion = Integer.parseInt(this.xmlParser.getServerTagValue("VERSION"));
@@ -68,6 +112,14 @@ public class ClientModel extends Observable implements Runnable {
       this.m_lClientBankAmount = (long)Integer.parseInt(this.xmlParser.getServerTagValue("CLIENT_BANK_AMOUNT"));
       this.m_lVersionOpTimer = Integer.parseInt((this.xmlParser.getServerTagValue("VERSION_OPERATION_TIMER")));
       this.m_lGameOpTimer = Integer.parseInt((this.xmlParser.getServerTagValue("GAME_OPERATION_TIMER")));
+      if (Boolean.parseBoolean(this.xmlParser.getServerTagValue("ENVELOPES")))
+      {
+         this.m_iFeatures |= MessageParser.FEATURE_ENVELOPE;
+      }
+      if (Boolean.parseBoolean(this.xmlParser.getServerTagValue("PLAY_DELTAS")))
+      {
+         this.m_iFeatures |= MessageParser.FEATURE_PLAY_DELTA;
+      }
       this.timeoutTimer = new TimeoutTimer(this);
       this.oTHModel = new TexasHoldemModel(this);
       this.m_iGameTypeCode = MessageParser.NOT_SET;
@@ -75,19 +127,18 @@ public class ClientModel extends Observable implements Runnable {
       this.oGameTypeList = new ArrayList<Integer>();
       // store the current typecodes
       oGameTypeList.add(MessageParser.GAME_TYPE_TEXAS_HOLDEM);
-      this.logAndPublish.write(this.uniqueID +": Successfully connected", true, true);
-      running = false;
-      //get I/O from socket
+      this.responses = ResponseCache.get(this.m_iVersion, this.m_iMinorVersion, this.oGameTypeList);
       try {
-         this.oInputStream = socket.getInputStream();
-         this.oOutputStream = socket.getOutputStream();
-         outputStream = new ObjectOutputStream(oOutputStream);
-         inputstream = new ObjectInputStream(oInputStream);
-         running = true; //set status
-      }
-      catch (IOException ioe) {
-         throw ioe;
+         SessionCapture sessionCapture = SessionCapture.forFile(this.xmlParser.getServerTagValue("CAPTURE_FILE"));
+         if (sessionCapture != null)
+         {
+            this.capture = sessionCapture.newSession();
+         }
+      } catch (IOException ioe) {
+         this.logAndPublish.write(this.uniqueID + ": unable to open the capture file, " + ioe, true, false);
       }
+      this.logAndPublish.write(this.uniqueID +": Successfully connected", true, true);
+      running = true; //set status
    }
     
    /**
@@ -137,65 +188,74 @@ public class ClientModel extends Observable implements Runnable {
    }
 	
    /**
-   * stopClient - closes the socket connection
+   * getConnection - get the connection to the client
+   * @param none
+   * @return ClientConnection
+   */
+   public ClientConnection getConnection()
+   {
+      return connection;
+   }
+   /**
+   * getGameState - get the state of the DFA for this client
+   * @param none
+   * @return GameState
+   */
+   public GameState getGameState()
+   {
+      return this.gameState;
+   }
+   /**
+   * isClosed - determine whether the DFA has reached the closed state
+   * @param none
+   * @return boolean
+   */
+   public boolean isClosed()
+   {
+      return this.gameState.getState() == GameState.CLOSED;
+   }
+	
+   /**
+   * stopClient - cuts the connection from another thread (the timing wheel,
+   * the server shutting down) without waiting on the client; the session
+   * ends on its own thread or event loop
    * @param none
    * @return none
    */
    public void stopClient()
    {
-      try {
-         this.logAndPublish.write(this.uniqueID + ": Stopping Client", true, false);
-         this.gameState.setState(GameState.CLOSED);
-         this.socket.close();
-      }catch(IOException ioe){ };
+      this.logAndPublish.write(this.uniqueID + ": Stopping Client", true, false);
+      this.gameState.setState(GameState.CLOSED);
+      this.connection.abort();
    }
    /**
-   * run - main routine for the thread
+   * run - main routine for the thread when the client is on a blocking socket
    * @param none
    * @return none
    */
    public void run() 
    {
+      SocketClientConnection socketConnection = (SocketClientConnection)this.connection;
       try
       {
-         // force the client to send version info by setting timeouts
-         this.timeoutTimer.schedule(this.m_lVersionOpTimer);
-         this.socket.setSoTimeout((int) (this.m_lVersionOpTimer+2000));
+         beginSession();
          
          /* DFA STATE MANAGEMENT */
-         while (running && !this.socket.isClosed() && this.gameState.getState() != GameState.CLOSED)
+         while (running && !this.connection.isClosed() && this.gameState.getState() != GameState.CLOSED)
          {
-            // get the input from the client
-            byte iByteCount = inputstream.readByte();
-            byte [] inputBuffer = new byte[iByteCount];
-            inputstream.readFully(inputBuffer); 
-        		
-            if (this.gameState.getState() == GameState.LISTENING)
+            // handle every message the client has already sent, then send all the responses at once
+            int iBatch = 0;
+            do
             {
-               // need to validate the client
-               ListeningState(inputBuffer, iByteCount);
-            }
-            else if (this.gameState.getState() == GameState.AUTHENTICATE)
-            {
-               // Connection Negotiation state
-               // Client has authenticated and needs to get the games
-               AuthenticateState(inputBuffer, iByteCount);
-            }
-            else if (this.gameState.getState() == GameState.GAMELIST)
-            {
-               // Game List state
-               // Client has gotten the games and needs to select one
-               GameListState(inputBuffer, iByteCount);
-            }
-            else if (this.gameState.getState() == GameState.GAMESET)
-            {
-               // Game Set state
-               GameSetState(inputBuffer, iByteCount);
-            }        		
-            else if (this.gameState.getState() == GameState.GAMEPLAY)
-            {
-               // Game Play state
-               GamePlayState(inputBuffer, iByteCount);
+               int iByteCount = socketConnection.readMessage();
+               handleMessage(socketConnection.getMessage(), iByteCount);
+               iBatch++;
+            } while (iBatch < MAX_PIPELINED_MESSAGES && this.gameState.getState() != GameState.CLOSED && socketConnection.hasBufferedInput());
+            this.sessionLock.lock();
+            try {
+               this.connection.flush();
+            } finally {
+               this.sessionLock.unlock();
             }
          }
          running = false;
@@ -204,12 +264,316 @@ public class ClientModel extends Observable implements Runnable {
          running = false;
          this.logAndPublish.write(this.uniqueID + ": " + ioe, true, false);
       }
-        
+      endSession();
+   }
+
+   /**
+   * beginSession - force the client to send version info by setting timeouts
+   * @param none
+   * @return none
+   */
+   public void beginSession() throws IOException
+   {
+      this.timeoutTimer.schedule(this.m_lVersionOpTimer);
+      this.connection.setReadTimeout((int) (this.m_lVersionOpTimer+2000));
+   }
+
+   /**
+   * handleMessage - run one message from the client through the DFA. The
+   * response is queued on the connection, the caller flushes it. Once
+   * envelopes are agreed, each message of an envelope is run through the
+   * DFA in turn
+   * @param inputBuffer
+   * @param iByteCount
+   * @return none
+   */
+   public void handleMessage(byte[] inputBuffer, int iByteCount) throws IOException
+   {
+      this.sessionLock.lock();
+      try {
+         this.header.wrap(inputBuffer, iByteCount);
+         if (this.m_bEnvelopes && this.header.getTypeCode() == MessageParser.TYPE_INDICATOR_ENVELOPE)
+         {
+            this.envelopeView.wrap(inputBuffer, iByteCount);
+            int iInner;
+            while (this.gameState.getState() != GameState.CLOSED && (iInner = this.envelopeView.nextMessage(this.innerBuffer)) >= 0)
+            {
+               this.header.wrap(this.innerBuffer, iInner);
+               dispatchMessage(this.innerBuffer, iInner);
+            }
+         }
+         else
+         {
+            dispatchMessage(inputBuffer, iByteCount);
+         }
+         if (this.draining)
+         {
+            // the server is shutting down, close as soon as the hand is over
+            closeIfIdle();
+         }
+      } finally {
+         this.sessionLock.unlock();
+      }
+   }
+
+   /**
+   * dispatchMessage - hand the message to the handler for the current state
+   * and the kind of message. The header view must already be wrapped
+   * around the message, so its header is decoded once; the kind and whether
+   * the version matches pick the column of the dispatch table
+   * @param inputBuffer
+   * @param iByteCount
+   * @return none
+   */
+   private void dispatchMessage(byte[] inputBuffer, int iByteCount) throws IOException
+   {
+      int iState = this.gameState.getState();
+      if (this.capture != null)
+      {
+         this.capture.inbound(iState, inputBuffer, iByteCount);
+      }
+      int iColumn = this.header.getKind() + ((this.header.getVersion() == this.m_iVersion) ? 0 : MessageView.Header.KINDS);
+      switch (DISPATCH[iState][iColumn])
+      {
+      case ACTION_CLIENT_VERSION:
+         // need to validate the client
+         clientVersion(inputBuffer, iByteCount);
+         break;
+      case ACTION_NEED_VERSION:
+         needVersion();
+         break;
+      case ACTION_GET_GAME:
+         getGame(inputBuffer, iByteCount);
+         break;
+      case ACTION_SET_GAME:
+         setGame(inputBuffer, iByteCount);
+         break;
+      case ACTION_PLAY_INIT:
+         playInit(inputBuffer, iByteCount);
+         break;
+      case ACTION_PLAY_GAME:
+         playGame(inputBuffer, iByteCount);
+         break;
+      case ACTION_CLOSE_CONNECTION:
+         closeConnection(inputBuffer, iByteCount);
+         break;
+      case ACTION_IGNORE:
+         this.logAndPublish.write(this.uniqueID + ": " + IGNORED[iState][iColumn], true, false);
+         break;
+      default:
+         // closed, nothing more is handled
+         break;
+      }
+   }
+
+   /**
+   * route - fill the dispatch table for one state and some kinds of message
+   * @param iState
+   * @param kinds
+   * @param bVersionOk whether the columns for the right version or for any other one
+   * @param action
+   * @param sReason logged when the action is ACTION_IGNORE
+   * @return none
+   */
+   private static void route(int iState, int[] kinds, boolean bVersionOk, byte action, String sReason)
+   {
+      for (int iI = 0; iI < kinds.length; iI++)
+      {
+         int iColumn = kinds[iI] + (bVersionOk ? 0 : MessageView.Header.KINDS);
+         DISPATCH[iState][iColumn] = action;
+         IGNORED[iState][iColumn] = sReason;
+      }
+   }
+
+   static
+   {
+      int[] all = {MessageView.Header.KIND_VERSION, MessageView.Header.KIND_GET_GAME, MessageView.Header.KIND_SET_GAME, MessageView.Header.KIND_PLAY_GAME,
+            MessageView.Header.KIND_GAME, MessageView.Header.KIND_CLOSE_CONNECTION, MessageView.Header.KIND_OTHER};
+      int[] game = {MessageView.Header.KIND_GET_GAME, MessageView.Header.KIND_SET_GAME, MessageView.Header.KIND_PLAY_GAME, MessageView.Header.KIND_GAME};
+      int[] notGame = {MessageView.Header.KIND_VERSION, MessageView.Header.KIND_CLOSE_CONNECTION, MessageView.Header.KIND_OTHER};
+      int[] version = {MessageView.Header.KIND_VERSION};
+      int[] getGame = {MessageView.Header.KIND_GET_GAME};
+      int[] setGame = {MessageView.Header.KIND_SET_GAME};
+      int[] playGame = {MessageView.Header.KIND_PLAY_GAME};
+      int[] close = {MessageView.Header.KIND_CLOSE_CONNECTION};
+
+      // Listening: the client must send its version, any version, anything else is answered with the version requirement
+      route(GameState.LISTENING, all, true, ACTION_NEED_VERSION, null);
+      route(GameState.LISTENING, all, false, ACTION_NEED_VERSION, null);
+      route(GameState.LISTENING, version, true, ACTION_CLIENT_VERSION, null);
+      route(GameState.LISTENING, version, false, ACTION_CLIENT_VERSION, null);
+
+      // past Listening a message of another version is ignored
+      int[] negotiated = {GameState.AUTHENTICATE, GameState.GAMELIST, GameState.GAMESET, GameState.GAMEPLAY};
+      for (int iI = 0; iI < negotiated.length; iI++)
+      {
+         route(negotiated[iI], all, false, ACTION_IGNORE, "has sent an invalid version number, Ignoring Msg");
+      }
+
+      // Authenticate: the client has authenticated and the server is waiting for the get games message
+      route(GameState.AUTHENTICATE, game, true, ACTION_IGNORE, "Invalid Game Indicator, should be Get Games");
+      route(GameState.AUTHENTICATE, notGame, true, ACTION_IGNORE, "Invalid Type Indicator, should be the Game Indicator");
+      route(GameState.AUTHENTICATE, getGame, true, ACTION_GET_GAME, null);
+
+      // Game List: set game, get game or close connection
+      route(GameState.GAMELIST, game, true, ACTION_IGNORE, "has sent an invalid Game Indicator, should be Set Game or Get Game");
+      route(GameState.GAMELIST, notGame, true, ACTION_IGNORE, "has sent an invalid message");
+      route(GameState.GAMELIST, setGame, true, ACTION_SET_GAME, null);
+      route(GameState.GAMELIST, getGame, true, ACTION_GET_GAME, null);
+      route(GameState.GAMELIST, close, true, ACTION_CLOSE_CONNECTION, null);
+
+      // Game Set: only the play game init message
+      route(GameState.GAMESET, game, true, ACTION_IGNORE, "Received Invalid Game Indicator Code, Ignoring");
+      route(GameState.GAMESET, notGame, true, ACTION_IGNORE, "Recieved Invalid Type Indicator Code, Ignoring");
+      route(GameState.GAMESET, playGame, true, ACTION_PLAY_INIT, null);
+
+      // Game Play: play the game or go back to the game list
+      route(GameState.GAMEPLAY, game, true, ACTION_IGNORE, "has sent an invalid Game Message, Ignoring");
+      route(GameState.GAMEPLAY, notGame, true, ACTION_IGNORE, "has sent an invalid Type Indicator, Ignoring");
+      route(GameState.GAMEPLAY, playGame, true, ACTION_PLAY_GAME, null);
+      route(GameState.GAMEPLAY, getGame, true, ACTION_GET_GAME, null);
+
+      // Closed: the table stays ACTION_NONE
+   }
+
+   /**
+   * playMessage - the play message as it goes to the client: the message
+   * itself, or once play deltas are agreed the delta to the last one sent.
+   * The delta is reused, the connection encodes it before writeMessage
+   * returns since play messages are only written while handling a message
+   * @param svrMsg
+   * @return MessageParser.EncodableMessage
+   */
+   private MessageParser.EncodableMessage playMessage(MessageParser.ServerPlayGameMessage svrMsg)
+   {
+      if (this.playDelta == null)
+      {
+         return svrMsg;
+      }
+      this.playDelta.update(svrMsg);
+      return this.playDelta;
+   }
+
+   /**
+   * send - queue a message on the connection, and record it when the session
+   * is captured
+   * @param msg
+   * @return none
+   */
+   private void send(MessageParser.EncodableMessage msg) throws IOException
+   {
+      if (this.capture != null)
+      {
+         this.capture.outbound(msg);
+      }
+      this.connection.writeMessage(msg);
+   }
+
+   /**
+   * drain - the server is shutting down. A session that is not in the middle of
+   * a hand is sent CLOSE_CONNECTION and closed, one that is gets it once the
+   * hand is folded or played to the river. Only sets the flag and hands the
+   * close to the session's event loop or a thread of its own, so the caller
+   * never waits on a session or a client. Called by the draining thread
+   * @param threads for the close of a blocking session
+   * @return none
+   */
+   public void drain(ThreadFactory threads)
+   {
+      if (this.draining)
+      {
+         return;
+      }
+      this.draining = true;
+      this.connection.execute(new Runnable() {
+         public void run() {
+            closeDrained();
+         }
+      }, threads);
+   }
+
+   /**
+   * closeDrained - send CLOSE_CONNECTION and close, unless a hand is in
+   * progress. Runs on the session's event loop or a thread of its own
+   * @param none
+   * @return none
+   */
+   private void closeDrained()
+   {
+      this.sessionLock.lock();
+      try {
+         if (!closeIfIdle())
+         {
+            return;
+         }
+         try {
+            this.connection.flush();
+         } catch (IOException ioe) {
+            logAndPublish.write(ioe, true, false);
+         }
+      } finally {
+         this.sessionLock.unlock();
+      }
+      // wakes the session thread, which ends the session
+      try {
+         this.connection.close();
+      } catch (IOException ioe) { }
+   }
+
+   /**
+   * isDraining - determine whether drain() has been called
+   * @param none
+   * @return boolean
+   */
+   public boolean isDraining()
+   {
+      return this.draining;
+   }
+
+   /**
+   * closeIfIdle - queue CLOSE_CONNECTION and move to the closed state unless a
+   * hand is in progress. Called with the session lock held
+   * @param none
+   * @return boolean true if the session was closed
+   */
+   private boolean closeIfIdle()
+   {
+      int iState = this.gameState.getState();
+      if (iState == GameState.CLOSED || (iState == GameState.GAMEPLAY && this.oTHModel.isHandInProgress()))
+      {
+         return false;
+      }
+      MessageParser.EncodableMessage svrMsg = this.responses.closeConnection();
+      this.timeoutTimer.stop();
+      this.gameState.setState(GameState.CLOSED);
+      this.logAndPublish.write(this.uniqueID + ": Server is draining, closing the connection", true, false);
+      try {
+         /* MESSAGE MANAGEMENT */
+         send(svrMsg);
+      } catch (IOException ioe) {
+         logAndPublish.write(ioe, true, false);
+      }
+      return true;
+   }
+
+   /**
+   * endSession - close the connection if needed and notify the observers for cleanup
+   * @param none
+   * @return none
+   */
+   public void endSession()
+   {
+      running = false;
+      this.timeoutTimer.stop();
+      if (this.capture != null)
+      {
+         this.capture.close();
+      }
       //it's time to close the socket
-      if (!this.socket.isClosed())
+      if (!this.connection.isClosed())
       {
          try {
-            this.socket.close();
+            this.connection.close();
             this.logAndPublish.write(this.uniqueID + ": Closing Connection.", true, true);
          } catch (IOException ioe) { }
       }
@@ -219,515 +583,362 @@ public class ClientModel extends Observable implements Runnable {
    }
    
    /**
-   * ListeningState - In this state the client has to negotiate the version and validate proper
-   * communication. The server will transition to the Authentication (Connection Negotiation) state when this
-   * is successful
+   * clientVersion - Listening state, the client sent its version. The server will
+   * transition to the Authentication (Connection Negotiation) state when it is the
+   * server's version, tells the client to upgrade when it is not
    * @param inputBuffer
    * @param iByteCount
    * @return none
    */
-   private void ListeningState(byte[] inputBuffer, int iByteCount) {
+   private void clientVersion(byte[] inputBuffer, int iByteCount) {
       /*
       *  During this state the client has to authenticate itself by giving its version to the server
       *  If the client sends a version message the server will check to see if it is valid and reply appropriately.
-      *  The server will start the counter for the verification. If the client does not finish authentication within the 
+      *  The server will start the counter for the verification. If the client does not finish authentication within the
       *  timeout time the connection will be closed
       */
-		if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_VERSION)
-		{
-         MessageParser.VersionMessage msg = this.messageParser.GetVersionMessage(inputBuffer, iByteCount);
-         if ((msg.getVersion() == this.m_iVersion) && (msg.getVersionType() == MessageParser.VERSION_INDICATOR_CLIENT_VERSION))
-			{
-				// reset the timer. Use the game time because it is longer and the client has been verified.
-				this.timeoutTimer.reschedule(this.m_lGameOpTimer);
-				msg.setBankAmount(this.m_lClientBankAmount);
-				msg.setVersionType(MessageParser.VERSION_INDICATOR_VERSION_ACK);
-				this.logAndPublish.write(this.uniqueID + ": has finished authenticating!", true, false);
-				try	{
-					/* MESSAGE MANAGEMENT */ 
-					outputStream.writeByte((byte)this.messageParser.CreateVersionMessage(msg).length);
-					outputStream.write(this.messageParser.CreateVersionMessage(msg)); 
-					outputStream.flush();	
-					// reset the socket timeout to the game because it is longer
-					this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-					this.gameState.setState(GameState.AUTHENTICATE);
-				} catch (Exception e) {
-					logAndPublish.write(e, true, false);
-					this.timeoutTimer.stop();
-					this.gameState.setState(GameState.CLOSED);
-				}
-			}
-			else if (msg.getVersionType() == MessageParser.VERSION_INDICATOR_CLIENT_VERSION)
-			{
-				// client needs to upgrade
-				// The server cannot communicate so send the message and close the connection
-				msg.setBankAmount((long)0);
-				msg.setVersion(this.m_iVersion);
-				msg.setMinorVersion(this.m_iMinorVersion);
-				msg.setTypeCode(MessageParser.TYPE_INDICATOR_VERSION);
-				msg.setVersionType(MessageParser.VERSION_INDICATOR_VERSION_UPGRADE);
-				this.logAndPublish.write(this.uniqueID + ": Invalid Version, closing connection", true, false);
-				try {
-					/* MESSAGE MANAGEMENT */ 
-	                outputStream.writeByte((byte)this.messageParser.CreateVersionMessage(msg).length);
-	                outputStream.write(this.messageParser.CreateVersionMessage(msg)); 
-	                outputStream.flush();					
-					this.timeoutTimer.stop();
-					this.gameState.setState(GameState.CLOSED);
-				} catch (Exception e) {
-					logAndPublish.write(e, true, false);
-					this.timeoutTimer.stop();
-					this.gameState.setState(GameState.CLOSED);
-				}
-			}
-			else
-			{
-            // send version requirement message and stay in this state
-				msg.setBankAmount((long)0);
-				msg.setMinorVersion(this.m_iMinorVersion);
-				msg.setTypeCode(MessageParser.TYPE_INDICATOR_VERSION);
-				msg.setVersion(this.m_iVersion);
-				msg.setVersionType(MessageParser.VERSION_INDICATOR_VERSION_REQUIREMENT);
-				this.logAndPublish.write(this.uniqueID + ": Invalid message, need client protocol version", true, false);
-				try {
-					/* MESSAGE MANAGEMENT */ 
-					outputStream.writeByte((byte)this.messageParser.CreateVersionMessage(msg).length);
-			        outputStream.write(this.messageParser.CreateVersionMessage(msg)); 
-			        outputStream.flush();
-				} catch (Exception e) {
-					logAndPublish.write(e, true, false);
-					this.timeoutTimer.stop();
-					this.gameState.setState(GameState.CLOSED);
-				}
-			}
-		}
-		else
-		{
-			// client did not send the right message, server needs to force a version message
-			this.logAndPublish.write(this.uniqueID + ": Need to finish authentication of version, got a different message", true, false);
-			MessageParser.VersionMessage msg = this.messageParser.new VersionMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_VERSION, MessageParser.VERSION_INDICATOR_VERSION_REQUIREMENT, this.m_iMinorVersion,(long)0);
-			try {
-				/* MESSAGE MANAGEMENT */
-	            outputStream.writeByte((byte)this.messageParser.CreateVersionMessage(msg).length);
-	            outputStream.write(this.messageParser.CreateVersionMessage(msg)); 
-	            outputStream.flush();				
-			} catch (Exception e) {
-				logAndPublish.write(e, true, false);
-				this.gameState.setState(GameState.CLOSED);
-			}
-		}
-		
-	}	
+      MessageView.Version msg = this.versionView;
+      msg.wrap(inputBuffer, iByteCount);
+      if ((msg.getVersion() == this.m_iVersion) && (msg.getVersionType() == MessageParser.VERSION_INDICATOR_CLIENT_VERSION))
+      {
+         // reset the timer. Use the game time because it is longer and the client has been verified.
+         this.timeoutTimer.reschedule(this.m_lGameOpTimer);
+         // agree to the features both sides have
+         int iFeatures = msg.getFeatures() & this.m_iFeatures;
+         MessageParser.VersionMessage svrMsg = this.messageParser.new VersionMessage(msg.getVersion(), msg.getTypeCode(), MessageParser.VERSION_INDICATOR_VERSION_ACK, msg.getMinorVersion(), this.m_lClientBankAmount, iFeatures);
+         this.logAndPublish.write(this.uniqueID + ": has finished authenticating!", true, false);
+         try	{
+            /* MESSAGE MANAGEMENT */
+            send(svrMsg);
+            if ((iFeatures & MessageParser.FEATURE_ENVELOPE) != 0)
+            {
+               this.m_bEnvelopes = true;
+               this.connection.startEnvelopes(this.m_iVersion);
+            }
+            if ((iFeatures & MessageParser.FEATURE_PLAY_DELTA) != 0)
+            {
+               this.playDelta = this.messageParser.new PlayDeltaMessage();
+            }
+            // reset the socket timeout to the game because it is longer
+            this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+            this.gameState.setState(GameState.AUTHENTICATE);
+         } catch (Exception e) {
+            logAndPublish.write(e, true, false);
+            this.timeoutTimer.stop();
+            this.gameState.setState(GameState.CLOSED);
+         }
+      }
+      else if (msg.getVersionType() == MessageParser.VERSION_INDICATOR_CLIENT_VERSION)
+      {
+         // client needs to upgrade
+         // The server cannot communicate so send the message and close the connection
+         MessageParser.EncodableMessage svrMsg = this.responses.versionUpgrade();
+         this.logAndPublish.write(this.uniqueID + ": Invalid Version, closing connection", true, false);
+         try {
+            /* MESSAGE MANAGEMENT */
+            send(svrMsg);
+            this.timeoutTimer.stop();
+            this.gameState.setState(GameState.CLOSED);
+         } catch (Exception e) {
+            logAndPublish.write(e, true, false);
+            this.timeoutTimer.stop();
+            this.gameState.setState(GameState.CLOSED);
+         }
+      }
+      else
+      {
+         // send version requirement message and stay in this state
+         MessageParser.EncodableMessage svrMsg = this.responses.versionRequirement();
+         this.logAndPublish.write(this.uniqueID + ": Invalid message, need client protocol version", true, false);
+         try {
+            /* MESSAGE MANAGEMENT */
+            send(svrMsg);
+         } catch (Exception e) {
+            logAndPublish.write(e, true, false);
+            this.timeoutTimer.stop();
+            this.gameState.setState(GameState.CLOSED);
+         }
+      }
+   }
+
+   /**
+   * needVersion - Listening state, the client sent something other than its
+   * version. The server needs to force a version message
+   * @param none
+   * @return none
+   */
+   private void needVersion() {
+      this.logAndPublish.write(this.uniqueID + ": Need to finish authentication of version, got a different message", true, false);
+      MessageParser.EncodableMessage msg = this.responses.versionRequirement();
+      try {
+         /* MESSAGE MANAGEMENT */
+         send(msg);
+      } catch (Exception e) {
+         logAndPublish.write(e, true, false);
+         this.gameState.setState(GameState.CLOSED);
+      }
+   }
+
    /**
-   * AuthenticateState - In this state the client has negotiated the version and the 
-   * server is waiting for the get game list message
+   * getGame - Authenticate, Game List or Game Play state, the client asked for the
+   * game list. The server sends it and switches to the Game List state
    * @param inputBuffer
    * @param iByteCount
    * @return none
    */
-   private void AuthenticateState(byte[] inputBuffer, int iByteCount) throws IOException {
-	  /*
-      *  During this state the client has authenticated and the server is waiting for the get games message
-      */
-      // make sure the version is correct
-      if (this.messageParser.GetVersion(inputBuffer, iByteCount) != this.m_iVersion)
+   private void getGame(byte[] inputBuffer, int iByteCount) {
+      MessageView.ClientGetGame msg = this.getGameView;
+      msg.wrap(inputBuffer, iByteCount);
+      // make sure this was indeed a client get game message
+      if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_GET_GAME)
       {
-         this.logAndPublish.write(this.uniqueID + ": has sent an invalid version number, Ignoring Msg", true, false);
+         // not a client message, must be a server message. Ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Server Get Game Message, Ignoring", true, false);
          return;
-      }	
-      if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_GAME)
-      {
-    	  if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_GET_GAME)
-    	  {
-    		  MessageParser.ClientGetGameMessage msg = this.messageParser.GetClientGetGameMessage(inputBuffer, iByteCount);
-    		  // make sure this was indeed a client get game message
-    		  if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_GET_GAME)
-    		  {
-    			  // not a client message, must be a server message. Ignore
-    			  this.logAndPublish.write(this.uniqueID + ": Received Server Get Game Message, Ignoring", true, false);
-    			  return;
-    		  }
-    		  // send the client the game list and update to the game list state
-    		  int length = 12 + (int)(Math.ceil((double)this.oGameTypeList.size() / 4) * 4);
-    		  MessageParser.ServerGetGameMessage svrMsg = this.messageParser.new ServerGetGameMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME, length, this.oGameTypeList);
-    		  // reset the timer
-    		  this.timeoutTimer.reschedule(this.m_lGameOpTimer);
-    		  this.logAndPublish.write(this.uniqueID + ": has sent get game message", true, false);
-    		  try	{
-    			  /* MESSAGE MANAGEMENT */
-    			  outputStream.writeByte((byte)this.messageParser.CreateServerGetGameMessage(svrMsg).length);
-    			  outputStream.write(this.messageParser.CreateServerGetGameMessage(svrMsg)); 
-    			  outputStream.flush();					
-    			  this.gameState.setState(GameState.GAMELIST);
-    			  // reset the socket timeout
-    			  this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-    		  } catch (Exception e) {
-    			 logAndPublish.write(e, true, false);
-    			  this.timeoutTimer.stop();
-    			  this.gameState.setState(GameState.CLOSED);
-    		  }
-    	  }
-    	  else
-    	  {
-    		  // The game indicator is incorrect
-    		  this.logAndPublish.write(this.uniqueID + ": Invalid Game Indicator, should be Get Games", true, false);
-    	  }
       }
-      else
-      {
-			// The game indicator is incorrect
-         this.logAndPublish.write(this.uniqueID + ": Invalid Type Indicator, should be the Game Indicator", true, false);
-		}		
-	}	
+      // send the client the game list and update to the game list state
+      MessageParser.EncodableMessage svrMsg = this.responses.gameList();
+      // reset the timer
+      this.timeoutTimer.reschedule(this.m_lGameOpTimer);
+      this.logAndPublish.write(this.uniqueID + ": has sent get game message", true, false);
+      try	{
+         /* MESSAGE MANAGEMENT */
+         send(svrMsg);
+         this.gameState.setState(GameState.GAMELIST);
+         // reset the socket timeout
+         this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+      } catch (Exception e) {
+         logAndPublish.write(e, true, false);
+         this.timeoutTimer.stop();
+         this.gameState.setState(GameState.CLOSED);
+      }
+   }
+
    /**
-   * GameListState - In this state the client has received the list of games and can 
-   * either select one or close the connection
+   * setGame - Game List state, the client selected a game. A valid game type is
+   * acknowledged and the server switches to the Game Set state, any other is answered
+   * with an invalid response and the server stays in this state
    * @param inputBuffer
    * @param iByteCount
    * @return none
-   */   
-   private void GameListState(byte[] inputBuffer, int iByteCount) {
-      /*
-      * In this state there are two valid messages
-      * 1) Set Game
-      * 2) Close Connection
-      */
-		// First check to make sure the version is correct
-		if (this.messageParser.GetVersion(inputBuffer, iByteCount) != this.m_iVersion)
-		{
-			this.logAndPublish.write(this.uniqueID + ": has sent an invalid version number, Ignoring Msg", true, false);
-			return;
-		}
-		if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_GAME)
-		{
-         if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_SET_GAME)
-         {
-            MessageParser.ClientSetGameMessage msg = this.messageParser.GetClientSetGameMessage(inputBuffer, iByteCount);
-            if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_SET_GAME)
-            {
-               // not a client message, must be a server message. Ignore
-               this.logAndPublish.write(this.uniqueID + ": Received Server Set Game Message, Ignoring", true, false);
-               return;
-            }
-            // make sure the game type code is valid
-            boolean bFound = false;
-            for (int iI = 0; iI < this.oGameTypeList.size(); iI++)
-            {
-               int typecode = oGameTypeList.get(iI).intValue();
-               if (typecode == msg.getGameTypeCode())
-               {
-                  bFound = true;
-               }
-            }
-            
-            // determine whether to send an ack or invalid response
-            if (bFound)
-            {
-				/* send an ack and switch to the game set state */
-               MessageParser.ServerSetGameMessage svrMsg = this.messageParser.new ServerSetGameMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_SET_GAME, msg.getGameTypeCode(), MessageParser.GAME_TYPE_RESPONSE_ACK);
-               // reset the timer
-               this.timeoutTimer.reschedule(m_lGameOpTimer);
-               this.gameState.setState(GameState.GAMESET);
-               this.m_iGameTypeCode = msg.getGameTypeCode();
-               this.logAndPublish.write(this.uniqueID + ": has sent a valid Game Type Indicator", true, false);
-               try	{
-            	   /* MESSAGE MANAGEMENT */
-                  outputStream.writeByte((byte)this.messageParser.CreateServerSetGameMessage(svrMsg).length);
-                  outputStream.write(this.messageParser.CreateServerSetGameMessage(svrMsg)); 
-                  outputStream.flush();						
-                  // reset the socket timeout
-                  this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-               } catch (Exception e) {
-            	   logAndPublish.write(e, true, false);
-            	   this.timeoutTimer.stop();
-            	   this.gameState.setState(GameState.CLOSED);
-               }
-            }
-            else
-            {
-				/* invalid request, send an invalid response code and stay in this state */
-               MessageParser.ServerSetGameMessage svrMsg = this.messageParser.new ServerSetGameMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_SET_GAME, msg.getGameTypeCode(), MessageParser.GAME_TYPE_RESPONSE_INVALID);
-               // reset the timer
-               this.timeoutTimer.reschedule(m_lGameOpTimer);
-               this.logAndPublish.write(this.uniqueID + ": has sent an invalid Game Type Indicator", true, false);
-               try	{
-            	   /* MESSAGE MANAGEMENT */
-                  outputStream.writeByte((byte)this.messageParser.CreateServerSetGameMessage(svrMsg).length);
-                  outputStream.write(this.messageParser.CreateServerSetGameMessage(svrMsg)); 
-                  outputStream.flush();		
-                  // reset the socket timeout
-                  this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-               } catch (Exception e) {
-            	   logAndPublish.write(e, true, false);
-                  this.timeoutTimer.stop();
-                  this.gameState.setState(GameState.CLOSED);
-               }
-            }
-         }
-         else if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_GET_GAME)
-         {
-        	 MessageParser.ClientGetGameMessage msg = this.messageParser.GetClientGetGameMessage(inputBuffer, iByteCount);
-        	 // make sure this was indeed a client get game message
-        	 if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_GET_GAME)
-        	 {
-        		 // not a client message, must be a server message. Ignore
-        		 this.logAndPublish.write(this.uniqueID + ": Received Server Get Game Message, Ignoring", true, false);
-        		 return;
-        	 }
-        	 // send the client the game list
-        	 int length = 12 + (int)(Math.ceil((double)this.oGameTypeList.size() / 4) * 4);
-        	 MessageParser.ServerGetGameMessage svrMsg = this.messageParser.new ServerGetGameMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME, length, this.oGameTypeList);
-        	 // reset timeer
-        	 this.timeoutTimer.reschedule(this.m_lGameOpTimer);
-        	 this.logAndPublish.write(this.uniqueID + ": has sent get game message", true, false);
-        	 try	{
-        		 /* MESSAGE MANAGEMENT */
-        		 outputStream.writeByte((byte)this.messageParser.CreateServerGetGameMessage(svrMsg).length);
-        		 outputStream.write(this.messageParser.CreateServerGetGameMessage(svrMsg)); 
-        		 outputStream.flush();					
-        		 this.gameState.setState(GameState.GAMELIST);
-        		 // reset socket timeout
-        		 this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-        	 } catch (Exception e) {
-        		 logAndPublish.write(e, true, false);
-        		 this.timeoutTimer.stop();
-        		 this.gameState.setState(GameState.CLOSED);
-        	 }
-         }
-         else
+   */
+   private void setGame(byte[] inputBuffer, int iByteCount) {
+      MessageView.ClientSetGame msg = this.setGameView;
+      msg.wrap(inputBuffer, iByteCount);
+      if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_SET_GAME)
+      {
+         // not a client message, must be a server message. Ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Server Set Game Message, Ignoring", true, false);
+         return;
+      }
+      // make sure the game type code is valid
+      boolean bFound = false;
+      for (int iI = 0; iI < this.oGameTypeList.size(); iI++)
+      {
+         int typecode = oGameTypeList.get(iI).intValue();
+         if (typecode == msg.getGameTypeCode())
          {
-            this.logAndPublish.write(this.uniqueID + ": has sent an invalid Game Indicator, should be Set Game or Get Game", true, false);
+            bFound = true;
          }
       }
-      else if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION)
+
+      // determine whether to send an ack or invalid response
+      if (bFound)
       {
-         // could be a close connection request
-         MessageParser.ConnectionMessage msg = this.messageParser.GetConnectionMessage(inputBuffer, iByteCount);
-         if (msg.getConnectionCode() == MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION)
-         {
-            // send the ack and close the connection
-            msg.setConnectionCode(MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION_ACK);
+         /* send an ack and switch to the game set state */
+         MessageParser.EncodableMessage svrMsg = this.responses.setGame(msg.getGameTypeCode(), MessageParser.GAME_TYPE_RESPONSE_ACK);
+         // reset the timer
+         this.timeoutTimer.reschedule(m_lGameOpTimer);
+         this.gameState.setState(GameState.GAMESET);
+         this.m_iGameTypeCode = msg.getGameTypeCode();
+         this.logAndPublish.write(this.uniqueID + ": has sent a valid Game Type Indicator", true, false);
+         try	{
+            /* MESSAGE MANAGEMENT */
+            send(svrMsg);
+            // reset the socket timeout
+            this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+         } catch (Exception e) {
+            logAndPublish.write(e, true, false);
             this.timeoutTimer.stop();
-            this.logAndPublish.write(this.uniqueID + ": has sent a request to close the connection", true, false);
             this.gameState.setState(GameState.CLOSED);
-            try	{
-            	/* MESSAGE MANAGEMENT */
-               outputStream.writeByte((byte)this.messageParser.CreateConnectionMessage(msg).length);
-               outputStream.write(this.messageParser.CreateConnectionMessage(msg)); 
-               outputStream.flush();	
-            } catch (Exception e) {
-            	logAndPublish.write(e, true, false);
-               this.timeoutTimer.stop();
-               this.gameState.setState(GameState.CLOSED);
-            }
-         }
-         else
-         {
-            this.logAndPublish.write(this.uniqueID + ": has sent an invalid connection message", true, false);
          }
       }
       else
       {
-         this.logAndPublish.write(this.uniqueID + ": has sent an invalid message", true, false);
-      }            
-	}
+         /* invalid request, send an invalid response code and stay in this state */
+         MessageParser.EncodableMessage svrMsg = this.responses.setGame(msg.getGameTypeCode(), MessageParser.GAME_TYPE_RESPONSE_INVALID);
+         // reset the timer
+         this.timeoutTimer.reschedule(m_lGameOpTimer);
+         this.logAndPublish.write(this.uniqueID + ": has sent an invalid Game Type Indicator", true, false);
+         try	{
+            /* MESSAGE MANAGEMENT */
+            send(svrMsg);
+            // reset the socket timeout
+            this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+         } catch (Exception e) {
+            logAndPublish.write(e, true, false);
+            this.timeoutTimer.stop();
+            this.gameState.setState(GameState.CLOSED);
+         }
+      }
+   }
+
    /**
-   * GameSetState - In this state the client has sent a valid game type code and must now initiate the
-   * game play by sending the game play init message
+   * playInit - Game Set state, the client must initiate the game play by sending
+   * the game play init message. The server switches to the Game Play state
    * @param inputBuffer
    * @param iByteCount
    * @return none
-   */   
-   private void GameSetState(byte[] inputBuffer, int iByteCount) {
-      /* 
-      * In this state the client can only send the play game init message
-      */
-		// First check to make sure the version is correct
-		if (this.messageParser.GetVersion(inputBuffer, iByteCount) != this.m_iVersion)
-		{
-			this.logAndPublish.write(this.uniqueID + ": has sent an invalid version number, Ignoring Msg", true, false);
-			return;
-		}		
-		
-		if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_GAME)
-		{
-			if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_PLAY_GAME)
-			{
-				// reset the model
-				MessageParser.ClientPlayGameMessage msg = this.messageParser.GetClientPlayGameMessage(inputBuffer, iByteCount);
-				if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
-				{
-					// not a client message, must be a server message. Ignore
-					this.logAndPublish.write(this.uniqueID + ": Received Server Play Game Message, Ignoring", true, false);
-					return;
-				}
-				if (msg.getGameTypeCode() != this.m_iGameTypeCode)
-				{
-					// invalid game type code - different than agreed to, ignore
-					this.logAndPublish.write(this.uniqueID + ": Received Invalid Game Type Code, Ignoring", true, false);
-					return;
-				}
-            
-				// determine the game model to initialize
-				if (msg.getGameTypeCode() == MessageParser.GAME_TYPE_TEXAS_HOLDEM)
-				{
-					if (msg.getGamePlayRequest() == MessageParser.GAME_PLAY_REQUEST_INIT)
-					{
-						/* game play init message has arrived, reinitalize the Texas Holdem Model and switch to the game play state */
-						this.oTHModel.Reset();
-						this.gameState.setState(GameState.GAMEPLAY);
-						/* get the server response message from the texas hold'em model */
-						MessageParser.ServerPlayGameMessage svrMsg = oTHModel.updateModel(msg);
-						// update client bank account
-						this.m_lClientBankAmount = svrMsg.getBankAmount();
-						// reset the timer
-						this.timeoutTimer.reschedule(m_lGameOpTimer);
-						try	{
-							/* MESSAGE MANAGEMENT */
-							outputStream.writeByte((byte)this.messageParser.CreateServerPlayGameMessage(svrMsg).length);
-							outputStream.write(this.messageParser.CreateServerPlayGameMessage(svrMsg)); 
-							outputStream.flush();				
-							// reset the timeout
-							this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-						} catch (Exception e) {
-							logAndPublish.write(e, true, false);
-							this.timeoutTimer.stop();
-							this.gameState.setState(GameState.CLOSED);
-						}
-					}
-					else
-					{
-						// Invalid game play message, log it and ignore
-						this.logAndPublish.write(this.uniqueID + ": Received Invalid GamePlay message, Ignoring", true, false);
-						return;
-					}
-				}
-				else
-				{
-					// invalid game type code, than what was agreed to, log it and ignore
-					this.logAndPublish.write(this.uniqueID + ": Received Invalid Game Type Code, Ignoring", true, false);
-					return;
-				}
-			}
-			else
-			{
-				// invalid game indicator log it and ignore the message
-				this.logAndPublish.write(this.uniqueID + ": Received Invalid Game Indicator Code, Ignoring", true, false);
-				return;
-			}
-		}
-		else
-		{
-			// invalid type indicator for this state, log it and ignore the message
-			this.logAndPublish.write(this.uniqueID + ": Recieved Invalid Type Indicator Code, Ignoring", true, false);
-		}		
-	}
-	/**
-   * GamePlayState - In this state the client is playing the game. It can only leave this state by sending
-   * a get game list request.
+   */
+   private void playInit(byte[] inputBuffer, int iByteCount) {
+      MessageView.ClientPlayGame msg = this.playGameView;
+      msg.wrap(inputBuffer, iByteCount);
+      if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
+      {
+         // not a client message, must be a server message. Ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Server Play Game Message, Ignoring", true, false);
+         return;
+      }
+      if (msg.getGameTypeCode() != this.m_iGameTypeCode || this.m_iGameTypeCode != MessageParser.GAME_TYPE_TEXAS_HOLDEM)
+      {
+         // invalid game type code - different than agreed to, ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Invalid Game Type Code, Ignoring", true, false);
+         return;
+      }
+      if (this.header.getPlayRequest() != MessageParser.GAME_PLAY_REQUEST_INIT)
+      {
+         // Invalid game play message, log it and ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Invalid GamePlay message, Ignoring", true, false);
+         return;
+      }
+      /* game play init message has arrived, reinitalize the Texas Holdem Model and switch to the game play state */
+      this.oTHModel.Reset();
+      this.gameState.setState(GameState.GAMEPLAY);
+      /* get the server response message from the texas hold'em model */
+      MessageParser.ServerPlayGameMessage svrMsg = oTHModel.updateModel(msg);
+      if (svrMsg == null)
+      {
+         // the game model has no response to a request out of order
+         playRefused();
+         return;
+      }
+      // update client bank account
+      this.m_lClientBankAmount = svrMsg.getBankAmount();
+      // reset the timer
+      this.timeoutTimer.reschedule(m_lGameOpTimer);
+      try	{
+         /* MESSAGE MANAGEMENT */
+         send(playMessage(svrMsg));
+         // reset the timeout
+         this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+      } catch (Exception e) {
+         logAndPublish.write(e, true, false);
+         this.timeoutTimer.stop();
+         this.gameState.setState(GameState.CLOSED);
+      }
+   }
+
+   /**
+   * playGame - Game Play state, the client is playing the game. The game model
+   * decides the response
    * @param inputBuffer
    * @param iByteCount
    * @return none
-   */   
-   private void GamePlayState(byte[] inputBuffer, int iByteCount) {
-      /*
-      * While in this state the server can only transition to the GameList state or stay in the current state
-      */
-      if (this.messageParser.GetVersion(inputBuffer, iByteCount) != this.m_iVersion)
+   */
+   private void playGame(byte[] inputBuffer, int iByteCount) {
+      MessageView.ClientPlayGame msg = this.playGameView;
+      msg.wrap(inputBuffer, iByteCount);
+      // make sure this was indeed a client play game message
+      if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
       {
-		/* Invalid version, ignoring this message */
-         this.logAndPublish.write(this.uniqueID + ": has sent an invalid version number, Ignoring Msg", true, false);
+         // not a client message, must be a server message. Ignore
+         this.logAndPublish.write(this.uniqueID + ": Received Server Play Game Message, Ignoring", true, false);
          return;
-      }	
-	  // Make sure the message is the correct play game message
-      if (this.messageParser.GetTypeIndicator(inputBuffer, iByteCount) == MessageParser.TYPE_INDICATOR_GAME)
-		{
-         if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_PLAY_GAME)
-         {
-            MessageParser.ClientPlayGameMessage msg = this.messageParser.GetClientPlayGameMessage(inputBuffer, iByteCount);
-            // make sure this was indeed a client get game message
-            if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_PLAY_GAME)
-            {
-               // not a client message, must be a server message. Ignore
-               this.logAndPublish.write(this.uniqueID + ": Received Server Play Game Message, Ignoring", true, false);
-               return;
-            }
-            if (msg.getGameTypeCode() != this.m_iGameTypeCode)
-            {
-               // not a valid game type code, Ignore
-               this.logAndPublish.write(this.uniqueID + ": Client Play Game Message contains invalid Game Type Code, Ignoring", true, false);
-               return;
-            }
-            if (this.m_iGameTypeCode == MessageParser.GAME_TYPE_TEXAS_HOLDEM)
-            {
-				// get the message that should be sent from the server by the game model
-               MessageParser.ServerPlayGameMessage svrMsg = oTHModel.updateModel(msg);
-               // update client bank account
-               this.m_lClientBankAmount = svrMsg.getBankAmount();
-               // reset the timer
-               this.timeoutTimer.reschedule(m_lGameOpTimer);
-               try	{
-            	   /* MESSAGE MANAGEMENT */
-                  outputStream.writeByte((byte)this.messageParser.CreateServerPlayGameMessage(svrMsg).length);
-                  outputStream.write(this.messageParser.CreateServerPlayGameMessage(svrMsg)); 
-                  outputStream.flush();		
-                  // reset the timeout
-                  this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-               } catch (Exception e) {
-            	   logAndPublish.write(e, true, false);
-                  this.timeoutTimer.stop();
-                  this.gameState.setState(GameState.CLOSED);
-               }
-            }
-			else
-			{
-				// invalid game type, log it and ignore it
-				logAndPublish.write(this.uniqueID + " has sent an invalid Game Type Code, Ignoring", true, false);
-			}
-         }
-         else if (this.messageParser.GetGameIndicator(inputBuffer, iByteCount) == MessageParser.GAME_INDICATOR_GET_GAME)
-         {
-        	 MessageParser.ClientGetGameMessage msg = this.messageParser.GetClientGetGameMessage(inputBuffer, iByteCount);
-        	 // make sure this was indeed a client get game message
-        	 if (msg.getGameIndicator() != MessageParser.GAME_INDICATOR_GET_GAME)
-        	 {
-        		 // not a client message, must be a server message. Ignore
-        		 this.logAndPublish.write(this.uniqueID + ": Received Server Get Game Message, Ignoring", true, false);
-        		 return;
-        	 }
-        	 // send the client the game list and switch to the GameList state
-        	 int length = 12 + (int)(Math.ceil((double)this.oGameTypeList.size() / 4) * 4);
-        	 MessageParser.ServerGetGameMessage svrMsg = this.messageParser.new ServerGetGameMessage(this.m_iVersion, MessageParser.TYPE_INDICATOR_GAME, MessageParser.GAME_INDICATOR_GET_GAME, length, this.oGameTypeList);
-        	 // reset the timeout
-        	 this.timeoutTimer.reschedule(this.m_lGameOpTimer);
-        	 this.logAndPublish.write(this.uniqueID + ": has sent get game message", true, false);
-        	 try	{
-        		 /* MESSAGE MANAGEMENT */
-        		 outputStream.writeByte((byte)this.messageParser.CreateServerGetGameMessage(svrMsg).length);
-        		 outputStream.write(this.messageParser.CreateServerGetGameMessage(svrMsg)); 
-        		 outputStream.flush();		
-        		 // reset the socket timeout
-        		 this.socket.setSoTimeout((int) (this.m_lGameOpTimer+2000));
-        		 this.gameState.setState(GameState.GAMELIST);
-        	 } catch (Exception e) {
-        		 logAndPublish.write(e, true, false);
-        		 this.timeoutTimer.stop();
-        		 this.gameState.setState(GameState.CLOSED);
-        	 }
-         }
-         else
-         {
-			// invalid Game Message that was received for this state, ignore it
-            this.logAndPublish.write(this.uniqueID + ": has sent an invalid Game Message, Ignoring", true, false);
-            return;
-         }		
       }
-      else
+      if (msg.getGameTypeCode() != this.m_iGameTypeCode)
+      {
+         // not a valid game type code, Ignore
+         this.logAndPublish.write(this.uniqueID + ": Client Play Game Message contains invalid Game Type Code, Ignoring", true, false);
+         return;
+      }
+      if (this.m_iGameTypeCode != MessageParser.GAME_TYPE_TEXAS_HOLDEM)
+      {
+         // invalid game type, log it and ignore it
+         logAndPublish.write(this.uniqueID + " has sent an invalid Game Type Code, Ignoring", true, false);
+         return;
+      }
+      // get the message that should be sent from the server by the game model
+      MessageParser.ServerPlayGameMessage svrMsg = oTHModel.updateModel(msg);
+      if (svrMsg == null)
       {
-		// invalid type code for this state, ignore it
-         this.logAndPublish.write(this.uniqueID + ": has sent an invalid Type Indicator, Ignoring", true, false);
+         // the game model has no response to a request out of order
+         playRefused();
          return;
       }
+      // update client bank account
+      this.m_lClientBankAmount = svrMsg.getBankAmount();
+      // reset the timer
+      this.timeoutTimer.reschedule(m_lGameOpTimer);
+      try	{
+         /* MESSAGE MANAGEMENT */
+         send(playMessage(svrMsg));
+         // reset the timeout
+         this.connection.setReadTimeout((int) (this.m_lGameOpTimer+2000));
+      } catch (Exception e) {
+         logAndPublish.write(e, true, false);
+         this.timeoutTimer.stop();
+         this.gameState.setState(GameState.CLOSED);
+      }
+   }
+
+   /**
+   * playRefused - the client sent a play request the game model does not
+   * accept in this phase of the hand. There is no response for it, so the
+   * server sends CLOSE_CONNECTION and closes the session rather than leave
+   * the client waiting for one
+   * @param none
+   * @return none
+   */
+   private void playRefused() {
+      this.logAndPublish.write(this.uniqueID + ": sent a play request out of order, Closing Connection", true, false);
+      this.timeoutTimer.stop();
+      this.gameState.setState(GameState.CLOSED);
+      try {
+         /* MESSAGE MANAGEMENT */
+         send(this.responses.closeConnection());
+      } catch (IOException ioe) {
+         logAndPublish.write(ioe, true, false);
+      }
+   }
+
+   /**
+   * closeConnection - Game List state, the client asked to close the connection.
+   * The server acknowledges it and closes
+   * @param inputBuffer
+   * @param iByteCount
+   * @return none
+   */
+   private void closeConnection(byte[] inputBuffer, int iByteCount) {
+      MessageView.Connection msg = this.connectionView;
+      msg.wrap(inputBuffer, iByteCount);
+      if (msg.getConnectionCode() != MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION)
+      {
+         this.logAndPublish.write(this.uniqueID + ": has sent an invalid connection message", true, false);
+         return;
+      }
+      // send the ack and close the connection
+      MessageParser.EncodableMessage svrMsg = this.responses.closeConnectionAck();
+      this.timeoutTimer.stop();
+      this.logAndPublish.write(this.uniqueID + ": has sent a request to close the connection", true, false);
+      this.gameState.setState(GameState.CLOSED);
+      try	{
+         /* MESSAGE MANAGEMENT */
+         send(svrMsg);
+      } catch (Exception e) {
+         logAndPublish.write(e, true, false);
+         this.timeoutTimer.stop();
+         this.gameState.setState(GameState.CLOSED);
+      }
    }
 	/**
 	* The TimeoutTask Class
@@ -736,7 +947,7 @@ public class ClientModel extends Observable implements Runnable {
 	*	It also handles closing the connection when the timeout occurs
 	*  
 	*/
-	class TimeoutTask extends TimerTask {
+	class TimeoutTask implements Runnable {
 		private ClientModel model;
 		/**
 		* Constructor
@@ -746,7 +957,7 @@ public class ClientModel extends Observable implements Runnable {
 			this.model = model;
 		}
 		/**
-		* run - main method for the thread to run
+		* run - called on the timing wheel thread when the timeout expires
 		* @param none
 		* @return none
 		*/
@@ -754,7 +965,7 @@ public class ClientModel extends Observable implements Runnable {
 			/*
 			 * A timeout occurred, determine if the connection was already closed, and if not close it
 			 */
-			if (this.model.socket.isClosed())
+			if (this.model.connection.isClosed())
 			{
 				this.model.gameState.setState(GameState.CLOSED);
 				this.model.timeoutTimer.stop();
@@ -765,45 +976,39 @@ public class ClientModel extends Observable implements Runnable {
 			{
 				this.model.logAndPublish.write(this.model.uniqueID + ": Timer expired Closing connection", true, false);
 				this.model.timeoutTimer.stop();
-				this.model.gameState.setState(GameState.CLOSED);
+				this.model.stopClient();
 			}
 		}
 	}
 	/**
 	* The TimeoutTimer Class
 	*
-	*	This class actually maintains the timer and stores the time for
-	*	it to go off
+	*	This class keeps the session's deadline on the server wide timing wheel.
+	*	The session owns one wheel timeout for its whole life, so rescheduling on
+	*	every message only moves the deadline
 	*  
 	*/
-	class TimeoutTimer extends Timer {
+	class TimeoutTimer {
 		/* private members */
-		private TimerTask task;
-		private Timer timer;
-		private boolean bRunning;
-		private boolean bSchedule;
-		private ClientModel model;
+		private final TimingWheel.Timeout timeout;
+		private volatile boolean bSchedule;
 		/**
 		* Constructor
 		*
 		*/
 		public TimeoutTimer(ClientModel model) {
-			timer = new Timer();
-			bRunning = false;
+			this.timeout = TimingWheel.shared().newTimeout(new TimeoutTask(model));
 			bSchedule = false;
-			this.model = model;
 		}
 		/**
-		* schedule - method to create a timer and assign it the task
+		* schedule - method to start the timer
 		* @param delay
 		* @return none
 		*/
 		public void schedule(long delay)
 		{
-			this.task = new TimeoutTask(this.model);
-			bRunning = true;
 			bSchedule = true;
-			timer.schedule(task, delay);
+			this.timeout.schedule(delay);
 		}
 		/**
 		* reschedule - method to reschedule a timeout
@@ -816,10 +1021,7 @@ public class ClientModel extends Observable implements Runnable {
 			/* only reschedule if one is first scheduled */
 			if (bSchedule)
 			{
-				this.stop();
-				task = new TimeoutTask(this.model);
-				this.schedule(task, delay);
-				bRunning = true;
+				this.timeout.schedule(delay);
 			}
 		}
 		/**
@@ -829,12 +1031,7 @@ public class ClientModel extends Observable implements Runnable {
 		*/
 		public void stop()
 		{
-			/* if it is running stop it */
-			if (bRunning)
-			{
-				bRunning = false;
-				task.cancel();
-			}
+			this.timeout.cancel();
 		}
 	}
 }
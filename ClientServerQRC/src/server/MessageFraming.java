@@ -0,0 +1,56 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * MessageFraming splits the plaintext of a non blocking connection into AGMP
+ * messages and frames outgoing messages. One instance holds the decode state
+ * of one connection; which implementation is used is decided by the preamble
+ * the client sends first (see common.StreamPreamble).
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+interface MessageFraming {
+
+	/**
+	* nextMessage - consume bytes from the buffer until a complete message has been
+	* assembled. The message is then available from getMessage()
+	* @param src
+	* @return int the message length, or -1 if more bytes are needed
+	*/
+	int nextMessage(ByteBuffer src) throws IOException;
+
+	/**
+	* getMessage - get the buffer holding the last message returned by nextMessage
+	* @param none
+	* @return byte[]
+	*/
+	byte[] getMessage();
+
+	/**
+	* encodedSize - number of bytes a framed message takes, header included
+	* @param iLength
+	* @return int
+	*/
+	int encodedSize(int iLength);
+
+	/**
+	* encodeHeader - write the framing that precedes a message of iLength
+	* bytes. The caller encodes the message right behind it
+	* @param iLength
+	* @param dst
+	* @return none
+	*/
+	void encodeHeader(int iLength, ByteBuffer dst);
+
+	/**
+	* maxMessageSize - largest message the framing can carry
+	* @param none
+	* @return int
+	*/
+	int maxMessageSize();
+}
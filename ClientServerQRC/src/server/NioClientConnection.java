@@ -0,0 +1,870 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.security.cert.X509Certificate;
+import common.MessageParser;
+import common.StreamPreamble;
+
+/**
+ * NioClientConnection is the non blocking transport for one client. It runs the
+ * TLS handshake through an SSLEngine, picks the framing from the preamble the
+ * client sends first (object streams or raw) and feeds every complete message to
+ * the ClientModel DFA. All of its
+ * methods run on the NioEventLoop that owns it; calls from other threads (the
+ * timeout timer, server shutdown) are passed to the loop.
+ *
+ * What the socket will not take stays queued on the connection. A client that
+ * lets more than the outbound high water mark pile up, or that takes nothing
+ * for the write timeout, is disconnected as a slow consumer so the loop's
+ * other connections are not held up by it and its queue cannot grow without
+ * bound.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class NioClientConnection implements ClientConnection {
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	/* initial size of the plaintext output buffer, it grows if a message needs more */
+	private static final int APP_OUT_SIZE = 256;
+
+	private final NioEventLoop loop;
+	private final SocketChannel channel;
+	private final SSLEngine engine;
+	/* runs the engine's delegated tasks off the loop */
+	private final Executor handshakeExecutor;
+	private final SecureServerController controller;
+	private final String uniqueID;
+	/* chosen once the preamble has been read */
+	private MessageFraming framing;
+	private final byte[] preamble = new byte[StreamPreamble.LENGTH];
+	private int iPreambleRead;
+	private SelectionKey key;
+	private ClientModel model;
+
+	/* bytes of a TLS record that has not been completely received */
+	private ByteBuffer netInLeftover;
+	/* plaintext waiting to be wrapped, kept in write mode */
+	private ByteBuffer appOut;
+	/* ciphertext the socket would not take yet */
+	private ByteBuffer netOutPending;
+	private boolean handshakeDone;
+	/* delegated tasks are running, the key is not watched until they finish */
+	private boolean tasksPending;
+	private boolean closeAfterFlush;
+	private volatile boolean closed;
+	/* handshake bookkeeping, the deadline covers the TLS handshake and the preamble */
+	private final long lAcceptedNanos;
+	private long lHandshakeStart;
+	private long lHandshakeStartMillis;
+	/* CPU the loop has spent on this handshake, -1 if it cannot be measured */
+	private long lHandshakeCpu;
+	private TimingWheel.Timeout handshakeDeadline;
+	private volatile boolean handshakeTimedOut;
+	/* admission slots held until the connection closes */
+	private final AdmissionControl.Ticket ticket;
+	/* bytes that may wait in appOut and netOutPending together, 0 for no limit */
+	private final int iHighWater;
+	/* milliseconds the socket may refuse data before the client is cut off, 0 for no limit */
+	private final int iWriteTimeout;
+	/* armed while netOutPending holds data, null without a write timeout */
+	private final TimingWheel.Timeout writeDeadline;
+	/* messages written since the last flush once envelopes are agreed, null before */
+	private MessageParser.EnvelopeMessage envelope;
+
+	/**
+	* Constructor
+	* @param loop event loop that will own the connection
+	* @param channel accepted, non blocking channel
+	* @param engine server mode engine for this connection
+	* @param ticket admission slots of the connection
+	* @param handshakeExecutor runs the engine's delegated tasks
+	* @param controller server controller that creates the ClientModel
+	*/
+	NioClientConnection(NioEventLoop loop, SocketChannel channel, SSLEngine engine, AdmissionControl.Ticket ticket, Executor handshakeExecutor, SecureServerController controller)
+	{
+		this.loop = loop;
+		this.channel = channel;
+		this.engine = engine;
+		this.handshakeExecutor = handshakeExecutor;
+		this.ticket = ticket;
+		this.controller = controller;
+		this.uniqueID = "" + channel.socket().getInetAddress() + ":" + channel.socket().getPort();
+		this.framing = null;
+		this.iPreambleRead = 0;
+		this.handshakeDone = false;
+		this.tasksPending = false;
+		this.closeAfterFlush = false;
+		this.closed = false;
+		this.lAcceptedNanos = System.nanoTime();
+		this.handshakeTimedOut = false;
+		this.iHighWater = controller.getOutboundHighWater();
+		this.iWriteTimeout = controller.getWriteTimeout();
+		this.writeDeadline = (this.iWriteTimeout > 0) ? TimingWheel.shared().newTimeout(new Runnable() {
+			public void run() {
+				NioClientConnection.this.loop.execute(new Runnable() {
+					public void run() {
+						if (!closed && netOutPending != null)
+						{
+							slowConsumer(ServerMetrics.SLOW_WRITE_TIMEOUT, "took no data for " + iWriteTimeout + " ms");
+						}
+					}
+				});
+			}
+		}) : null;
+	}
+
+	SocketChannel getChannel()
+	{
+		return this.channel;
+	}
+
+	public String getUniqueID()
+	{
+		return this.uniqueID;
+	}
+
+	/**
+	* registered - called by the loop once the channel is registered, starts the
+	* handshake and its deadline
+	* @param key
+	* @return none
+	*/
+	void registered(SelectionKey key) throws IOException
+	{
+		this.key = key;
+		long lCpuStart = ServerMetrics.threadCpuNanos();
+		this.lHandshakeStart = this.controller.getMetrics().handshakeStarted(this.lAcceptedNanos);
+		this.lHandshakeStartMillis = System.currentTimeMillis();
+		this.lHandshakeCpu = 0;
+		this.handshakeDeadline = TimingWheel.shared().newTimeout(new Runnable() {
+			public void run() {
+				handshakeTimedOut = true;
+				controller.getLogAndPublish().write("Client " + uniqueID + " handshake timed out", true, false);
+				close();
+			}
+		});
+		this.handshakeDeadline.schedule(this.controller.getHandshakeTimeout());
+		this.engine.beginHandshake();
+		processHandshake();
+		handshakeCpu(lCpuStart);
+	}
+
+	/**
+	* handshakeCpu - add the CPU used since lCpuStart to the handshake's total
+	* @param lCpuStart ServerMetrics.threadCpuNanos() before the work
+	* @return none
+	*/
+	private void handshakeCpu(long lCpuStart)
+	{
+		if (lCpuStart < 0 || this.lHandshakeCpu < 0)
+		{
+			this.lHandshakeCpu = -1;
+			return;
+		}
+		this.lHandshakeCpu += ServerMetrics.threadCpuNanos() - lCpuStart;
+	}
+
+	/**
+	* handleRead - the channel is readable: decrypt what arrived and run the messages
+	* @param none
+	* @return none
+	*/
+	void handleRead()
+	{
+		long lCpuStart = (this.framing == null) ? ServerMetrics.threadCpuNanos() : 0;
+		try {
+			ByteBuffer netIn = this.loop.netIn;
+			netIn.clear();
+			if (this.netInLeftover != null)
+			{
+				netIn.put(this.netInLeftover);
+				this.netInLeftover = null;
+			}
+			int n = this.channel.read(netIn);
+			netIn.flip();
+			if (n < 0 && !netIn.hasRemaining())
+			{
+				closeNow();
+				return;
+			}
+			unwrap(netIn);
+			/* one flush for all the responses to what this read delivered */
+			if (!this.closed)
+			{
+				queueEnvelope();
+			}
+			if (!this.closed && this.appOut != null && this.appOut.position() > 0)
+			{
+				wrapAndWrite();
+			}
+			if (!this.closed && netIn.hasRemaining())
+			{
+				/* keep the partial record for the next read */
+				this.netInLeftover = ByteBuffer.allocate(netIn.remaining());
+				this.netInLeftover.put(netIn);
+				this.netInLeftover.flip();
+			}
+			if (n < 0)
+			{
+				closeNow();
+			}
+			if (this.framing == null)
+			{
+				handshakeCpu(lCpuStart);
+			}
+		} catch (IOException ioe) {
+			this.controller.getLogAndPublish().write(this.uniqueID + ": " + ioe, true, false);
+			closeNow();
+		}
+	}
+
+	/**
+	* handleWrite - the channel is writable again: send what is pending
+	* @param none
+	* @return none
+	*/
+	void handleWrite()
+	{
+		try {
+			if (writePending())
+			{
+				this.key.interestOps(SelectionKey.OP_READ);
+				wrapAndWrite();
+				if (!this.handshakeDone)
+				{
+					/* the engine may want its delegated tasks next */
+					processHandshake();
+				}
+			}
+		} catch (IOException ioe) {
+			this.controller.getLogAndPublish().write(this.uniqueID + ": " + ioe, true, false);
+			closeNow();
+		}
+	}
+
+	/**
+	* unwrap - decrypt all complete records in the buffer
+	* @param netIn
+	* @return none
+	*/
+	private void unwrap(ByteBuffer netIn) throws IOException
+	{
+		while (!this.closed)
+		{
+			ByteBuffer appIn = this.loop.appIn;
+			appIn.clear();
+			SSLEngineResult result = this.engine.unwrap(netIn, appIn);
+			appIn.flip();
+			if (appIn.hasRemaining())
+			{
+				deliver(appIn);
+			}
+			if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+			{
+				closeNow();
+				return;
+			}
+			if (result.getStatus() != SSLEngineResult.Status.OK)
+			{
+				/* BUFFER_UNDERFLOW: the rest of the record has not arrived yet */
+				return;
+			}
+			processHandshake();
+			if (this.tasksPending)
+			{
+				/* the rest waits in the leftover until the tasks are done */
+				return;
+			}
+			if (!netIn.hasRemaining() && this.engine.getHandshakeStatus() != HandshakeStatus.NEED_UNWRAP)
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	* processHandshake - send handshake records until the engine needs more
+	* input or delegated tasks, then start the session once the handshake is done
+	* @param none
+	* @return none
+	*/
+	private void processHandshake() throws IOException
+	{
+		HandshakeStatus hs = this.engine.getHandshakeStatus();
+		while (!this.closed && !this.tasksPending && this.netOutPending == null)
+		{
+			if (hs == HandshakeStatus.NEED_TASK)
+			{
+				runDelegatedTasks();
+				return;
+			}
+			else if (hs == HandshakeStatus.NEED_WRAP)
+			{
+				wrapAndWrite();
+			}
+			else
+			{
+				break;
+			}
+			hs = this.engine.getHandshakeStatus();
+		}
+		if (!this.handshakeDone && hs == HandshakeStatus.NOT_HANDSHAKING && !this.closed)
+		{
+			this.handshakeDone = true;
+			handshakeCompleted();
+		}
+	}
+
+	/**
+	* runDelegatedTasks - run the engine's delegated tasks (the key exchange and
+	* certificate checks) on the handshake pool, not reading the channel until
+	* they are done; tasksDone picks the handshake up on the loop again. A
+	* handshake the pool cannot take is closed
+	* @param none
+	* @return none
+	*/
+	private void runDelegatedTasks()
+	{
+		this.tasksPending = true;
+		this.key.interestOps(0);
+		try {
+			this.handshakeExecutor.execute(new Runnable() {
+				public void run() {
+					long lCpuStart = ServerMetrics.threadCpuNanos();
+					Runnable task;
+					while ((task = engine.getDelegatedTask()) != null)
+					{
+						task.run();
+					}
+					final long lCpu = (lCpuStart < 0) ? -1 : ServerMetrics.threadCpuNanos() - lCpuStart;
+					loop.execute(new Runnable() {
+						public void run() {
+							tasksDone(lCpu);
+						}
+					});
+				}
+			});
+		} catch (RejectedExecutionException ree) {
+			this.tasksPending = false;
+			this.controller.getMetrics().connectionShed(ServerMetrics.SHED_QUEUE_FULL);
+			this.controller.getLogAndPublish().write("Client " + this.uniqueID + " handshake refused, the handshake queue is full", true, false);
+			closeNow();
+		}
+	}
+
+	/**
+	* tasksDone - back on the loop once the delegated tasks have run: go on
+	* with the handshake, watch the channel again and handle what arrived
+	* meanwhile
+	* @param lCpu CPU the tasks used, -1 if it cannot be measured
+	* @return none
+	*/
+	private void tasksDone(long lCpu)
+	{
+		this.tasksPending = false;
+		if (this.closed)
+		{
+			return;
+		}
+		this.lHandshakeCpu = (lCpu < 0 || this.lHandshakeCpu < 0) ? -1 : this.lHandshakeCpu + lCpu;
+		this.key.interestOps(SelectionKey.OP_READ);
+		try {
+			long lCpuStart = ServerMetrics.threadCpuNanos();
+			processHandshake();
+			handshakeCpu(lCpuStart);
+		} catch (IOException ioe) {
+			this.controller.getLogAndPublish().write(this.uniqueID + ": " + ioe, true, false);
+			closeNow();
+			return;
+		}
+		if (!this.closed && !this.tasksPending)
+		{
+			handleRead();
+		}
+	}
+
+	/**
+	* handshakeCompleted - log the peer and hand the connection to a new ClientModel.
+	* The session timer starts now, so a client that never sends its preamble is
+	* closed like one that never sends its version
+	* @param none
+	* @return none
+	*/
+	private void handshakeCompleted() throws IOException
+	{
+		SSLSession session = this.engine.getSession();
+		try {
+			X509Certificate cert = (X509Certificate)session.getPeerCertificates()[0];
+			this.controller.getLogAndPublish().write(this.uniqueID + ": Request from " + cert.getSubjectX500Principal().getName() + "\n", true, false);
+		} catch (SSLPeerUnverifiedException pue) {
+			this.controller.getLogAndPublish().write(this.uniqueID + ": Peer unverified\n", true, false);
+		}
+		this.controller.getLogAndPublish().write("Client " + this.uniqueID + " connected using protocol: " + session.getProtocol() + ", cipher: " + session.getCipherSuite()
+				+ (SecureServerController.isResumed(session, this.lHandshakeStartMillis) ? ", resumed session" : ", new session") + "\n", true, false);
+
+		this.appOut = ByteBuffer.allocate(APP_OUT_SIZE);
+		this.model = this.controller.addClient(this);
+		this.model.beginSession();
+	}
+
+	/**
+	* deliver - decode the plaintext into messages and run them through the DFA
+	* @param appIn
+	* @return none
+	*/
+	private void deliver(ByteBuffer appIn) throws IOException
+	{
+		if (this.framing == null && !readPreamble(appIn))
+		{
+			return;
+		}
+		int iByteCount;
+		while (!this.closed && this.model != null && (iByteCount = this.framing.nextMessage(appIn)) >= 0)
+		{
+			this.model.handleMessage(this.framing.getMessage(), iByteCount);
+			if (this.model.isClosed())
+			{
+				closeAfterFlush();
+				return;
+			}
+		}
+	}
+
+	/**
+	* readPreamble - collect the client's first bytes and choose the framing.
+	* The answer is the object stream header for legacy clients (their
+	* ObjectInputStream waits for it) or the raw preamble of the revision used
+	* @param appIn
+	* @return boolean true once the framing is chosen
+	*/
+	private boolean readPreamble(ByteBuffer appIn) throws IOException
+	{
+		int n = Math.min(appIn.remaining(), StreamPreamble.LENGTH - this.iPreambleRead);
+		appIn.get(this.preamble, this.iPreambleRead, n);
+		this.iPreambleRead += n;
+		if (this.iPreambleRead < StreamPreamble.LENGTH)
+		{
+			return false;
+		}
+		int iRevision = StreamPreamble.rawRevision(this.preamble);
+		if (iRevision >= 2)
+		{
+			/* revision 2 is the highest this server has, later ones are answered with it */
+			this.framing = new VarintFraming();
+			this.appOut.put(StreamPreamble.RAW_VARINT);
+		}
+		else if (iRevision == 1)
+		{
+			this.framing = new RawFraming();
+			this.appOut.put(StreamPreamble.RAW);
+		}
+		else
+		{
+			/* the object stream decoder checks the header itself */
+			this.framing = new ObjectStreamFraming();
+			this.framing.nextMessage(ByteBuffer.wrap(this.preamble));
+			this.appOut.put(StreamPreamble.OBJECT_STREAM);
+		}
+		this.handshakeDeadline.cancel();
+		this.ticket.handshakeDone();
+		this.controller.getMetrics().handshakeCompleted(this.lHandshakeStart, SecureServerController.isResumed(this.engine.getSession(), this.lHandshakeStartMillis), this.lHandshakeCpu);
+		/* the reply goes out with the first responses */
+		return true;
+	}
+
+	/**
+	* wrapAndWrite - encrypt the pending plaintext (or handshake data) and write it
+	* until everything is sent or the socket stops taking data
+	* @param none
+	* @return none
+	*/
+	private void wrapAndWrite() throws IOException
+	{
+		ByteBuffer netOut = this.loop.netOut;
+		if (this.appOut != null)
+		{
+			queueEnvelope();
+			if (this.appOut.position() > 0)
+			{
+				this.controller.getMetrics().outboundFlushed(outboundBytes());
+			}
+			this.appOut.flip();
+		}
+		try {
+			while (this.netOutPending == null && !this.closed)
+			{
+				ByteBuffer src = (this.appOut != null) ? this.appOut : EMPTY;
+				if (!src.hasRemaining() && this.engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP)
+				{
+					break;
+				}
+				netOut.clear();
+				SSLEngineResult result = this.engine.wrap(src, netOut);
+				netOut.flip();
+				write(netOut);
+				if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+				{
+					break;
+				}
+				if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK || result.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP)
+				{
+					break;
+				}
+			}
+		} finally {
+			if (this.appOut != null)
+			{
+				this.appOut.compact();
+			}
+		}
+		if (this.closeAfterFlush && this.netOutPending == null)
+		{
+			closeNow();
+		}
+	}
+
+	/**
+	* write - write ciphertext to the channel, keeping what the socket would not take
+	* @param netOut
+	* @return none
+	*/
+	private void write(ByteBuffer netOut) throws IOException
+	{
+		this.channel.write(netOut);
+		if (netOut.hasRemaining())
+		{
+			this.netOutPending = ByteBuffer.allocate(netOut.remaining());
+			this.netOutPending.put(netOut);
+			this.netOutPending.flip();
+			this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			if (this.writeDeadline != null)
+			{
+				this.writeDeadline.schedule(this.iWriteTimeout);
+			}
+		}
+	}
+
+	/**
+	* writePending - retry the ciphertext the socket did not take
+	* @param none
+	* @return boolean true once nothing is pending
+	*/
+	private boolean writePending() throws IOException
+	{
+		if (this.netOutPending != null)
+		{
+			this.channel.write(this.netOutPending);
+			if (this.netOutPending.hasRemaining())
+			{
+				return false;
+			}
+			this.netOutPending = null;
+			if (this.writeDeadline != null)
+			{
+				this.writeDeadline.cancel();
+			}
+		}
+		return true;
+	}
+
+	/**
+	* writeMessage - frame the message and encode it into appOut, which is
+	* reused for the life of the connection. It is sent by flush, or after the
+	* read that delivered the request. With envelopes it is added to the
+	* envelope being filled, which goes into appOut when it is full or sent
+	* @param msg
+	* @return none
+	*/
+	public void writeMessage(final MessageParser.EncodableMessage msg) throws IOException
+	{
+		if (!this.loop.inEventLoop())
+		{
+			this.loop.execute(new Runnable() {
+				public void run() {
+					try {
+						writeMessage(msg);
+						flush();
+					} catch (IOException ioe) {
+						closeNow();
+					}
+				}
+			});
+			return;
+		}
+		if (this.closed)
+		{
+			throw new IOException("Connection closed");
+		}
+		if (this.framing == null)
+		{
+			throw new IOException("Framing not negotiated");
+		}
+		if (this.envelope != null)
+		{
+			if (this.envelope.add(msg))
+			{
+				return;
+			}
+			queueEnvelope();
+			if (this.envelope.add(msg))
+			{
+				return;
+			}
+		}
+		queueFrame(msg);
+	}
+
+	/**
+	* startEnvelopes - pack the messages of each flush into envelopes no
+	* larger than the framing allows. Called on the event loop, by the
+	* session's handleMessage
+	* @param version
+	* @return none
+	*/
+	public void startEnvelopes(int version)
+	{
+		this.envelope = new MessageParser().new EnvelopeMessage(version, this.framing.maxMessageSize());
+	}
+
+	/**
+	* queueEnvelope - queue the envelope being filled, if it holds anything
+	* @param none
+	* @return none
+	*/
+	private void queueEnvelope() throws IOException
+	{
+		if (this.envelope != null && this.envelope.getCount() > 0)
+		{
+			try {
+				queueFrame(this.envelope);
+			} finally {
+				this.envelope.clear();
+			}
+		}
+	}
+
+	/**
+	* queueFrame - frame the message and encode it into appOut. A message
+	* that would take the queued output past the high water mark disconnects
+	* the client instead
+	* @param msg
+	* @return none
+	*/
+	private void queueFrame(MessageParser.EncodableMessage msg) throws IOException
+	{
+		int length = msg.encodedSize();
+		int size = this.framing.encodedSize(length);
+		if (this.iHighWater > 0 && outboundBytes() + size > this.iHighWater)
+		{
+			slowConsumer(ServerMetrics.SLOW_HIGH_WATER, "has more than " + this.iHighWater + " bytes waiting");
+			throw new IOException("Outbound queue over the high water mark");
+		}
+		if (this.appOut.remaining() < size)
+		{
+			/* doubling keeps the copying linear in what is queued */
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(this.appOut.position() + size, this.appOut.capacity() * 2));
+			this.appOut.flip();
+			larger.put(this.appOut);
+			this.appOut = larger;
+		}
+		this.framing.encodeHeader(length, this.appOut);
+		msg.encodeInto(this.appOut);
+	}
+
+	/**
+	* outboundBytes - bytes queued on the connection: plaintext not wrapped yet
+	* and ciphertext the socket has not taken
+	* @param none
+	* @return int
+	*/
+	private int outboundBytes()
+	{
+		return this.appOut.position() + ((this.netOutPending != null) ? this.netOutPending.remaining() : 0);
+	}
+
+	/**
+	* slowConsumer - count and log a client that fell behind and close the
+	* connection without waiting for the queued output
+	* @param iReason one of the ServerMetrics.SLOW_ constants
+	* @param sWhy for the log
+	* @return none
+	*/
+	private void slowConsumer(int iReason, String sWhy)
+	{
+		this.controller.getMetrics().slowConsumer(iReason);
+		this.controller.getLogAndPublish().write("Client " + this.uniqueID + " is a slow consumer, it " + sWhy + ", disconnecting", true, false);
+		closeNow();
+	}
+
+	/**
+	* flush - wrap and send the queued messages on the event loop
+	* @param none
+	* @return none
+	*/
+	public void flush() throws IOException
+	{
+		if (!this.loop.inEventLoop())
+		{
+			this.loop.execute(new Runnable() {
+				public void run() {
+					try {
+						flush();
+					} catch (IOException ioe) {
+						closeNow();
+					}
+				}
+			});
+			return;
+		}
+		if (!this.closed)
+		{
+			wrapAndWrite();
+		}
+	}
+
+	/**
+	* setReadTimeout - nothing blocks on a read here, the session's TimeoutTimer
+	* closes idle connections
+	* @param timeout
+	* @return none
+	*/
+	public void setReadTimeout(int timeout)
+	{
+	}
+
+	public boolean isClosed()
+	{
+		return this.closed;
+	}
+
+	/**
+	* close - close the connection on its event loop
+	* @param none
+	* @return none
+	*/
+	public void close()
+	{
+		if (this.loop.inEventLoop())
+		{
+			closeNow();
+		}
+		else
+		{
+			this.loop.execute(new Runnable() {
+				public void run() {
+					closeNow();
+				}
+			});
+		}
+	}
+
+	/**
+	* abort - close on the event loop; a non blocking close never waits on the
+	* client
+	* @param none
+	* @return none
+	*/
+	public void abort()
+	{
+		close();
+	}
+
+	/**
+	* execute - run a task on the connection's event loop
+	* @param task
+	* @param threads not used, the loop runs it
+	* @return none
+	*/
+	public void execute(Runnable task, ThreadFactory threads)
+	{
+		if (this.loop.inEventLoop())
+		{
+			task.run();
+		}
+		else
+		{
+			this.loop.execute(task);
+		}
+	}
+
+	/**
+	* closeAfterFlush - send the queued messages and close once the pending
+	* output has been written
+	* @param none
+	* @return none
+	*/
+	private void closeAfterFlush() throws IOException
+	{
+		this.closeAfterFlush = true;
+		wrapAndWrite();
+	}
+
+	/**
+	* closeNow - send close_notify if possible, close the channel and let the
+	* ClientModel clean up
+	* @param none
+	* @return none
+	*/
+	void closeNow()
+	{
+		if (this.closed)
+		{
+			return;
+		}
+		try {
+			/* no close_notify while delegated tasks are using the engine */
+			if (this.netOutPending == null && this.key != null && !this.tasksPending)
+			{
+				this.engine.closeOutbound();
+				ByteBuffer netOut = this.loop.netOut;
+				netOut.clear();
+				this.engine.wrap(EMPTY, netOut);
+				netOut.flip();
+				this.channel.write(netOut);
+			}
+		} catch (SSLException se) {
+			// best effort only
+		} catch (IOException ioe) {
+			// best effort only
+		}
+		this.closed = true;
+		if (this.writeDeadline != null)
+		{
+			this.writeDeadline.cancel();
+		}
+		if (this.key != null)
+		{
+			this.key.cancel();
+			if (this.framing == null)
+			{
+				this.handshakeDeadline.cancel();
+				this.controller.getMetrics().handshakeFailed(this.handshakeTimedOut);
+			}
+		}
+		try {
+			this.channel.close();
+		} catch (IOException ioe) { }
+		this.ticket.release();
+		this.netInLeftover = null;
+		this.netOutPending = null;
+		this.appOut = null;
+		if (this.model != null)
+		{
+			this.model.endSession();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import common.LogAndPublish;
+
+/**
+ * NioEventLoop is one of the small fixed set of I/O threads used by the NIO
+ * transport. Each loop owns a Selector and every connection registered with it,
+ * so a connection's SSLEngine, framing state and ClientModel are only ever
+ * touched by this thread. Work from other threads (registration, close requests)
+ * is handed over through a task queue.
+ *
+ * The network and application buffers are shared by all connections of the loop;
+ * a connection only keeps the bytes it could not finish with (a partial TLS record
+ * or output the socket would not take), which keeps idle connections cheap.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class NioEventLoop extends Thread {
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Runnable> tasks;
+	private final LogAndPublish logAndPublish;
+	private volatile boolean running;
+
+	/* scratch buffers shared by the connections of this loop */
+	final ByteBuffer netIn;
+	final ByteBuffer netOut;
+	final ByteBuffer appIn;
+
+	/**
+	* Constructor
+	* @param id number of this loop
+	* @param packetBufferSize largest TLS record the engines will produce
+	* @param appBufferSize largest plaintext a TLS record will decode to
+	* @param logAndPublish
+	*/
+	NioEventLoop(int id, int packetBufferSize, int appBufferSize, LogAndPublish logAndPublish) throws IOException
+	{
+		super("AGMP-IO-" + id);
+		this.selector = Selector.open();
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.logAndPublish = logAndPublish;
+		/* a partial record may be carried over in front of a full read */
+		this.netIn = ByteBuffer.allocateDirect(2 * packetBufferSize);
+		this.netOut = ByteBuffer.allocateDirect(packetBufferSize);
+		this.appIn = ByteBuffer.allocate(appBufferSize);
+		this.running = true;
+	}
+
+	/**
+	* register - hand a newly accepted connection to this loop
+	* @param connection
+	* @return none
+	*/
+	void register(final NioClientConnection connection)
+	{
+		execute(new Runnable() {
+			public void run() {
+				try {
+					SelectionKey key = connection.getChannel().register(NioEventLoop.this.selector, SelectionKey.OP_READ, connection);
+					connection.registered(key);
+				} catch (IOException ioe) {
+					NioEventLoop.this.logAndPublish.write(connection.getUniqueID() + ": " + ioe, true, false);
+					connection.closeNow();
+				}
+			}
+		});
+	}
+
+	/**
+	* execute - run a task on this loop
+	* @param task
+	* @return none
+	*/
+	void execute(Runnable task)
+	{
+		this.tasks.add(task);
+		this.selector.wakeup();
+	}
+
+	/**
+	* inEventLoop - determine whether the caller is this loop's thread
+	* @param none
+	* @return boolean
+	*/
+	boolean inEventLoop()
+	{
+		return Thread.currentThread() == this;
+	}
+
+	/**
+	* run - select and dispatch ready connections until shut down
+	* @param none
+	* @return none
+	*/
+	public void run()
+	{
+		while (this.running)
+		{
+			try {
+				this.selector.select();
+			} catch (IOException ioe) {
+				this.logAndPublish.write(getName() + ": " + ioe, true, false);
+				break;
+			}
+			runTasks();
+			Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				NioClientConnection connection = (NioClientConnection)key.attachment();
+				try {
+					if (key.isValid() && key.isWritable())
+					{
+						connection.handleWrite();
+					}
+					if (key.isValid() && key.isReadable())
+					{
+						connection.handleRead();
+					}
+				} catch (RuntimeException re) {
+					/* a bug hit by one session must not end the others on this loop */
+					this.logAndPublish.write(connection.getUniqueID() + ": " + re, true, false);
+					this.logAndPublish.write(re, true, false);
+					closeQuietly(connection);
+				}
+			}
+		}
+		/* closing down: drop whatever is still registered */
+		runTasks();
+		for (SelectionKey key : new ArrayList<SelectionKey>(this.selector.keys()))
+		{
+			closeQuietly((NioClientConnection)key.attachment());
+		}
+		try {
+			this.selector.close();
+		} catch (IOException ioe) { }
+	}
+
+	/**
+	* closeQuietly - close a connection that failed, whatever its ClientModel
+	* throws while it cleans up
+	* @param connection
+	* @return none
+	*/
+	private void closeQuietly(NioClientConnection connection)
+	{
+		try {
+			connection.closeNow();
+		} catch (RuntimeException re) {
+			this.logAndPublish.write(connection.getUniqueID() + ": " + re, true, false);
+		}
+	}
+
+	/**
+	* runTasks - run the tasks handed over by other threads
+	* @param none
+	* @return none
+	*/
+	private void runTasks()
+	{
+		Runnable task;
+		while ((task = this.tasks.poll()) != null)
+		{
+			try {
+				task.run();
+			} catch (RuntimeException re) {
+				this.logAndPublish.write(re, true, false);
+			}
+		}
+	}
+
+	/**
+	* shutdown - stop the loop and close its connections
+	* @param none
+	* @return none
+	*/
+	void shutdown()
+	{
+		this.running = false;
+		this.selector.wakeup();
+	}
+}
@@ -0,0 +1,180 @@
+package server;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import common.StreamPreamble;
+
+/**
+ * ObjectStreamFraming speaks the byte layout that an ObjectOutputStream/ObjectInputStream
+ * pair puts on the wire, so a non blocking transport can exchange AGMP messages with
+ * clients that still wrap their socket in object streams.
+ *
+ * The stream starts with the serialization header (0xACED 0x0005). Everything written
+ * with writeByte/write afterwards travels in block data records, either TC_BLOCKDATA
+ * (0x77 + 1 byte length) or TC_BLOCKDATALONG (0x7A + 4 byte length). Inside the block
+ * data every AGMP message is prefixed by its length in one byte.
+ *
+ * One instance holds the decode state of one connection and is only used by the
+ * event loop that owns the connection.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class ObjectStreamFraming implements MessageFraming {
+
+	/* serialization stream constants, see java.io.ObjectStreamConstants */
+	static final byte[] STREAM_HEADER = StreamPreamble.OBJECT_STREAM;
+	static final int TC_BLOCKDATA = 0x77;
+	static final int TC_BLOCKDATALONG = 0x7A;
+	static final int TC_RESET = 0x79;
+	/* largest message that fits the one byte length prefix */
+	static final int MAX_MESSAGE_SIZE = 127;
+
+	/* stream header bytes seen so far */
+	private int iHeaderRead = 0;
+	/* bytes of the current block data record not yet consumed, -1 between records */
+	private int iBlockRemaining = -1;
+	/* TC_BLOCKDATALONG length bytes seen so far */
+	private int iLongHeaderRead = -1;
+	/* the message being assembled, -1 while waiting for the length byte */
+	private byte[] frame = new byte[MAX_MESSAGE_SIZE];
+	private int iFrameLength = -1;
+	private int iFrameRead = 0;
+
+	public int nextMessage(ByteBuffer src) throws IOException
+	{
+		/* the peer's stream header comes first */
+		while (this.iHeaderRead < STREAM_HEADER.length)
+		{
+			if (!src.hasRemaining())
+			{
+				return -1;
+			}
+			if (src.get() != STREAM_HEADER[this.iHeaderRead])
+			{
+				throw new StreamCorruptedException("invalid stream header");
+			}
+			this.iHeaderRead++;
+		}
+		while (src.hasRemaining())
+		{
+			if (this.iBlockRemaining <= 0)
+			{
+				if (!readBlockHeader(src))
+				{
+					return -1;
+				}
+				continue;
+			}
+			if (this.iFrameLength < 0)
+			{
+				this.iFrameLength = src.get();
+				this.iBlockRemaining--;
+				this.iFrameRead = 0;
+				if (this.iFrameLength < 0)
+				{
+					throw new StreamCorruptedException("invalid message length " + this.iFrameLength);
+				}
+			}
+			else
+			{
+				int n = Math.min(Math.min(src.remaining(), this.iBlockRemaining), this.iFrameLength - this.iFrameRead);
+				src.get(this.frame, this.iFrameRead, n);
+				this.iFrameRead += n;
+				this.iBlockRemaining -= n;
+			}
+			if (this.iFrameLength >= 0 && this.iFrameRead == this.iFrameLength)
+			{
+				int length = this.iFrameLength;
+				this.iFrameLength = -1;
+				return length;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	* readBlockHeader - read the tag and length of the next block data record
+	* @param src
+	* @return boolean true once the whole header has been read
+	*/
+	private boolean readBlockHeader(ByteBuffer src) throws IOException
+	{
+		if (this.iLongHeaderRead < 0)
+		{
+			int tag = src.get() & 0xFF;
+			if (tag == TC_BLOCKDATA)
+			{
+				if (!src.hasRemaining())
+				{
+					/* length byte has not arrived yet, wait for it as a 1 byte "long" header */
+					this.iLongHeaderRead = 3;
+					this.iBlockRemaining = 0;
+					return false;
+				}
+				this.iBlockRemaining = src.get() & 0xFF;
+				return true;
+			}
+			else if (tag == TC_BLOCKDATALONG)
+			{
+				this.iLongHeaderRead = 0;
+				this.iBlockRemaining = 0;
+			}
+			else if (tag == TC_RESET)
+			{
+				return true;
+			}
+			else
+			{
+				throw new StreamCorruptedException("unexpected type code " + tag);
+			}
+		}
+		while (this.iLongHeaderRead < 4)
+		{
+			if (!src.hasRemaining())
+			{
+				return false;
+			}
+			this.iBlockRemaining = (this.iBlockRemaining << 8) | (src.get() & 0xFF);
+			this.iLongHeaderRead++;
+		}
+		this.iLongHeaderRead = -1;
+		if (this.iBlockRemaining < 0)
+		{
+			throw new StreamCorruptedException("invalid block length " + this.iBlockRemaining);
+		}
+		return true;
+	}
+
+	public byte[] getMessage()
+	{
+		return this.frame;
+	}
+
+	public int encodedSize(int iLength)
+	{
+		return 3 + iLength;
+	}
+
+	/**
+	* encodeHeader - start one message as its own block data record, the
+	* same bytes an ObjectOutputStream produces for writeByte, write and flush
+	* @param iLength
+	* @param dst
+	* @return none
+	*/
+	public void encodeHeader(int iLength, ByteBuffer dst)
+	{
+		dst.put((byte)TC_BLOCKDATA);
+		dst.put((byte)(iLength + 1));
+		dst.put((byte)iLength);
+	}
+
+	public int maxMessageSize()
+	{
+		return MAX_MESSAGE_SIZE;
+	}
+}
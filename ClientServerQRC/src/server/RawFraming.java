@@ -0,0 +1,69 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * RawFraming is the framing selected by the StreamPreamble.RAW preamble: every
+ * message is one unsigned length byte followed by the PDU, with nothing else
+ * on the stream.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class RawFraming implements MessageFraming {
+	/* largest message that fits the length byte */
+	static final int MAX_MESSAGE_SIZE = 255;
+
+	/* the message being assembled, -1 while waiting for the length byte */
+	private final byte[] frame = new byte[MAX_MESSAGE_SIZE];
+	private int iFrameLength = -1;
+	private int iFrameRead = 0;
+
+	public int nextMessage(ByteBuffer src) throws IOException
+	{
+		while (src.hasRemaining())
+		{
+			if (this.iFrameLength < 0)
+			{
+				this.iFrameLength = src.get() & 0xFF;
+				this.iFrameRead = 0;
+			}
+			else
+			{
+				int n = Math.min(src.remaining(), this.iFrameLength - this.iFrameRead);
+				src.get(this.frame, this.iFrameRead, n);
+				this.iFrameRead += n;
+			}
+			if (this.iFrameRead == this.iFrameLength)
+			{
+				int length = this.iFrameLength;
+				this.iFrameLength = -1;
+				return length;
+			}
+		}
+		return -1;
+	}
+
+	public byte[] getMessage()
+	{
+		return this.frame;
+	}
+
+	public int encodedSize(int iLength)
+	{
+		return 1 + iLength;
+	}
+
+	public void encodeHeader(int iLength, ByteBuffer dst)
+	{
+		dst.put((byte)iLength);
+	}
+
+	public int maxMessageSize()
+	{
+		return MAX_MESSAGE_SIZE;
+	}
+}
@@ -0,0 +1,210 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import common.MessageParser;
+
+/**
+ * ResponseCache holds the lobby responses that are byte for byte the same
+ * for every session: the version requirement and upgrade messages, the game
+ * list, the set game ACK for each game and INVALID, and the two connection
+ * messages. They are encoded once when the cache is built and written from
+ * then on by copying the bytes, so a session allocates nothing to send one.
+ *
+ * A cache is built for one version, minor version and game list. get()
+ * returns the current cache while those match and builds a new one when
+ * they change, so sessions created after a change never see stale bytes.
+ * A cache never changes once built and is shared by all sessions.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class ResponseCache {
+	private static volatile ResponseCache current;
+
+	private final int iVersion;
+	private final short nMinorVersion;
+	private final int[] gameTypes;
+	private final Encoded versionRequirement;
+	private final Encoded versionUpgrade;
+	private final Encoded gameList;
+	/* set game ACK and INVALID for each game in gameTypes, INVALID for NOT_SET last */
+	private final Encoded[] setGameAck;
+	private final Encoded[] setGameInvalid;
+	private final Encoded closeConnection;
+	private final Encoded closeConnectionAck;
+
+	/**
+	* get - the cache for a version, minor version and game list, the current
+	* one if it was built for them
+	* @param iVersion
+	* @param nMinorVersion
+	* @param gameTypes
+	* @return ResponseCache
+	*/
+	public static ResponseCache get(int iVersion, short nMinorVersion, List<Integer> gameTypes)
+	{
+		ResponseCache cache = current;
+		if (cache == null || !cache.matches(iVersion, nMinorVersion, gameTypes))
+		{
+			cache = new ResponseCache(iVersion, nMinorVersion, gameTypes);
+			current = cache;
+		}
+		return cache;
+	}
+
+	private ResponseCache(int iVersion, short nMinorVersion, List<Integer> gameTypes)
+	{
+		MessageParser messageParser = new MessageParser();
+		this.iVersion = iVersion;
+		this.nMinorVersion = nMinorVersion;
+		this.gameTypes = new int[gameTypes.size()];
+		for (int iI = 0; iI < this.gameTypes.length; iI++)
+		{
+			this.gameTypes[iI] = gameTypes.get(iI).intValue();
+		}
+		this.versionRequirement = new Encoded(messageParser.new VersionMessage(iVersion, MessageParser.TYPE_INDICATOR_VERSION,
+				MessageParser.VERSION_INDICATOR_VERSION_REQUIREMENT, nMinorVersion, (long)0));
+		this.versionUpgrade = new Encoded(messageParser.new VersionMessage(iVersion, MessageParser.TYPE_INDICATOR_VERSION,
+				MessageParser.VERSION_INDICATOR_VERSION_UPGRADE, nMinorVersion, (long)0));
+		int length = 12 + (int)(Math.ceil((double)gameTypes.size() / 4) * 4);
+		this.gameList = new Encoded(messageParser.new ServerGetGameMessage(iVersion, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_GET_GAME, length, new ArrayList<Integer>(gameTypes)));
+		this.setGameAck = new Encoded[this.gameTypes.length];
+		this.setGameInvalid = new Encoded[this.gameTypes.length + 1];
+		for (int iI = 0; iI <= this.gameTypes.length; iI++)
+		{
+			int iGameType = (iI < this.gameTypes.length) ? this.gameTypes[iI] : MessageParser.NOT_SET;
+			if (iI < this.gameTypes.length)
+			{
+				this.setGameAck[iI] = new Encoded(messageParser.new ServerSetGameMessage(iVersion, MessageParser.TYPE_INDICATOR_GAME,
+						MessageParser.GAME_INDICATOR_SET_GAME, iGameType, MessageParser.GAME_TYPE_RESPONSE_ACK));
+			}
+			this.setGameInvalid[iI] = new Encoded(messageParser.new ServerSetGameMessage(iVersion, MessageParser.TYPE_INDICATOR_GAME,
+					MessageParser.GAME_INDICATOR_SET_GAME, iGameType, MessageParser.GAME_TYPE_RESPONSE_INVALID));
+		}
+		this.closeConnection = new Encoded(messageParser.new ConnectionMessage(iVersion, MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION,
+				MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION));
+		this.closeConnectionAck = new Encoded(messageParser.new ConnectionMessage(iVersion, MessageParser.TYPE_INDICATOR_CLOSE_CONNECTION,
+				MessageParser.CONNECTION_INDICATOR_CLOSE_CONNECTION_ACK));
+	}
+
+	private boolean matches(int iVersion, short nMinorVersion, List<Integer> gameTypes)
+	{
+		if (this.iVersion != iVersion || this.nMinorVersion != nMinorVersion || this.gameTypes.length != gameTypes.size())
+		{
+			return false;
+		}
+		for (int iI = 0; iI < this.gameTypes.length; iI++)
+		{
+			if (this.gameTypes[iI] != gameTypes.get(iI).intValue())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	* versionRequirement - VERSION_REQUIREMENT, sent until the client sends its version
+	* @param none
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage versionRequirement()
+	{
+		return this.versionRequirement;
+	}
+
+	/**
+	* versionUpgrade - VERSION_UPGRADE, sent to a client with another version
+	* @param none
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage versionUpgrade()
+	{
+		return this.versionUpgrade;
+	}
+
+	/**
+	* gameList - the Server Get Game Message with the game list
+	* @param none
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage gameList()
+	{
+		return this.gameList;
+	}
+
+	/**
+	* setGame - the Server Set Game Message answering a game type. Game types
+	* that are neither in the list nor NOT_SET are encoded on the spot
+	* @param iGameTypeCode
+	* @param iResponse GAME_TYPE_RESPONSE_ACK or GAME_TYPE_RESPONSE_INVALID
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage setGame(int iGameTypeCode, int iResponse)
+	{
+		for (int iI = 0; iI <= this.gameTypes.length; iI++)
+		{
+			int iGameType = (iI < this.gameTypes.length) ? this.gameTypes[iI] : MessageParser.NOT_SET;
+			if (iGameType == iGameTypeCode)
+			{
+				if (iResponse == MessageParser.GAME_TYPE_RESPONSE_INVALID)
+				{
+					return this.setGameInvalid[iI];
+				}
+				if (iResponse == MessageParser.GAME_TYPE_RESPONSE_ACK && iI < this.gameTypes.length)
+				{
+					return this.setGameAck[iI];
+				}
+			}
+		}
+		return new MessageParser().new ServerSetGameMessage(this.iVersion, MessageParser.TYPE_INDICATOR_GAME,
+				MessageParser.GAME_INDICATOR_SET_GAME, iGameTypeCode, iResponse);
+	}
+
+	/**
+	* closeConnection - CLOSE_CONNECTION, sent when the server closes the session
+	* @param none
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage closeConnection()
+	{
+		return this.closeConnection;
+	}
+
+	/**
+	* closeConnectionAck - CLOSE_CONNECTION_ACK, the answer to a client's CLOSE_CONNECTION
+	* @param none
+	* @return MessageParser.EncodableMessage
+	*/
+	public MessageParser.EncodableMessage closeConnectionAck()
+	{
+		return this.closeConnectionAck;
+	}
+
+	/* a PDU encoded once, encodeInto only reads the bytes so any number of sessions may write it at once */
+	private static final class Encoded implements MessageParser.EncodableMessage {
+		private final byte[] pdu;
+
+		Encoded(MessageParser.EncodableMessage msg)
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(msg.encodedSize());
+			msg.encodeInto(buffer);
+			this.pdu = buffer.array();
+		}
+
+		public int encodedSize()
+		{
+			return this.pdu.length;
+		}
+
+		public void encodeInto(ByteBuffer dst)
+		{
+			dst.put(this.pdu);
+		}
+	}
+}
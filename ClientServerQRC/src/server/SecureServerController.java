@@ -24,11 +24,25 @@
 
 package server;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
-import java.util.Vector;
 import java.util.Observer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.reflect.Method;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import javax.net.ssl.*;
 import common.*;
 import java.security.*;
@@ -48,15 +62,13 @@ public class SecureServerController implements Observer {
 	private String keyStore=null;
 	private String keyStorePassword=null;  
 	
-	/** This vector holds all connected clients. */
-	private Vector<ClientModel> clients;
+	/** All connected clients, keyed by their uniqueID */
+	private final SessionRegistry sessions;
 	
-	private SSLSocket socket;
-	private SSLServerSocket ssocket;  //ServerController Socket
+	private ServerSocket ssocket;  //ServerController Socket
 	
 	private StartSecureServerControllerThread sst; //inner class
-	private SSLServerSocketFactory ssf;
-	private ClientModel ClientModel;
+	private StartNioServerControllerThread snt; //inner class, NIO transport
 	private final XmlParser xmlParser;
 	/* logging utility */
 	private LogAndPublish logAndPublish;
@@ -67,6 +79,45 @@ public class SecureServerController implements Observer {
 	
 	/** status for listening */
 	private boolean listening;	
+
+	/** BLOCKING for a thread per client, NIO for selector driven event loops */
+	private String transportMode;
+	/** number of event loops used by the NIO transport */
+	private int ioEventLoops;
+	/** threads calling accept() on the listening socket */
+	private int acceptorThreads;
+	/** creates the thread that runs each ClientModel on the blocking transport */
+	private ThreadFactory sessionThreadFactory;
+	/** threads running TLS handshakes for the blocking transport */
+	private int handshakeThreads;
+	/** accepted connections that may wait for a handshake thread */
+	private int handshakeQueueSize;
+	/** milliseconds a client has to finish the handshake and send its preamble */
+	private int handshakeTimeout;
+	/** bytes of encoded messages a connection may have waiting to be sent, 0 for no limit */
+	private int outboundHighWater;
+	/** milliseconds one flush may wait for the client to take the data, 0 for no limit */
+	private int writeTimeout;
+	/** sessions kept for resumption, 0 for no limit */
+	private int tlsSessionCacheSize;
+	/** seconds a session may be resumed for */
+	private int tlsSessionTimeout;
+	/** process wide server SSLContext, rebuilt when the key stores change */
+	private final SSLContextCache sslContextCache;
+	/** logs key store reloads while the server is listening */
+	private final SSLContextCache.ReloadListener reloadListener;
+	/** counters reported by getMetrics */
+	private final ServerMetrics metrics = new ServerMetrics();
+	/** limits on open connections, handshakes and connections per address */
+	private final AdmissionControl admission;
+	/** set once drain has started, the server accepts no more connections */
+	private volatile boolean draining;
+	/** how often drain checks for sessions that have ended */
+	private static final long DRAIN_POLL_MILLIS = 50;
+	/** how often drain logs the sessions left */
+	private static final long DRAIN_REPORT_MILLIS = 1000;
+	/** JSSE switch for stateless session resumption, defaulted from TLS_SESSION_TICKETS */
+	private static final String SESSION_TICKET_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
 	
 	/**
    * start - start the server controller
@@ -92,14 +143,51 @@ public class SecureServerController implements Observer {
 	public SecureServerController(XmlParser xmlParser, LogAndPublish logAndPublish) {
 		this.xmlParser = xmlParser;
       this.logAndPublish = logAndPublish;
-		this.clients = new Vector<ClientModel>();
 	    this.port = Integer.parseInt(this.xmlParser.getServerTagValue("PORT_NUMBER"));
 	    this.listening = false;
 		this.trustStore=this.xmlParser.getServerTagValue("DEFAULT_TRUSTSTORE");
 		this.trustStorePassword=this.xmlParser.getServerTagValue("DEFAULT_TRUSTSTORE_PASSWORD");
 		this.keyStore=this.xmlParser.getServerTagValue("DEFAULT_KEYSTORE");
 		this.keyStorePassword=this.xmlParser.getServerTagValue("DEFAULT_KEYSTORE_PASSWORD");
+		this.transportMode=this.xmlParser.getServerTagValue("TRANSPORT_MODE");
+		this.ioEventLoops=Integer.parseInt(this.xmlParser.getServerTagValue("IO_EVENT_LOOPS"));
+		this.acceptorThreads=Integer.parseInt(this.xmlParser.getServerTagValue("ACCEPTOR_THREADS"));
 		this.logAndPublish.write("Setting port number to:" + this.port, true, false);
+		this.logAndPublish.write("Using transport: " + this.transportMode, true, false);
+		this.sessionThreadFactory = createSessionThreadFactory(this.xmlParser.getServerTagValue("SESSION_THREADS"));
+		this.handshakeThreads=Integer.parseInt(this.xmlParser.getServerTagValue("HANDSHAKE_THREADS"));
+		this.handshakeQueueSize=Integer.parseInt(this.xmlParser.getServerTagValue("HANDSHAKE_QUEUE_SIZE"));
+		this.handshakeTimeout=Integer.parseInt(this.xmlParser.getServerTagValue("HANDSHAKE_TIMEOUT"));
+		this.outboundHighWater=Integer.parseInt(this.xmlParser.getServerTagValue("OUTBOUND_HIGH_WATER"));
+		this.writeTimeout=Integer.parseInt(this.xmlParser.getServerTagValue("WRITE_TIMEOUT"));
+		this.tlsSessionCacheSize=Integer.parseInt(this.xmlParser.getServerTagValue("TLS_SESSION_CACHE_SIZE"));
+		this.tlsSessionTimeout=Integer.parseInt(this.xmlParser.getServerTagValue("TLS_SESSION_TIMEOUT"));
+		/* a JVM-wide system property, read once when JSSE first loads: TLS_SESSION_TICKETS
+		 * only fills it in when the operator has not set it with -D, and only takes effect
+		 * if no TLS class has been used yet in this JVM */
+		if (System.getProperty(SESSION_TICKET_PROPERTY) == null)
+		{
+			System.setProperty(SESSION_TICKET_PROPERTY, "" + Boolean.parseBoolean(this.xmlParser.getServerTagValue("TLS_SESSION_TICKETS")));
+		}
+		this.logAndPublish.write("Using " + SESSION_TICKET_PROPERTY + "=" + System.getProperty(SESSION_TICKET_PROPERTY), true, false);
+		this.sslContextCache = SSLContextCache.shared(SSLContextCache.ROLE_SERVER, this.keyStore, this.keyStorePassword, this.trustStore, this.trustStorePassword,
+				Long.parseLong(this.xmlParser.getServerTagValue("KEYSTORE_WATCH_INTERVAL")));
+		this.sslContextCache.setSessionCache(this.tlsSessionCacheSize, this.tlsSessionTimeout);
+		int maxSessions = Integer.parseInt(this.xmlParser.getServerTagValue("MAX_SESSIONS"));
+		this.admission = new AdmissionControl(maxSessions,
+				Integer.parseInt(this.xmlParser.getServerTagValue("MAX_HANDSHAKES")),
+				Integer.parseInt(this.xmlParser.getServerTagValue("MAX_SESSIONS_PER_ADDRESS")), this.metrics);
+		this.metrics.setAdmission(this.admission);
+		this.sessions = new SessionRegistry(maxSessions);
+		this.metrics.setSessions(this.sessions);
+		this.reloadListener = new SSLContextCache.ReloadListener() {
+			public void reloaded(SSLContext context) {
+				SecureServerController.this.logAndPublish.write("Key stores changed, new connections use the reloaded certificates", true, true);
+			}
+			public void reloadFailed(Exception e) {
+				SecureServerController.this.logAndPublish.write("Key stores changed but could not be loaded, keeping the current certificates: " + e, true, true);
+			}
+		};
 		this.logAndPublish.write("Using TrustStore: " + this.trustStore, true, false);
 		this.logAndPublish.write("Setting KeyStore: " + this.keyStore, true, false);
 	}
@@ -111,11 +199,101 @@ public class SecureServerController implements Observer {
    */
 	public void startServerController() {
 		if (!listening) {
-			this.sst = new StartSecureServerControllerThread();
-	        this.sst.start();
+			this.sslContextCache.addReloadListener(this.reloadListener);
+			if ("NIO".equalsIgnoreCase(this.transportMode))
+			{
+				this.snt = new StartNioServerControllerThread();
+				this.snt.start();
+			}
+			else
+			{
+				this.sst = new StartSecureServerControllerThread();
+				this.sst.start();
+			}
 	        this.listening = true;
 	    }
 	}
+	/**
+   * drain - shut down without cutting hands short. The server stops accepting,
+   * sessions that are not in a hand are sent CLOSE_CONNECTION and closed, and
+   * sessions in a hand are closed when it ends. Each session does that on its
+   * own event loop or thread, this thread only marks them, so no client can
+   * hold up the drain. Handshakes already running finish and their sessions
+   * are drained too. Whatever is still open after lTimeoutMillis is closed
+   * by stopServerController. Blocks until then and logs the sessions left by
+   * state every second; getSessions() can be read from other threads meanwhile
+   * @param lTimeoutMillis
+   * @return boolean true if every session ended before the deadline
+   */
+	public boolean drain(long lTimeoutMillis) {
+		if (!this.listening || this.draining)
+		{
+			return false;
+		}
+		this.draining = true;
+		this.logAndPublish.write("Draining: no longer accepting connections, " + this.sessions + " sessions open", true, true);
+		if (this.sst != null)
+		{
+			this.sst.stopAccepting();
+		}
+		if (this.snt != null)
+		{
+			this.snt.stopAccepting();
+		}
+		long lDeadline = System.currentTimeMillis() + lTimeoutMillis;
+		long lNextReport = System.currentTimeMillis() + DRAIN_REPORT_MILLIS;
+		try {
+			while (true)
+			{
+				/* sessions that finished their handshake since the last pass are picked up too */
+				for (ClientModel model : this.sessions.sessions())
+				{
+					if (System.currentTimeMillis() >= lDeadline)
+					{
+						break;
+					}
+					model.drain(this.sessionThreadFactory);
+				}
+				long lNow = System.currentTimeMillis();
+				if ((this.sessions.size() == 0 && !isHandshaking()) || lNow >= lDeadline)
+				{
+					break;
+				}
+				if (lNow >= lNextReport)
+				{
+					this.logAndPublish.write("Draining: " + this.sessions + " sessions left", true, true);
+					lNextReport = lNow + DRAIN_REPORT_MILLIS;
+				}
+				Thread.sleep(Math.min(DRAIN_POLL_MILLIS, lDeadline - lNow));
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		boolean drained = this.sessions.size() == 0;
+		this.logAndPublish.write(drained ? "Drained: all sessions closed" : "Drain deadline reached, closing " + this.sessions + " sessions", true, true);
+		stopServerController();
+		return drained;
+	}
+
+	/**
+   * isHandshaking - determine whether handshakes are still running, whose
+   * sessions the drain has yet to see
+   * @param none
+   * @return boolean
+   */
+	private boolean isHandshaking() {
+		return (this.sst != null && this.sst.isHandshaking()) || (this.snt != null && this.snt.isHandshaking());
+	}
+
+	/**
+   * isDraining - determine whether drain has been called
+   * @param none
+   * @return boolean
+   */
+	public boolean isDraining() {
+		return this.draining;
+	}
+
 	/**
    * stpServerController - stop the server controller
    * @param none
@@ -123,15 +301,23 @@ public class SecureServerController implements Observer {
    */
 	public void stopServerController() {
 	    if (this.listening) {
-	        this.sst.stopServerControllerThread();
-	        //close all connected clients//
-
-	        Enumeration<ClientModel> e = this.clients.elements();
-	        while(e.hasMoreElements())
+	        if (this.sst != null)
+	        {
+	        	this.sst.stopServerControllerThread();
+	        }
+	        if (this.snt != null)
+	        {
+	        	this.snt.stopServerControllerThread();
+	        }
+	        //close all connected clients, each removes itself as it ends//
+	        for (ClientModel ct : this.sessions.sessions())
 	        {
-			  ClientModel ct = (ClientModel)e.nextElement();
 	          ct.stopClient();
 	        }
+	        this.sslContextCache.removeReloadListener(this.reloadListener);
+	        //write out what was captured of the sessions//
+	        SessionCapture.closeAll();
+	        this.logAndPublish.write("Server metrics: " + this.metrics, true, false);
 	        this.listening = false;
 	    }
 	}
@@ -144,7 +330,168 @@ public class SecureServerController implements Observer {
    */
 	public void update(Observable observable, Object object) {
 	    //notified by observables, do cleanup here//
-	    this.clients.removeElement(observable);
+	    this.sessions.remove((ClientModel)observable);
+	}
+
+	/**
+   * createSessionThreadFactory - get the factory for session threads. VIRTUAL uses
+   * virtual threads when the JVM has them (looked up by reflection so the server
+   * still builds and runs on older JVMs), anything else uses platform threads
+   * @param mode PLATFORM or VIRTUAL
+   * @return ThreadFactory
+   */
+	private ThreadFactory createSessionThreadFactory(String mode) {
+		if ("VIRTUAL".equalsIgnoreCase(mode))
+		{
+			try {
+				Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				Method name = builderClass.getMethod("name", String.class, long.class);
+				builder = name.invoke(builder, "AGMP-Session-", 0L);
+				ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+				this.logAndPublish.write("Running sessions on virtual threads", true, false);
+				return factory;
+			} catch (Exception e) {
+				this.logAndPublish.write("Virtual threads are not available on this JVM, using platform threads", true, true);
+			}
+		}
+		return new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				return new Thread(r);
+			}
+		};
+	}
+
+	/**
+   * newHandshakeExecutor - the bounded pool of HANDSHAKE_THREADS threads and a
+   * queue of HANDSHAKE_QUEUE_SIZE that runs the handshake work: whole
+   * handshakes for the blocking transport, the engines' delegated tasks for
+   * the event loops. Its queue is reported as the handshake queue depth
+   * @param none
+   * @return ThreadPoolExecutor
+   */
+	private ThreadPoolExecutor newHandshakeExecutor() {
+		int threads = Math.max(1, this.handshakeThreads);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, this.handshakeQueueSize)), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AGMP-Handshake-" + this.count.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		this.metrics.setHandshakeQueue(executor.getQueue());
+		return executor;
+	}
+
+	/**
+   * addClient - create the ClientModel for a connection and start tracking it
+   * @param connection
+   * @return ClientModel
+   */
+	ClientModel addClient(ClientConnection connection) {
+		ClientModel model = new ClientModel(connection, this.xmlParser, this.logAndPublish, this.sessions.newGameState());
+		model.addObserver(this);
+		this.sessions.add(model);
+		return model;
+	}
+
+	/**
+   * closeQuietly - close a socket that never became a session
+   * @param socket
+   * @return none
+   */
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException ioe) {
+			//already closed
+		}
+	}
+
+	/**
+   * isResumed - determine whether a handshake resumed an earlier session. A
+   * resumed session keeps the creation time of the handshake that created it
+   * @param session
+   * @param lStartMillis System.currentTimeMillis() when the handshake started
+   * @return boolean
+   */
+	static boolean isResumed(SSLSession session, long lStartMillis) {
+		return session.getCreationTime() < lStartMillis;
+	}
+
+	/**
+   * refuse - drop a connection that was not admitted. The reset skips the
+   * close handshake and leaves no TIME_WAIT behind on the server
+   * @param socket
+   * @return none
+   */
+	private static void refuse(Socket socket) {
+		try {
+			socket.setSoLinger(true, 0);
+		} catch (IOException ioe) {
+			//closed anyway below
+		}
+		closeQuietly(socket);
+	}
+
+	/**
+   * getMetrics - get the server's counters
+   * @param none
+   * @return ServerMetrics
+   */
+	public ServerMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+   * getSessions - the sessions currently running
+   * @param none
+   * @return SessionRegistry
+   */
+	public SessionRegistry getSessions() {
+		return this.sessions;
+	}
+
+	/**
+   * getHandshakeTimeout - milliseconds a client has to finish the TLS handshake
+   * and send its preamble
+   * @param none
+   * @return int
+   */
+	int getHandshakeTimeout() {
+		return this.handshakeTimeout;
+	}
+
+	/**
+   * getOutboundHighWater - bytes of encoded messages a connection may have
+   * waiting to be sent before the client is disconnected as a slow consumer
+   * @param none
+   * @return int 0 for no limit
+   */
+	int getOutboundHighWater() {
+		return this.outboundHighWater;
+	}
+
+	/**
+   * getWriteTimeout - milliseconds the client may keep the server from sending
+   * before it is disconnected as a slow consumer
+   * @param none
+   * @return int 0 for no limit
+   */
+	int getWriteTimeout() {
+		return this.writeTimeout;
+	}
+
+	/**
+   * getLogAndPublish - get the LogAndPublish object
+   * @param none
+   * @return LogAndPublish
+   */
+	LogAndPublish getLogAndPublish() {
+		return this.logAndPublish;
 	}
    /**
    * getPort - get the port number
@@ -163,6 +510,21 @@ public class SecureServerController implements Observer {
 	    this.port = port;
 	}
 
+	  /**
+	   * Provides a SSLContext which ignores JSSE's choice of truststore,
+	   * and instead uses either the hard-coded filename and password, or those
+	   * passed in on the command-line. Both transports get their sockets or
+	   * engines from it. Its session cache is sized and timed from Config.xml so
+	   * reconnecting clients can resume instead of repeating the full handshake.
+	   * The context is shared by every server in the process and replaced when
+	   * the key stores change, so callers should ask again for each connection
+	   * rather than keep it.
+	   * @return SSLContext SSLContext to use
+	   */
+	  protected SSLContext getSSLContext() throws IOException, GeneralSecurityException
+	  {
+	    return this.sslContextCache.get();
+	  }
 	 
 	/**
 	 * Utility HandshakeCompletedListener which simply displays the
@@ -203,19 +565,23 @@ public class SecureServerController implements Observer {
 	    }	
 	  }
 
-	/** This inner class will keep listening to incoming connections,
-	 *  and initiating a ClientModel object for each connection. 
+	/** This inner class will keep listening to incoming connections and hand
+	 *  each one to a bounded pool of handshake threads, so a client that is slow
+	 *  to handshake (or never does) cannot hold up the ones behind it. The
+	 *  ClientModel is only created once the handshake and preamble are done.
 	 *  
 	 */
 	private class StartSecureServerControllerThread extends Thread {
-		private boolean listen;
+		private volatile boolean listen;
+		private ThreadPoolExecutor handshakeExecutor;
 		
 	    public StartSecureServerControllerThread() {
+	        super("AGMP-Acceptor-0");
 	        this.listen = false;
 	    	
 	        try 
 	        {	        
-	        	SecureServerController.this.ssf= getSSLServerSocketFactory();
+	        	getSSLContext();
 		    }
 		    catch(Exception e)
 		    {
@@ -225,39 +591,60 @@ public class SecureServerController implements Observer {
 
 	    public void run() {
 	        this.listen = true;
+	        this.handshakeExecutor = newHandshakeExecutor();
 	        try 
 	        {
+	        	/* TLS is layered on in the handshake task, with the context current at that time */
+	        	SecureServerController.this.ssocket = new ServerSocket(SecureServerController.this.port, 1024);
+	        } catch (IOException ioe) {
+	            //unable to listen on the port//
+	            this.stopServerControllerThread();
+	            return;
+	        }
+	        /* the other acceptors share the listening socket, each connection goes to one of them */
+	        for (int i = 1; i < SecureServerController.this.acceptorThreads; i++)
+	        {
+	        	Thread acceptor = new Thread(new Runnable() {
+	        		public void run() {
+	        			acceptLoop();
+	        		}
+	        	}, "AGMP-Acceptor-" + i);
+	        	acceptor.setDaemon(true);
+	        	acceptor.start();
+	        }
+	        acceptLoop();
+	    }
 
-	        	SecureServerController.this.ssocket = (SSLServerSocket)SecureServerController.this.ssf.createServerSocket(SecureServerController.this.port);
-	        	ssocket.setNeedClientAuth(true);
-	        	
-	        	
+	   /**
+	   * acceptLoop - accept connections and queue their handshakes until the
+	   * listening socket is closed; runs on every acceptor thread
+	   * @param none
+	   * @return none
+	   */
+	    private void acceptLoop() {
+	        try 
+	        {
 	        	/* CLIENT MANAGEMENT */
 	            while (this.listen) {
 				//wait for client to connect//
 
-	            	SecureServerController.this.socket = (SSLSocket)SecureServerController.this.ssocket.accept();
-	            	String uniqueID = socket.getInetAddress() + ":" + socket.getPort();
-	          
-    	            HandshakeCompletedListener hcl=new SimpleHandshakeListener(uniqueID, SecureServerController.this.logAndPublish);
-    	            SecureServerController.this.socket.addHandshakeCompletedListener(hcl);      
-	            	
-	            	SecureServerController.this.logAndPublish.write("Client " + uniqueID + " connected using ", true, false);
-	                try 
-	                {
-	                	SSLSession clientSession = socket.getSession();
-	                	SecureServerController.this.logAndPublish.write("protocol: " + clientSession.getProtocol() + ", ", true, false);
-	                	SecureServerController.this.logAndPublish.write("cipher: " + clientSession.getCipherSuite() + "\n", true, false);
-	                	
-	                	SecureServerController.this.ClientModel = new ClientModel(SecureServerController.this.socket, SecureServerController.this.xmlParser, SecureServerController.this.logAndPublish);
-	                    Thread t = new Thread(SecureServerController.this.ClientModel);
-	                    SecureServerController.this.ClientModel.addObserver(SecureServerController.this);
-	                    SecureServerController.this.clients.addElement(SecureServerController.this.ClientModel);
-	    	            
-	                    t.start();
-	                } catch (IOException ioe) {
-	                    System.err.println("Error " + ioe);
-	                }
+	            	Socket socket = SecureServerController.this.ssocket.accept();
+	            	SecureServerController.this.metrics.connectionAccepted();
+	            	/* over a limit: refuse now, before the connection costs a thread or a handshake */
+	            	AdmissionControl.Ticket ticket = SecureServerController.this.admission.admit(socket.getInetAddress());
+	            	if (ticket == null)
+	            	{
+	            		refuse(socket);
+	            		continue;
+	            	}
+	            	try
+	            	{
+	            		this.handshakeExecutor.execute(new HandshakeTask(socket, ticket, System.nanoTime()));
+	            	} catch (RejectedExecutionException ree) {
+	            		SecureServerController.this.metrics.connectionShed(ServerMetrics.SHED_QUEUE_FULL);
+	            		ticket.release();
+	            		refuse(socket);
+	            	}
 	            }
 	        } catch (IOException ioe) {
 	            //I/O error in ServerControllerSocket//
@@ -265,11 +652,22 @@ public class SecureServerController implements Observer {
 	        }
 	    }
    /**
-   * stopServerControllerThread - stop the server controller thread
+   * stopServerControllerThread - stop the server controller thread and drop the
+   * connections still waiting for a handshake
    * @param none
    * @return none
    */
     public void stopServerControllerThread() {
+    	stopAccepting();
+    }
+
+   /**
+   * stopAccepting - close the listening socket and drop the connections still
+   * waiting for a handshake; handshakes already running finish
+   * @param none
+   * @return none
+   */
+    public void stopAccepting() {
     	try {
     		SecureServerController.this.logAndPublish.write("Stopping the server thread", true, false);
     		SecureServerController.this.ssocket.close();
@@ -278,96 +676,280 @@ public class SecureServerController implements Observer {
     		//unable to close ServerControllerSocket
     	}
     	this.listen = false;
+    	if (this.handshakeExecutor != null)
+    	{
+    		/* no interrupts: the running handshakes finish and become sessions */
+    		this.handshakeExecutor.shutdown();
+    		List<Runnable> queued = new ArrayList<Runnable>();
+    		this.handshakeExecutor.getQueue().drainTo(queued);
+    		for (Runnable task : queued)
+    		{
+    			closeQuietly(((HandshakeTask)task).socket);
+    			((HandshakeTask)task).ticket.release();
+    		}
+    	}
+    }
+
+   /**
+   * isHandshaking - determine whether handshake threads are still running;
+   * a handshake thread adds its session before it finishes
+   * @param none
+   * @return boolean
+   */
+    public boolean isHandshaking() {
+    	return this.handshakeExecutor != null && !this.handshakeExecutor.isTerminated();
     }
 
-		  /**
-		   * Provides a SSLSocketFactory which ignores JSSE's choice of truststore,
-		   * and instead uses either the hard-coded filename and password, or those
-		   * passed in on the command-line.
-		   * This method calls out to getTrustManagers() to do most of the
-		   * grunt-work. It actually just needs to set up a SSLContext and obtain
-		   * the SSLSocketFactory from there.
-		   * @return SSLSocketFactory SSLSocketFactory to use
-		   */
-		  protected SSLServerSocketFactory getSSLServerSocketFactory() throws IOException, GeneralSecurityException
-		  {
-		    // Call getTrustManagers to get suitable trust managers
-		    TrustManager[] tms=getTrustManagers();
-		    
-		    // Call getKeyManagers (from CustomKeyStoreClient) to get suitable
-		    // key managers
-		    KeyManager[] kms=getKeyManagers();
-
-		    // Next construct and initialize a SSLContext with the KeyStore and
-		    // the TrustStore. We use the default SecureRandom.
-		    SSLContext context=SSLContext.getInstance("TLS");
-		    context.init(kms, tms, null);
-
-		    // Finally, we get a SocketFactory, and pass it to SimpleSSLClient.
-		    SSLServerSocketFactory ssf=context.getServerSocketFactory(); //.getSocketFactory();
-		    return ssf;
-		  }	
+	/**
+	* The HandshakeTask Class
+	*
+	*	Runs on a handshake thread: the TLS handshake and the preamble are read
+	*	under the handshake timeout, then the session thread takes over. The
+	*	socket timeout catches a client that goes quiet, the wheel timeout one
+	*	that keeps trickling bytes
+	*
+	*/
+	private class HandshakeTask implements Runnable {
+		private final Socket socket;
+		private final AdmissionControl.Ticket ticket;
+		private final long lAcceptedNanos;
 
-	  /**
-	   * Returns an array of TrustManagers, set up to use the required
-	   * trustStore. This is pulled out separately so that later  
-	   * examples can call it.
-	   * This method does the bulk of the work of setting up the custom
-	   * trust managers.
-	   * @return an array of TrustManagers set up accordingly.
+		HandshakeTask(Socket socket, AdmissionControl.Ticket ticket, long lAcceptedNanos) {
+			this.socket = socket;
+			this.ticket = ticket;
+			this.lAcceptedNanos = lAcceptedNanos;
+		}
+
+		public void run() {
+			final Socket plain = this.socket;
+			String uniqueID = plain.getInetAddress() + ":" + plain.getPort();
+			LogAndPublish logAndPublish = SecureServerController.this.logAndPublish;
+			ServerMetrics metrics = SecureServerController.this.metrics;
+			long lStart = metrics.handshakeStarted(this.lAcceptedNanos);
+			long lStartMillis = System.currentTimeMillis();
+			long lCpuStart = ServerMetrics.threadCpuNanos();
+			final AtomicBoolean expired = new AtomicBoolean(false);
+			TimingWheel.Timeout deadline = TimingWheel.shared().newTimeout(new Runnable() {
+				public void run() {
+					expired.set(true);
+					closeQuietly(plain);
+				}
+			});
+			deadline.schedule(SecureServerController.this.handshakeTimeout);
+			try
+			{
+				plain.setSoTimeout(SecureServerController.this.handshakeTimeout);
+				/* every flush is a complete batch of responses, do not hold it back for an ACK */
+				plain.setTcpNoDelay(true);
+				SSLSocket socket = (SSLSocket)getSSLContext().getSocketFactory().createSocket(plain, plain.getInetAddress().getHostAddress(), plain.getPort(), true);
+				socket.setUseClientMode(false);
+				socket.setNeedClientAuth(true);
+				socket.addHandshakeCompletedListener(new SimpleHandshakeListener(uniqueID, logAndPublish));
+				socket.startHandshake();
+				SSLSession clientSession = socket.getSession();
+				logAndPublish.write("Client " + uniqueID + " connected using protocol: " + clientSession.getProtocol() + ", cipher: " + clientSession.getCipherSuite()
+						+ (isResumed(clientSession, lStartMillis) ? ", resumed session" : ", new session") + "\n", true, false);
+
+				SocketClientConnection connection = new SocketClientConnection(socket, plain, this.ticket, SecureServerController.this);
+				deadline.cancel();
+				if (expired.get())
+				{
+					throw new SocketTimeoutException("Handshake timed out");
+				}
+				this.ticket.handshakeDone();
+				metrics.handshakeCompleted(lStart, isResumed(clientSession, lStartMillis), (lCpuStart < 0) ? -1 : ServerMetrics.threadCpuNanos() - lCpuStart);
+				Thread t = SecureServerController.this.sessionThreadFactory.newThread(addClient(connection));
+				t.start();
+			} catch (IOException ioe) {
+				deadline.cancel();
+				boolean timedOut = expired.get() || ioe instanceof SocketTimeoutException;
+				metrics.handshakeFailed(timedOut);
+				logAndPublish.write("Client " + uniqueID + (timedOut ? " handshake timed out" : " handshake failed: " + ioe), true, false);
+				closeQuietly(plain);
+				this.ticket.release();
+			} catch (GeneralSecurityException gse) {
+				deadline.cancel();
+				metrics.handshakeFailed(false);
+				logAndPublish.write("Client " + uniqueID + " handshake failed: " + gse, true, false);
+				closeQuietly(plain);
+				this.ticket.release();
+			}
+		}
+	}
+	}
+
+	/** This inner class accepts connections for the NIO transport. Accepted
+	 *  channels are handed round robin to a fixed set of event loops which run the
+	 *  TLS handshake and drive the ClientModel of each connection, so the number
+	 *  of threads does not grow with the number of clients. The expensive part
+	 *  of a handshake, the engine's delegated tasks, runs on the handshake pool
+	 *  so it never holds up the other connections of a loop.
+	 *
+	 */
+	private class StartNioServerControllerThread extends Thread {
+		private volatile boolean listen;
+		private ServerSocketChannel serverChannel;
+		private SSLContext context;
+		private NioEventLoop[] loops;
+		/* runs the delegated tasks of the handshakes */
+		private ThreadPoolExecutor handshakeExecutor;
+		/* event loop the next connection goes to, shared by the acceptors */
+		private final AtomicInteger nextLoop = new AtomicInteger();
+
+	    public StartNioServerControllerThread() {
+	        super("AGMP-Acceptor-0");
+	        this.listen = false;
+	        try
+	        {
+	        	this.context = getSSLContext();
+	        }
+	        catch(Exception e)
+	        {
+	        	System.err.println("Error " + e);
+	        }
+	    }
+
+	    public void run() {
+	        this.listen = true;
+	        try
+	        {
+	        	/* size the shared loop buffers from what the engines will need */
+	        	SSLSession sample = this.context.createSSLEngine().getSession();
+	        	this.handshakeExecutor = newHandshakeExecutor();
+	        	this.loops = new NioEventLoop[Math.max(1, SecureServerController.this.ioEventLoops)];
+	        	for (int i = 0; i < this.loops.length; i++)
+	        	{
+	        		this.loops[i] = new NioEventLoop(i, sample.getPacketBufferSize(), sample.getApplicationBufferSize(), SecureServerController.this.logAndPublish);
+	        		this.loops[i].start();
+	        	}
+	        	SecureServerController.this.logAndPublish.write("Started " + this.loops.length + " I/O event loops", true, false);
+
+	        	this.serverChannel = ServerSocketChannel.open();
+	        	this.serverChannel.socket().setReuseAddress(true);
+	        	this.serverChannel.socket().bind(new InetSocketAddress(SecureServerController.this.port), 1024);
+	        } catch (IOException ioe) {
+	            //unable to listen on the port//
+	            this.stopServerControllerThread();
+	            return;
+	        }
+	        /* the other acceptors share the blocking server channel, each connection goes to one of them */
+	        for (int i = 1; i < SecureServerController.this.acceptorThreads; i++)
+	        {
+	        	Thread acceptor = new Thread(new Runnable() {
+	        		public void run() {
+	        			acceptLoop();
+	        		}
+	        	}, "AGMP-Acceptor-" + i);
+	        	acceptor.setDaemon(true);
+	        	acceptor.start();
+	        }
+	        acceptLoop();
+	    }
+
+	   /**
+	   * acceptLoop - accept connections and register them with the event loops
+	   * until the listening channel is closed; runs on every acceptor thread
+	   * @param none
+	   * @return none
 	   */
-	  protected TrustManager[] getTrustManagers() throws IOException, GeneralSecurityException
-	  {
-	    // First, get the default TrustManagerFactory.
-	    String alg=TrustManagerFactory.getDefaultAlgorithm();
-	    TrustManagerFactory tmFact=TrustManagerFactory.getInstance(alg);
-	    
-	    // Next, set up the TrustStore to use. We need to load the file into
-	    // a KeyStore instance.
-	    KeyStore ks=KeyStore.getInstance("jks");
-	    
-	    ClassLoader classLoader = getClass().getClassLoader();
-	    InputStream keystoreStream = classLoader.getResourceAsStream(trustStore); // note, not getSYSTEMResourceAsStream  
-	    ks.load(keystoreStream, trustStorePassword.toCharArray());
-
-	    // Now we initialize the TrustManagerFactory with this KeyStore
-	    tmFact.init(ks);
-
-	    // And now get the TrustManagers
-	    TrustManager[] tms=tmFact.getTrustManagers();
-	    return tms;
-	  }  
+	    private void acceptLoop() {
+	        try
+	        {
+	        	/* CLIENT MANAGEMENT */
+	            while (this.listen) {
+	            	//wait for client to connect//
+	            	SocketChannel channel = this.serverChannel.accept();
+	            	SecureServerController.this.metrics.connectionAccepted();
+	            	/* over a limit: refuse now, before the connection costs a handshake */
+	            	AdmissionControl.Ticket ticket = SecureServerController.this.admission.admit(channel.socket().getInetAddress());
+	            	if (ticket == null)
+	            	{
+	            		refuse(channel.socket());
+	            		continue;
+	            	}
+	            	try
+	            	{
+	            		channel.configureBlocking(false);
+	            		channel.socket().setTcpNoDelay(true);
+	            		SSLEngine engine = getSSLContext().createSSLEngine();
+	            		engine.setUseClientMode(false);
+	            		engine.setNeedClientAuth(true);
+	            		NioEventLoop loop = this.loops[(this.nextLoop.getAndIncrement() & Integer.MAX_VALUE) % this.loops.length];
+	            		loop.register(new NioClientConnection(loop, channel, engine, ticket, this.handshakeExecutor, SecureServerController.this));
+	            	} catch (IOException ioe) {
+	            		System.err.println("Error " + ioe);
+	            		channel.close();
+	            		ticket.release();
+	            	} catch (GeneralSecurityException gse) {
+	            		System.err.println("Error " + gse);
+	            		channel.close();
+	            		ticket.release();
+	            	}
+	            }
+	        } catch (IOException ioe) {
+	            //I/O error in ServerControllerSocket, the loops keep running while draining//
+	            if (!SecureServerController.this.draining)
+	            {
+	            	this.stopServerControllerThread();
+	            }
+	        }
+	    }
+	   /**
+	   * stopAccepting - close the listening channel, the event loops keep running
+	   * the open sessions
+	   * @param none
+	   * @return none
+	   */
+	    public void stopAccepting() {
+	    	if (!this.listen)
+	    	{
+	    		return;
+	    	}
+	    	this.listen = false;
+	    	SecureServerController.this.logAndPublish.write("Stopping the server thread", true, false);
+	    	try {
+	    		if (this.serverChannel != null)
+	    		{
+	    			this.serverChannel.close();
+	    		}
+	    	}
+	    	catch (IOException ioe) {
+	    		//unable to close ServerControllerSocket
+	    	}
+	    }
 
-	  /**
-	   * Returns an array of KeyManagers, set up to use the required
-	   * keyStore. This is pulled out separately so that later  
-	   * examples can call it.
-	   * This method does the bulk of the work of setting up the custom
-	   * trust managers.
-	   * @return an array of KeyManagers set up accordingly.
+	   /**
+	   * isHandshaking - determine whether the event loops are still running
+	   * handshakes; a loop adds the session before it counts the handshake done
+	   * @param none
+	   * @return boolean
 	   */
-	  protected KeyManager[] getKeyManagers() throws IOException, GeneralSecurityException
-	  {
-	    // First, get the default KeyManagerFactory.
-	    String alg=KeyManagerFactory.getDefaultAlgorithm();
-	    KeyManagerFactory kmFact=KeyManagerFactory.getInstance(alg);
-	    
-	    // Next, set up the KeyStore to use. We need to load the file into
-	    // a KeyStore instance.
-	    KeyStore ks=KeyStore.getInstance("jks");
-
-	    ClassLoader classLoader = getClass().getClassLoader();
-	    InputStream keystoreStream = classLoader.getResourceAsStream(keyStore); // note, not getSYSTEMResourceAsStream  
-	    ks.load(keystoreStream, keyStorePassword.toCharArray()); 
-
-	    // Now we initialize the KeyManagerFactory with this KeyStore
-	    kmFact.init(ks, keyStorePassword.toCharArray());
-
-	    // And now get the KeyManagers
-	    KeyManager[] kms=kmFact.getKeyManagers();
-	    return kms;
-	  }
+	    public boolean isHandshaking() {
+	    	return SecureServerController.this.metrics.getHandshakesInProgress() > 0;
+	    }
+
+	   /**
+	   * stopServerControllerThread - stop accepting and shut down the event loops
+	   * and the handshake pool; a handshake it refuses from now on is closed
+	   * @param none
+	   * @return none
+	   */
+	    public void stopServerControllerThread() {
+	    	stopAccepting();
+	    	if (this.loops != null)
+	    	{
+	    		for (NioEventLoop loop : this.loops)
+	    		{
+	    			if (loop != null)
+	    			{
+	    				loop.shutdown();
+	    			}
+	    		}
+	    	}
+	    	if (this.handshakeExecutor != null)
+	    	{
+	    		this.handshakeExecutor.shutdown();
+	    	}
+	    }
 	}
 }
-
-
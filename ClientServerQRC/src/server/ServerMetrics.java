@@ -0,0 +1,559 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import common.GameState;
+
+/**
+ * ServerMetrics holds the counters the server keeps about itself. Every counter
+ * is updated with a single atomic operation from whichever thread sees the
+ * event, so reading them never stops the server.
+ *
+ * Handshake time runs from the moment a handshake thread (or event loop) picks
+ * the connection up until the framing is chosen and the session can start.
+ * Queue time is how long the accepted connection waited for a handshake thread.
+ * Handshake CPU time is the CPU the server thread spent on the handshake, kept
+ * apart for full and resumed handshakes so the cost of a reconnect storm can be
+ * estimated from the resumption rate.
+ *
+ * Connections refused before their handshake are counted by the reason they
+ * were shed, see the SHED_ constants.
+ *
+ * Sessions disconnected because the client stopped taking what the server
+ * sends are counted by the limit they hit, see the SLOW_ constants. The bytes
+ * waiting on a connection each time it is flushed go into a histogram with
+ * power of two buckets, so a queue that creeps towards the high water mark
+ * shows up before anyone is disconnected.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class ServerMetrics {
+	/* reasons a connection is refused right after accept */
+	public static final int SHED_SESSION_LIMIT = 0;
+	public static final int SHED_HANDSHAKE_LIMIT = 1;
+	public static final int SHED_ADDRESS_LIMIT = 2;
+	public static final int SHED_QUEUE_FULL = 3;
+	private static final String[] SHED_NAMES = {"sessionLimit", "handshakeLimit", "addressLimit", "queueFull"};
+	/* reasons a session is disconnected as a slow consumer */
+	public static final int SLOW_HIGH_WATER = 0;
+	public static final int SLOW_WRITE_TIMEOUT = 1;
+	private static final String[] SLOW_NAMES = {"highWater", "writeTimeout"};
+	/* outbound depth buckets: up to 64 bytes, up to 128, ... up to 1MB, more */
+	public static final int DEPTH_BUCKETS = 16;
+	private static final int DEPTH_FIRST_SHIFT = 6;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final AtomicLong connectionsAccepted = new AtomicLong();
+	private final AtomicLong handshakesStarted = new AtomicLong();
+	private final AtomicLong handshakesCompleted = new AtomicLong();
+	private final AtomicLong handshakesResumed = new AtomicLong();
+	private final AtomicLong fullCpuNanosTotal = new AtomicLong();
+	private final AtomicLong resumedCpuNanosTotal = new AtomicLong();
+	private final AtomicLong handshakesFailed = new AtomicLong();
+	private final AtomicLong handshakesTimedOut = new AtomicLong();
+	private final AtomicLongArray shed = new AtomicLongArray(SHED_NAMES.length);
+	private final AtomicLong handshakeNanosTotal = new AtomicLong();
+	private final AtomicLong handshakeNanosMax = new AtomicLong();
+	private final AtomicLong queueNanosTotal = new AtomicLong();
+	private final AtomicLong queueNanosMax = new AtomicLong();
+	private final AtomicLongArray slowConsumers = new AtomicLongArray(SLOW_NAMES.length);
+	private final AtomicLongArray outboundDepth = new AtomicLongArray(DEPTH_BUCKETS);
+	private final AtomicLong outboundDepthMax = new AtomicLong();
+	/* connections waiting for a handshake thread, null on the NIO transport */
+	private volatile Queue<?> handshakeQueue;
+	/* source of the open connection count */
+	private volatile AdmissionControl admission;
+	/* source of the session counts by state */
+	private volatile SessionRegistry sessions;
+
+	/**
+	* setHandshakeQueue - set the queue whose size is reported as the handshake queue depth
+	* @param queue
+	* @return none
+	*/
+	void setHandshakeQueue(Queue<?> queue)
+	{
+		this.handshakeQueue = queue;
+	}
+
+	/**
+	* setAdmission - set the admission control whose counters are reported
+	* @param admission
+	* @return none
+	*/
+	void setAdmission(AdmissionControl admission)
+	{
+		this.admission = admission;
+	}
+
+	/**
+	* setSessions - set the registry whose session counts are reported
+	* @param sessions
+	* @return none
+	*/
+	void setSessions(SessionRegistry sessions)
+	{
+		this.sessions = sessions;
+	}
+
+	/**
+	* connectionAccepted - an acceptor thread got a connection from accept()
+	* @param none
+	* @return none
+	*/
+	void connectionAccepted()
+	{
+		this.connectionsAccepted.incrementAndGet();
+	}
+
+	/**
+	* handshakeStarted - a handshake thread has picked up a connection
+	* @param lAcceptedNanos System.nanoTime() when the connection was accepted
+	* @return long System.nanoTime() now, to pass to handshakeCompleted
+	*/
+	long handshakeStarted(long lAcceptedNanos)
+	{
+		long lNow = System.nanoTime();
+		this.handshakesStarted.incrementAndGet();
+		this.queueNanosTotal.addAndGet(lNow - lAcceptedNanos);
+		max(this.queueNanosMax, lNow - lAcceptedNanos);
+		return lNow;
+	}
+
+	/**
+	* threadCpuNanos - CPU time used by the current thread so far
+	* @param none
+	* @return long -1 if the JVM does not measure it
+	*/
+	static long threadCpuNanos()
+	{
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	* handshakeCompleted - the handshake and preamble are done, the session starts
+	* @param lStartNanos value returned by handshakeStarted
+	* @param resumed true if the client resumed an earlier TLS session
+	* @param lCpuNanos CPU time spent on the handshake, negative if unknown
+	* @return none
+	*/
+	void handshakeCompleted(long lStartNanos, boolean resumed, long lCpuNanos)
+	{
+		long lElapsed = System.nanoTime() - lStartNanos;
+		this.handshakesCompleted.incrementAndGet();
+		this.handshakeNanosTotal.addAndGet(lElapsed);
+		max(this.handshakeNanosMax, lElapsed);
+		if (resumed)
+		{
+			this.handshakesResumed.incrementAndGet();
+		}
+		if (lCpuNanos >= 0)
+		{
+			(resumed ? this.resumedCpuNanosTotal : this.fullCpuNanosTotal).addAndGet(lCpuNanos);
+		}
+	}
+
+	/**
+	* handshakeFailed - the handshake failed or did not finish in time
+	* @param timedOut
+	* @return none
+	*/
+	void handshakeFailed(boolean timedOut)
+	{
+		if (timedOut)
+		{
+			this.handshakesTimedOut.incrementAndGet();
+		}
+		else
+		{
+			this.handshakesFailed.incrementAndGet();
+		}
+	}
+
+	/**
+	* connectionShed - a connection was refused right after accept
+	* @param iReason one of the SHED_ constants
+	* @return none
+	*/
+	void connectionShed(int iReason)
+	{
+		this.shed.incrementAndGet(iReason);
+	}
+
+	/**
+	* slowConsumer - a session was disconnected because its client fell behind
+	* @param iReason one of the SLOW_ constants
+	* @return none
+	*/
+	void slowConsumer(int iReason)
+	{
+		this.slowConsumers.incrementAndGet(iReason);
+	}
+
+	/**
+	* outboundFlushed - a connection is about to send what it has queued
+	* @param iBytes encoded bytes waiting to be sent
+	* @return none
+	*/
+	void outboundFlushed(int iBytes)
+	{
+		this.outboundDepth.incrementAndGet(depthBucket(iBytes));
+		max(this.outboundDepthMax, iBytes);
+	}
+
+	/**
+	* depthBucket - the histogram bucket a queue depth is counted in
+	* @param iBytes
+	* @return int
+	*/
+	static int depthBucket(int iBytes)
+	{
+		if (iBytes <= (1 << DEPTH_FIRST_SHIFT))
+		{
+			return 0;
+		}
+		return Math.min(DEPTH_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(iBytes - 1) - DEPTH_FIRST_SHIFT);
+	}
+
+	/**
+	* getDepthBucketLimit - largest depth counted in a histogram bucket
+	* @param iBucket
+	* @return long Long.MAX_VALUE for the last bucket
+	*/
+	public static long getDepthBucketLimit(int iBucket)
+	{
+		return (iBucket >= DEPTH_BUCKETS - 1) ? Long.MAX_VALUE : 1L << (iBucket + DEPTH_FIRST_SHIFT);
+	}
+
+	private static void max(AtomicLong max, long lValue)
+	{
+		long lCurrent;
+		while (lValue > (lCurrent = max.get()) && !max.compareAndSet(lCurrent, lValue))
+		{
+		}
+	}
+
+	/**
+	* getConnectionsAccepted - connections returned by accept(), admitted or not
+	* @param none
+	* @return long
+	*/
+	public long getConnectionsAccepted()
+	{
+		return this.connectionsAccepted.get();
+	}
+
+	public long getHandshakesStarted()
+	{
+		return this.handshakesStarted.get();
+	}
+
+	public long getHandshakesCompleted()
+	{
+		return this.handshakesCompleted.get();
+	}
+
+	/**
+	* getHandshakesResumed - completed handshakes that resumed a TLS session
+	* @param none
+	* @return long
+	*/
+	public long getHandshakesResumed()
+	{
+		return this.handshakesResumed.get();
+	}
+
+	/**
+	* getHandshakesFull - completed handshakes that negotiated a new TLS session
+	* @param none
+	* @return long
+	*/
+	public long getHandshakesFull()
+	{
+		return getHandshakesCompleted() - getHandshakesResumed();
+	}
+
+	/**
+	* getFullHandshakeCpuMicros - mean CPU time of a full handshake
+	* @param none
+	* @return long
+	*/
+	public long getFullHandshakeCpuMicros()
+	{
+		long lCount = getHandshakesFull();
+		return (lCount <= 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(this.fullCpuNanosTotal.get() / lCount);
+	}
+
+	/**
+	* getResumedHandshakeCpuMicros - mean CPU time of a resumed handshake
+	* @param none
+	* @return long
+	*/
+	public long getResumedHandshakeCpuMicros()
+	{
+		long lCount = getHandshakesResumed();
+		return (lCount <= 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(this.resumedCpuNanosTotal.get() / lCount);
+	}
+
+	/**
+	* getHandshakeCpuMillis - CPU time spent on all completed handshakes
+	* @param none
+	* @return long
+	*/
+	public long getHandshakeCpuMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(this.fullCpuNanosTotal.get() + this.resumedCpuNanosTotal.get());
+	}
+
+	public long getHandshakesFailed()
+	{
+		return this.handshakesFailed.get();
+	}
+
+	public long getHandshakesTimedOut()
+	{
+		return this.handshakesTimedOut.get();
+	}
+
+	/**
+	* getHandshakesRejected - connections refused because the handshake queue was full
+	* @param none
+	* @return long
+	*/
+	public long getHandshakesRejected()
+	{
+		return getConnectionsShed(SHED_QUEUE_FULL);
+	}
+
+	/**
+	* getConnectionsShed - connections refused for one reason
+	* @param iReason one of the SHED_ constants
+	* @return long
+	*/
+	public long getConnectionsShed(int iReason)
+	{
+		return this.shed.get(iReason);
+	}
+
+	/**
+	* getConnectionsShed - connections refused for any reason
+	* @param none
+	* @return long
+	*/
+	public long getConnectionsShed()
+	{
+		long lTotal = 0;
+		for (int iI = 0; iI < SHED_NAMES.length; iI++)
+		{
+			lTotal += this.shed.get(iI);
+		}
+		return lTotal;
+	}
+
+	/**
+	* getOpenConnections - connections admitted and not closed yet
+	* @param none
+	* @return int
+	*/
+	public int getOpenConnections()
+	{
+		AdmissionControl current = this.admission;
+		return (current != null) ? current.getSessions() : 0;
+	}
+
+	/**
+	* getHandshakesInProgress - handshakes started that have not completed or failed
+	* @param none
+	* @return long
+	*/
+	public long getHandshakesInProgress()
+	{
+		return Math.max(0, getHandshakesStarted() - getHandshakesCompleted() - getHandshakesFailed() - getHandshakesTimedOut());
+	}
+
+	/**
+	* getHandshakeQueueDepth - connections accepted and waiting for a handshake thread
+	* @param none
+	* @return int
+	*/
+	public int getHandshakeQueueDepth()
+	{
+		Queue<?> queue = this.handshakeQueue;
+		return (queue != null) ? queue.size() : 0;
+	}
+
+	/**
+	* getHandshakeTimeAvgMicros - mean time of the completed handshakes
+	* @param none
+	* @return long
+	*/
+	public long getHandshakeTimeAvgMicros()
+	{
+		long lCompleted = getHandshakesCompleted();
+		return (lCompleted == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(this.handshakeNanosTotal.get() / lCompleted);
+	}
+
+	public long getHandshakeTimeMaxMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(this.handshakeNanosMax.get());
+	}
+
+	/**
+	* getQueueTimeAvgMicros - mean time an accepted connection waited for a handshake thread
+	* @param none
+	* @return long
+	*/
+	public long getQueueTimeAvgMicros()
+	{
+		long lStarted = getHandshakesStarted();
+		return (lStarted == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(this.queueNanosTotal.get() / lStarted);
+	}
+
+	public long getQueueTimeMaxMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(this.queueNanosMax.get());
+	}
+
+	/**
+	* getSessionsByState - running sessions in each state, indexed by the GameState constants
+	* @param none
+	* @return int[]
+	*/
+	public int[] getSessionsByState()
+	{
+		SessionRegistry current = this.sessions;
+		return (current != null) ? current.counts() : new int[GameState.CLOSED + 1];
+	}
+
+	/**
+	* getSlowConsumers - sessions disconnected as slow consumers for one reason
+	* @param iReason one of the SLOW_ constants
+	* @return long
+	*/
+	public long getSlowConsumers(int iReason)
+	{
+		return this.slowConsumers.get(iReason);
+	}
+
+	/**
+	* getSlowConsumers - sessions disconnected as slow consumers for any reason
+	* @param none
+	* @return long
+	*/
+	public long getSlowConsumers()
+	{
+		long lTotal = 0;
+		for (int iI = 0; iI < SLOW_NAMES.length; iI++)
+		{
+			lTotal += this.slowConsumers.get(iI);
+		}
+		return lTotal;
+	}
+
+	/**
+	* getOutboundDepthHistogram - number of flushes in each depth bucket, see
+	* getDepthBucketLimit for the bucket bounds
+	* @param none
+	* @return long[]
+	*/
+	public long[] getOutboundDepthHistogram()
+	{
+		long[] histogram = new long[DEPTH_BUCKETS];
+		for (int iI = 0; iI < DEPTH_BUCKETS; iI++)
+		{
+			histogram[iI] = this.outboundDepth.get(iI);
+		}
+		return histogram;
+	}
+
+	/**
+	* getOutboundDepthPercentile - upper bound of the bucket holding the given
+	* percentile of the flushes
+	* @param dPercentile 0 to 100
+	* @return long bytes, 0 if nothing was flushed yet
+	*/
+	public long getOutboundDepthPercentile(double dPercentile)
+	{
+		long[] histogram = getOutboundDepthHistogram();
+		long lTotal = 0;
+		for (int iI = 0; iI < DEPTH_BUCKETS; iI++)
+		{
+			lTotal += histogram[iI];
+		}
+		if (lTotal == 0)
+		{
+			return 0;
+		}
+		long lRank = (long)Math.ceil(lTotal * dPercentile / 100.0);
+		long lSeen = 0;
+		for (int iI = 0; iI < DEPTH_BUCKETS; iI++)
+		{
+			lSeen += histogram[iI];
+			if (lSeen >= lRank && histogram[iI] > 0)
+			{
+				return Math.min(getDepthBucketLimit(iI), getOutboundDepthMax());
+			}
+		}
+		return getOutboundDepthMax();
+	}
+
+	/**
+	* getOutboundDepthMax - most bytes a connection had waiting at one flush
+	* @param none
+	* @return long
+	*/
+	public long getOutboundDepthMax()
+	{
+		return this.outboundDepthMax.get();
+	}
+
+	private String slowSummary()
+	{
+		StringBuilder summary = new StringBuilder().append(getSlowConsumers()).append(" (");
+		for (int iI = 0; iI < SLOW_NAMES.length; iI++)
+		{
+			summary.append((iI == 0) ? "" : " ").append(SLOW_NAMES[iI]).append('=').append(this.slowConsumers.get(iI));
+		}
+		return summary.append(')').toString();
+	}
+
+	private String shedSummary()
+	{
+		StringBuilder summary = new StringBuilder().append(getConnectionsShed()).append(" (");
+		for (int iI = 0; iI < SHED_NAMES.length; iI++)
+		{
+			summary.append((iI == 0) ? "" : " ").append(SHED_NAMES[iI]).append('=').append(this.shed.get(iI));
+		}
+		return summary.append(')').toString();
+	}
+
+	/**
+	* toString - one line summary for the log
+	* @param none
+	* @return String
+	*/
+	public String toString()
+	{
+		return "handshakes started=" + getHandshakesStarted() + " completed=" + getHandshakesCompleted()
+				+ " (full=" + getHandshakesFull() + " resumed=" + getHandshakesResumed() + ")"
+				+ " failed=" + getHandshakesFailed() + " timedOut=" + getHandshakesTimedOut()
+				+ " inProgress=" + getHandshakesInProgress()
+				+ " queued=" + getHandshakeQueueDepth()
+				+ " time avg/max=" + getHandshakeTimeAvgMicros() + "/" + getHandshakeTimeMaxMicros() + "us"
+				+ " queue avg/max=" + getQueueTimeAvgMicros() + "/" + getQueueTimeMaxMicros() + "us"
+				+ " cpu full/resumed=" + getFullHandshakeCpuMicros() + "/" + getResumedHandshakeCpuMicros() + "us"
+				+ " cpu total=" + getHandshakeCpuMillis() + "ms"
+				+ "; connections accepted=" + getConnectionsAccepted() + " open=" + getOpenConnections() + " shed=" + shedSummary()
+				+ "; sessions=" + ((this.sessions != null) ? this.sessions.toString() : "0")
+				+ "; outbound depth p50/p99/max=" + getOutboundDepthPercentile(50) + "/" + getOutboundDepthPercentile(99) + "/" + getOutboundDepthMax() + "B"
+				+ " slow consumers=" + slowSummary();
+	}
+}
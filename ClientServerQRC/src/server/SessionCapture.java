@@ -0,0 +1,461 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import common.MessageParser;
+
+/**
+ * SessionCapture records the AGMP messages of every session to one binary
+ * file, so real traffic can be replayed against a test server later (see
+ * benchmark.CaptureReplay). It is off unless the server's CAPTURE_FILE is
+ * set; all the sessions of a server share one capture.
+ *
+ * The file is the magic "AGMC" and a format byte, then one record after the
+ * other:
+ *    kind      1 byte, OPEN, INBOUND, OUTBOUND or CLOSE
+ *    session   varint, numbered from 1 in the order the sessions start
+ *    time      varint, microseconds since the record before it
+ *    state     1 byte, INBOUND only: the GameState the message arrived in
+ *    length    varint, INBOUND and OUTBOUND only, then the PDU
+ * A varint is 7 bits per byte, low bits first, the top bit set on every byte
+ * but the last. Inbound messages are recorded one by one as the DFA handles
+ * them, so the messages of an envelope are separate records; outbound ones
+ * are recorded as written, before any envelope packs them.
+ *
+ * Sessions copy and time stamp their records on their own threads and hand
+ * them to a single writer thread, shared by every capture, which alone
+ * touches the files. The queue to the writer is bounded; a session waits
+ * only when the writer is that far behind, so the capture stays complete
+ * without holding an unbounded backlog in memory.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public final class SessionCapture {
+	public static final byte[] MAGIC = {'A', 'G', 'M', 'C'};
+	public static final int FORMAT = 1;
+
+	/* record kinds */
+	public static final int OPEN = 1;
+	public static final int INBOUND = 2;
+	public static final int OUTBOUND = 3;
+	public static final int CLOSE = 4;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/* most records waiting for the writer before sessions wait for it */
+	private static final int QUEUE_CAPACITY = 16384;
+	/* the capture of each file in use */
+	private static final Map<String, SessionCapture> captures = new HashMap<String, SessionCapture>();
+	/* records waiting for the writer thread, in the order they were made */
+	private static final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>(QUEUE_CAPACITY);
+	/* the writer thread, started with the first capture */
+	private static Thread writer = null;
+
+	private final DataOutputStream output;
+	private final AtomicLong sessions = new AtomicLong();
+	private final long lStart = System.nanoTime();
+	/* time of the last record, in microseconds since lStart, writer only */
+	private long lLast = 0;
+	private volatile boolean closed = false;
+
+	private SessionCapture(String sFile) throws IOException
+	{
+		this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sFile), BUFFER_SIZE));
+		this.output.write(MAGIC);
+		this.output.writeByte(FORMAT);
+	}
+
+	/**
+	* forFile - the capture writing to a file, opened (and truncated) by the
+	* first session that asks for it
+	* @param sFile the CAPTURE_FILE setting, null or empty when capture is off
+	* @return SessionCapture null when capture is off
+	*/
+	public static SessionCapture forFile(String sFile) throws IOException
+	{
+		if (sFile == null || sFile.trim().length() == 0)
+		{
+			return null;
+		}
+		synchronized (captures)
+		{
+			SessionCapture capture = captures.get(sFile);
+			if (capture == null)
+			{
+				capture = new SessionCapture(sFile);
+				captures.put(sFile, capture);
+			}
+			if (writer == null)
+			{
+				writer = new Thread(new Runnable() {
+					public void run() {
+						while (true)
+						{
+							try {
+								queue.take().write();
+							} catch (InterruptedException ie) {
+								return;
+							}
+						}
+					}
+				}, "SessionCapture");
+				writer.setDaemon(true);
+				writer.start();
+			}
+			return capture;
+		}
+	}
+
+	/**
+	* closeAll - write out and close every capture, the next session to ask for
+	* a file starts it again; returns once the writer has closed the files
+	* @param none
+	* @return none
+	*/
+	public static void closeAll()
+	{
+		synchronized (captures)
+		{
+			CountDownLatch done = new CountDownLatch(captures.size());
+			try {
+				for (SessionCapture capture : captures.values())
+				{
+					queue.put(new Pending(capture, done));
+				}
+				done.await();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			captures.clear();
+		}
+	}
+
+	/**
+	* newSession - start recording a session
+	* @param none
+	* @return Session
+	*/
+	public Session newSession()
+	{
+		Session session = new Session(this.sessions.incrementAndGet());
+		record(OPEN, session.lId, -1, null);
+		return session;
+	}
+
+	/* stamp one record and queue it for the writer, a capture that failed or
+	 * was closed drops it; data is the whole message and is not reused */
+	private void record(int iKind, long lSession, int iState, byte[] data)
+	{
+		if (this.closed)
+		{
+			return;
+		}
+		try {
+			queue.put(new Pending(this, iKind, lSession, (System.nanoTime() - this.lStart) / 1000, iState, data));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* writer thread only: write one record */
+	private void write(Pending pending)
+	{
+		if (this.closed)
+		{
+			return;
+		}
+		/* records stamped on different threads may be queued a little out of order */
+		long lNow = Math.max(this.lLast, pending.lTime);
+		try {
+			this.output.writeByte(pending.iKind);
+			writeVarint(pending.lSession, this.output);
+			writeVarint(lNow - this.lLast, this.output);
+			if (pending.iKind == INBOUND)
+			{
+				this.output.writeByte(pending.iState);
+			}
+			if (pending.data != null)
+			{
+				writeVarint(pending.data.length, this.output);
+				this.output.write(pending.data);
+			}
+			if (pending.iKind == CLOSE)
+			{
+				this.output.flush();
+			}
+			this.lLast = lNow;
+		} catch (IOException ioe) {
+			// stop capturing rather than fail the sessions
+			close();
+		}
+	}
+
+	/* writer thread only: close the file */
+	private void close()
+	{
+		if (!this.closed)
+		{
+			this.closed = true;
+			try {
+				this.output.close();
+			} catch (IOException ioe) { }
+		}
+	}
+
+	/* one record waiting for the writer, or a request to close a capture */
+	private static final class Pending {
+		final SessionCapture capture;
+		final int iKind;
+		final long lSession;
+		/* microseconds since the capture started */
+		final long lTime;
+		final int iState;
+		final byte[] data;
+		/* set when the writer should close the capture instead */
+		final CountDownLatch closed;
+
+		Pending(SessionCapture capture, int iKind, long lSession, long lTime, int iState, byte[] data)
+		{
+			this.capture = capture;
+			this.iKind = iKind;
+			this.lSession = lSession;
+			this.lTime = lTime;
+			this.iState = iState;
+			this.data = data;
+			this.closed = null;
+		}
+
+		Pending(SessionCapture capture, CountDownLatch closed)
+		{
+			this.capture = capture;
+			this.iKind = 0;
+			this.lSession = 0;
+			this.lTime = 0;
+			this.iState = -1;
+			this.data = null;
+			this.closed = closed;
+		}
+
+		void write()
+		{
+			if (this.closed != null)
+			{
+				this.capture.close();
+				this.closed.countDown();
+			}
+			else
+			{
+				this.capture.write(this);
+			}
+		}
+	}
+
+	/**
+	* Session - records the messages of one session
+	*
+	*/
+	public final class Session {
+		private final long lId;
+
+		private Session(long lId)
+		{
+			this.lId = lId;
+		}
+
+		/**
+		* inbound - record a message from the client
+		* @param iState the GameState it arrived in
+		* @param buffer
+		* @param iLength
+		* @return none
+		*/
+		public void inbound(int iState, byte[] buffer, int iLength)
+		{
+			record(INBOUND, this.lId, iState, Arrays.copyOf(buffer, iLength));
+		}
+
+		/**
+		* outbound - record a message to the client
+		* @param msg
+		* @return none
+		*/
+		public void outbound(MessageParser.EncodableMessage msg)
+		{
+			ByteBuffer encoded = ByteBuffer.allocate(msg.encodedSize());
+			msg.encodeInto(encoded);
+			byte[] data = encoded.array();
+			if (encoded.position() < data.length)
+			{
+				data = Arrays.copyOf(data, encoded.position());
+			}
+			record(OUTBOUND, this.lId, -1, data);
+		}
+
+		/**
+		* close - record the end of the session
+		* @param none
+		* @return none
+		*/
+		public void close()
+		{
+			record(CLOSE, this.lId, -1, null);
+		}
+	}
+
+	/**
+	* Record - one record read back from a capture
+	*
+	*/
+	public static final class Record {
+		public int iKind;
+		public long lSession;
+		/* microseconds since the capture started */
+		public long lTime;
+		public int iState;
+		public byte[] data;
+	}
+
+	/**
+	* Reader - reads a capture back one record at a time
+	*
+	*/
+	public static final class Reader {
+		private final DataInputStream input;
+		private long lTime = 0;
+
+		/**
+		* Constructor - check the magic and the format
+		* @param input
+		*/
+		public Reader(InputStream input) throws IOException
+		{
+			this.input = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+			byte[] magic = new byte[MAGIC.length];
+			this.input.readFully(magic);
+			int iFormat = this.input.readUnsignedByte();
+			for (int iI = 0; iI < MAGIC.length; iI++)
+			{
+				if (magic[iI] != MAGIC[iI])
+				{
+					throw new StreamCorruptedException("not an AGMP capture");
+				}
+			}
+			if (iFormat != FORMAT)
+			{
+				throw new StreamCorruptedException("unknown capture format " + iFormat);
+			}
+		}
+
+		/**
+		* Constructor - open a capture file
+		* @param sFile
+		*/
+		public Reader(String sFile) throws IOException
+		{
+			this(new FileInputStream(sFile));
+		}
+
+		/**
+		* next - read the next record
+		* @param none
+		* @return Record null at the end of the capture
+		*/
+		public Record next() throws IOException
+		{
+			int iKind = this.input.read();
+			if (iKind < 0)
+			{
+				return null;
+			}
+			if (iKind < OPEN || iKind > CLOSE)
+			{
+				throw new StreamCorruptedException("unknown record kind " + iKind);
+			}
+			Record record = new Record();
+			record.iKind = iKind;
+			record.lSession = readVarint(this.input);
+			this.lTime += readVarint(this.input);
+			record.lTime = this.lTime;
+			record.iState = (iKind == INBOUND) ? this.input.readUnsignedByte() : -1;
+			if (iKind == INBOUND || iKind == OUTBOUND)
+			{
+				long lLength = readVarint(this.input);
+				if (lLength > Integer.MAX_VALUE)
+				{
+					throw new StreamCorruptedException("invalid message length " + lLength);
+				}
+				record.data = new byte[(int)lLength];
+				this.input.readFully(record.data);
+			}
+			return record;
+		}
+
+		/**
+		* close - close the capture
+		* @param none
+		* @return none
+		*/
+		public void close() throws IOException
+		{
+			this.input.close();
+		}
+	}
+
+	/**
+	* writeVarint - write an unsigned varint
+	* @param lValue at least 0
+	* @param output
+	* @return none
+	*/
+	public static void writeVarint(long lValue, DataOutputStream output) throws IOException
+	{
+		while ((lValue & ~0x7FL) != 0)
+		{
+			output.writeByte((int)((lValue & 0x7F) | 0x80));
+			lValue >>>= 7;
+		}
+		output.writeByte((int)lValue);
+	}
+
+	/**
+	* readVarint - read an unsigned varint
+	* @param input
+	* @return long
+	*/
+	public static long readVarint(DataInputStream input) throws IOException
+	{
+		long lValue = 0;
+		for (int iShift = 0; iShift < 64; iShift += 7)
+		{
+			int b = input.read();
+			if (b < 0)
+			{
+				throw new EOFException("capture ends inside a record");
+			}
+			lValue |= (long)(b & 0x7F) << iShift;
+			if ((b & 0x80) == 0)
+			{
+				return lValue;
+			}
+		}
+		throw new StreamCorruptedException("varint longer than 64 bits");
+	}
+}
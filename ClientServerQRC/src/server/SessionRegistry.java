@@ -0,0 +1,243 @@
+package server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import common.GameState;
+
+/**
+ * SessionRegistry holds the sessions the server is running, keyed by the
+ * ClientModel's uniqueID. Adding and removing a session is a hash map update
+ * that only locks the bin it hashes to, so sessions connecting and closing on
+ * many threads do not queue up on one monitor, and walking the sessions (for a
+ * broadcast or at shutdown) takes no lock at all and never fails because a
+ * session removed itself meanwhile.
+ *
+ * The registry also keeps the number of sessions in each GameState. A session
+ * made with newGameState() reports every state change to the registry while
+ * it is registered, so the counts are read without walking the sessions.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class SessionRegistry {
+	/* number of states in the DFA, LISTENING through CLOSED */
+	private static final int STATES = GameState.CLOSED + 1;
+	/* one counter per 64 byte line so state changes on different cores do not share one */
+	private static final int STRIDE = 16;
+	private static final String[] STATE_NAMES = {"listening", "authenticate", "gamelist", "gameset", "gameplay", "closed"};
+
+	private final ConcurrentHashMap<String, ClientModel> sessions;
+	private final AtomicIntegerArray stateCounts = new AtomicIntegerArray(STATES * STRIDE);
+
+	/**
+	* Constructor
+	* @param iExpectedSessions sizes the map so it does not grow while the server fills up
+	*/
+	public SessionRegistry(int iExpectedSessions)
+	{
+		this.sessions = new ConcurrentHashMap<String, ClientModel>(Math.max(16, iExpectedSessions), 0.75f, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	* newGameState - create the GameState for a session that will be registered
+	* here, so its state changes are counted
+	* @param none
+	* @return GameState
+	*/
+	public GameState newGameState()
+	{
+		return new SessionState();
+	}
+
+	/**
+	* add - register a session
+	* @param model
+	* @return boolean false if a session with the same uniqueID is registered already
+	*/
+	public boolean add(ClientModel model)
+	{
+		if (this.sessions.putIfAbsent(model.uniqueID, model) != null)
+		{
+			return false;
+		}
+		GameState state = model.getGameState();
+		if (state instanceof SessionState)
+		{
+			((SessionState)state).track(true);
+		}
+		return true;
+	}
+
+	/**
+	* remove - unregister a session, does nothing if it is not registered
+	* @param model
+	* @return boolean true if the session was registered
+	*/
+	public boolean remove(ClientModel model)
+	{
+		if (!this.sessions.remove(model.uniqueID, model))
+		{
+			return false;
+		}
+		GameState state = model.getGameState();
+		if (state instanceof SessionState)
+		{
+			((SessionState)state).track(false);
+		}
+		return true;
+	}
+
+	/**
+	* get - look up a session
+	* @param uniqueID
+	* @return ClientModel null if there is no such session
+	*/
+	public ClientModel get(String uniqueID)
+	{
+		return this.sessions.get(uniqueID);
+	}
+
+	/**
+	* sessions - live view of the registered sessions. Iterating it takes no
+	* lock; sessions added or removed meanwhile may or may not be seen
+	* @param none
+	* @return Collection<ClientModel>
+	*/
+	public Collection<ClientModel> sessions()
+	{
+		return Collections.unmodifiableCollection(this.sessions.values());
+	}
+
+	/**
+	* size - number of registered sessions
+	* @param none
+	* @return int
+	*/
+	public int size()
+	{
+		return this.sessions.size();
+	}
+
+	/**
+	* count - number of registered sessions in one state
+	* @param iState one of the GameState constants
+	* @return int
+	*/
+	public int count(int iState)
+	{
+		return Math.max(0, this.stateCounts.get(iState * STRIDE));
+	}
+
+	/**
+	* counts - number of registered sessions in each state, indexed by the
+	* GameState constants
+	* @param none
+	* @return int[]
+	*/
+	public int[] counts()
+	{
+		int[] counts = new int[STATES];
+		for (int iI = 0; iI < STATES; iI++)
+		{
+			counts[iI] = count(iI);
+		}
+		return counts;
+	}
+
+	/**
+	* toString - number of sessions and the count in each state, for the log
+	* @param none
+	* @return String
+	*/
+	public String toString()
+	{
+		int[] counts = counts();
+		StringBuilder summary = new StringBuilder().append(size()).append(" (");
+		for (int iI = 0; iI < counts.length; iI++)
+		{
+			summary.append((iI == 0) ? "" : " ").append(STATE_NAMES[iI]).append('=').append(counts[iI]);
+		}
+		return summary.append(')').toString();
+	}
+
+	private void moved(int iFrom, int iTo)
+	{
+		if (iFrom >= 0)
+		{
+			this.stateCounts.decrementAndGet(iFrom * STRIDE);
+		}
+		if (iTo >= 0)
+		{
+			this.stateCounts.incrementAndGet(iTo * STRIDE);
+		}
+	}
+
+	/**
+	* The SessionState Class
+	*
+	*	GameState that keeps the registry's counts in step. The state and
+	*	whether it is counted live in one int so a state change racing the
+	*	session being added or removed is counted exactly once
+	*
+	*/
+	private class SessionState extends GameState {
+		private static final int COUNTED = 0x100;
+		private static final int STATE_MASK = 0xFF;
+		private final AtomicInteger value = new AtomicInteger(LISTENING);
+
+		public int getState()
+		{
+			return this.value.get() & STATE_MASK;
+		}
+
+		public void setState(int state)
+		{
+			if (state < 0 || state >= STATES)
+			{
+				return;
+			}
+			while (true)
+			{
+				int iCurrent = this.value.get();
+				if (this.value.compareAndSet(iCurrent, (iCurrent & COUNTED) | state))
+				{
+					if ((iCurrent & COUNTED) != 0 && (iCurrent & STATE_MASK) != state)
+					{
+						moved(iCurrent & STATE_MASK, state);
+					}
+					return;
+				}
+			}
+		}
+
+		/* start or stop counting this session */
+		void track(boolean counted)
+		{
+			while (true)
+			{
+				int iCurrent = this.value.get();
+				if (((iCurrent & COUNTED) != 0) == counted)
+				{
+					return;
+				}
+				if (this.value.compareAndSet(iCurrent, counted ? (iCurrent | COUNTED) : (iCurrent & STATE_MASK)))
+				{
+					if (counted)
+					{
+						moved(-1, iCurrent & STATE_MASK);
+					}
+					else
+					{
+						moved(iCurrent & STATE_MASK, -1);
+					}
+					return;
+				}
+			}
+		}
+	}
+}
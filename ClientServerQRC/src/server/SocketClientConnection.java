@@ -0,0 +1,439 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import javax.net.ssl.SSLSocket;
+import common.FrameLength;
+import common.LogAndPublish;
+import common.MessageParser;
+import common.StreamPreamble;
+
+/**
+ * SocketClientConnection is the blocking transport: one SSLSocket read by the
+ * session thread, with every message prefixed by its length. Legacy clients
+ * carry the messages on an ObjectOutputStream/ObjectInputStream pair, clients
+ * that send the raw preamble get the length and PDU directly on buffered
+ * socket streams, the length as one byte for revision 1 and as a varint for
+ * revision 2. Each message is read into one buffer reused for the whole
+ * connection.
+ *
+ * Messages are encoded into a per connection outbound buffer and written in one
+ * go by flush. On a server connection the buffer is bounded by the high water
+ * mark and each flush by the write timeout: a client that lets more than the
+ * high water mark pile up, or that takes no data for the write timeout while a
+ * flush is waiting on it, is disconnected as a slow consumer so it cannot hold
+ * up whoever else is waiting on its session. Messages are queued and flushed
+ * under the session lock and flush returns only once the socket has taken
+ * every byte, so the buffer holds everything the server has not handed to the
+ * socket, as the non blocking outbound queue does. What the socket has taken
+ * but the client has not read stays in the socket's send buffer, which Java
+ * cannot measure; a client that stops reading fills it and then stalls the
+ * next flush, and only the write timeout catches it there.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class SocketClientConnection implements ClientConnection {
+
+   /** Socket object representing client connection */
+   private SSLSocket socket;
+   /** For writing output to socket. */
+   private DataOutputStream outputStream;
+   /** For reading input from socket */
+   private DataInputStream inputstream;
+   private String uniqueID;
+   private boolean rawFraming;
+   /** whether the client asked for raw framing revision 2, with varint lengths */
+   private boolean varintFraming;
+   /** the last message read, grown to the longest message seen */
+   private byte[] inputBuffer = new byte[INPUT_SIZE];
+   /** initial size of the input buffer, every message of revision 1 fits */
+   private static final int INPUT_SIZE = 256;
+   /** admission slots held until the connection closes */
+   private final AdmissionControl.Ticket ticket;
+   /** milliseconds close() waits for the client to answer close_notify */
+   private static final int CLOSE_NOTIFY_TIMEOUT = 250;
+   /** length bytes and PDUs of the messages waiting for flush, kept in write mode */
+   private ByteBuffer outbound = ByteBuffer.allocate(OUTBOUND_SIZE);
+   /** initial size of the outbound buffer, room for one message of any length */
+   private static final int OUTBOUND_SIZE = 256;
+   /** bytes the outbound buffer may hold, 0 for no limit */
+   private final int iHighWater;
+   /** milliseconds a flush may wait for the client, 0 for no limit */
+   private final int iWriteTimeout;
+   /** TCP socket under the TLS one, closed to cut off a flush that is stuck */
+   private final Socket transport;
+   /** counts slow consumers and the outbound depth, null on a connection without limits */
+   private final ServerMetrics metrics;
+   private final LogAndPublish logAndPublish;
+   /** fires when a flush has waited for the write timeout */
+   private final TimingWheel.Timeout writeDeadline;
+   /** messages written since the last flush once envelopes are agreed, null before */
+   private MessageParser.EnvelopeMessage envelope;
+
+   /**
+   * Constructor - read the client's preamble and set up the I/O streams for
+   * the framing it asked for
+   *
+   */
+   public SocketClientConnection(SSLSocket socket) throws IOException {
+      this(socket, null, null, null);
+   }
+
+   /**
+   * Constructor - as above, for a connection accepted by the server, with its
+   * outbound limits
+   * @param socket
+   * @param transport TCP socket the TLS socket is layered on, may be null
+   * @param ticket admission slots given back on close, may be null
+   * @param controller supplies the outbound limits and metrics, null for no limits
+   */
+   SocketClientConnection(SSLSocket socket, Socket transport, AdmissionControl.Ticket ticket, SecureServerController controller) throws IOException {
+      this.socket = socket;
+      this.transport = (transport != null) ? transport : socket;
+      this.ticket = ticket;
+      this.iHighWater = (controller != null) ? controller.getOutboundHighWater() : 0;
+      this.iWriteTimeout = (controller != null) ? controller.getWriteTimeout() : 0;
+      this.metrics = (controller != null) ? controller.getMetrics() : null;
+      this.logAndPublish = (controller != null) ? controller.getLogAndPublish() : null;
+      this.uniqueID = "" + socket.getInetAddress() + ":" + socket.getPort();
+      InputStream in = socket.getInputStream();
+      byte[] preamble = new byte[StreamPreamble.LENGTH];
+      new DataInputStream(in).readFully(preamble);
+      int iRevision = StreamPreamble.rawRevision(preamble);
+      this.rawFraming = iRevision >= 1;
+      /* revision 2 is the highest this server has, later ones are answered with it */
+      this.varintFraming = iRevision >= 2;
+      if (this.rawFraming)
+      {
+         this.outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+         this.outputStream.write(this.varintFraming ? StreamPreamble.RAW_VARINT : StreamPreamble.RAW);
+         this.outputStream.flush();
+         this.inputstream = new DataInputStream(new BufferedInputStream(in));
+      }
+      else
+      {
+         /* hand the header back to the ObjectInputStream, it checks it */
+         this.outputStream = new DataOutputStream(new ObjectOutputStream(socket.getOutputStream()));
+         this.inputstream = new DataInputStream(new ObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(preamble), in)));
+      }
+      if (this.iWriteTimeout > 0)
+      {
+         /* closing the TCP socket does not wait on the TLS layer, so the wheel thread is never held up */
+         this.writeDeadline = TimingWheel.shared().newTimeout(new Runnable() {
+            public void run() {
+               slowConsumer(ServerMetrics.SLOW_WRITE_TIMEOUT, "took no data for " + iWriteTimeout + " ms");
+            }
+         });
+      }
+      else
+      {
+         this.writeDeadline = null;
+      }
+   }
+
+   /**
+   * getSocket - get the underlying socket
+   * @param none
+   * @return SSLSocket
+   */
+   public SSLSocket getSocket()
+   {
+      return socket;
+   }
+
+   public String getUniqueID()
+   {
+      return uniqueID;
+   }
+
+   /**
+   * isRawFraming - determine whether the client negotiated raw framing
+   * @param none
+   * @return boolean
+   */
+   public boolean isRawFraming()
+   {
+      return rawFraming;
+   }
+
+   /**
+   * hasBufferedInput - determine whether more of the client's data has already
+   * arrived, so the next readMessage is not waiting on the client
+   * @param none
+   * @return boolean
+   */
+   public boolean hasBufferedInput() throws IOException
+   {
+      return inputstream.available() > 0;
+   }
+
+   /**
+   * readMessage - block until the next message arrives from the client. The
+   * message is then available from getMessage() until the next read
+   * @param none
+   * @return int the message length
+   */
+   public int readMessage() throws IOException
+   {
+      int iByteCount;
+      if (this.varintFraming)
+      {
+         iByteCount = FrameLength.read(inputstream);
+      }
+      else
+      {
+         iByteCount = this.rawFraming ? inputstream.readUnsignedByte() : inputstream.readByte();
+      }
+      if (iByteCount < 0)
+      {
+         throw new IOException("Invalid message length " + iByteCount);
+      }
+      if (iByteCount > this.inputBuffer.length)
+      {
+         this.inputBuffer = new byte[Math.max(iByteCount, this.inputBuffer.length * 2)];
+      }
+      inputstream.readFully(this.inputBuffer, 0, iByteCount);
+      return iByteCount;
+   }
+
+   /**
+   * getMessage - get the buffer holding the last message returned by readMessage
+   * @param none
+   * @return byte[]
+   */
+   public byte[] getMessage()
+   {
+      return this.inputBuffer;
+   }
+
+   /**
+   * writeMessage - queue a message until flush. With envelopes it is added
+   * to the envelope being filled, which is queued when it is full
+   * @param msg
+   * @return none
+   */
+   public void writeMessage(MessageParser.EncodableMessage msg) throws IOException
+   {
+      if (this.envelope != null)
+      {
+         if (this.envelope.add(msg))
+         {
+            return;
+         }
+         queueEnvelope();
+         if (this.envelope.add(msg))
+         {
+            return;
+         }
+      }
+      queueFrame(msg);
+   }
+
+   /**
+   * startEnvelopes - pack the messages of each flush into envelopes no
+   * larger than the framing's length allows
+   * @param version
+   * @return none
+   */
+   public void startEnvelopes(int version)
+   {
+      this.envelope = new MessageParser().new EnvelopeMessage(version, maxMessageSize());
+   }
+
+   /**
+   * maxMessageSize - largest message the client's framing can carry
+   * @param none
+   * @return int
+   */
+   private int maxMessageSize()
+   {
+      if (this.varintFraming)
+      {
+         return FrameLength.MAX_MESSAGE_SIZE;
+      }
+      return this.rawFraming ? RawFraming.MAX_MESSAGE_SIZE : ObjectStreamFraming.MAX_MESSAGE_SIZE;
+   }
+
+   /**
+   * queueEnvelope - queue the envelope being filled, if it holds anything
+   * @param none
+   * @return none
+   */
+   private void queueEnvelope() throws IOException
+   {
+      if (this.envelope != null && this.envelope.getCount() > 0)
+      {
+         try {
+            queueFrame(this.envelope);
+         } finally {
+            this.envelope.clear();
+         }
+      }
+   }
+
+   /**
+   * queueFrame - encode the length and the message into the outbound
+   * buffer, where it stays until flush. A message that would take the bytes
+   * not yet handed to the socket, every message queued since the last flush
+   * returned, past the high water mark disconnects the client instead, one
+   * longer than the framing carries is refused
+   * @param msg
+   * @return none
+   */
+   private void queueFrame(MessageParser.EncodableMessage msg) throws IOException
+   {
+      int length = msg.encodedSize();
+      if (length > maxMessageSize())
+      {
+         throw new IOException("Message of " + length + " bytes is longer than the framing carries");
+      }
+      int iNeeded = this.outbound.position() + (this.varintFraming ? FrameLength.size(length) : 1) + length;
+      if (this.iHighWater > 0 && iNeeded > this.iHighWater)
+      {
+         this.outbound.clear();
+         slowConsumer(ServerMetrics.SLOW_HIGH_WATER, "has more than " + this.iHighWater + " bytes waiting");
+         throw new IOException("Outbound queue over the high water mark");
+      }
+      if (iNeeded > this.outbound.capacity())
+      {
+         ByteBuffer larger = ByteBuffer.allocate(Math.max(iNeeded, this.outbound.capacity() * 2));
+         this.outbound.flip();
+         larger.put(this.outbound);
+         this.outbound = larger;
+      }
+      if (this.varintFraming)
+      {
+         FrameLength.put(length, this.outbound);
+      }
+      else
+      {
+         this.outbound.put((byte)length);
+      }
+      msg.encodeInto(this.outbound);
+   }
+
+   /**
+   * flush - write the queued messages in one write. The write deadline closes
+   * the connection if the client does not take them in time
+   * @param none
+   * @return none
+   */
+   public void flush() throws IOException
+   {
+      queueEnvelope();
+      int iBytes = this.outbound.position();
+      if (iBytes == 0)
+      {
+         return;
+      }
+      if (this.metrics != null)
+      {
+         this.metrics.outboundFlushed(iBytes);
+      }
+      if (this.writeDeadline != null)
+      {
+         this.writeDeadline.schedule(this.iWriteTimeout);
+      }
+      try {
+         outputStream.write(this.outbound.array(), 0, iBytes);
+         outputStream.flush();
+      } finally {
+         if (this.writeDeadline != null)
+         {
+            this.writeDeadline.cancel();
+         }
+         this.outbound.clear();
+      }
+   }
+
+   /**
+   * slowConsumer - count and log a client that fell behind and cut the TCP
+   * connection, which fails any write or read in progress on it
+   * @param iReason one of the ServerMetrics.SLOW_ constants
+   * @param sWhy for the log
+   * @return none
+   */
+   private void slowConsumer(int iReason, String sWhy)
+   {
+      if (this.metrics != null)
+      {
+         this.metrics.slowConsumer(iReason);
+      }
+      if (this.logAndPublish != null)
+      {
+         this.logAndPublish.write("Client " + this.uniqueID + " is a slow consumer, it " + sWhy + ", disconnecting", true, false);
+      }
+      abort();
+   }
+
+   public void setReadTimeout(int timeout) throws IOException
+   {
+      this.socket.setSoTimeout(timeout);
+   }
+
+   public boolean isClosed()
+   {
+      return this.socket.isClosed();
+   }
+
+   /**
+   * abort - close the TCP connection under the TLS socket and give back its
+   * admission slots, so the session thread's read or flush fails and the
+   * thread ends the session. Does not wait for the client's close_notify as
+   * close does
+   * @param none
+   * @return none
+   */
+   public void abort()
+   {
+      try {
+         this.transport.close();
+      } catch (IOException ioe) {
+      } finally {
+         if (this.ticket != null)
+         {
+            this.ticket.release();
+         }
+      }
+   }
+
+   public void execute(Runnable task, ThreadFactory threads)
+   {
+      threads.newThread(task).start();
+   }
+
+   public void close() throws IOException
+   {
+      if (this.writeDeadline != null)
+      {
+         this.writeDeadline.cancel();
+      }
+      try {
+         /* close() waits for the client's close_notify for up to the read timeout */
+         if (!this.socket.isClosed() && !this.transport.isClosed())
+         {
+            this.socket.setSoTimeout(CLOSE_NOTIFY_TIMEOUT);
+         }
+         this.socket.close();
+      } finally {
+         if (this.ticket != null)
+         {
+            this.ticket.release();
+         }
+      }
+   }
+}
@@ -0,0 +1,276 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TimingWheel is a hashed timing wheel shared by all sessions of the server.
+ * One thread advances the wheel a tick at a time and runs the timeouts that
+ * have expired, so the number of timer threads no longer grows with the number
+ * of clients.
+ *
+ * Each session owns one Timeout for its whole life. Rescheduling only moves the
+ * timeout's deadline forward; the wheel notices the later deadline when it
+ * reaches the old bucket and moves the entry then. The per message cost is a
+ * couple of volatile writes, with no lock and no allocation.
+ *
+ * Timeouts fire on the wheel thread and must not block for long.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+public class TimingWheel {
+	/* resolution of the wheel */
+	private static final long TICK_MILLIS = 100;
+	/* buckets in the wheel, must be a power of two */
+	private static final int WHEEL_SIZE = 1024;
+
+	private static volatile TimingWheel shared;
+
+	private final long lTickNanos;
+	private final Timeout[] buckets;
+	private final int iMask;
+	/* timeouts scheduled since the last tick, moved into the buckets by the wheel thread */
+	private final ConcurrentLinkedQueue<Timeout> pending;
+	private final long lStartTime;
+	/* ticks processed so far, only used by the wheel thread */
+	private long lTick;
+
+	/**
+	* Constructor
+	* @param lTickMillis
+	* @param iWheelSize power of two
+	* @param name name of the wheel thread
+	*/
+	public TimingWheel(long lTickMillis, int iWheelSize, String name)
+	{
+		if (Integer.bitCount(iWheelSize) != 1)
+		{
+			throw new IllegalArgumentException("wheel size must be a power of two: " + iWheelSize);
+		}
+		this.lTickNanos = TimeUnit.MILLISECONDS.toNanos(lTickMillis);
+		this.buckets = new Timeout[iWheelSize];
+		this.iMask = iWheelSize - 1;
+		this.pending = new ConcurrentLinkedQueue<Timeout>();
+		this.lStartTime = System.nanoTime();
+		this.lTick = 0;
+		Thread worker = new Thread(new Runnable() {
+			public void run() {
+				runWheel();
+			}
+		}, name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	* shared - get the server wide wheel, started on first use
+	* @param none
+	* @return TimingWheel
+	*/
+	public static TimingWheel shared()
+	{
+		TimingWheel wheel = shared;
+		if (wheel == null)
+		{
+			synchronized (TimingWheel.class)
+			{
+				wheel = shared;
+				if (wheel == null)
+				{
+					wheel = new TimingWheel(TICK_MILLIS, WHEEL_SIZE, "AGMP-TimingWheel");
+					shared = wheel;
+				}
+			}
+		}
+		return wheel;
+	}
+
+	/**
+	* newTimeout - create a timeout that runs the task when it expires. It is not
+	* scheduled until schedule() is called and may be scheduled any number of times
+	* @param task
+	* @return Timeout
+	*/
+	public Timeout newTimeout(Runnable task)
+	{
+		return new Timeout(this, task);
+	}
+
+	/**
+	* runWheel - main routine of the wheel thread
+	* @param none
+	* @return none
+	*/
+	private void runWheel()
+	{
+		while (true)
+		{
+			long lNextTick = this.lStartTime + (this.lTick + 1) * this.lTickNanos;
+			long lSleep = lNextTick - System.nanoTime();
+			if (lSleep > 0)
+			{
+				try {
+					TimeUnit.NANOSECONDS.sleep(lSleep);
+				} catch (InterruptedException ie) {
+					return;
+				}
+				continue;
+			}
+			transferPending();
+			expireBucket((int)(this.lTick & this.iMask), lNextTick);
+			this.lTick++;
+		}
+	}
+
+	/**
+	* transferPending - put the newly scheduled timeouts into their buckets
+	* @param none
+	* @return none
+	*/
+	private void transferPending()
+	{
+		Timeout timeout;
+		while ((timeout = this.pending.poll()) != null)
+		{
+			place(timeout, this.lTick);
+		}
+	}
+
+	/**
+	* expireBucket - run the expired timeouts of a bucket and move the ones whose
+	* deadline was pushed back
+	* @param iBucket
+	* @param lNow end of the current tick
+	* @return none
+	*/
+	private void expireBucket(int iBucket, long lNow)
+	{
+		Timeout timeout = this.buckets[iBucket];
+		this.buckets[iBucket] = null;
+		while (timeout != null)
+		{
+			Timeout next = timeout.next;
+			timeout.next = null;
+			long lDeadline = timeout.deadline.get();
+			if (lDeadline != Timeout.NONE && lDeadline - lNow <= 0 && timeout.deadline.compareAndSet(lDeadline, Timeout.NONE))
+			{
+				timeout.unlink();
+				try {
+					timeout.task.run();
+				} catch (RuntimeException re) {
+					re.printStackTrace();
+				}
+			}
+			else
+			{
+				/* cancelled, or pushed back since it was placed */
+				place(timeout, this.lTick + 1);
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	* place - link a timeout into the bucket its deadline falls in. Deadlines
+	* further away than one turn of the wheel go to the last bucket of this turn
+	* and are placed again when it comes around
+	* @param timeout
+	* @param lFirstTick earliest tick it may be placed in
+	* @return none
+	*/
+	private void place(Timeout timeout, long lFirstTick)
+	{
+		long lDeadline = timeout.deadline.get();
+		if (lDeadline == Timeout.NONE)
+		{
+			timeout.unlink();
+			return;
+		}
+		long lTicks = (lDeadline - this.lStartTime) / this.lTickNanos;
+		lTicks = Math.max(lTicks, lFirstTick);
+		lTicks = Math.min(lTicks, this.lTick + this.iMask);
+		int iBucket = (int)(lTicks & this.iMask);
+		timeout.next = this.buckets[iBucket];
+		this.buckets[iBucket] = timeout;
+	}
+
+	/**
+	* The Timeout Class
+	*
+	*	One reusable deadline. The deadline and linked flag are shared between
+	*	the scheduling thread and the wheel thread; next is only used by the wheel
+	*
+	*/
+	public static final class Timeout {
+		/* deadline value of a timeout that is not armed */
+		private static final long NONE = Long.MIN_VALUE;
+
+		private final TimingWheel wheel;
+		private final Runnable task;
+		private final AtomicLong deadline = new AtomicLong(NONE);
+		/* true while the timeout sits in the pending queue or a bucket */
+		private final AtomicBoolean linked = new AtomicBoolean(false);
+		private Timeout next;
+
+		private Timeout(TimingWheel wheel, Runnable task)
+		{
+			this.wheel = wheel;
+			this.task = task;
+		}
+
+		/**
+		* schedule - (re)arm the timeout to expire after the delay
+		* @param lDelayMillis
+		* @return none
+		*/
+		public void schedule(long lDelayMillis)
+		{
+			this.deadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lDelayMillis));
+			link();
+		}
+
+		/**
+		* cancel - disarm the timeout, the wheel drops it when it gets to it
+		* @param none
+		* @return none
+		*/
+		public void cancel()
+		{
+			this.deadline.set(NONE);
+		}
+
+		/**
+		* isActive - determine whether the timeout is armed
+		* @param none
+		* @return boolean
+		*/
+		public boolean isActive()
+		{
+			return this.deadline.get() != NONE;
+		}
+
+		private void link()
+		{
+			if (!this.linked.get() && this.linked.compareAndSet(false, true))
+			{
+				this.wheel.pending.add(this);
+			}
+		}
+
+		/* called by the wheel when it lets go of the timeout; a schedule() that
+		 * raced with this saw it still linked, so link it again for that call */
+		private void unlink()
+		{
+			this.linked.set(false);
+			if (this.deadline.get() != NONE)
+			{
+				link();
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import common.FrameLength;
+
+/**
+ * VarintFraming is the framing selected by the StreamPreamble.RAW_VARINT
+ * preamble: every message is its length as a varint (see common.FrameLength)
+ * followed by the PDU. The message is assembled in one buffer that grows to
+ * the longest message seen and is reused for every message after it.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *
+ */
+class VarintFraming implements MessageFraming {
+	/* starting size of the message buffer, every message of revision 1 fits */
+	private static final int INITIAL_SIZE = 256;
+
+	private byte[] frame = new byte[INITIAL_SIZE];
+	/* the message being assembled, -1 while reading the length */
+	private int iFrameLength = -1;
+	private int iFrameRead = 0;
+	/* reads the length in front of each message */
+	private final FrameLength.Decoder length = new FrameLength.Decoder();
+
+	public int nextMessage(ByteBuffer src) throws IOException
+	{
+		while (src.hasRemaining())
+		{
+			if (this.iFrameLength < 0)
+			{
+				this.iFrameLength = this.length.next(src);
+				if (this.iFrameLength < 0)
+				{
+					return -1;
+				}
+				this.iFrameRead = 0;
+				if (this.iFrameLength > this.frame.length)
+				{
+					this.frame = new byte[Math.max(this.iFrameLength, this.frame.length * 2)];
+				}
+			}
+			else
+			{
+				int n = Math.min(src.remaining(), this.iFrameLength - this.iFrameRead);
+				src.get(this.frame, this.iFrameRead, n);
+				this.iFrameRead += n;
+			}
+			if (this.iFrameRead == this.iFrameLength)
+			{
+				int length = this.iFrameLength;
+				this.iFrameLength = -1;
+				return length;
+			}
+		}
+		return -1;
+	}
+
+	public byte[] getMessage()
+	{
+		return this.frame;
+	}
+
+	public int encodedSize(int iLength)
+	{
+		return FrameLength.size(iLength) + iLength;
+	}
+
+	public void encodeHeader(int iLength, ByteBuffer dst)
+	{
+		FrameLength.put(iLength, dst);
+	}
+
+	public int maxMessageSize()
+	{
+		return FrameLength.MAX_MESSAGE_SIZE;
+	}
+}
@@ -1,14 +1,22 @@
 package server.card_game;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import common.card_game.Card;
 
 /**
  *  The Deck Class
  *  
  *  This class is used by the server to represent a deck in 
- *	card games. It contains 52 card objects and the server can
- *	shuffle and retrieve cards
+ *	card games. It contains the 52 packed cards (see Card.packed)
+ *	and the server can shuffle and retrieve cards
+ *
+ *	The shuffle is a Fisher-Yates shuffle done one card at a time as the
+ *	cards are dealt, so a hand only pays for the cards it uses. Each card
+ *	dealt is drawn evenly from the cards left, whatever order an earlier
+ *	hand left the deck in. The random numbers come from the generator of
+ *	the thread dealing unless the deck was given its own, so sessions
+ *	never share a generator.
  *
  *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
  *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
@@ -17,23 +25,32 @@ import common.card_game.Card;
  */
 public class Deck {
 	/* private member variables */
-	private static Random gen = new Random();
-	private Card[] deck = null;
+	private final Random gen;
+	private final int[] deck;
 	private int curIndex;
 	
 	/**
-	* Constructor - create the 52 card deck
+	* Constructor - create the 52 card deck, dealt with the generator of the
+	* thread dealing
 	*
 	*/
 	public Deck() {
-		deck = new Card[52];
+		this(null);
+	}
+
+	/**
+	* Constructor - create the 52 card deck, dealt with its own generator
+	* @param gen null for the generator of the thread dealing
+	*/
+	public Deck(Random gen) {
+		this.gen = gen;
+		deck = new int[52];
 		int kK = 0;
 		for (int iI = 0; iI < Card.NUM_SUITS; iI++)
 		{
 			for (int jJ = 1; jJ <= Card.NUM_RANKS; jJ++)
 			{
-				int suite = (int)Math.pow(2.0, (double)iI);
-				deck[kK] = new Card(suite, jJ);
+				deck[kK] = Card.pack(1 << iI, jJ);
             kK++;
 			}
 		}
@@ -41,46 +58,58 @@ public class Deck {
 	}
 	
 	/**
-      * shuffle - method to randomize the cards in an effort
-	  * to "shuffle" the deck
-      * @param version
+      * shuffle - put every card back in the deck, the cards are drawn at
+	  * random as they are dealt
+      * @param none
       * @return none
       */
 	public void shuffle()
 	{
-		int randIndex;
-		Card cardTemp;
-		for (int iI = 0; iI < deck.length; iI++)
+		curIndex = 0;
+	}
+
+	/**
+      * deal - deal a number of packed cards from the deck into an array
+      * @param cards
+      * @param iFrom index of cards to deal the first card to
+      * @param nNumCards
+      * @return boolean false, and nothing dealt, if the deck does not have
+      * that many cards left
+      */
+	public boolean deal(int[] cards, int iFrom, int nNumCards)
+	{
+		if (nNumCards > deck.length - curIndex)
 		{
-			randIndex = gen.nextInt(deck.length-iI) + iI;
-			cardTemp = deck[randIndex];
-			deck[randIndex] = deck[iI];
-			deck[iI] = cardTemp;			
+			return false;
 		}
-		curIndex = 0;
+		Random random = (gen != null) ? gen : ThreadLocalRandom.current();
+		for (int iI = iFrom; iI < iFrom + nNumCards; iI++)
+		{
+			/* the next step of the Fisher-Yates shuffle */
+			int randIndex = random.nextInt(deck.length - curIndex) + curIndex;
+			int cardTemp = deck[randIndex];
+			deck[randIndex] = deck[curIndex];
+			deck[curIndex] = cardTemp;
+			cards[iI] = cardTemp;
+			curIndex++;
+		}
+		return true;
 	}
+
 	/**
-      * getCards - get a number of cards from the deck
+      * getCards - get a number of packed cards from the deck
       * @param nNumCards
-      * @return Card[]
+      * @return int[] null if the deck does not have that many cards left
       */
-	public Card[] getCards(int nNumCards)
+	public int[] getCards(int nNumCards)
 	{
-		Card[] cards = null;
+		int[] cards = null;
 		if (nNumCards > 0)
 		{
-			cards = new Card[nNumCards];
-			for (int iI = 0; iI < nNumCards; iI++)
+			cards = new int[nNumCards];
+			if (!deal(cards, 0, nNumCards))
 			{
-				if (curIndex < deck.length)
-				{
-					cards[iI] = deck[curIndex];
-					curIndex++;
-				}
-				else
-				{
-					return null;
-				}
+				return null;
 			}
 		}
 		return cards;
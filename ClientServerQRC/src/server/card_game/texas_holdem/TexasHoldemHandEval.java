@@ -3,8 +3,10 @@
  *  
  *  This page contains game logic for playing Texas Holdem.
  *  
- *  This ranking function was downloaded and modified from
+ *  The hand ranks are the ones of the ranking function downloaded and
+ *  modified from
  *  http://www.jroller.com/JamesGoodwill/entry/texas_hold_em_hand_evaluator
+ *  (Denis Papp's Loki hand identifier), computed from lookup tables.
  *  
  */
 
@@ -12,11 +14,25 @@ package server.card_game.texas_holdem;
 
 import common.card_game.Card;
 
-/*
- *  This ranking function was downloaded and modified from
- *  http://www.jroller.com/JamesGoodwill/entry/texas_hold_em_hand_evaluator
+/**
+ * TexasHoldemHandEval ranks poker hands of five to seven cards.
+ *
+ * A hand is held as one long, 13 bits of ranks per suit (deuce in the lowest
+ * bit, ace in the highest, 16 bits apart), and ranked from three tables
+ * indexed by 13 bit rank masks: the high card of the best straight, the value
+ * of the five highest ranks, and the bits of every packed card. The counts of
+ * each rank come from ANDing the four suit masks together, so a hand is
+ * ranked without allocating anything or looking at a Card object twice.
+ *
+ * The ranks are the idents of the Loki hand identifier this class used
+ * before, value for value: a category (HIGH to STRAIGHTFLUSH) times
+ * ID_GROUP_SIZE, plus the ranks that break ties within it as base 13 digits.
+ *
+ *  @author GROUP 2, CS544-900-SPRING12, DREXEL UNIVERSITY
+ *  Members: Jeremy Glesner, Dustin Overmiller, Yiqi Ju, Lei Yuan
+ *  Project: Advanced Game Message Protocol Implementation
+ *  
  */
-
 public class TexasHoldemHandEval 
 {
 	
@@ -45,9 +61,25 @@ public class TexasHoldemHandEval
 	      return 0;
 	   }
 
-	   /** ******************************************************************* */
-	   // DENIS PAPP'S HAND RANK IDENTIFIER CODE:
-	   /** ******************************************************************* */
+	   /**
+	    * compareHands - compare the hands of two players sharing the community
+	    * cards, all of them packed cards
+	    * @param playerCards
+	    * @param dealerCards
+	    * @param communityCards
+	    * @return 1 = player's hand is best, -1 = dealer's hand is best, 0 = tie
+	    */
+	   public int compareHands(int[] playerCards, int[] dealerCards, int[] communityCards) {
+	      long community = bits(communityCards);
+	      int r1 = rankHand(community | bits(playerCards));
+	      int r2 = rankHand(community | bits(dealerCards));
+
+	      if (r1 > r2)
+	    	  return 1;
+	      if (r1 < r2)
+	         return -1;
+	      return 0;
+	   }
 
 	   private static final int POKER_HAND = 5;
 
@@ -66,271 +98,200 @@ public class TexasHoldemHandEval
 	   private static final int ID_GROUP_SIZE = (Card.NUM_RANKS * Card.NUM_RANKS
 	         * Card.NUM_RANKS * Card.NUM_RANKS * Card.NUM_RANKS);
 
-	   private final static byte ID_ExistsStraightFlush(Card[] h, byte major_suit)
-	   {
-		   boolean[] present = new boolean[Card.NUM_RANKS];
-		   // for (i=0;i<Card.NUM_RANKS;i++) present[i]=false;
+	   /* the 13 rank bits of one suit */
+	   private static final int RANKS = (1 << 13) - 1;
+	   /* bits between the suits of a hand */
+	   private static final int SUIT_SHIFT = 16;
+	   /* the rank index of the ace, the highest */
+	   private static final int ACE = 12;
 
-		   for (int i = 0; i < h.length; i++) 
-		   {
-			   if (h[i].getSuitValue() == major_suit) 
-			   {
-				   present[h[i].getRankValue()] = true;
-	        
-			   }	     
-		   }
-		   Card ace = new Card(Card.HEART, Card.CARD_ACE);
-		   int straight = present[ace.getRankValue()] ? 1 : 0;
-		   byte high = 0;
-		   for (int i = 0; i < Card.NUM_RANKS; i++)
-		   {
-			   if (present[i]) 
-			   {
-				   if ((++straight) >= POKER_HAND) 
-				   {
-					   high = (byte) i;	           
-				   }	        
-			   } 
-			   else 
-			   {	           
-				   straight = 0;	         
-			   }	      
-		   }	     
-		   return high;	  
-	   }
+	   /* 13 to the power of 0 to 5, to keep the first kickers of a TOP_FIVE value */
+	   private static final int[] POW13 = {1, 13, 169, 2197, 28561, 371293};
+	   /* rank index of the high card of the best straight in a rank mask, 0 if there is none */
+	   private static final byte[] STRAIGHT_HIGH = new byte[RANKS + 1];
+	   /* the five highest ranks of a rank mask as base 13 digits, highest first */
+	   private static final int[] TOP_FIVE = new int[RANKS + 1];
+	   /* the hand bit of each packed card, 0 for anything that is not a card */
+	   private static final long[] CARD_BITS = new long[256];
 
-	   // suit: Card.NUM_SUITS means any
-	   // not_allowed: Card.NUM_RANKS means any
-	   // returns ident value
-	   private final static int ID_KickerValue(byte[] paired, int kickers, byte[] not_allowed) 
+	   static
 	   {
-		   Card ace = new Card(Card.HEART, Card.CARD_ACE);
-		   int i = ace.getRankValue();
-		   int value = 0;
-		   while (kickers != 0) 
+		   for (int mask = 0; mask <= RANKS; mask++)
 		   {
-			   while (paired[i] == 0 || i == not_allowed[0] || i == not_allowed[1])
+			   // an ace also counts below the deuce
+			   int run = (mask & (1 << ACE)) != 0 ? 1 : 0;
+			   for (int r = 0; r <= ACE; r++)
 			   {
-				   i--;
+				   run = (mask & (1 << r)) != 0 ? run + 1 : 0;
+				   if (run >= POKER_HAND)
+				   {
+					   STRAIGHT_HIGH[mask] = (byte) r;
+				   }
 			   }
-			   kickers--;
-			   value += pow(Card.NUM_RANKS, kickers) * i;
-			   i--;	     
-		   }	     
-		   return value;	  
-	   }
-
-	   private final static int ID_KickerValueSuited(Card[] h, int kickers, byte suit) 
-	   {
-		   int i;
-		   int value = 0;
-		   Card ace = new Card(Card.HEART, Card.CARD_ACE);
-
-		   boolean[] present = new boolean[Card.NUM_RANKS];
-		   // for (i=0;i<Card.NUM_RANKS;i++) present[i] = false;
-
-		   for (i = 0; i < h.length; i++)
-		   {
-			   if (h[i].getSuitValue() == suit)
+			   int value = 0;
+			   int kickers = POKER_HAND;
+			   for (int r = ACE; r >= 0 && kickers > 0; r--)
 			   {
-				   present[h[i].getRankValue()] = true;
+				   if ((mask & (1 << r)) != 0)
+				   {
+					   kickers--;
+					   value += POW13[kickers] * r;
+				   }
 			   }
+			   TOP_FIVE[mask] = value;
 		   }
-
-		   i = ace.getRankValue();
-		   while (kickers != 0) 
+		   int[] suites = {Card.CLUB, Card.SPADE, Card.DIAMOND, Card.HEART};
+		   for (int s = 0; s < suites.length; s++)
 		   {
-			   while (present[i] == false)
+			   for (int value = Card.CARD_ACE; value <= Card.CARD_KING; value++)
 			   {
-				   i--;
+				   int rank = (value == Card.CARD_ACE) ? ACE : value - 2;
+				   CARD_BITS[(suites[s] << 4) | value] = 1L << (s * SUIT_SHIFT + rank);
 			   }
-			   kickers--;
-			   value += pow(Card.NUM_RANKS, kickers) * i;
-			   i--;			   
 		   }
-		   return value;	  
 	   }
 
 	   /**
-	    * Get a numerical ranking of this hand. Uses java based code, so may be
-	    * slower than using the native methods, but is more compatible this way.
-	    * 
-	    * Based on Denis Papp's Loki Hand ID code (id.cpp) Given a 1-9 card hand,
-	    * will return a unique rank such that any two hands will be ranked with the
-	    * better hand having a higher rank.
-	    * 
-	    * @param h a 1-9 card hand
-	    * @return a unique number representing the hand strength of the best 5-card
-	    *         poker hand in the given 7 cards. The higher the number, the better
-	    *         the hand is.
+	    * rankHand - get a numerical ranking of this hand: the better of two
+	    * hands has the higher rank and equal hands have the same one
+	    * @param h a 5-7 card hand
+	    * @return int the rank of the best 5-card poker hand in the given cards
 	    */
 	   public final static int rankHand(Card[] h) 
 	   {
-		   boolean straight = false;
-		   boolean flush = false;
-		   byte max_hand = (byte) (h.length >= POKER_HAND ? POKER_HAND : h.length);
-		   Card ace = new Card(Card.HEART, Card.CARD_ACE);
-		   int r, c;
-		   byte rank, suit;
-
-		   // pair data
-		   byte[] group_size = new byte[POKER_HAND + 1];   // array to track the groups or cards in your hand
-		   byte[] paired = new byte[Card.NUM_RANKS];       // array to track paired carsd
-		   byte[][] pair_rank = new byte[POKER_HAND + 1][2];  // array to track the rank of our pairs
-		   // straight
-		   byte straight_high = 0;                         // track the high card (rank) of our straight
-		   byte straight_size;
-		   // flush
-		   byte[] suit_size = new byte[Card.NUM_SUITS];
-		   byte major_suit = 0;
-
-		   // determine pairs, dereference order data, check flush
-		   // for (r=0;r<Card.NUM_RANKS;r++) paired[r] = 0;
-		   // for (r=0;r<Card.NUM_SUITS;r++) suit_size[r] = 0;
-		   // for (r=0;r<=POKER_HAND;r++) group_size[r] = 0;
-		   for (r = 0; r < h.length; r++) 
+		   long hand = 0;
+		   for (int i = 0; i < h.length; i++)
 		   {
-			   rank = (byte)h[r].getRankValue();
-			   suit = (byte)h[r].getSuitValue();
-			   paired[rank]++;            // Add rank of card to paired array to track the pairs we have.	       
-			   group_size[paired[rank]]++;   // keep track of the groups in our hand (1-pair, 2-pair, 1-trips, 1-trips 1-pair)
-	        
-			   if (paired[rank] != 0)     // To prevent looking at group_size[-1], which would be bad.
-			   {
-				   group_size[paired[rank] - 1]--;  // Decrese the previous group by one.  group_size[0] should end up at -5.
-			   }
-			   if ((++suit_size[suit]) >= POKER_HAND)
-			   {  
-				   // Add suit to suit array, then check for a flush.	            
-				   flush = true;
-				   major_suit = suit;				   
-			   }	     
+			   hand |= CARD_BITS[h[i].packed()];
 		   }
-		   // Card.ACE low?  Add to straight_size if so.
-		   straight_size = (byte) (paired[ace.getRankValue()] != 0 ? 1 : 0);
+		   return rankHand(hand);
+	   }
 
-		   for (int i = 0; i < (POKER_HAND + 1); i++) 
+	   /**
+	    * rankHand - rank a hand of packed cards, suite in the high nibble and
+	    * value in the low nibble as in the Server Play Game PDU
+	    * @param cards
+	    * @param iFrom index of the first card of the hand
+	    * @param iCount number of cards, 5 to 7
+	    * @return int the same rank as rankHand(Card[]) gives those cards
+	    */
+	   public final static int rankHand(int[] cards, int iFrom, int iCount)
+	   {
+		   long hand = 0;
+		   for (int i = iFrom; i < iFrom + iCount; i++)
 		   {
-			   pair_rank[i][0] = (byte) Card.NUM_RANKS;
-			   pair_rank[i][1] = (byte) Card.NUM_RANKS;	     
+			   hand |= CARD_BITS[cards[i] & 0xFF];
 		   }
+		   return rankHand(hand);
+	   }
 
-		   // check for straight and pair data
-		   // Start at the Deuce.  straight_size = 1 if we have an ace.
-		   for (r = 0; r < Card.NUM_RANKS; r++) 
+	   /* the hand bits of packed cards */
+	   private static long bits(int[] cards)
+	   {
+		   long hand = 0;
+		   for (int i = 0; i < cards.length; i++)
 		   {
-			   // check straight
-			   if (paired[r] != 0) {
-				   if ((++straight_size) >= POKER_HAND) 
-				   {   
-					   // Do we have five cards in a row (a straight!)
-					   straight = true;        // We sure do.
-					   straight_high = (byte) r;  // Keep track of that high card	          
-				   }	         
-			   } 
-			   else
-			   {             
-				   // Missing a card for our straight.  start the count over.	            
-				   straight_size = 0;	         
-			   }
-			   // get pair ranks, keep two highest of each
-			   c = paired[r];
-			   if (c != 0) 
-			   {
-				   pair_rank[c][1] = pair_rank[c][0];
-				   pair_rank[c][0] = (byte) r;				   
-			   }	    
+			   hand |= CARD_BITS[cards[i] & 0xFF];
 		   }
+		   return hand;
+	   }
 
-		   // now id type
-		   int ident;
+	   /**
+	    * rankHand - rank a hand held as four suit masks
+	    * @param hand
+	    * @return int
+	    */
+	   private static int rankHand(long hand)
+	   {
+		   int s0 = (int) hand & RANKS;
+		   int s1 = (int) (hand >>> SUIT_SHIFT) & RANKS;
+		   int s2 = (int) (hand >>> (2 * SUIT_SHIFT)) & RANKS;
+		   int s3 = (int) (hand >>> (3 * SUIT_SHIFT)) & RANKS;
+		   int any = s0 | s1 | s2 | s3;
+		   int max_hand = Math.min(POKER_HAND, Long.bitCount(hand));
 
-		   if (group_size[POKER_HAND] != 0)
-		   {    
-			   // we have five cards of the same rank in our hand.
-			   ident = FIVEKIND * ID_GROUP_SIZE;   // must have five of a kind !!
-			   ident += pair_rank[POKER_HAND][0];
-			   return ident;	   
-		   }
+		   // at most one suit of up to 9 cards can hold five of them
+		   int flush = 0;
+		   if (Integer.bitCount(s0) >= POKER_HAND)
+			   flush = s0;
+		   else if (Integer.bitCount(s1) >= POKER_HAND)
+			   flush = s1;
+		   else if (Integer.bitCount(s2) >= POKER_HAND)
+			   flush = s2;
+		   else if (Integer.bitCount(s3) >= POKER_HAND)
+			   flush = s3;
 
-		   if (straight && flush) 
+		   if (flush != 0 && STRAIGHT_HIGH[flush] != 0)
 		   {
-			   byte hi = ID_ExistsStraightFlush(h, major_suit);
-			   if (hi > 0) 
-			   {
-				   ident = STRAIGHTFLUSH * ID_GROUP_SIZE;
-				   ident += hi;
-				   return ident;	        
-			   }	    
+			   return STRAIGHTFLUSH * ID_GROUP_SIZE + STRAIGHT_HIGH[flush];
 		   }
 
-		   if (group_size[4] != 0) 
+		   // ranks held in all four, at least three and at least two suits
+		   int four = s0 & s1 & s2 & s3;
+		   int three = (s0 & s1 & (s2 | s3)) | (s2 & s3 & (s0 | s1));
+		   int two = (s0 & s1) | (s2 & s3) | ((s0 | s1) & (s2 | s3));
+		   int trips = three & ~four;
+		   int pairs = two & ~three;
+
+		   if (four != 0)
 		   {
-			   ident = FOURKIND * ID_GROUP_SIZE;
-			   ident += pair_rank[4][0] * Card.NUM_RANKS;
-			   pair_rank[4][1] = (byte) Card.NUM_RANKS; // just in case 2 sets quads
-			   ident += ID_KickerValue(paired, 1, pair_rank[4]);
-		   } 
-		   else if (group_size[3] >= 2) 
+			   int quad = highest(four);
+			   return FOURKIND * ID_GROUP_SIZE + quad * Card.NUM_RANKS
+					   + kickers(any & ~(1 << quad), 1);
+		   }
+		   if (trips != 0)
 		   {
-			   ident = FULLHOUSE * ID_GROUP_SIZE;
-			   ident += pair_rank[3][0] * Card.NUM_RANKS;
-			   ident += pair_rank[3][1];	     
-		   } 
-		   else if (group_size[3] == 1 && group_size[2] != 0) 
+			   int trip = highest(trips);
+			   int rest = trips & ~(1 << trip);
+			   if (rest != 0)
+			   {
+				   return FULLHOUSE * ID_GROUP_SIZE + trip * Card.NUM_RANKS + highest(rest);
+			   }
+			   if (pairs != 0)
+			   {
+				   return FULLHOUSE * ID_GROUP_SIZE + trip * Card.NUM_RANKS + highest(pairs);
+			   }
+		   }
+		   if (flush != 0)
 		   {
-			   ident = FULLHOUSE * ID_GROUP_SIZE;
-			   ident += pair_rank[3][0] * Card.NUM_RANKS;
-			   ident += pair_rank[2][0];			   
-		   } 
-		   else if (flush) 
+			   return FLUSH * ID_GROUP_SIZE + TOP_FIVE[flush];
+		   }
+		   if (STRAIGHT_HIGH[any] != 0)
 		   {
-			   ident = FLUSH * ID_GROUP_SIZE;
-			   ident += ID_KickerValueSuited(h, 5, major_suit);	     
-		   } 
-		   else if (straight) 
+			   return STRAIGHT * ID_GROUP_SIZE + STRAIGHT_HIGH[any];
+		   }
+		   if (trips != 0)
 		   {
-			   ident = STRAIGHT * ID_GROUP_SIZE;
-			   ident += straight_high;	      
-		   } 
-		   else if (group_size[3] == 1) 
+			   int trip = highest(trips);
+			   return THREEKIND * ID_GROUP_SIZE + trip * Card.NUM_RANKS * Card.NUM_RANKS
+					   + kickers(any & ~(1 << trip), max_hand - 3);
+		   }
+		   if (pairs != 0)
 		   {
-			   ident = THREEKIND * ID_GROUP_SIZE;
-			   ident += pair_rank[3][0] * Card.NUM_RANKS * Card.NUM_RANKS;
-			   ident += ID_KickerValue(paired, max_hand - 3, pair_rank[3]);	      
-		   } 
-		   else if (group_size[2] >= 2) 
-		   {   
-			   // TWO PAIR
-			   ident = TWOPAIR * ID_GROUP_SIZE;    
-			   ident += pair_rank[2][0] * Card.NUM_RANKS * Card.NUM_RANKS;
-			   ident += pair_rank[2][1] * Card.NUM_RANKS;
-			   ident += ID_KickerValue(paired, max_hand - 4, pair_rank[2]);	      
-		   } 
-		   else if (group_size[2] == 1) 
-		   {   
-			   // A PAIR
-			   ident = PAIR * ID_GROUP_SIZE;
-			   ident += pair_rank[2][0] * Card.NUM_RANKS * Card.NUM_RANKS * Card.NUM_RANKS;
-			   ident += ID_KickerValue(paired, max_hand - 2, pair_rank[2]);	      
-		   } 
-		   else 
-		   {                      
-			   // A Low
-			   ident = HIGH * ID_GROUP_SIZE;
-			   ident += ID_KickerValue(paired, max_hand, pair_rank[2]);	     
-		   }	     
-		   return ident;	  
+			   int high = highest(pairs);
+			   int rest = pairs & ~(1 << high);
+			   if (rest != 0)
+			   {
+				   int low = highest(rest);
+				   return TWOPAIR * ID_GROUP_SIZE + high * Card.NUM_RANKS * Card.NUM_RANKS + low * Card.NUM_RANKS
+						   + kickers(any & ~(1 << high) & ~(1 << low), max_hand - 4);
+			   }
+			   return PAIR * ID_GROUP_SIZE + high * Card.NUM_RANKS * Card.NUM_RANKS * Card.NUM_RANKS
+					   + kickers(any & ~(1 << high), max_hand - 2);
+		   }
+		   return HIGH * ID_GROUP_SIZE + kickers(any, max_hand);
 	   }
 
-	   private static int pow(int n, int p) 
+	   /* rank index of the highest rank in a mask */
+	   private static int highest(int mask)
 	   {
-		   int res = 1;
-		   while (p-- > 0)
-		   {
-			   res *= n;
-		   }
-		   return res;
+		   return 31 - Integer.numberOfLeadingZeros(mask);
+	   }
+
+	   /* the highest n ranks of a mask as base 13 digits, highest first */
+	   private static int kickers(int mask, int n)
+	   {
+		   return n <= 0 ? 0 : TOP_FIVE[mask] / POW13[POKER_HAND - n];
 	   }
 
 	}
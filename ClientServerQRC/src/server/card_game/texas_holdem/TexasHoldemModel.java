@@ -12,6 +12,7 @@ import server.ClientModel;
 import server.card_game.Deck;
 import common.GamePlayState;
 import common.MessageParser;
+import common.MessageView;
 import common.MessageParser.ServerPlayGameMessage;
 import common.card_game.Card;
 /**
@@ -32,9 +33,11 @@ public class TexasHoldemModel {
 	private long lPotSize;
 	private long lBetAmount;
 	private int iAnte;
-	private Card[] oPlayerCards;
-	private Card[] oDealerCards;
-	private Card[] oCommunityCards;
+	/* the cards of the hand, packed (see Card.packed) */
+	private int[] oPlayerCards;
+	private int[] oDealerCards;
+	private int[] oCommunityCards;
+	private TexasHoldemHandEval evaluator;
 	private ClientModel model;
 	
 	/**
@@ -48,9 +51,10 @@ public class TexasHoldemModel {
 		this.lBankAmount = this.model.getClientBankAmount();
 		this.model.getLogAndPublish().write(this.model.uniqueID + ": Creating Texas Holdem Server Model", true, false);
 		deck = new Deck();
-		oPlayerCards = new Card[2];
-		oDealerCards = new Card[2];
-		oCommunityCards = new Card[5];
+		evaluator = new TexasHoldemHandEval();
+		oPlayerCards = new int[2];
+		oDealerCards = new int[2];
+		oCommunityCards = new int[5];
 		Init();
 		
 	}
@@ -64,11 +68,11 @@ public class TexasHoldemModel {
 		this.model.getLogAndPublish().write(this.model.uniqueID + ": Setting up Texas Holdem Server Model", true, false);
 		/* initialize the state to the first state */
 		prevGamePlayState.setPlayState(GamePlayState.NOT_SET);
-		/* shuffle the deck and get the cards */
+		/* shuffle the deck and deal the cards, the messages copy them so the arrays are reused */
 		deck.shuffle();
-		oPlayerCards = deck.getCards(2);
-		oDealerCards = deck.getCards(2);
-		oCommunityCards = deck.getCards(5);
+		deck.deal(oPlayerCards, 0, oPlayerCards.length);
+		deck.deal(oDealerCards, 0, oDealerCards.length);
+		deck.deal(oCommunityCards, 0, oCommunityCards.length);
 		/* zero out the table variables and get the minimum ante */
 		lPotSize = 0;
 		lBetAmount = 0;
@@ -84,12 +88,22 @@ public class TexasHoldemModel {
 		this.Init();
 	}
 	/**
+   * isHandInProgress - determine whether the client has put in an ante and the
+   * hand has not been folded or played to the river yet
+   * @param none
+   * @return boolean
+   */
+	public boolean isHandInProgress()
+	{
+		return prevGamePlayState.getPlayState() != GamePlayState.NOT_SET && prevGamePlayState.getPlayState() != GamePlayState.INIT;
+	}
+	/**
    * updateModel - this is the main function which will take in the client message and depending on the 
    * current game state send the appropriate server response
-   * @param ClientPlayGameMessage
+   * @param MessageView.ClientPlayGame view of the client play game message
    * @return ServerPlayGameMessage
    */
-	public MessageParser.ServerPlayGameMessage updateModel(MessageParser.ClientPlayGameMessage clientMsg)
+	public MessageParser.ServerPlayGameMessage updateModel(MessageView.ClientPlayGame clientMsg)
 	{
 		ServerPlayGameMessage serverMsg = null;
 		
@@ -101,8 +115,8 @@ public class TexasHoldemModel {
 			{
 				// fill in the server message				
 				serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_INIT_ACK, 
-			            this.iAnte, new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                     new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+			            this.iAnte, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                     Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				
 				// update latest request
 				prevGamePlayState.setPlayState(GamePlayState.INIT);
@@ -128,8 +142,8 @@ public class TexasHoldemModel {
 					this.lBankAmount -= (long)this.iAnte;
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_GET_HOLE_ACK, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                        new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                        Card.NOT_SET, Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 					
 					// update latest request
 					prevGamePlayState.setPlayState(GamePlayState.GET_HOLE);
@@ -141,8 +155,8 @@ public class TexasHoldemModel {
 					this.model.getLogAndPublish().write(this.model.uniqueID + ": has sent an invalid ante amount", true, false);
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_INVALID_ANTE_BET, 
-				            this.iAnte, new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                        new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                        Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				}
 			}
 			else
@@ -164,8 +178,8 @@ public class TexasHoldemModel {
 					this.lBankAmount -= clientMsg.getBetAmount();
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_GET_FLOP_ACK, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], new Card(Card.NOT_SET, Card.NOT_SET), 
-                        new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], Card.NOT_SET, 
+                        Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 					
 					// update latest request
 					prevGamePlayState.setPlayState(GamePlayState.GET_FLOP);
@@ -178,8 +192,8 @@ public class TexasHoldemModel {
 					this.model.getLogAndPublish().write(this.model.uniqueID + ": has sent an invalid hole bet amount", true, false);
 					// fill in the server message
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_INVALID_HOLE_BET, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                        new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                        Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				}
 			}
 			else if (clientMsg.getGamePlayRequest() == MessageParser.GAME_PLAY_REQUEST_FOLD)
@@ -190,8 +204,8 @@ public class TexasHoldemModel {
 				
 				// fill in the server message				
 				serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_FOLD_ACK, 
-			            this.iAnte, new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                     new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
+			            this.iAnte, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                     Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
                      MessageParser.WINNER_DEALER, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				
 			}
@@ -214,8 +228,8 @@ public class TexasHoldemModel {
 					this.lBankAmount -= clientMsg.getBetAmount();
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_GET_TURN_ACK, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], 
-                        oCommunityCards[3], new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], 
+                        oCommunityCards[3], Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 					
 					// update latest request
 					prevGamePlayState.setPlayState(GamePlayState.GET_TURN);
@@ -228,8 +242,8 @@ public class TexasHoldemModel {
 					this.model.getLogAndPublish().write(this.model.uniqueID + ": has sent an invalid turn bet amount", true, false);
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_INVALID_FLOP_BET, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], 
-                        new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], 
+                        Card.NOT_SET, Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				}
 			}
 			else if (clientMsg.getGamePlayRequest() == MessageParser.GAME_PLAY_REQUEST_FOLD)
@@ -240,8 +254,8 @@ public class TexasHoldemModel {
 				
 				// fill in the server message		
 				serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_FOLD_ACK, 
-			            this.iAnte, new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                     new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.WINNER_DEALER, this.lPotSize, this.lBetAmount, this.lBankAmount);
+			            this.iAnte, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                     Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, MessageParser.WINNER_DEALER, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				
 			}
 			else
@@ -289,8 +303,8 @@ public class TexasHoldemModel {
 					this.model.getLogAndPublish().write(this.model.uniqueID + ": has sent an invalid river bet amount", true, false);
 					// fill in the server message					
 					serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_INVALID_TURN_BET, 
-				            this.iAnte, oPlayerCards[0], oPlayerCards[1], new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], oCommunityCards[3], 
-                        new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
+				            this.iAnte, oPlayerCards[0], oPlayerCards[1], Card.NOT_SET, Card.NOT_SET, oCommunityCards[0], oCommunityCards[1], oCommunityCards[2], oCommunityCards[3], 
+                        Card.NOT_SET, MessageParser.NOT_SET, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				}
 			}
 			else if (clientMsg.getGamePlayRequest() == MessageParser.GAME_PLAY_REQUEST_FOLD)
@@ -301,8 +315,8 @@ public class TexasHoldemModel {
 				
 				// fill in the server message				
 				serverMsg = this.model.getMessageParser().new ServerPlayGameMessage(clientMsg.getVersion(), clientMsg.getTypeCode(), clientMsg.getGameIndicator(), clientMsg.getGameTypeCode(), MessageParser.GAME_PLAY_RESPONSE_FOLD_ACK, 
-			            this.iAnte, new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), 
-                     new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), new Card(Card.NOT_SET, Card.NOT_SET), MessageParser.WINNER_DEALER, this.lPotSize, this.lBetAmount, this.lBankAmount);
+			            this.iAnte, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, 
+                     Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, Card.NOT_SET, MessageParser.WINNER_DEALER, this.lPotSize, this.lBetAmount, this.lBankAmount);
 				
 			}
 			else
@@ -322,44 +336,16 @@ public class TexasHoldemModel {
 	/**
    * calculateWinner - This function takes the cards on the table and will use a hand evaluator object
    * to determine whether the dealer had the best hand, the player had the best hand, or it was a draw
-   * @param Card[] playerCards
-   * @param Card[] dealerCards
-   * @param Card[] communityCards
+   * @param int[] playerCards
+   * @param int[] dealerCards
+   * @param int[] communityCards
    * @return int
    */
-	private int calculateWinner(Card[] playerCards, Card[] dealerCards, Card[] communityCards)
+	private int calculateWinner(int[] playerCards, int[] dealerCards, int[] communityCards)
 	{
 		int winner = MessageParser.NOT_SET;
-		/* Get the player's hand which is the player's two cards plus the five community cards */
-		Card[] playerHand = new Card[7];
-		for (int iI = 0; iI < playerHand.length; iI++)
-		{
-			if (iI < playerCards.length)
-			{
-				playerHand[iI] = playerCards[iI];
-			}
-			else
-			{
-				playerHand[iI] = communityCards[iI-playerCards.length];
-			}
-		}
-		
-		Card[] dealerHand = new Card[7];
-		/* Get the dealer's hand which is the dealer's two cards plus the five community cards */
-		for (int iI = 0; iI < dealerHand.length; iI++)
-		{
-			if (iI < dealerCards.length)
-			{
-				dealerHand[iI] = dealerCards[iI];
-			}
-			else
-			{
-				dealerHand[iI] = communityCards[iI-dealerCards.length];
-			}
-		}
-		/* create the hand evaluator object and pass in the hands to be evaluated */
-		TexasHoldemHandEval evaluator = new TexasHoldemHandEval();
-		int compareHands = evaluator.compareHands(playerHand, dealerHand);
+		/* each hand is the two hole cards plus the five community cards */
+		int compareHands = evaluator.compareHands(playerCards, dealerCards, communityCards);
 		
 		/* determine the winner */
 		if (compareHands > 0)